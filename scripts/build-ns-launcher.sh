@@ -0,0 +1,15 @@
+#!/usr/bin/env bash
+# Builds the namespace sandbox launcher. The judge never compiles it at runtime: without a
+# launcher at judge.sandbox.namespace-launcher-path the namespace sandbox stays unavailable.
+#
+#   scripts/build-ns-launcher.sh [output path]   (default /usr/local/libexec/judge/ns-launcher)
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "${BASH_SOURCE[0]}")/.." && pwd)"
+OUTPUT="${1:-/usr/local/libexec/judge/ns-launcher}"
+
+mkdir -p "$(dirname "$OUTPUT")"
+cc -O2 -Wall -o "$OUTPUT.tmp" "$ROOT/src/main/c/ns-launcher.c"
+chmod 0555 "$OUTPUT.tmp"
+mv -f "$OUTPUT.tmp" "$OUTPUT"
+echo "Built $OUTPUT"
@@ -0,0 +1,549 @@
+/*
+ * Runs one command in fresh user, mount, pid, net, ipc and uts namespaces behind a seccomp
+ * filter. Built by scripts/build-ns-launcher.sh and used by NamespaceSandbox.
+ *
+ *   ns-launcher [-r <read-only path>]... [-o <writable dir>]... [-n]
+ *               [-c <cpu seconds>] [-m <address space bytes>] [-f <file size bytes>] [-p <processes>]
+ *               -- <command> [args...]
+ *
+ * The new root is an empty tmpfs holding read-only binds of the -r paths, read-write binds of
+ * the -o dirs, each at its own path, a few /dev nodes, a private /tmp and, where the kernel
+ * allows it, a /proc of the new pid namespace. Nothing else of the host is visible: the command
+ * gets its stdin and stdout as open descriptors, and /tmp, fresh for every run, is its working
+ * directory and only other writable path. -n keeps the host network.
+ *
+ * -c, -m, -f and -p set RLIMIT_CPU (SIGXCPU, SIGKILL one second later), RLIMIT_AS, RLIMIT_FSIZE
+ * and RLIMIT_NPROC on the command just before it execs. They are set here rather than by a
+ * prlimit in front of the launcher because RLIMIT_NPROC set before the unshare would also count
+ * every process the caller's user has on the host; set inside, it counts this namespace only.
+ *
+ * Process layout: this launcher stays outside and waits for init (pid 1 of the new namespace),
+ * which waits for the command. Each exits with the command's status, 128 + signal for a signal
+ * death, so the caller sees the command's own exit and wait4 accounts for its usage. When init
+ * exits the kernel kills everything left in the namespace. Setup failures exit with 126 and
+ * exec failures with 127.
+ */
+#define _GNU_SOURCE
+#include <errno.h>
+#include <fcntl.h>
+#include <linux/audit.h>
+#include <linux/filter.h>
+#include <linux/seccomp.h>
+#include <sched.h>
+#include <signal.h>
+#include <stddef.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/mount.h>
+#include <sys/prctl.h>
+#include <sys/resource.h>
+#include <sys/stat.h>
+#include <sys/statvfs.h>
+#include <sys/syscall.h>
+#include <sys/wait.h>
+#include <unistd.h>
+
+#define NEW_ROOT "/tmp"
+#define MAX_PATHS 64
+#define TMP_OPTIONS "mode=1777,size=64m"
+
+#if defined(__x86_64__)
+#define AUDIT_ARCH_CURRENT AUDIT_ARCH_X86_64
+#elif defined(__aarch64__)
+#define AUDIT_ARCH_CURRENT AUDIT_ARCH_AARCH64
+#else
+#error "unsupported architecture"
+#endif
+
+#ifndef SECCOMP_RET_KILL_PROCESS
+#define SECCOMP_RET_KILL_PROCESS SECCOMP_RET_KILL
+#endif
+
+enum bind_mode { READ_ONLY, READ_WRITE, DEVICE };
+
+struct bind {
+    const char *path;
+    int fd;
+    enum bind_mode mode;
+};
+
+static const char *const DEVICES[] = {"/dev/null", "/dev/zero", "/dev/full", "/dev/random", "/dev/urandom"};
+
+/* Syscalls that reach outside the sandbox or into the kernel's configuration. */
+static const int DENIED[] = {
+#ifdef SYS_ptrace
+    SYS_ptrace,
+#endif
+#ifdef SYS_process_vm_readv
+    SYS_process_vm_readv,
+#endif
+#ifdef SYS_process_vm_writev
+    SYS_process_vm_writev,
+#endif
+#ifdef SYS_mount
+    SYS_mount,
+#endif
+#ifdef SYS_umount2
+    SYS_umount2,
+#endif
+#ifdef SYS_pivot_root
+    SYS_pivot_root,
+#endif
+#ifdef SYS_chroot
+    SYS_chroot,
+#endif
+#ifdef SYS_unshare
+    SYS_unshare,
+#endif
+#ifdef SYS_setns
+    SYS_setns,
+#endif
+#ifdef SYS_swapon
+    SYS_swapon,
+#endif
+#ifdef SYS_swapoff
+    SYS_swapoff,
+#endif
+#ifdef SYS_reboot
+    SYS_reboot,
+#endif
+#ifdef SYS_kexec_load
+    SYS_kexec_load,
+#endif
+#ifdef SYS_kexec_file_load
+    SYS_kexec_file_load,
+#endif
+#ifdef SYS_init_module
+    SYS_init_module,
+#endif
+#ifdef SYS_finit_module
+    SYS_finit_module,
+#endif
+#ifdef SYS_delete_module
+    SYS_delete_module,
+#endif
+#ifdef SYS_bpf
+    SYS_bpf,
+#endif
+#ifdef SYS_perf_event_open
+    SYS_perf_event_open,
+#endif
+#ifdef SYS_keyctl
+    SYS_keyctl,
+#endif
+#ifdef SYS_add_key
+    SYS_add_key,
+#endif
+#ifdef SYS_request_key
+    SYS_request_key,
+#endif
+#ifdef SYS_userfaultfd
+    SYS_userfaultfd,
+#endif
+#ifdef SYS_open_by_handle_at
+    SYS_open_by_handle_at,
+#endif
+#ifdef SYS_name_to_handle_at
+    SYS_name_to_handle_at,
+#endif
+#ifdef SYS_acct
+    SYS_acct,
+#endif
+#ifdef SYS_settimeofday
+    SYS_settimeofday,
+#endif
+#ifdef SYS_clock_settime
+    SYS_clock_settime,
+#endif
+#ifdef SYS_clock_adjtime
+    SYS_clock_adjtime,
+#endif
+#ifdef SYS_adjtimex
+    SYS_adjtimex,
+#endif
+#ifdef SYS_sethostname
+    SYS_sethostname,
+#endif
+#ifdef SYS_setdomainname
+    SYS_setdomainname,
+#endif
+#ifdef SYS_iopl
+    SYS_iopl,
+#endif
+#ifdef SYS_ioperm
+    SYS_ioperm,
+#endif
+#ifdef SYS_quotactl
+    SYS_quotactl,
+#endif
+#ifdef SYS_syslog
+    SYS_syslog,
+#endif
+#ifdef SYS_vhangup
+    SYS_vhangup,
+#endif
+#ifdef SYS_kcmp
+    SYS_kcmp,
+#endif
+#ifdef SYS_fanotify_init
+    SYS_fanotify_init,
+#endif
+#ifdef SYS_lookup_dcookie
+    SYS_lookup_dcookie,
+#endif
+#ifdef SYS_open_tree
+    SYS_open_tree,
+#endif
+#ifdef SYS_move_mount
+    SYS_move_mount,
+#endif
+#ifdef SYS_fsopen
+    SYS_fsopen,
+#endif
+#ifdef SYS_fsconfig
+    SYS_fsconfig,
+#endif
+#ifdef SYS_fsmount
+    SYS_fsmount,
+#endif
+#ifdef SYS_fspick
+    SYS_fspick,
+#endif
+#ifdef SYS_mount_setattr
+    SYS_mount_setattr,
+#endif
+};
+
+#define NAMESPACE_FLAGS (CLONE_NEWUSER | CLONE_NEWNS | CLONE_NEWPID | CLONE_NEWNET | CLONE_NEWIPC \
+        | CLONE_NEWUTS | CLONE_NEWCGROUP)
+
+static struct bind binds[MAX_PATHS];
+static int bind_count;
+static rlim_t cpu_seconds;
+static rlim_t address_space_bytes;
+static rlim_t file_size_bytes;
+static rlim_t processes;
+
+static void die(const char *what) {
+    fprintf(stderr, "ns-launcher: %s: %s\n", what, strerror(errno));
+    _exit(126);
+}
+
+static int exit_status(int status) {
+    return WIFEXITED(status) ? WEXITSTATUS(status) : 128 + WTERMSIG(status);
+}
+
+static void write_file(const char *path, const char *text) {
+    int fd = open(path, O_WRONLY | O_CLOEXEC);
+    if (fd < 0 || write(fd, text, strlen(text)) != (ssize_t) strlen(text)) {
+        die(path);
+    }
+    close(fd);
+}
+
+/* Creates every missing directory of path; with leaf_is_file the last component becomes a file. */
+static void create_path(const char *path, int leaf_is_file) {
+    char buffer[4096];
+    if (snprintf(buffer, sizeof buffer, "%s", path) >= (int) sizeof buffer) {
+        errno = ENAMETOOLONG;
+        die(path);
+    }
+    for (char *p = buffer + 1; *p; p++) {
+        if (*p == '/') {
+            *p = '\0';
+            mkdir(buffer, 0755);
+            *p = '/';
+        }
+    }
+    if (leaf_is_file) {
+        int fd = open(buffer, O_WRONLY | O_CREAT | O_CLOEXEC, 0644);
+        if (fd < 0) {
+            die(path);
+        }
+        close(fd);
+    } else if (mkdir(buffer, 0755) < 0 && errno != EEXIST) {
+        die(path);
+    }
+}
+
+/*
+ * A bind remount may not clear flags the host mount has, since those are locked for a user
+ * namespace; they are carried over.
+ */
+static unsigned long locked_flags(const char *path) {
+    struct statvfs stats;
+    unsigned long flags = 0;
+    if (statvfs(path, &stats) < 0) {
+        return 0;
+    }
+    if (stats.f_flag & ST_RDONLY) flags |= MS_RDONLY;
+    if (stats.f_flag & ST_NOSUID) flags |= MS_NOSUID;
+    if (stats.f_flag & ST_NODEV) flags |= MS_NODEV;
+    if (stats.f_flag & ST_NOEXEC) flags |= MS_NOEXEC;
+    if (stats.f_flag & ST_NOATIME) flags |= MS_NOATIME;
+    if (stats.f_flag & ST_NODIRATIME) flags |= MS_NODIRATIME;
+    if (stats.f_flag & ST_RELATIME) flags |= MS_RELATIME;
+    return flags;
+}
+
+/* Sources are opened before the new root hides them, so binds go through /proc/self/fd. */
+static void mount_bind(const struct bind *bind) {
+    char source[64];
+    char target[4096];
+    struct stat stats;
+    if (fstat(bind->fd, &stats) < 0) {
+        die(bind->path);
+    }
+    snprintf(source, sizeof source, "/proc/self/fd/%d", bind->fd);
+    snprintf(target, sizeof target, NEW_ROOT "%s", bind->path);
+    create_path(target, !S_ISDIR(stats.st_mode));
+    if (mount(source, target, NULL, MS_BIND | MS_REC, NULL) < 0) {
+        die(target);
+    }
+    if (bind->mode == DEVICE) {
+        return;
+    }
+    unsigned long flags = MS_BIND | MS_REMOUNT | MS_NOSUID | MS_NODEV | locked_flags(target);
+    if (bind->mode == READ_ONLY) {
+        flags |= MS_RDONLY;
+    }
+    if (mount(NULL, target, NULL, flags, NULL) < 0) {
+        die(target);
+    }
+}
+
+static void add_bind(const char *path, enum bind_mode mode) {
+    if (bind_count == MAX_PATHS) {
+        errno = E2BIG;
+        die(path);
+    }
+    binds[bind_count++] = (struct bind) {path, -1, mode};
+}
+
+/* Opened in the new mount namespace: a bind source must be a mount of the caller's namespace. */
+static void open_binds(void) {
+    for (int i = 0; i < bind_count; i++) {
+        binds[i].fd = open(binds[i].path, O_PATH | O_CLOEXEC);
+        if (binds[i].fd < 0 && !(errno == ENOENT && binds[i].mode == READ_ONLY)) {
+            die(binds[i].path);
+        }
+    }
+}
+
+static void setup_root(void) {
+    if (mount(NULL, "/", NULL, MS_REC | MS_PRIVATE, NULL) < 0) {
+        die("make / private");
+    }
+    open_binds();
+    if (mount("judge", NEW_ROOT, "tmpfs", MS_NOSUID | MS_NODEV, "mode=0755") < 0) {
+        die("mount root tmpfs");
+    }
+    // Before the binds, so that a bind under /tmp is not hidden by it.
+    create_path(NEW_ROOT "/tmp", 0);
+    if (mount("tmp", NEW_ROOT "/tmp", "tmpfs", MS_NOSUID | MS_NODEV, TMP_OPTIONS) < 0) {
+        die("mount /tmp");
+    }
+    for (int i = 0; i < bind_count; i++) {
+        if (binds[i].fd >= 0) {
+            mount_bind(&binds[i]);
+        }
+    }
+    create_path(NEW_ROOT "/proc", 0);
+    if (chdir(NEW_ROOT) < 0) {
+        die(NEW_ROOT);
+    }
+    if (syscall(SYS_pivot_root, ".", ".") < 0) {
+        die("pivot_root");
+    }
+    if (umount2(".", MNT_DETACH) < 0) {
+        die("detach old root");
+    }
+    if (chdir("/") < 0) {
+        die("/");
+    }
+    // Refused where the host /proc has masked entries (most containers); the command then has none.
+    if (mount("proc", "/proc", "proc", MS_NOSUID | MS_NODEV | MS_NOEXEC, NULL) < 0) {
+        rmdir("/proc");
+    }
+    if (mount(NULL, "/", NULL, MS_BIND | MS_REMOUNT | MS_RDONLY | MS_NOSUID | MS_NODEV, NULL) < 0) {
+        die("remount / read-only");
+    }
+}
+
+static void install_seccomp(void) {
+    struct sock_filter filter[8 + 2 * (sizeof DENIED / sizeof DENIED[0]) + 8];
+    int n = 0;
+    filter[n++] = (struct sock_filter) BPF_STMT(BPF_LD | BPF_W | BPF_ABS, offsetof(struct seccomp_data, arch));
+    filter[n++] = (struct sock_filter) BPF_JUMP(BPF_JMP | BPF_JEQ | BPF_K, AUDIT_ARCH_CURRENT, 1, 0);
+    filter[n++] = (struct sock_filter) BPF_STMT(BPF_RET | BPF_K, SECCOMP_RET_KILL_PROCESS);
+    filter[n++] = (struct sock_filter) BPF_STMT(BPF_LD | BPF_W | BPF_ABS, offsetof(struct seccomp_data, nr));
+#ifdef __x86_64__
+    // The x32 ABI numbers its syscalls from bit 30 and would bypass the checks below.
+    filter[n++] = (struct sock_filter) BPF_JUMP(BPF_JMP | BPF_JGE | BPF_K, 0x40000000, 0, 1);
+    filter[n++] = (struct sock_filter) BPF_STMT(BPF_RET | BPF_K, SECCOMP_RET_KILL_PROCESS);
+#endif
+    for (size_t i = 0; i < sizeof DENIED / sizeof DENIED[0]; i++) {
+        filter[n++] = (struct sock_filter) BPF_JUMP(BPF_JMP | BPF_JEQ | BPF_K, DENIED[i], 0, 1);
+        filter[n++] = (struct sock_filter) BPF_STMT(BPF_RET | BPF_K, SECCOMP_RET_ERRNO | EPERM);
+    }
+#ifdef SYS_clone3
+    // clone3 passes its flags in memory the filter cannot read; ENOSYS makes libc use clone.
+    filter[n++] = (struct sock_filter) BPF_JUMP(BPF_JMP | BPF_JEQ | BPF_K, SYS_clone3, 0, 1);
+    filter[n++] = (struct sock_filter) BPF_STMT(BPF_RET | BPF_K, SECCOMP_RET_ERRNO | ENOSYS);
+#endif
+    filter[n++] = (struct sock_filter) BPF_JUMP(BPF_JMP | BPF_JEQ | BPF_K, SYS_clone, 0, 3);
+    filter[n++] = (struct sock_filter) BPF_STMT(BPF_LD | BPF_W | BPF_ABS, offsetof(struct seccomp_data, args[0]));
+    filter[n++] = (struct sock_filter) BPF_JUMP(BPF_JMP | BPF_JSET | BPF_K, NAMESPACE_FLAGS, 0, 1);
+    filter[n++] = (struct sock_filter) BPF_STMT(BPF_RET | BPF_K, SECCOMP_RET_ERRNO | EPERM);
+    filter[n++] = (struct sock_filter) BPF_STMT(BPF_RET | BPF_K, SECCOMP_RET_ALLOW);
+
+    struct sock_fprog program = {(unsigned short) n, filter};
+    if (prctl(PR_SET_NO_NEW_PRIVS, 1, 0, 0, 0) < 0) {
+        die("no_new_privs");
+    }
+    if (prctl(PR_SET_SECCOMP, SECCOMP_MODE_FILTER, &program) < 0) {
+        die("seccomp");
+    }
+}
+
+static void set_limit(int resource, rlim_t soft, rlim_t hard, const char *what) {
+    struct rlimit limit = {soft, hard};
+    if (setrlimit(resource, &limit) < 0) {
+        die(what);
+    }
+}
+
+/* 0 leaves a limit as inherited. */
+static void apply_limits(void) {
+    if (cpu_seconds > 0) {
+        set_limit(RLIMIT_CPU, cpu_seconds, cpu_seconds + 1, "RLIMIT_CPU");
+    }
+    if (address_space_bytes > 0) {
+        set_limit(RLIMIT_AS, address_space_bytes, address_space_bytes, "RLIMIT_AS");
+    }
+    if (file_size_bytes > 0) {
+        set_limit(RLIMIT_FSIZE, file_size_bytes, file_size_bytes, "RLIMIT_FSIZE");
+    }
+    if (processes > 0) {
+        // The launcher and init run as the same user in the namespace and count too.
+        set_limit(RLIMIT_NPROC, processes + 2, processes + 2, "RLIMIT_NPROC");
+    }
+}
+
+static rlim_t parse_limit(const char *option, const char *value) {
+    char *end;
+    errno = 0;
+    unsigned long long parsed = strtoull(value, &end, 10);
+    if (errno != 0 || end == value || *end != '\0' || value[0] == '-') {
+        fprintf(stderr, "ns-launcher: invalid %s value %s\n", option, value);
+        exit(126);
+    }
+    return (rlim_t) parsed;
+}
+
+static void run_command(char **command) {
+    if (chdir("/tmp") < 0) {
+        die("/tmp");
+    }
+    clearenv();
+    setenv("PATH", "/usr/bin:/bin", 1);
+    setenv("HOME", "/tmp", 1);
+    setenv("TMPDIR", "/tmp", 1);
+    apply_limits();
+    install_seccomp();
+    execvp(command[0], command);
+    fprintf(stderr, "ns-launcher: exec %s: %s\n", command[0], strerror(errno));
+    _exit(127);
+}
+
+/* pid 1 of the new namespace: reaps orphans until the command exits. */
+static void run_init(char **command) {
+    prctl(PR_SET_PDEATHSIG, SIGKILL);
+    setup_root();
+    sethostname("judge", 5);
+    pid_t child = fork();
+    if (child < 0) {
+        die("fork");
+    }
+    if (child == 0) {
+        run_command(command);
+    }
+    int status;
+    pid_t pid;
+    while ((pid = wait(&status)) != child) {
+        if (pid < 0 && errno != EINTR) {
+            die("wait");
+        }
+    }
+    _exit(exit_status(status));
+}
+
+/* The command runs as the caller's own id, or as nobody for root, so it holds no capabilities. */
+static void map_id(const char *file, unsigned int outside) {
+    char map[64];
+    snprintf(map, sizeof map, "%u %u 1\n", outside == 0 ? 65534 : outside, outside);
+    write_file(file, map);
+}
+
+int main(int argc, char **argv) {
+    int flags = NAMESPACE_FLAGS & ~CLONE_NEWCGROUP;
+    int i = 1;
+    for (; i < argc && strcmp(argv[i], "--") != 0; i++) {
+        if (strcmp(argv[i], "-r") == 0 && i + 1 < argc) {
+            add_bind(argv[++i], READ_ONLY);
+        } else if (strcmp(argv[i], "-o") == 0 && i + 1 < argc && argv[i + 1][0] == '/') {
+            add_bind(argv[++i], READ_WRITE);
+        } else if (strcmp(argv[i], "-n") == 0) {
+            flags &= ~CLONE_NEWNET;
+        } else if (strcmp(argv[i], "-c") == 0 && i + 1 < argc) {
+            cpu_seconds = parse_limit(argv[i], argv[i + 1]);
+            i++;
+        } else if (strcmp(argv[i], "-m") == 0 && i + 1 < argc) {
+            address_space_bytes = parse_limit(argv[i], argv[i + 1]);
+            i++;
+        } else if (strcmp(argv[i], "-f") == 0 && i + 1 < argc) {
+            file_size_bytes = parse_limit(argv[i], argv[i + 1]);
+            i++;
+        } else if (strcmp(argv[i], "-p") == 0 && i + 1 < argc) {
+            processes = parse_limit(argv[i], argv[i + 1]);
+            i++;
+        } else {
+            fprintf(stderr, "ns-launcher: unknown option %s\n", argv[i]);
+            return 126;
+        }
+    }
+    if (i + 1 >= argc) {
+        fprintf(stderr, "usage: ns-launcher [-r <path>]... [-o <absolute dir>]... [-n] [-c <seconds>] [-m <bytes>]"
+                " [-f <bytes>] [-p <processes>] -- <command> [args...]\n");
+        return 126;
+    }
+    char **command = argv + i + 1;
+    for (size_t d = 0; d < sizeof DEVICES / sizeof DEVICES[0]; d++) {
+        add_bind(DEVICES[d], DEVICE);
+    }
+
+    unsigned int uid = getuid();
+    unsigned int gid = getgid();
+    if (unshare(flags) < 0) {
+        die("unshare");
+    }
+    write_file("/proc/self/setgroups", "deny");
+    map_id("/proc/self/uid_map", uid);
+    map_id("/proc/self/gid_map", gid);
+
+    pid_t init = fork();
+    if (init < 0) {
+        die("fork");
+    }
+    if (init == 0) {
+        run_init(command);
+    }
+    int status;
+    while (waitpid(init, &status, 0) < 0) {
+        if (errno != EINTR) {
+            die("waitpid");
+        }
+    }
+    return exit_status(status);
+}
@@ -13,6 +13,7 @@ public class AsyncConfig {
 
     public static final String JUDGE_REQUEST_EXECUTOR = "judgeRequestExecutor";
     public static final String TEST_CASE_EXECUTOR = "testCaseExecutor";
+    public static final String PROCESS_IO_EXECUTOR = "processIoExecutor";
 
     @Bean(name = JUDGE_REQUEST_EXECUTOR)
     public Executor judgeRequestExecutor(ExecutionProperties executionProperties) {
@@ -27,16 +28,38 @@ public class AsyncConfig {
         return executor;
     }
 
+    /**
+     * Case admission is bounded by the host-wide CPU slot allocator, so the pool only needs one thread
+     * per CPU slot. The queue is unbounded so that compile jobs and prefetched generators submitted
+     * alongside running cases wait their turn instead of running on threads of their own.
+     */
     @Bean(name = TEST_CASE_EXECUTOR)
     public ThreadPoolTaskExecutor testCaseExecutor(ExecutionProperties executionProperties) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        int caseConcurrency = Math.max(1, executionProperties.getMaxConcurrentCasesPerTask());
-        int queueCapacity = Math.max(1, executionProperties.getBatchSize());
+        int caseConcurrency = executionProperties.effectiveCpuSlots();
         executor.setCorePoolSize(caseConcurrency);
         executor.setMaxPoolSize(caseConcurrency);
-        executor.setQueueCapacity(queueCapacity);
         executor.setThreadNamePrefix("TestCase-");
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pumps stdin, stderr and any stdout not redirected to a file for running processes, off the
+     * common pool. Every process, prefetched generators included, runs on a case or judge-request
+     * thread and needs at most three pumps, so the pool is sized to never queue a pump behind
+     * another blocked one.
+     */
+    @Bean(name = PROCESS_IO_EXECUTOR)
+    public Executor processIoExecutor(ExecutionProperties executionProperties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        int pumps = 3 * (executionProperties.effectiveCpuSlots() + Math.max(1, executionProperties.getMaxConcurrentTasks()));
+        executor.setCorePoolSize(pumps);
+        executor.setMaxPoolSize(pumps);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setDaemon(true);
+        executor.setThreadNamePrefix("ProcessIo-");
         executor.initialize();
         return executor;
     }
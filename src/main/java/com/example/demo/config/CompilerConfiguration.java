@@ -29,4 +29,24 @@ public class CompilerConfiguration {
      * 编译超时时间
      */
     private Duration timeout = Duration.ofSeconds(60);
-}
\ No newline at end of file
+
+    /**
+     * 是否启用编译缓存（按编译器版本、编译参数和源码内容寻址）
+     */
+    private boolean cacheEnabled = true;
+
+    /**
+     * 编译缓存占用的最大字节数，超出后按最近最少使用淘汰
+     */
+    private long cacheMaxBytes = 512L * 1024 * 1024;
+
+    /**
+     * 编译缓存的最大条目数
+     */
+    private int cacheMaxEntries = 1000;
+
+    /**
+     * 是否为以 bits/stdc++.h 开头的源码使用预编译头（按编译器版本和编译参数各构建一次）
+     */
+    private boolean precompiledHeaderEnabled = true;
+}
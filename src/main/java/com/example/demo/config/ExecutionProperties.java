@@ -24,6 +24,7 @@ public class ExecutionProperties {
     private int maxQueuedTasksPerUser = 5;
     private Duration progressPublishInterval = Duration.ofSeconds(1);
     private Duration cleanupInterval = Duration.ofMinutes(30);
+    private Duration capabilityProbeTtl = Duration.ofMinutes(5);
     private Duration completedRetention = Duration.ofHours(24);
     private Duration cancelledRetention = Duration.ofHours(24);
     private Duration failedRetention = Duration.ofHours(24);
@@ -36,4 +37,34 @@ public class ExecutionProperties {
     private long maxOutputBytesPerCase = 1024L * 1024;
     private long maxDetailPreviewBytes = 64L * 1024;
     private boolean requireSandbox = false;
+    private boolean pipelinedCaseIo = false;
+    private long caseBufferMemoryBytes = 1024L * 1024;
+    private String artifactRetention = "all";
+    private boolean seededGeneration = false;
+    private boolean continuousDispatch = false;
+    private boolean cpuTimeLimit = false;
+    private boolean kernelLimits = false;
+    private int kernelProcessLimit = 0;
+    private boolean cgroupExecution = false;
+    private String cgroupRoot = "";
+    private int cgroupPidsMax = 64;
+    private long stderrCaptureBytes = 64 * 1024;
+    private long compilerDiagnosticsBytes = 64 * 1024;
+    private int cpuSlots = 0;
+    private int interactiveSlotWeight = 2;
+    private int generatorPrefetchDepth = 0;
+    private int generatorPrefetchConcurrency = 1;
+    private int bulkGeneratorChunk = 64;
+    private int multiTestPackMaxSize = 256;
+    private boolean oracleCacheEnabled = true;
+    private long oracleCacheMaxAnswerBytes = 1_048_576L;
+    private long oracleCacheTaskMaxBytes = 67_108_864L;
+    private boolean oracleCacheShared = false;
+    private long oracleCacheSharedMaxBytes = 268_435_456L;
+    private boolean cpuAffinity = false;
+    private int cpuAffinityReservedCores = 1;
+
+    public int effectiveCpuSlots() {
+        return cpuSlots > 0 ? cpuSlots : Runtime.getRuntime().availableProcessors();
+    }
 }
@@ -24,7 +24,12 @@ public class MemoryConfiguration {
     private long maxLimit = 1024 * 1024 * 1024; // 1GB
     
     /**
-     * 内存检查间隔 (毫秒)
+     * 内存检查间隔 (毫秒)，长时间运行的进程的最大采样间隔
      */
     private int checkInterval = 100;
+
+    /**
+     * 进程刚启动时的采样间隔 (毫秒)，之后随运行时间逐步放宽到 checkInterval
+     */
+    private int initialCheckInterval = 10;
 }
\ No newline at end of file
@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 沙箱配置类
  * 用于管理沙箱执行环境、安全策略等沙箱相关配置
@@ -32,4 +35,22 @@ public class SandboxConfiguration {
      * 最大进程数
      */
     private int maxProcesses = 10;
+
+    /**
+     * 沙箱实现：namespace（用户/挂载/PID/网络命名空间 + seccomp，单次 exec 开销）
+     * 或 firejail（每次执行复制工作目录）。namespace 不可用时回退到 firejail
+     */
+    private String launcher = "namespace";
+
+    /**
+     * 预先用 scripts/build-ns-launcher.sh 构建的 ns-launcher；文件不存在时 namespace 沙箱不可用，
+     * 运行时不会编译它
+     */
+    private String namespaceLauncherPath = "/usr/local/libexec/judge/ns-launcher";
+
+    /**
+     * namespace 沙箱中以只读方式挂载的宿主路径；任务目录不挂载，只挂载被执行的程序和请求声明的文件
+     */
+    private List<String> readOnlyPaths = new ArrayList<>(List.of(
+            "/bin", "/lib", "/lib32", "/lib64", "/libx32", "/usr", "/etc/alternatives", "/etc/ld.so.cache"));
 }
\ No newline at end of file
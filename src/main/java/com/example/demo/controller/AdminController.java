@@ -9,10 +9,14 @@ import com.example.demo.model.JudgeTask;
 import com.example.demo.model.UserSession;
 import com.example.demo.service.AccessCodeService;
 import com.example.demo.service.AuditService;
+import com.example.demo.service.CapabilityRegistry;
+import com.example.demo.service.CpuSlotAllocator;
 import com.example.demo.service.JudgeScheduler;
+import com.example.demo.service.MemoryMonitorService;
 import com.example.demo.service.ResolvedTaskPolicy;
 import com.example.demo.service.TaskStore;
 import com.example.demo.service.sandbox.SandboxRunner;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -41,6 +45,16 @@ public class AdminController {
     private final ExecutionProperties executionProperties;
     private final AuditService auditService;
     private final Optional<SandboxRunner> sandboxRunner;
+    private final CpuSlotAllocator cpuSlotAllocator;
+    private final MemoryMonitorService memoryMonitorService;
+    private final CapabilityRegistry capabilityRegistry;
+    private CapabilityRegistry.Capability<SandboxCapabilities> providerProbe;
+
+    @PostConstruct
+    void registerProviderProbe() {
+        sandboxRunner.ifPresent(runner ->
+                providerProbe = capabilityRegistry.register("sandbox-provider", runner::probe, null));
+    }
 
     @GetMapping("/admin/queue")
     public ResponseEntity<?> queueSnapshot(HttpServletRequest request) throws IOException {
@@ -82,15 +96,46 @@ public class AdminController {
                 queue.peakQueueSize(),
                 queue.maxConcurrentTasks(),
                 queue.queueCapacity(),
+                cpuSlots(),
+                memorySampler(),
                 providerHealth(),
+                capabilityRegistry.snapshot(),
                 failureCounts(tasks),
                 taskSummaries(tasks),
                 auditService.recentEvents(50)
         );
     }
 
+    private AdminQueueSnapshot.CpuSlotUsage cpuSlots() {
+        CpuSlotAllocator.Snapshot slots = cpuSlotAllocator.snapshot();
+        return new AdminQueueSnapshot.CpuSlotUsage(
+                slots.totalSlots(),
+                slots.usedSlots(),
+                slots.tasks().stream()
+                        .map(task -> new AdminQueueSnapshot.TaskSlotUsage(
+                                task.taskId(),
+                                task.weight(),
+                                task.usedSlots(),
+                                task.fairShare(),
+                                task.waiting()
+                        ))
+                        .toList()
+        );
+    }
+
+    private AdminQueueSnapshot.MemorySamplerUsage memorySampler() {
+        MemoryMonitorService.SamplerStats stats = memoryMonitorService.samplerStats();
+        return new AdminQueueSnapshot.MemorySamplerUsage(
+                stats.monitoredProcesses(),
+                stats.ticks(),
+                stats.samples(),
+                stats.cpuNanos() < 0 ? -1 : stats.cpuNanos() / 1_000_000,
+                stats.wallNanos() / 1_000_000
+        );
+    }
+
     private AdminQueueSnapshot.ProviderHealth providerHealth() {
-        if (sandboxRunner.isEmpty()) {
+        if (sandboxRunner.isEmpty() || providerProbe == null) {
             return new AdminQueueSnapshot.ProviderHealth(
                     "not-configured",
                     "none",
@@ -99,33 +144,41 @@ public class AdminController {
                     false,
                     false,
                     null,
-                    "SandboxRunner is not configured"
+                    "SandboxRunner is not configured",
+                    null,
+                    null
             );
         }
-        try {
-            SandboxCapabilities capabilities = sandboxRunner.get().probe();
+        CapabilityRegistry.ProbeStatus status = providerProbe.status();
+        Long probeMillis = status.probedAt() == null ? null : status.durationMillis();
+        SandboxCapabilities capabilities = providerProbe.peek();
+        if (capabilities == null) {
+            boolean pending = status.probedAt() == null;
             return new AdminQueueSnapshot.ProviderHealth(
-                    valueOrUnknown(capabilities.provider()),
-                    valueOrUnknown(capabilities.isolation()),
-                    capabilities.productionSafe(),
-                    capabilities.networkDisabled(),
-                    capabilities.nonRoot(),
-                    capabilities.resourceLimits(),
-                    capabilities.securityProfile(),
-                    firstNonBlank(capabilities.details(), capabilities.skipReason())
-            );
-        } catch (RuntimeException ex) {
-            return new AdminQueueSnapshot.ProviderHealth(
-                    "probe-failed",
+                    pending ? "probe-pending" : "probe-failed",
                     "unknown",
                     false,
                     false,
                     false,
                     false,
                     null,
-                    ex.getMessage()
+                    pending ? "First capability probe has not finished" : status.error(),
+                    status.probedAt(),
+                    probeMillis
             );
         }
+        return new AdminQueueSnapshot.ProviderHealth(
+                valueOrUnknown(capabilities.provider()),
+                valueOrUnknown(capabilities.isolation()),
+                capabilities.productionSafe(),
+                capabilities.networkDisabled(),
+                capabilities.nonRoot(),
+                capabilities.resourceLimits(),
+                capabilities.securityProfile(),
+                firstNonBlank(status.error(), firstNonBlank(capabilities.details(), capabilities.skipReason())),
+                status.probedAt(),
+                probeMillis
+        );
     }
 
     private Map<String, Long> failureCounts(List<JudgeTask> tasks) {
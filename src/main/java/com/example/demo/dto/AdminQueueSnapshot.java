@@ -1,6 +1,7 @@
 package com.example.demo.dto;
 
 import com.example.demo.service.AuditService;
+import com.example.demo.service.CapabilityRegistry;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.time.Instant;
@@ -16,7 +17,10 @@ public record AdminQueueSnapshot(
         int peakQueueSize,
         int maxConcurrentTasks,
         int queueCapacity,
+        CpuSlotUsage cpuSlots,
+        MemorySamplerUsage memorySampler,
         ProviderHealth providerHealth,
+        List<CapabilityRegistry.ProbeStatus> capabilityProbes,
         Map<String, Long> recentFailureCounts,
         List<TaskResourceSummary> taskResourceSummaries,
         List<AuditService.AuditEvent> recentAuditEvents
@@ -31,7 +35,34 @@ public record AdminQueueSnapshot(
             boolean nonRoot,
             boolean resourceLimits,
             String securityProfile,
-            String details
+            String details,
+            Instant probedAt,
+            Long probeDurationMillis
+    ) {
+    }
+
+    public record CpuSlotUsage(
+            int totalSlots,
+            int usedSlots,
+            List<TaskSlotUsage> tasks
+    ) {
+    }
+
+    public record TaskSlotUsage(
+            String judgeId,
+            int weight,
+            int usedSlots,
+            int fairShare,
+            boolean waiting
+    ) {
+    }
+
+    public record MemorySamplerUsage(
+            int monitoredProcesses,
+            long ticks,
+            long samples,
+            long cpuTimeMillis,
+            long wallTimeMillis
     ) {
     }
 
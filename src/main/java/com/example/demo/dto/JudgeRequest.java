@@ -1,5 +1,6 @@
 package com.example.demo.dto;
 
+import com.example.demo.service.checker.CheckerMode;
 import lombok.Data;
 
 @Data
@@ -10,8 +11,13 @@ public class JudgeRequest {
     private long timeLimit;
     private long memoryLimit; // 添加内存限制配置（字节）
     private double precision;
+    private double relativePrecision; // 相对误差，0 表示只按绝对误差比较
+    private CheckerMode checker; // 输出比较方式，为空时按浮点分词比较
     private int testCases;
     private boolean stopOnFirstNonAc;
+    private int multiTestPackSize; // 多测打包：每次执行把多少个测试点拼成首行为 T 的一个输入，0 或 1 表示不打包
+    private boolean bulkGenerator; // 生成器支持批量协议：--bulk <数量> <基础种子>，每个测试点后输出一行 #end-of-case
     private boolean useSpecialJudge; // 是否启用Special Judge
     private String specialJudgeCode; // Special Judge代码
+    private boolean streamingSpecialJudge; // SPJ支持常驻流式协议（--stream），握手失败时退回每个测试点执行一次
 }
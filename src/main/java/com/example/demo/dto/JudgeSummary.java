@@ -24,4 +24,15 @@ public class JudgeSummary {
     private List<JudgeProgressEvent> failureSamples;
     private List<JudgeProgressEvent> slowSamples;
     private String stoppedReason;
+    private Integer generatorExecs; // 批量生成器的执行次数，未启用时为 null
+    private Long generatorTimeSavedMillis; // 相比每个测试点执行一次生成器，估计节省的墙钟时间
+    private Double oracleDedupeRatio; // 对拍答案缓存命中的比例，未启用缓存时为 null
+    private Long oracleTimeSavedMillis; // 命中缓存而跳过的对拍程序运行时间之和
+
+    public JudgeSummary(int totalCases, int completedCases, int ac, int wa, int tle, int mle, int re, int systemError,
+                        int outputLimitExceeded, Integer firstFailedCase, List<JudgeProgressEvent> failureSamples,
+                        List<JudgeProgressEvent> slowSamples, String stoppedReason) {
+        this(totalCases, completedCases, ac, wa, tle, mle, re, systemError, outputLimitExceeded, firstFailedCase,
+                failureSamples, slowSamples, stoppedReason, null, null, null, null);
+    }
 }
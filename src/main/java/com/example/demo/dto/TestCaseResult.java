@@ -6,8 +6,12 @@ import lombok.Data;
 public class TestCaseResult {
     private int caseNumber;
     private String status;
-    private long timeUsed;  // ms
+    private long timeUsed;  // ms，墙钟时间
+    private Long cpuTimeUsed; // ms，用户进程树的CPU时间；无法测量时为空
     private long memoryUsed; // KB
+    private Long mismatchOffset; // WA时用户输出中第一处差异的字节偏移
+    private Integer cpuCore; // 开启CPU亲和时运行该测试点的独占核心编号
+    private Integer packSize; // 多测打包中通过时同包的测试点数，时间和内存为整包的值，是该测试点的上界
 
     public TestCaseResult(int caseNumber, String status, long timeUsed, long memoryUsed) {
         this.caseNumber = caseNumber;
@@ -23,6 +23,9 @@ public class JudgeTask {
     private SandboxRunHandle sandboxRunHandle;
     private JudgeOwnership ownership;
     private String workDir;
+    private Long generatorSeed;
+    private boolean bulkGenerator;
+    private int multiTestPackSize;
     private Instant createdAt;
     private Instant startedAt;
     private Instant finishedAt;
@@ -0,0 +1,93 @@
+package com.example.demo.service;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Which case artifacts ({@code N.in}, {@code N.out}, {@code N.ans}) stay in the task directory
+ * once a case has been judged. Non-AC cases are kept unless the mode is {@link Mode#NONE},
+ * which relies on seeded generation to rebuild any case on demand.
+ */
+public record ArtifactRetention(Mode mode, int sampleSize) {
+
+    public static final ArtifactRetention ALL = new ArtifactRetention(Mode.ALL, 0);
+    public static final ArtifactRetention FAILURES_ONLY = new ArtifactRetention(Mode.FAILURES_ONLY, 0);
+    public static final ArtifactRetention NONE = new ArtifactRetention(Mode.NONE, 0);
+
+    private static final String SAMPLE_PREFIX = "failures-plus-sample-";
+
+    public enum Mode {
+        ALL,
+        FAILURES_ONLY,
+        FAILURES_PLUS_SAMPLE,
+        NONE
+    }
+
+    public ArtifactRetention {
+        if (mode == null) {
+            mode = Mode.ALL;
+        }
+        if (sampleSize < 0) {
+            throw new IllegalArgumentException("Artifact sample size must not be negative");
+        }
+    }
+
+    /**
+     * Parses the configuration form: {@code all}, {@code failures-only},
+     * {@code failures-plus-sample-N} or {@code none}.
+     */
+    public static ArtifactRetention parse(String value) {
+        if (value == null || value.isBlank()) {
+            return ALL;
+        }
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        if (normalized.equals("all")) {
+            return ALL;
+        }
+        if (normalized.equals("failures-only")) {
+            return FAILURES_ONLY;
+        }
+        if (normalized.equals("none")) {
+            return NONE;
+        }
+        if (normalized.startsWith(SAMPLE_PREFIX)) {
+            try {
+                int sampleSize = Integer.parseInt(normalized.substring(SAMPLE_PREFIX.length()));
+                if (sampleSize >= 0) {
+                    return new ArtifactRetention(Mode.FAILURES_PLUS_SAMPLE, sampleSize);
+                }
+            } catch (NumberFormatException ignored) {
+                // Reported below with the original value.
+            }
+        }
+        throw new IllegalArgumentException("Unsupported artifact retention '" + value
+                + "'; expected all, failures-only, failures-plus-sample-N or none");
+    }
+
+    /**
+     * Decides whether an accepted case keeps its artifacts. {@code retainedAccepted} counts the
+     * accepted cases already kept for the current task and is only advanced when a sample slot
+     * is taken.
+     */
+    public boolean retainAccepted(AtomicInteger retainedAccepted) {
+        return switch (mode) {
+            case ALL -> true;
+            case FAILURES_ONLY, NONE -> false;
+            case FAILURES_PLUS_SAMPLE -> retainedAccepted.getAndUpdate(kept -> kept < sampleSize ? kept + 1 : kept) < sampleSize;
+        };
+    }
+
+    public boolean retainFailures() {
+        return mode != Mode.NONE;
+    }
+
+    @Override
+    public String toString() {
+        return switch (mode) {
+            case ALL -> "all";
+            case FAILURES_ONLY -> "failures-only";
+            case FAILURES_PLUS_SAMPLE -> SAMPLE_PREFIX + sampleSize;
+            case NONE -> "none";
+        };
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.demo.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Bulk generator protocol: {@code generator --bulk <count> <baseSeed>} writes {@code count} cases
+ * to stdout, each followed by a line holding only {@value #DELIMITER}. The j-th case of a run
+ * (from 0) must be generated from seed {@code baseSeed + j}. Case {@code n} of a task always gets
+ * seed {@link #caseSeed(long, int)}, however the cases are chunked, so a single case can be
+ * regenerated with {@code --bulk 1}.
+ *
+ * <p>One exec produces a chunk of up to {@code chunkSize} cases; the first case that asks for a
+ * chunk runs the generator and the other cases of the chunk wait for it. Case 1 is generated on
+ * its own: its wall time is the cost of one exec per case, against which the time saved by the
+ * other chunks is estimated.
+ */
+public final class BulkGenerator implements AutoCloseable {
+
+    public static final String FLAG = "--bulk";
+    public static final String DELIMITER = "#end-of-case";
+
+    private static final byte[] DELIMITER_BYTES = DELIMITER.getBytes(StandardCharsets.US_ASCII);
+
+    private final int totalCases;
+    private final int chunkSize;
+    private final long taskSeed;
+    private final long bufferMemoryBytes;
+    private final Path spillDirectory;
+    private final ChunkRunner runner;
+    private final Map<Integer, CompletableFuture<Chunk>> chunks = new ConcurrentHashMap<>();
+    /** {@code {cases, millis}} of every chunk after the single-case one. */
+    private final List<long[]> chunkTimings = new ArrayList<>();
+    private final AtomicInteger execs = new AtomicInteger();
+    private volatile long singleCaseMillis = -1;
+
+    public BulkGenerator(int totalCases, int chunkSize, long taskSeed, long bufferMemoryBytes, Path spillDirectory,
+                         ChunkRunner runner) {
+        this.totalCases = totalCases;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.taskSeed = taskSeed;
+        this.bufferMemoryBytes = bufferMemoryBytes;
+        this.spillDirectory = spillDirectory;
+        this.runner = runner;
+    }
+
+    /**
+     * Seed of case {@code caseNumber} under the bulk protocol: consecutive cases get consecutive
+     * seeds, starting from a value derived from the task seed.
+     */
+    public static long caseSeed(long taskSeed, int caseNumber) {
+        return (CaseSeeds.caseSeed(taskSeed, 0) >>> 1) + caseNumber;
+    }
+
+    public static List<String> arguments(int count, long baseSeed) {
+        return List.of(FLAG, String.valueOf(count), String.valueOf(baseSeed));
+    }
+
+    /**
+     * Returns the input of {@code caseNumber}, running its chunk's generator if no other case has
+     * yet. The caller owns the returned buffer. A case the generator did not emit comes back with
+     * a failed result and an empty buffer.
+     */
+    public GeneratedCase take(int caseNumber) throws IOException, InterruptedException {
+        int chunkIndex = chunkIndex(caseNumber);
+        CompletableFuture<Chunk> created = new CompletableFuture<>();
+        CompletableFuture<Chunk> existing = chunks.putIfAbsent(chunkIndex, created);
+        if (existing == null) {
+            try {
+                created.complete(generate(chunkIndex));
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                created.completeExceptionally(e);
+                throw e;
+            }
+            existing = created;
+        }
+        Chunk chunk;
+        try {
+            chunk = existing.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof InterruptedException interrupted) {
+                throw interrupted;
+            }
+            throw new IOException("Bulk generator failed", e.getCause());
+        }
+        return chunk.take(caseNumber);
+    }
+
+    /**
+     * @return generator processes started so far
+     */
+    public int execs() {
+        return execs.get();
+    }
+
+    /**
+     * Estimated wall time saved against one exec per case: every case of a chunk priced at the
+     * single-case exec of case 1, minus what the chunk took. {@code 0} before that exec finished.
+     */
+    public long timeSavedMillis() {
+        long single = singleCaseMillis;
+        if (single < 0) {
+            return 0;
+        }
+        long saved = 0;
+        synchronized (chunkTimings) {
+            for (long[] timing : chunkTimings) {
+                saved += timing[0] * single - timing[1];
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Releases the buffers of cases that were generated but never taken.
+     */
+    @Override
+    public void close() {
+        for (CompletableFuture<Chunk> future : chunks.values()) {
+            future.thenAccept(Chunk::close);
+        }
+    }
+
+    private int chunkIndex(int caseNumber) {
+        return caseNumber <= 1 ? 0 : 1 + (caseNumber - 2) / chunkSize;
+    }
+
+    private int chunkStart(int chunkIndex) {
+        return chunkIndex == 0 ? 1 : 2 + (chunkIndex - 1) * chunkSize;
+    }
+
+    private Chunk generate(int chunkIndex) throws IOException, InterruptedException {
+        int first = chunkStart(chunkIndex);
+        int count = chunkIndex == 0 ? 1 : Math.min(chunkSize, totalCases - first + 1);
+        long started = System.nanoTime();
+        try (CaseDataBuffer output = new CaseDataBuffer(bufferMemoryBytes, spillDirectory)) {
+            execs.incrementAndGet();
+            ProcessResult result = runner.run(arguments(count, caseSeed(taskSeed, first)), count, output);
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            if (chunkIndex == 0) {
+                singleCaseMillis = millis;
+            } else {
+                synchronized (chunkTimings) {
+                    chunkTimings.add(new long[]{count, millis});
+                }
+            }
+            Chunk chunk = new Chunk(first, count, result);
+            if (result.status() == ProcessResult.Status.SUCCESS) {
+                try (InputStream in = output.openInputStream()) {
+                    chunk.emitted = split(in, count, caseIndex -> chunk.open(first + caseIndex));
+                }
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Splits bulk output into cases, each written to {@code caseOutput.apply(index)} without its
+     * delimiter line. Output after the last expected case is ignored; an unterminated trailing
+     * case is not counted.
+     *
+     * @return how many complete cases were read
+     */
+    public static int split(InputStream input, int count, IntFunction<OutputStream> caseOutput) throws IOException {
+        InputStream in = input instanceof BufferedInputStream ? input : new BufferedInputStream(input);
+        int emitted = 0;
+        OutputStream current = null;
+        // Start of the current line, held back while it could still be the delimiter.
+        byte[] head = new byte[DELIMITER_BYTES.length + 2];
+        int headLength = 0;
+        boolean streaming = false;
+        int b;
+        while (emitted < count && (b = in.read()) != -1) {
+            if (current == null) {
+                current = caseOutput.apply(emitted);
+            }
+            if (streaming) {
+                current.write(b);
+                if (b == '\n') {
+                    streaming = false;
+                }
+                continue;
+            }
+            if (b == '\n') {
+                if (isDelimiter(head, headLength)) {
+                    current.close();
+                    current = null;
+                    emitted++;
+                } else {
+                    current.write(head, 0, headLength);
+                    current.write(b);
+                }
+                headLength = 0;
+                continue;
+            }
+            head[headLength++] = (byte) b;
+            if (headLength == head.length) {
+                current.write(head, 0, headLength);
+                headLength = 0;
+                streaming = true;
+            }
+        }
+        if (current != null) {
+            current.write(head, 0, headLength);
+            current.close();
+        }
+        return emitted;
+    }
+
+    private static boolean isDelimiter(byte[] line, int length) {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return length == DELIMITER_BYTES.length
+                && Arrays.equals(line, 0, length, DELIMITER_BYTES, 0, length);
+    }
+
+    public record GeneratedCase(ProcessResult result, CaseDataBuffer input) {
+    }
+
+    @FunctionalInterface
+    public interface ChunkRunner {
+        /**
+         * Runs the generator with {@code arguments}, writing its stdout to {@code output}.
+         */
+        ProcessResult run(List<String> arguments, int count, CaseDataBuffer output) throws IOException, InterruptedException;
+    }
+
+    private final class Chunk {
+
+        private final int first;
+        private final int count;
+        private final ProcessResult result;
+        private final CaseDataBuffer[] cases;
+        private int emitted;
+
+        private Chunk(int first, int count, ProcessResult result) {
+            this.first = first;
+            this.count = count;
+            this.result = result;
+            this.cases = new CaseDataBuffer[count];
+        }
+
+        private OutputStream open(int caseNumber) {
+            CaseDataBuffer buffer = new CaseDataBuffer(bufferMemoryBytes, spillDirectory);
+            cases[caseNumber - first] = buffer;
+            return new BufferedOutputStream(buffer.openOutputStream());
+        }
+
+        private synchronized GeneratedCase take(int caseNumber) {
+            int index = caseNumber - first;
+            CaseDataBuffer buffer = cases[index];
+            cases[index] = null;
+            if (result.status() != ProcessResult.Status.SUCCESS) {
+                return new GeneratedCase(result, emptyBuffer());
+            }
+            if (buffer == null || index >= emitted) {
+                closeQuietly(buffer);
+                return new GeneratedCase(new ProcessResult(
+                        ProcessResult.Status.RUNTIME_ERROR,
+                        "",
+                        "Bulk generator emitted " + emitted + " of " + count + " cases",
+                        result.executionTime(),
+                        result.memoryUsed(),
+                        result.exitCode()
+                ), emptyBuffer());
+            }
+            return new GeneratedCase(result, buffer);
+        }
+
+        private synchronized void close() {
+            for (int i = 0; i < cases.length; i++) {
+                closeQuietly(cases[i]);
+                cases[i] = null;
+            }
+        }
+
+        private CaseDataBuffer emptyBuffer() {
+            CaseDataBuffer buffer = new CaseDataBuffer(0, spillDirectory);
+            try {
+                buffer.openOutputStream().close();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return buffer;
+        }
+
+        private void closeQuietly(CaseDataBuffer buffer) {
+            if (buffer == null) {
+                return;
+            }
+            try {
+                buffer.close();
+            } catch (IOException ignored) {
+                // Spill file of an unused case; the task directory is removed later anyway.
+            }
+        }
+    }
+}
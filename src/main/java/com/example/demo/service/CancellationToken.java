@@ -1,17 +1,22 @@
 package com.example.demo.service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class CancellationToken {
 
     private final AtomicReference<Reason> reason = new AtomicReference<>(Reason.NONE);
+    private final Set<Runnable> listeners = new LinkedHashSet<>();
 
     public void cancel() {
-        reason.compareAndSet(Reason.NONE, Reason.USER_REQUESTED);
+        cancel(Reason.USER_REQUESTED);
     }
 
     public boolean cancelForBudgetExceeded() {
-        return reason.compareAndSet(Reason.NONE, Reason.BUDGET_EXCEEDED);
+        return cancel(Reason.BUDGET_EXCEEDED);
     }
 
     public boolean isCancellationRequested() {
@@ -26,9 +31,63 @@ public class CancellationToken {
         return reason.get();
     }
 
+    /**
+     * Runs {@code action} once when the token is cancelled, or right away on the calling thread if
+     * it already is. Actions run on the cancelling thread, so they must be quick and must not
+     * block; process runners use this to kill the process tree of a running case.
+     *
+     * @return a registration that removes the action when closed
+     */
+    public Registration onCancel(Runnable action) {
+        synchronized (listeners) {
+            if (!isCancellationRequested()) {
+                listeners.add(action);
+                return () -> {
+                    synchronized (listeners) {
+                        listeners.remove(action);
+                    }
+                };
+            }
+        }
+        action.run();
+        return () -> {
+        };
+    }
+
+    /**
+     * Returns a token that is cancelled with the same reason as this one, and that can also be
+     * cancelled on its own without affecting this token.
+     */
+    public CancellationToken child() {
+        CancellationToken child = new CancellationToken();
+        onCancel(() -> child.cancel(reason()));
+        return child;
+    }
+
+    private boolean cancel(Reason cancelReason) {
+        if (!reason.compareAndSet(Reason.NONE, cancelReason)) {
+            return false;
+        }
+        List<Runnable> actions;
+        synchronized (listeners) {
+            actions = new ArrayList<>(listeners);
+            listeners.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+        return true;
+    }
+
     public enum Reason {
         NONE,
         USER_REQUESTED,
         BUDGET_EXCEEDED
     }
+
+    public interface Registration extends AutoCloseable {
+
+        @Override
+        void close();
+    }
 }
@@ -0,0 +1,181 @@
+package com.example.demo.service;
+
+import com.example.demo.config.ExecutionProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Host capability probes (is firejail installed, does the sandbox provider answer) taken once when
+ * registered and then refreshed in the background every {@code judge.execution.capability-probe-ttl}.
+ * Callers read the last result instead of forking {@code which} or asking the provider on every
+ * run or admin view; only the first read of a probe waits for it to finish.
+ */
+@Service
+@Slf4j
+public class CapabilityRegistry {
+
+    private final Duration ttl;
+    private final ScheduledExecutorService refresher;
+    private final Map<String, Capability<?>> capabilities = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Capability<?>> registrationOrder = new ConcurrentLinkedQueue<>();
+
+    public CapabilityRegistry(ExecutionProperties executionProperties) {
+        Duration configured = executionProperties.getCapabilityProbeTtl();
+        this.ttl = configured == null || configured.isZero() || configured.isNegative()
+                ? Duration.ofMinutes(5)
+                : configured;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "capability-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers {@code probe} under {@code name} and starts probing it. Registering a name twice
+     * returns the capability registered first.
+     *
+     * @param fallback value reported while a probe throws and no earlier result exists
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Capability<T> register(String name, Supplier<T> probe, T fallback) {
+        Capability<?> existing = capabilities.get(name);
+        if (existing != null) {
+            return (Capability<T>) existing;
+        }
+        Capability<T> capability = new Capability<>(name, probe, fallback);
+        existing = capabilities.putIfAbsent(name, capability);
+        if (existing != null) {
+            return (Capability<T>) existing;
+        }
+        registrationOrder.add(capability);
+        refresher.scheduleWithFixedDelay(capability::refresh, 0, ttl.toMillis(), TimeUnit.MILLISECONDS);
+        return capability;
+    }
+
+    /**
+     * @return the last probe of every capability, in registration order
+     */
+    public List<ProbeStatus> snapshot() {
+        return registrationOrder.stream()
+                .map(Capability::status)
+                .toList();
+    }
+
+    public Duration ttl() {
+        return ttl;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    public record ProbeStatus(
+            String name,
+            String value,
+            Instant probedAt,
+            long durationMillis,
+            String error
+    ) {
+    }
+
+    private record Result<T>(T value, Instant probedAt, long durationMillis, String error) {
+    }
+
+    public static final class Capability<T> {
+
+        private final String name;
+        private final Supplier<T> probe;
+        private final T fallback;
+        private final CountDownLatch firstProbe = new CountDownLatch(1);
+        private volatile Result<T> last;
+
+        private Capability(String name, Supplier<T> probe, T fallback) {
+            this.name = name;
+            this.probe = probe;
+            this.fallback = fallback;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return the last probed value, waiting for the first probe if it has not finished yet
+         */
+        public T get() {
+            Result<T> result = last;
+            if (result == null) {
+                try {
+                    firstProbe.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return fallback;
+                }
+                result = last;
+            }
+            return result == null ? fallback : result.value();
+        }
+
+        /**
+         * @return the last probed value, or {@code null} while the first probe is still running
+         */
+        public T peek() {
+            Result<T> result = last;
+            return result == null ? null : result.value();
+        }
+
+        /**
+         * @return when the last probe finished, or {@code null} before the first one
+         */
+        public Instant probedAt() {
+            Result<T> result = last;
+            return result == null ? null : result.probedAt();
+        }
+
+        /**
+         * @return the last probe, with a {@code null} {@code probedAt} before the first one
+         */
+        public ProbeStatus status() {
+            Result<T> result = last;
+            if (result == null) {
+                return new ProbeStatus(name, null, null, 0, null);
+            }
+            return new ProbeStatus(name, String.valueOf(result.value()), result.probedAt(),
+                    result.durationMillis(), result.error());
+        }
+
+        void refresh() {
+            long started = System.nanoTime();
+            try {
+                T value = probe.get();
+                last = new Result<>(value, Instant.now(), elapsedMillis(started), null);
+            } catch (RuntimeException e) {
+                Result<T> previous = last;
+                T value = previous == null ? fallback : previous.value();
+                last = new Result<>(value, Instant.now(), elapsedMillis(started), e.getMessage());
+                log.warn("Capability probe {} failed: {}", name, e.getMessage());
+            } finally {
+                firstProbe.countDown();
+            }
+        }
+
+        private static long elapsedMillis(long started) {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        }
+    }
+}
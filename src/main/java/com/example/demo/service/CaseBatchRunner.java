@@ -2,9 +2,12 @@ package com.example.demo.service;
 
 import com.example.demo.config.AsyncConfig;
 import com.example.demo.dto.TestCaseResult;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
@@ -16,10 +19,23 @@ import java.util.function.Predicate;
 @Service
 public class CaseBatchRunner {
 
+    /** How long an idle dispatcher waits for a CPU slot before re-checking cancellation. */
+    private static final long SLOT_POLL_MILLIS = 50;
+
     private final Executor executor;
+    private final CpuSlotAllocator slotAllocator;
+
+    public CaseBatchRunner(Executor executor) {
+        this(executor, null);
+    }
 
-    public CaseBatchRunner(@Qualifier(AsyncConfig.TEST_CASE_EXECUTOR) Executor executor) {
+    @Autowired
+    public CaseBatchRunner(
+            @Qualifier(AsyncConfig.TEST_CASE_EXECUTOR) Executor executor,
+            CpuSlotAllocator slotAllocator
+    ) {
         this.executor = executor;
+        this.slotAllocator = slotAllocator;
     }
 
     public RunOutcome run(
@@ -39,47 +55,130 @@ public class CaseBatchRunner {
             CaseExecution caseExecution,
             Consumer<TestCaseResult> resultConsumer,
             Predicate<TestCaseResult> shouldStopAfterResult
+    ) {
+        return run(null, totalCases, policy, cancellationToken, caseExecution, resultConsumer, shouldStopAfterResult);
+    }
+
+    /**
+     * Runs the task's cases. When a {@link CpuSlotAllocator} is configured every in-flight case
+     * holds one host-wide CPU slot, registered under {@code taskId}.
+     */
+    public RunOutcome run(
+            String taskId,
+            int totalCases,
+            ResolvedTaskPolicy policy,
+            CancellationToken cancellationToken,
+            CaseExecution caseExecution,
+            Consumer<TestCaseResult> resultConsumer,
+            Predicate<TestCaseResult> shouldStopAfterResult
+    ) {
+        Objects.requireNonNull(caseExecution, "caseExecution must not be null");
+        return runPacked(taskId, totalCases, 1, policy, cancellationToken,
+                (firstCase, count) -> List.of(caseExecution.run(firstCase)), resultConsumer, shouldStopAfterResult);
+    }
+
+    /**
+     * Runs the task's cases in packs of {@code packSize} consecutive cases. Each pack is one unit
+     * of work holding one CPU slot, and must return a result for every case it covers.
+     */
+    public RunOutcome runPacked(
+            String taskId,
+            int totalCases,
+            int packSize,
+            ResolvedTaskPolicy policy,
+            CancellationToken cancellationToken,
+            PackExecution packExecution,
+            Consumer<TestCaseResult> resultConsumer,
+            Predicate<TestCaseResult> shouldStopAfterResult
     ) {
         Objects.requireNonNull(policy, "policy must not be null");
         Objects.requireNonNull(cancellationToken, "cancellationToken must not be null");
-        Objects.requireNonNull(caseExecution, "caseExecution must not be null");
+        Objects.requireNonNull(packExecution, "packExecution must not be null");
         Objects.requireNonNull(resultConsumer, "resultConsumer must not be null");
         Objects.requireNonNull(shouldStopAfterResult, "shouldStopAfterResult must not be null");
 
-        int batchSize = Math.max(1, policy.batchSize());
-        int maxConcurrentCases = Math.max(1, Math.min(policy.maxConcurrentCasesPerTask(), batchSize));
+        int pack = Math.max(1, packSize);
+        int totalPacks = (totalCases + pack - 1) / pack;
+        // Continuous dispatch is a single batch spanning the task: the window below refills a slot
+        // as soon as any case completes, so a slow case no longer idles the other slots at a
+        // batch boundary. Batches are counted in packs.
+        int batchSize = policy.continuousDispatch()
+                ? Math.max(1, totalPacks)
+                : Math.max(1, (Math.max(1, policy.batchSize()) + pack - 1) / pack);
+        int perTaskLimit = policy.maxConcurrentCasesPerTask() > 0
+                ? policy.maxConcurrentCasesPerTask()
+                : slotAllocator != null ? slotAllocator.totalSlots() : Runtime.getRuntime().availableProcessors();
+        int maxConcurrentCases = Math.max(1, Math.min(perTaskLimit, batchSize));
+        if (slotAllocator == null) {
+            return dispatch(totalCases, pack, batchSize, maxConcurrentCases, null,
+                    cancellationToken, packExecution, resultConsumer, shouldStopAfterResult);
+        }
+        try (CpuSlotAllocator.Lease lease = slotAllocator.register(
+                taskId == null ? "anonymous" : taskId, policy, maxConcurrentCases)) {
+            return dispatch(totalCases, pack, batchSize, maxConcurrentCases, lease,
+                    cancellationToken, packExecution, resultConsumer, shouldStopAfterResult);
+        }
+    }
+
+    private RunOutcome dispatch(
+            int totalCases,
+            int packSize,
+            int batchSize,
+            int maxConcurrentCases,
+            CpuSlotAllocator.Lease lease,
+            CancellationToken cancellationToken,
+            PackExecution packExecution,
+            Consumer<TestCaseResult> resultConsumer,
+            Predicate<TestCaseResult> shouldStopAfterResult
+    ) {
         ExecutorCompletionService<CaseCompletion> completionService = new ExecutorCompletionService<>(executor);
 
+        int totalPacks = (totalCases + packSize - 1) / packSize;
         int submittedCases = 0;
         int completedCases = 0;
         int peakScheduledFutures = 0;
         boolean stoppedAfterResult = false;
 
-        for (int batchStart = 1; batchStart <= totalCases; batchStart += batchSize) {
+        for (int batchStart = 1; batchStart <= totalPacks; batchStart += batchSize) {
             if (cancellationToken.isCancellationRequested() || stoppedAfterResult) {
                 break;
             }
 
-            int batchEnd = Math.min(totalCases, batchStart + batchSize - 1);
-            int nextCase = batchStart;
+            int batchEnd = Math.min(totalPacks, batchStart + batchSize - 1);
+            int nextPack = batchStart;
             int submittedInBatch = 0;
             int completedInBatch = 0;
 
             while (!stoppedAfterResult
                     && (completedInBatch < submittedInBatch
-                    || (nextCase <= batchEnd && !cancellationToken.isCancellationRequested()))) {
+                    || (nextPack <= batchEnd && !cancellationToken.isCancellationRequested()))) {
                 while (!cancellationToken.isCancellationRequested()
                         && !stoppedAfterResult
-                        && nextCase <= batchEnd
+                        && nextPack <= batchEnd
                         && submittedInBatch - completedInBatch < maxConcurrentCases) {
-                    int caseNumber = nextCase++;
-                    completionService.submit(() -> runSingleCase(caseNumber, caseExecution));
-                    submittedCases++;
+                    if (!acquireSlot(lease, submittedInBatch == completedInBatch, cancellationToken)) {
+                        break;
+                    }
+                    int firstCase = (nextPack++ - 1) * packSize + 1;
+                    int count = Math.min(packSize, totalCases - firstCase + 1);
+                    try {
+                        completionService.submit(() -> runPack(firstCase, count, packExecution, lease));
+                    } catch (RuntimeException e) {
+                        if (lease != null) {
+                            lease.release();
+                        }
+                        throw e;
+                    }
+                    submittedCases += count;
                     submittedInBatch++;
                     peakScheduledFutures = Math.max(peakScheduledFutures, submittedInBatch - completedInBatch);
                 }
 
                 if (completedInBatch == submittedInBatch) {
+                    if (lease != null && nextPack <= batchEnd && !cancellationToken.isCancellationRequested()) {
+                        // Nothing in flight and no CPU slot granted yet; keep waiting for one.
+                        continue;
+                    }
                     break;
                 }
 
@@ -88,10 +187,12 @@ public class CaseBatchRunner {
                     break;
                 }
                 completedInBatch++;
-                completedCases++;
-                resultConsumer.accept(completion.result());
-                if (shouldStopAfterResult.test(completion.result())) {
-                    stoppedAfterResult = true;
+                for (TestCaseResult result : completion.results()) {
+                    completedCases++;
+                    resultConsumer.accept(result);
+                    if (!stoppedAfterResult && shouldStopAfterResult.test(result)) {
+                        stoppedAfterResult = true;
+                    }
                 }
             }
 
@@ -118,6 +219,20 @@ public class CaseBatchRunner {
         );
     }
 
+    private boolean acquireSlot(CpuSlotAllocator.Lease lease, boolean idle, CancellationToken cancellationToken) {
+        if (lease == null) {
+            return true;
+        }
+        try {
+            // With cases in flight, fall through to collecting a completion instead of blocking.
+            return lease.tryAcquire(idle ? SLOT_POLL_MILLIS : 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancellationToken.cancel();
+            return false;
+        }
+    }
+
     private CaseCompletion takeCompletedCase(
             ExecutorCompletionService<CaseCompletion> completionService,
             CancellationToken cancellationToken
@@ -143,8 +258,10 @@ public class CaseBatchRunner {
         for (int i = 0; i < remainingCases; i++) {
             try {
                 Future<CaseCompletion> future = completionService.take();
-                resultConsumer.accept(future.get().result());
-                drainedCases++;
+                for (TestCaseResult result : future.get().results()) {
+                    resultConsumer.accept(result);
+                    drainedCases++;
+                }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 return drainedCases;
@@ -155,18 +272,33 @@ public class CaseBatchRunner {
         return drainedCases;
     }
 
-    private CaseCompletion runSingleCase(int caseNumber, CaseExecution caseExecution) {
+    private CaseCompletion runPack(int firstCase, int count, PackExecution packExecution, CpuSlotAllocator.Lease lease) {
+        int core = lease == null ? -1 : lease.claimCore();
+        CpuAffinity.assign(core);
         try {
-            TestCaseResult result = caseExecution.run(caseNumber);
-            if (result == null) {
-                return new CaseCompletion(caseNumber, systemError(caseNumber));
+            List<TestCaseResult> returned = packExecution.run(firstCase, count);
+            List<TestCaseResult> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                TestCaseResult result = returned != null && i < returned.size() ? returned.get(i) : null;
+                if (result == null) {
+                    result = systemError(firstCase + i);
+                } else if (core >= 0) {
+                    result.setCpuCore(core);
+                }
+                results.add(result);
             }
-            return new CaseCompletion(caseNumber, result);
+            return new CaseCompletion(results);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            return new CaseCompletion(caseNumber, systemError(caseNumber));
+            return systemErrors(firstCase, count);
         } catch (Exception e) {
-            return new CaseCompletion(caseNumber, systemError(caseNumber));
+            return systemErrors(firstCase, count);
+        } finally {
+            CpuAffinity.assign(-1);
+            if (lease != null) {
+                lease.releaseCore(core);
+                lease.release();
+            }
         }
     }
 
@@ -174,12 +306,28 @@ public class CaseBatchRunner {
         return new TestCaseResult(caseNumber, "System Error", 0, 0);
     }
 
+    private CaseCompletion systemErrors(int firstCase, int count) {
+        List<TestCaseResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(systemError(firstCase + i));
+        }
+        return new CaseCompletion(results);
+    }
+
     @FunctionalInterface
     public interface CaseExecution {
         TestCaseResult run(int caseNumber) throws Exception;
     }
 
-    private record CaseCompletion(int caseNumber, TestCaseResult result) {
+    /**
+     * Runs cases {@code firstCase .. firstCase + count - 1}, returning their results in order.
+     */
+    @FunctionalInterface
+    public interface PackExecution {
+        List<TestCaseResult> run(int firstCase, int count) throws Exception;
+    }
+
+    private record CaseCompletion(List<TestCaseResult> results) {
     }
 
     public static class RunOutcome {
@@ -0,0 +1,174 @@
+package com.example.demo.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Holds one stream of case data (generated input, user output or oracle answer) while it is
+ * piped between processes. Bytes stay on the heap up to {@code memoryThresholdBytes} and spill
+ * to a hidden file in the task directory beyond that, so passing cases never create
+ * {@code N.in}/{@code N.out}/{@code N.ans} files.
+ *
+ * <p>The buffer has a single writer. Readers may open any number of input streams once the
+ * writer stream has been closed.
+ */
+public final class CaseDataBuffer implements Closeable {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_MEMORY_BYTES = Integer.MAX_VALUE - 8;
+
+    private final long memoryThresholdBytes;
+    private final Path spillDirectory;
+    private byte[] memory = new byte[INITIAL_CAPACITY];
+    private int memoryCount;
+    private long size;
+    private Path spillFile;
+    private OutputStream spillStream;
+    private boolean writerOpened;
+    private boolean writerClosed;
+    private boolean closed;
+
+    public CaseDataBuffer(long memoryThresholdBytes, Path spillDirectory) {
+        this.memoryThresholdBytes = Math.max(0, Math.min(memoryThresholdBytes, MAX_MEMORY_BYTES));
+        this.spillDirectory = Objects.requireNonNull(spillDirectory, "spillDirectory must not be null");
+    }
+
+    public synchronized OutputStream openOutputStream() {
+        if (writerOpened) {
+            throw new IllegalStateException("Case data buffer already has a writer");
+        }
+        writerOpened = true;
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                append(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                finishWriting();
+            }
+        };
+    }
+
+    public synchronized InputStream openInputStream() throws IOException {
+        ensureOpen();
+        if (spillFile != null) {
+            finishWriting();
+            return Files.newInputStream(spillFile);
+        }
+        return new ByteArrayInputStream(memory, 0, memoryCount);
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized boolean spilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Writes the buffered bytes to {@code target}, replacing any existing file. Used when a case
+     * fails and its artifacts must be kept for the details and download endpoints.
+     */
+    public synchronized void copyTo(Path target) throws IOException {
+        ensureOpen();
+        if (spillFile != null) {
+            finishWriting();
+            Files.copy(spillFile, target, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        try (OutputStream out = Files.newOutputStream(target,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            out.write(memory, 0, memoryCount);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            finishWriting();
+        } finally {
+            memory = new byte[0];
+            memoryCount = 0;
+            if (spillFile != null) {
+                Files.deleteIfExists(spillFile);
+            }
+        }
+    }
+
+    private synchronized void append(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        if (writerClosed) {
+            throw new IOException("Case data buffer is no longer writable");
+        }
+        if (length <= 0) {
+            return;
+        }
+        if (spillFile == null && memoryCount + (long) length > memoryThresholdBytes) {
+            spill();
+        }
+        if (spillStream != null) {
+            spillStream.write(bytes, offset, length);
+        } else {
+            ensureCapacity(memoryCount + length);
+            System.arraycopy(bytes, offset, memory, memoryCount, length);
+            memoryCount += length;
+        }
+        size += length;
+    }
+
+    private void spill() throws IOException {
+        Files.createDirectories(spillDirectory);
+        spillFile = Files.createTempFile(spillDirectory, ".case-", ".spill");
+        spillStream = Files.newOutputStream(spillFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        spillStream.write(memory, 0, memoryCount);
+        memory = new byte[0];
+        memoryCount = 0;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= memory.length) {
+            return;
+        }
+        long capacity = Math.max(required, (long) memory.length * 2);
+        capacity = Math.min(capacity, Math.max(required, memoryThresholdBytes));
+        memory = Arrays.copyOf(memory, (int) capacity);
+    }
+
+    private synchronized void finishWriting() throws IOException {
+        writerClosed = true;
+        if (spillStream != null) {
+            OutputStream stream = spillStream;
+            spillStream = null;
+            stream.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Case data buffer is closed");
+        }
+    }
+}
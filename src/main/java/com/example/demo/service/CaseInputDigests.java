@@ -0,0 +1,124 @@
+package com.example.demo.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Fixed-size record per case (length and CRC32C of the generated input) kept in the task
+ * directory. Seeded generation only removes the need to store inputs if a regenerated input
+ * can be checked against what was actually judged; a generator that ignores its seed (for
+ * example one seeded from the clock) is detected here instead of serving different data.
+ */
+public final class CaseInputDigests implements Closeable {
+
+    public static final String FILE_NAME = "case-inputs.digest";
+
+    private static final int RECORD_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+
+    private CaseInputDigests(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    public static CaseInputDigests open(Path workDir) throws IOException {
+        return new CaseInputDigests(FileChannel.open(workDir.resolve(FILE_NAME),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE));
+    }
+
+    public static boolean exists(Path workDir) {
+        return Files.isRegularFile(workDir.resolve(FILE_NAME), LinkOption.NOFOLLOW_LINKS);
+    }
+
+    /**
+     * Digests {@code input} and stores the record for {@code caseNumber}. Safe to call from
+     * concurrent case workers; each case owns a distinct slot.
+     */
+    public void record(int caseNumber, InputStream input) throws IOException {
+        Digest digest = digest(input);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        // Lengths are stored +1 so that an unwritten (zero) slot never matches an empty input.
+        record.putLong(digest.length() + 1).putInt(digest.crc()).flip();
+        long position = slot(caseNumber);
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+    }
+
+    /**
+     * Returns whether {@code file} has the same length and checksum as the input judged for
+     * {@code caseNumber}. Missing or unwritten records never match.
+     */
+    public static boolean matches(Path workDir, int caseNumber, Path file) throws IOException {
+        Digest stored = read(workDir, caseNumber);
+        if (stored == null) {
+            return false;
+        }
+        try (InputStream input = Files.newInputStream(file)) {
+            return digest(input).equals(stored);
+        }
+    }
+
+    /**
+     * Whether an input was recorded for {@code caseNumber}; cases that were never run (for
+     * example after cancellation) or whose generator failed have no record.
+     */
+    public static boolean isRecorded(Path workDir, int caseNumber) throws IOException {
+        return read(workDir, caseNumber) != null;
+    }
+
+    private static Digest read(Path workDir, int caseNumber) throws IOException {
+        if (!exists(workDir)) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        try (FileChannel channel = FileChannel.open(workDir.resolve(FILE_NAME), StandardOpenOption.READ)) {
+            long position = slot(caseNumber);
+            while (record.hasRemaining()) {
+                if (channel.read(record, position + record.position()) < 0) {
+                    return null;
+                }
+            }
+        }
+        record.flip();
+        long storedLength = record.getLong() - 1;
+        int storedCrc = record.getInt();
+        return storedLength < 0 ? null : new Digest(storedLength, storedCrc);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static long slot(int caseNumber) {
+        if (caseNumber < 1) {
+            throw new IllegalArgumentException("caseNumber must be positive");
+        }
+        return (long) (caseNumber - 1) * RECORD_BYTES;
+    }
+
+    private static Digest digest(InputStream input) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[64 * 1024];
+        long length = 0;
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            crc.update(buffer, 0, read);
+            length += read;
+        }
+        return new Digest(length, (int) crc.getValue());
+    }
+
+    private record Digest(long length, int crc) {
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.demo.service;
+
+import com.example.demo.config.MemoryConfiguration;
+import com.example.demo.model.JudgeTask;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rebuilds {@code N.in}, {@code N.out} and {@code N.ans} for tasks judged with seeded generation.
+ * The executables compiled for the task are still in its work directory, so a case is
+ * regenerated by rerunning the generator with the recorded case seed and feeding the result to
+ * the user program and brute force solution, with the limits from the task's policy snapshot.
+ * For a multi-test pack task the input is wrapped as a pack of one case, as the task judged a
+ * case on its own, and kept that way in {@code N.in}.
+ */
+@Service
+@Slf4j
+public class CaseRegenerator {
+
+    static final String GENERATOR_EXECUTABLE = "generator";
+    static final String USER_EXECUTABLE = "user";
+    static final String BRUTE_FORCE_EXECUTABLE = "bruteforce";
+
+    private static final Duration GENERATOR_TIMEOUT = Duration.ofMillis(5000);
+
+    private final ProcessRunner processRunner;
+    private final MemoryConfiguration memoryConfiguration;
+
+    public CaseRegenerator(
+            @Qualifier("sandboxProcessRunner") ProcessRunner processRunner,
+            MemoryConfiguration memoryConfiguration
+    ) {
+        this.processRunner = processRunner;
+        this.memoryConfiguration = memoryConfiguration;
+    }
+
+    public boolean supports(JudgeTask task, Path workDir) {
+        return task.getGeneratorSeed() != null
+                && task.getPolicy() != null
+                && task.getPolicy().seededGeneration()
+                && Files.isRegularFile(workDir.resolve(GENERATOR_EXECUTABLE), LinkOption.NOFOLLOW_LINKS)
+                && Files.isRegularFile(workDir.resolve(USER_EXECUTABLE), LinkOption.NOFOLLOW_LINKS)
+                && CaseInputDigests.exists(workDir);
+    }
+
+    /**
+     * Regenerates one case into {@code targetDir}. Each file is written under a temporary name
+     * and moved into place, so concurrent requests for the same case never observe partial
+     * files. The answer file is only produced for brute-force tasks.
+     *
+     * @throws IOException when the generator fails or its output differs from the judged input
+     */
+    public void regenerate(JudgeTask task, Path workDir, int caseNumber, Path targetDir)
+            throws IOException, InterruptedException {
+        if (!supports(task, workDir)) {
+            throw new IOException("Case " + caseNumber + " cannot be regenerated for this task");
+        }
+        ResolvedTaskPolicy policy = task.getPolicy();
+        Files.createDirectories(targetDir);
+        List<Path> staged = new ArrayList<>(3);
+        try {
+            Path input = stage(targetDir, caseNumber, ".in", staged);
+            if (task.isBulkGenerator()) {
+                generateBulkCase(task, workDir, caseNumber, input, staged);
+            } else {
+                long seed = CaseSeeds.caseSeed(task.getGeneratorSeed(), caseNumber);
+                ProcessResult generated = run(workDir.resolve(GENERATOR_EXECUTABLE), List.of(String.valueOf(seed)),
+                        null, input, GENERATOR_TIMEOUT, memoryConfiguration.getDefaultLimit(), policy);
+                if (generated.status() != ProcessResult.Status.SUCCESS) {
+                    throw new IOException("Generator failed while regenerating case " + caseNumber);
+                }
+            }
+            if (!CaseInputDigests.matches(workDir, caseNumber, input)) {
+                throw new IOException("Regenerated input for case " + caseNumber
+                        + " differs from the judged input; the generator must seed its randomness from argv[1]");
+            }
+            if (task.getMultiTestPackSize() > 1) {
+                // The digest covers the generator's output; the programs read it as a pack.
+                Path packed = stage(targetDir, caseNumber, ".in", staged);
+                try (OutputStream out = Files.newOutputStream(packed)) {
+                    MultiTestInput.writeSingle(input, out);
+                }
+                input = packed;
+            }
+
+            Path userOutput = stage(targetDir, caseNumber, ".out", staged);
+            run(workDir.resolve(USER_EXECUTABLE), List.of(), input, userOutput,
+                    policy.caseTimeLimit(), policy.memoryLimitBytes(), policy);
+
+            Path bruteForce = workDir.resolve(BRUTE_FORCE_EXECUTABLE);
+            Path answer = null;
+            if (Files.isRegularFile(bruteForce, LinkOption.NOFOLLOW_LINKS)) {
+                answer = stage(targetDir, caseNumber, ".ans", staged);
+                ProcessResult answered = run(bruteForce, List.of(), input, answer,
+                        policy.caseTimeLimit().multipliedBy(5), memoryConfiguration.getDefaultLimit() * 2, policy);
+                if (answered.status() != ProcessResult.Status.SUCCESS) {
+                    Files.deleteIfExists(answer);
+                    answer = null;
+                }
+            }
+
+            publish(userOutput, targetDir.resolve(caseNumber + ".out"));
+            if (answer != null) {
+                publish(answer, targetDir.resolve(caseNumber + ".ans"));
+            }
+            publish(input, targetDir.resolve(caseNumber + ".in"));
+        } finally {
+            for (Path file : staged) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.debug("Failed to delete staged regeneration file {}: {}", file, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a bulk-protocol generator for this case alone and strips the delimiter line.
+     */
+    private void generateBulkCase(JudgeTask task, Path workDir, int caseNumber, Path input, List<Path> staged)
+            throws IOException, InterruptedException {
+        Path bulkOutput = stage(input.getParent(), caseNumber, ".bulk", staged);
+        long seed = BulkGenerator.caseSeed(task.getGeneratorSeed(), caseNumber);
+        ProcessResult generated = run(workDir.resolve(GENERATOR_EXECUTABLE), BulkGenerator.arguments(1, seed),
+                null, bulkOutput, GENERATOR_TIMEOUT, memoryConfiguration.getDefaultLimit(), task.getPolicy());
+        if (generated.status() != ProcessResult.Status.SUCCESS) {
+            throw new IOException("Generator failed while regenerating case " + caseNumber);
+        }
+        int emitted;
+        try (InputStream in = Files.newInputStream(bulkOutput);
+             OutputStream out = Files.newOutputStream(input)) {
+            emitted = BulkGenerator.split(in, 1, index -> out);
+        }
+        if (emitted != 1) {
+            throw new IOException("Bulk generator did not terminate case " + caseNumber + " with "
+                    + BulkGenerator.DELIMITER);
+        }
+    }
+
+    private Path stage(Path targetDir, int caseNumber, String extension, List<Path> staged) throws IOException {
+        Path file = Files.createTempFile(targetDir, ".regen-" + caseNumber + "-", extension);
+        staged.add(file);
+        return file;
+    }
+
+    private void publish(Path staged, Path target) throws IOException {
+        Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private ProcessResult run(Path executable, List<String> arguments, Path inputFile, Path outputFile,
+                              Duration timeout, long memoryLimit, ResolvedTaskPolicy policy)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(arguments.size() + 1);
+        command.add(executable.toAbsolutePath().toString());
+        command.addAll(arguments);
+        return processRunner.run(ProcessRunner.Request.builder()
+                .command(command)
+                .workingDirectory(executable.getParent())
+                .inputFile(inputFile)
+                .outputFile(outputFile)
+                .timeout(timeout)
+                .killGrace(Duration.ofSeconds(5))
+                .memoryLimitBytes(memoryLimit)
+                .maxOutputBytes(policy.maxOutputBytesPerCase())
+                .maxErrorBytes(policy.maxOutputBytesPerCase())
+                .profile(policy.profile())
+                .requireSandbox(policy.sandboxRequired())
+                .build());
+    }
+}
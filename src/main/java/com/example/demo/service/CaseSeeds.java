@@ -0,0 +1,39 @@
+package com.example.demo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Derives generator seeds. The task seed is a hash of the judge id and is recorded on the task;
+ * each case seed mixes the task seed with the case number, so any case can be generated again
+ * without replaying the cases before it. Seeds are non-negative so generators can read them
+ * with {@code atoll}/{@code stoll}.
+ */
+public final class CaseSeeds {
+
+    private CaseSeeds() {
+    }
+
+    public static long taskSeed(String judgeId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(judgeId.getBytes(StandardCharsets.UTF_8));
+            long seed = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                seed = (seed << 8) | (digest[i] & 0xff);
+            }
+            return seed & Long.MAX_VALUE;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public static long caseSeed(long taskSeed, int caseNumber) {
+        // SplitMix64 finalizer over the task seed offset by the case number.
+        long z = taskSeed + caseNumber * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) & Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.demo.service;
+
+import com.example.demo.config.ExecutionProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs each process in its own transient cgroup v2 leaf under a delegated subtree. The kernel
+ * enforces {@code memory.max}, {@code pids.max} and {@code cpu.max}; {@code memory.events} and
+ * {@code cpu.stat} give the OOM kills and CPU time of the whole process tree, and
+ * {@code cgroup.kill} stops it. This replaces the {@link Process#descendants()} walk of
+ * {@link DirectProcessRunner}. Reported memory stays the peak RSS the runner measures: the leaf's
+ * {@code memory.peak} also charges the {@code sh} wrapper, {@code prlimit} and the page cache of
+ * written output, so it would overstate the program's memory.
+ *
+ * <p>The process joins its leaf from a {@code sh} wrapper that writes its own pid to
+ * {@code cgroup.procs} and then execs the command, so nothing of the command runs outside the
+ * cgroup and the launched pid stays the one that is waited for. The subtree must be delegated to
+ * the judge explicitly with {@code cgroup-root}; without a usable one every request goes to
+ * {@link DirectProcessRunner} unchanged.
+ */
+@Service
+@Slf4j
+public class CgroupProcessRunner implements ProcessRunner {
+
+    private static final Set<String> REQUIRED_CONTROLLERS = Set.of("memory", "pids");
+    private static final String CPU_PERIOD_MICROS = "100000";
+
+    private final DirectProcessRunner directRunner;
+    /** Delegated subtree that receives the case leaves; {@code null} when cgroups are unavailable. */
+    private final Path root;
+    private final long pidsMax;
+    private final boolean cpuController;
+    private final AtomicLong leafSequence = new AtomicLong();
+
+    @Autowired
+    public CgroupProcessRunner(DirectProcessRunner directRunner, ExecutionProperties executionProperties) {
+        this(directRunner,
+                executionProperties.isCgroupExecution() ? detectRoot(executionProperties.getCgroupRoot()) : null,
+                executionProperties.getCgroupPidsMax());
+    }
+
+    public CgroupProcessRunner(DirectProcessRunner directRunner, Path root, long pidsMax) {
+        this.directRunner = directRunner;
+        Set<String> controllers = root == null ? Set.of() : subtreeControllers(root);
+        if (root != null && !controllers.containsAll(REQUIRED_CONTROLLERS)) {
+            log.info("cgroup subtree {} lacks the memory/pids controllers; using direct execution", root);
+            root = null;
+        }
+        this.root = root;
+        this.pidsMax = pidsMax;
+        this.cpuController = controllers.contains("cpu");
+        if (root != null) {
+            log.info("Running cases in cgroup v2 leaves under {}", root);
+        }
+    }
+
+    public boolean isAvailable() {
+        return root != null;
+    }
+
+    @Override
+    public boolean supportsBufferedIo() {
+        return directRunner.supportsBufferedIo();
+    }
+
+    @Override
+    public ProcessResult run(Request request) throws IOException, InterruptedException {
+        if (root == null) {
+            return directRunner.run(request);
+        }
+        Leaf leaf;
+        try {
+            leaf = createLeaf(request);
+        } catch (IOException e) {
+            log.warn("Failed to create a cgroup leaf under {}, running directly: {}", root, e.getMessage());
+            return directRunner.run(request);
+        }
+        try {
+            ProcessResult result = directRunner.run(request, leaf);
+            // Reap anything the process left running in the background before reading the totals.
+            leaf.killAll();
+            return account(request, result, leaf.accounting());
+        } finally {
+            leaf.remove(request.killGrace());
+        }
+    }
+
+    private Leaf createLeaf(Request request) throws IOException {
+        Path path = root.resolve("case-" + ProcessHandle.current().pid() + "-" + leafSequence.incrementAndGet());
+        Files.createDirectory(path);
+        Leaf leaf = new Leaf(path);
+        try {
+            write(path.resolve("memory.max"), Long.toString(request.memoryLimitBytes()));
+            writeIfPresent(path.resolve("memory.swap.max"), "0");
+            // An OOM kill takes the whole case down rather than leaving a crippled survivor.
+            writeIfPresent(path.resolve("memory.oom.group"), "1");
+            if (pidsMax > 0) {
+                write(path.resolve("pids.max"), Long.toString(pidsMax));
+            }
+            if (cpuController) {
+                // One CPU per case, matching the one CPU slot each in-flight case holds.
+                write(path.resolve("cpu.max"), CPU_PERIOD_MICROS + " " + CPU_PERIOD_MICROS);
+            }
+        } catch (IOException e) {
+            leaf.remove(Duration.ZERO);
+            throw e;
+        }
+        return leaf;
+    }
+
+    /**
+     * The cgroup's CPU time covers every process of the case, so it replaces the runner's; memory
+     * stays the runner's peak RSS. An OOM kill is memory limit exceeded whatever exit status it
+     * produced.
+     */
+    private static ProcessResult account(Request request, ProcessResult result, Accounting accounting) {
+        long memory = result.memoryUsed();
+        long cpuTime = accounting.cpuMicros() >= 0 ? accounting.cpuMicros() / 1000 : result.cpuTime();
+        ProcessResult.Status status = result.status();
+        String error = result.error();
+        if (status != ProcessResult.Status.CANCELLED && accounting.oomKills() > 0) {
+            status = ProcessResult.Status.MEMORY_LIMIT_EXCEEDED;
+            error = (error == null || error.isEmpty() ? "" : error + "\n")
+                    + "Memory limit exceeded: killed by the kernel at " + request.memoryLimitBytes() + " bytes";
+            memory = Math.max(memory, request.memoryLimitBytes());
+        } else if ((status == ProcessResult.Status.SUCCESS || status == ProcessResult.Status.RUNTIME_ERROR)
+                && request.cpuTimeLimit() != null && cpuTime > request.cpuTimeLimit().toMillis()) {
+            status = ProcessResult.Status.TIME_LIMIT_EXCEEDED;
+        }
+        return new ProcessResult(status, result.output(), error, result.executionTime(), memory, result.exitCode(),
+                cpuTime);
+    }
+
+    /**
+     * Returns the delegated subtree configured as {@code cgroup-root}. The judge never creates or
+     * reorganises cgroups above it, so without one cgroup execution stays off.
+     */
+    static Path detectRoot(String configuredRoot) {
+        if (configuredRoot == null || configuredRoot.isBlank()) {
+            log.info("cgroup-execution is on but no cgroup-root is delegated; using direct execution");
+            return null;
+        }
+        Path root = Path.of(configuredRoot);
+        if (!Files.isDirectory(root) || !Files.isWritable(root)) {
+            log.info("cgroup-root {} is not a writable directory; using direct execution", root);
+            return null;
+        }
+        return root;
+    }
+
+    private static Set<String> subtreeControllers(Path group) {
+        try {
+            String controllers = Files.readString(group.resolve("cgroup.subtree_control")).trim();
+            return controllers.isEmpty() ? Set.of() : Set.of(controllers.split("\\s+"));
+        } catch (IOException e) {
+            return Set.of();
+        }
+    }
+
+    private static void write(Path file, String value) throws IOException {
+        Files.writeString(file, value, StandardCharsets.US_ASCII);
+    }
+
+    private static void writeIfPresent(Path file, String value) throws IOException {
+        if (Files.exists(file)) {
+            write(file, value);
+        }
+    }
+
+    /**
+     * Reads {@code key value} lines such as {@code memory.events} and {@code cpu.stat}.
+     *
+     * @return the value, or -1 when the file or key is missing
+     */
+    private static long readKey(Path file, String key) {
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.US_ASCII)) {
+                if (line.startsWith(key + " ")) {
+                    return Long.parseLong(line.substring(key.length() + 1).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+            // Reported as unknown.
+        }
+        return -1;
+    }
+
+    private record Accounting(long oomKills, long cpuMicros) {
+    }
+
+    private static final class Leaf implements DirectProcessRunner.ProcessTree {
+
+        private final Path path;
+
+        private Leaf(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public List<String> launchCommand(List<String> command) {
+            List<String> wrapped = new ArrayList<>(command.size() + 4);
+            wrapped.add("/bin/sh");
+            wrapped.add("-c");
+            wrapped.add("echo $$ > \"$0\" && exec \"$@\"");
+            wrapped.add(path.resolve("cgroup.procs").toString());
+            wrapped.addAll(command);
+            return wrapped;
+        }
+
+        @Override
+        public void kill(Process process) {
+            killAll();
+            process.destroyForcibly();
+        }
+
+        /**
+         * Kills every process in the leaf; kernels without {@code cgroup.kill} (before 5.14) get
+         * each listed pid killed instead.
+         */
+        void killAll() {
+            Path killFile = path.resolve("cgroup.kill");
+            try {
+                if (Files.exists(killFile)) {
+                    write(killFile, "1");
+                    return;
+                }
+                for (String pid : Files.readAllLines(path.resolve("cgroup.procs"))) {
+                    if (!pid.isBlank()) {
+                        ProcessHandle.of(Long.parseLong(pid.trim())).ifPresent(ProcessHandle::destroyForcibly);
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                log.debug("Failed to kill cgroup {}: {}", path, e.getMessage());
+            }
+        }
+
+        Accounting accounting() {
+            long oomKills = Math.max(0, readKey(path.resolve("memory.events"), "oom_kill"));
+            return new Accounting(oomKills, readKey(path.resolve("cpu.stat"), "usage_usec"));
+        }
+
+        /**
+         * Removes the leaf once its last process has exited; a leaf still populated after
+         * {@code grace} is left for the kernel to empty and logged.
+         */
+        void remove(Duration grace) {
+            long deadline = System.nanoTime() + grace.toNanos();
+            while (readKey(path.resolve("cgroup.events"), "populated") > 0 && System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            try {
+                Files.delete(path);
+            } catch (IOException e) {
+                log.warn("Failed to remove cgroup {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
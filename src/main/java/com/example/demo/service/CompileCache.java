@@ -0,0 +1,324 @@
+package com.example.demo.service;
+
+import com.example.demo.config.CompilerConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of compiled binaries under {@code <storage base>/compile-cache}.
+ * Entries are keyed by SHA-256 over the compiler identity, the compile flags and the source
+ * bytes, so any change to one of them is a miss. Hits are copied into the task work directory,
+ * which keeps sandboxed runners working on a private file rather than the shared cache entry.
+ *
+ * <p>Concurrent compiles of the same key are single-flighted: one caller runs the compiler and
+ * the others wait for its result. Failed compiles are never cached. The cache is trimmed in
+ * least-recently-used order to {@code judge.compiler.cache-max-bytes} and
+ * {@code judge.compiler.cache-max-entries}.
+ */
+@Service
+@Slf4j
+public class CompileCache {
+
+    static final String DIRECTORY_NAME = "compile-cache";
+
+    private final CompilerConfiguration compilerConfiguration;
+    private final Path cacheDirectory;
+    private final ProcessRunner probeRunner;
+    private volatile String compilerIdentity;
+    private volatile boolean compilerProbed;
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    /** Access-ordered index of cached entries and their sizes, loaded from disk on first use. */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean indexLoaded;
+    private long totalBytes;
+
+    @Autowired
+    public CompileCache(
+            CompilerConfiguration compilerConfiguration,
+            FileTaskStore taskStore,
+            @Qualifier("directProcessRunner") ProcessRunner probeRunner
+    ) {
+        this(compilerConfiguration, taskStore.storageBase().resolve(DIRECTORY_NAME), probeRunner);
+    }
+
+    public CompileCache(CompilerConfiguration compilerConfiguration, Path cacheDirectory, ProcessRunner probeRunner) {
+        this.compilerConfiguration = compilerConfiguration;
+        this.cacheDirectory = cacheDirectory.toAbsolutePath().normalize();
+        this.probeRunner = probeRunner;
+    }
+
+    /**
+     * Compiles a binary into the work directory, or produces it from the cache.
+     */
+    @FunctionalInterface
+    public interface Compiler {
+        void compileTo(Path executable) throws IOException, InterruptedException;
+    }
+
+    public record Outcome(Path executable, boolean cacheHit) {
+    }
+
+    /**
+     * Places the binary for {@code source} at {@code executable}, compiling only on a cache miss.
+     *
+     * @param flags the compiler executable followed by every flag that affects the produced binary
+     */
+    public Outcome compile(Path source, Path executable, List<String> flags, Compiler compiler)
+            throws IOException, InterruptedException {
+        String compilerIdentity = compilerConfiguration.isCacheEnabled() ? compilerIdentity(flags.get(0), source.getParent()) : null;
+        if (compilerIdentity == null) {
+            compiler.compileTo(executable);
+            return new Outcome(executable, false);
+        }
+        String key = key(Files.readAllBytes(source), compilerIdentity, flags);
+        Path cached = lookup(key);
+        if (cached != null && copyOut(cached, executable)) {
+            return new Outcome(executable, true);
+        }
+
+        CompletableFuture<Path> flight = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            Path shared = await(existing);
+            if (copyOut(shared, executable)) {
+                return new Outcome(executable, true);
+            }
+            compiler.compileTo(executable);
+            return new Outcome(executable, false);
+        }
+
+        try {
+            compiler.compileTo(executable);
+            Path stored = store(key, executable);
+            flight.complete(stored);
+            return new Outcome(executable, false);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    public Path cacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * First line of {@code <compiler> --version}, probed once. A compiler upgrade therefore only
+     * invalidates the cache after a restart, which is when upgrades take effect anyway.
+     */
+    String compilerIdentity(String compiler, Path workingDirectory) throws InterruptedException {
+        if (compilerProbed) {
+            return compilerIdentity;
+        }
+        synchronized (this) {
+            if (!compilerProbed) {
+                compilerIdentity = probe(compiler, workingDirectory);
+                compilerProbed = true;
+                if (compilerIdentity == null) {
+                    log.warn("Could not determine the version of {}; compile cache disabled", compiler);
+                }
+            }
+            return compilerIdentity;
+        }
+    }
+
+    private String probe(String compiler, Path workingDirectory) throws InterruptedException {
+        try {
+            ProcessResult result = probeRunner.run(ProcessRunner.Request.builder()
+                    .command(List.of(compiler, "--version"))
+                    .workingDirectory(workingDirectory)
+                    .timeout(Duration.ofSeconds(10))
+                    .killGrace(Duration.ofSeconds(2))
+                    .maxOutputBytes(64 * 1024)
+                    .maxErrorBytes(64 * 1024)
+                    .build());
+            String output = result.output().strip();
+            if (result.status() != ProcessResult.Status.SUCCESS || output.isEmpty()) {
+                return null;
+            }
+            return compiler + "\n" + output.lines().findFirst().orElse(output);
+        } catch (IOException e) {
+            log.debug("Compiler version probe failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    static String key(byte[] source, String compilerIdentity, List<String> flags) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(compilerIdentity.getBytes(StandardCharsets.UTF_8));
+            for (String flag : flags) {
+                digest.update((byte) 0);
+                digest.update(flag.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+            digest.update(source);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private Path await(CompletableFuture<Path> flight) throws IOException, InterruptedException {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof InterruptedException interruptedException) {
+                throw interruptedException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private synchronized Path lookup(String key) throws IOException {
+        loadIndex();
+        if (entries.get(key) == null) {
+            return null;
+        }
+        Path file = entryPath(key);
+        if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+            totalBytes -= entries.remove(key);
+            return null;
+        }
+        touch(file);
+        return file;
+    }
+
+    private boolean copyOut(Path cached, Path executable) {
+        if (cached == null) {
+            return false;
+        }
+        try {
+            Files.copy(cached, executable, StandardCopyOption.REPLACE_EXISTING);
+            executable.toFile().setExecutable(true, false);
+            return true;
+        } catch (IOException e) {
+            // Evicted between lookup and copy; fall back to compiling.
+            log.debug("Compile cache entry {} unavailable: {}", cached, e.getMessage());
+            return false;
+        }
+    }
+
+    private Path store(String key, Path executable) {
+        if (!Files.isRegularFile(executable, LinkOption.NOFOLLOW_LINKS)) {
+            return null;
+        }
+        try {
+            Path target = entryPath(key);
+            Files.createDirectories(target.getParent());
+            Path staged = Files.createTempFile(target.getParent(), ".stage-", ".bin");
+            try {
+                Files.copy(executable, staged, StandardCopyOption.REPLACE_EXISTING);
+                staged.toFile().setExecutable(true, false);
+                Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(staged);
+            }
+            synchronized (this) {
+                loadIndex();
+                Long previous = entries.put(key, Files.size(target));
+                totalBytes += entries.get(key) - (previous == null ? 0 : previous);
+                evict(key);
+            }
+            return target;
+        } catch (IOException e) {
+            log.warn("Failed to store compile cache entry {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void evict(String keep) {
+        long maxBytes = compilerConfiguration.getCacheMaxBytes();
+        int maxEntries = compilerConfiguration.getCacheMaxEntries();
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (eldest.hasNext() && (totalBytes > maxBytes || entries.size() > maxEntries)) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(entryPath(entry.getKey()));
+            } catch (IOException e) {
+                log.debug("Failed to evict compile cache entry {}: {}", entry.getKey(), e.getMessage());
+            }
+            totalBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        if (indexLoaded) {
+            return;
+        }
+        indexLoaded = true;
+        if (!Files.isDirectory(cacheDirectory, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(cacheDirectory, 2)) {
+            stream.filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+                    .filter(path -> !path.getFileName().toString().startsWith("."))
+                    .forEach(files::add);
+        }
+        files.sort(Comparator.comparing(this::lastModified));
+        for (Path file : files) {
+            long size = Files.size(file);
+            entries.put(file.getFileName().toString(), size);
+            totalBytes += size;
+        }
+    }
+
+    private FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            log.debug("Failed to update compile cache access time for {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path entryPath(String key) {
+        return cacheDirectory.resolve(key.substring(0, 2)).resolve(key);
+    }
+}
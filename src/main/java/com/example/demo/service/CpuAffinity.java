@@ -0,0 +1,207 @@
+package com.example.demo.service;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.Platform;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * {@code sched_setaffinity} for judged processes. A child inherits the CPU mask of the thread that
+ * forks it, so {@link #spawnPinned} narrows the calling thread to one core around the spawn and
+ * restores it afterwards; both the posix_spawn launcher and {@link ProcessBuilder} fork from the
+ * calling thread. {@link #pinJvmThreads} keeps the JVM's own threads (GC, JIT, stream pumps) off
+ * the cores handed to cases. Work done for cases outside a case slot, such as a prefetched
+ * generator, spawns across all case cores through {@link #onCaseCores} instead, so it does not
+ * land on the JVM's reserved cores either.
+ */
+@Slf4j
+public final class CpuAffinity {
+
+    /** {@code cpu_set_t} holds 1024 CPUs. */
+    private static final int MASK_WORDS = 16;
+    private static final long MASK_BYTES = MASK_WORDS * 8L;
+    private static final LibC LIBC = load();
+    /** {@link #assignedCore()} inside {@link #onCaseCores}: spawn on any of the case cores. */
+    public static final int CASE_CORES = -2;
+
+    private static final ThreadLocal<Integer> ASSIGNED_CORE = new ThreadLocal<>();
+    private static volatile List<Integer> caseCores = List.of();
+
+    private CpuAffinity() {
+    }
+
+    public static boolean isSupported() {
+        return LIBC != null;
+    }
+
+    /**
+     * @return the cores the calling thread may run on, ascending; empty when unsupported
+     */
+    public static List<Integer> allowedCores() {
+        List<Integer> cores = new ArrayList<>();
+        if (LIBC == null) {
+            return cores;
+        }
+        long[] mask = new long[MASK_WORDS];
+        try {
+            LIBC.sched_getaffinity(0, MASK_BYTES, mask);
+        } catch (LastErrorException e) {
+            log.warn("sched_getaffinity failed: errno {}", e.getErrorCode());
+            return cores;
+        }
+        for (int core = 0; core < MASK_WORDS * 64; core++) {
+            if ((mask[core / 64] & (1L << (core % 64))) != 0) {
+                cores.add(core);
+            }
+        }
+        return cores;
+    }
+
+    /**
+     * Restricts every current thread of this JVM to {@code cores}. Threads started later inherit
+     * the mask of the thread that starts them, so they stay there too.
+     *
+     * @return how many threads were pinned
+     */
+    public static int pinJvmThreads(Collection<Integer> cores) {
+        if (LIBC == null || cores.isEmpty()) {
+            return 0;
+        }
+        long[] mask = mask(cores);
+        int pinned = 0;
+        try (Stream<Path> tasks = Files.list(Path.of("/proc/self/task"))) {
+            for (Path task : tasks.toList()) {
+                try {
+                    LIBC.sched_setaffinity(Integer.parseInt(task.getFileName().toString()), MASK_BYTES, mask);
+                    pinned++;
+                } catch (LastErrorException | NumberFormatException e) {
+                    // The thread exited in the meantime.
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list JVM threads for CPU pinning: {}", e.getMessage());
+        }
+        return pinned;
+    }
+
+    /**
+     * @return the core held by the case running on this thread, {@link #CASE_CORES} inside
+     * {@link #onCaseCores}, or {@code -1}
+     */
+    public static int assignedCore() {
+        Integer core = ASSIGNED_CORE.get();
+        return core == null ? -1 : core;
+    }
+
+    static void assign(int core) {
+        if (core < 0) {
+            ASSIGNED_CORE.remove();
+        } else {
+            ASSIGNED_CORE.set(core);
+        }
+    }
+
+    /**
+     * Runs {@code work} so that the processes it spawns through {@link #assignedCore()} may use
+     * any case core. A thread that already holds a case's core keeps it.
+     */
+    public static <T> T onCaseCores(Work<T> work) throws Exception {
+        if (ASSIGNED_CORE.get() != null) {
+            return work.run();
+        }
+        ASSIGNED_CORE.set(CASE_CORES);
+        try {
+            return work.run();
+        } finally {
+            ASSIGNED_CORE.remove();
+        }
+    }
+
+    /**
+     * Records the cores handed to cases, for {@link #CASE_CORES}.
+     */
+    static void useCaseCores(List<Integer> cores) {
+        caseCores = List.copyOf(cores);
+    }
+
+    /**
+     * Runs {@code spawn} with the calling thread pinned to {@code core}, so the child starts there;
+     * {@link #CASE_CORES} pins it to every case core. A negative core, or a mask the kernel
+     * refuses, spawns unpinned.
+     */
+    static <T> T spawnPinned(int core, Spawn<T> spawn) throws IOException {
+        List<Integer> cores = core == CASE_CORES ? caseCores : core < 0 ? List.of() : List.of(core);
+        if (cores.isEmpty() || LIBC == null) {
+            return spawn.start();
+        }
+        long[] previous = new long[MASK_WORDS];
+        try {
+            LIBC.sched_getaffinity(0, MASK_BYTES, previous);
+            LIBC.sched_setaffinity(0, MASK_BYTES, mask(cores));
+        } catch (LastErrorException e) {
+            log.debug("Failed to pin spawning thread to cores {}: errno {}", cores, e.getErrorCode());
+            return spawn.start();
+        }
+        try {
+            return spawn.start();
+        } finally {
+            try {
+                LIBC.sched_setaffinity(0, MASK_BYTES, previous);
+            } catch (LastErrorException e) {
+                log.warn("Failed to restore CPU mask of {}: errno {}", Thread.currentThread().getName(),
+                        e.getErrorCode());
+            }
+        }
+    }
+
+    private static long[] mask(Collection<Integer> cores) {
+        long[] mask = new long[MASK_WORDS];
+        for (int core : cores) {
+            if (core >= 0 && core < MASK_WORDS * 64) {
+                mask[core / 64] |= 1L << (core % 64);
+            }
+        }
+        return mask;
+    }
+
+    private static LibC load() {
+        try {
+            if (!Platform.isLinux()) {
+                return null;
+            }
+            LibC libc = Native.load(Platform.C_LIBRARY_NAME, LibC.class);
+            libc.sched_getaffinity(0, MASK_BYTES, new long[MASK_WORDS]);
+            return libc;
+        } catch (Throwable e) {
+            log.info("CPU affinity unavailable: {}", e.toString());
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T run() throws Exception;
+    }
+
+    @FunctionalInterface
+    interface Spawn<T> {
+        T start() throws IOException;
+    }
+
+    interface LibC extends Library {
+
+        /** {@code pid} 0 or a thread id: affinity is per thread. */
+        int sched_getaffinity(int pid, long size, long[] mask) throws LastErrorException;
+
+        int sched_setaffinity(int pid, long size, long[] mask) throws LastErrorException;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.demo.service;
+
+import com.example.demo.config.ExecutionProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Host-wide pool of CPU slots shared by every running task. One slot is held per in-flight case,
+ * so the processes of concurrent tasks never oversubscribe the cores and skew each other's
+ * timings.
+ *
+ * <p>Each registered task has a fair share of {@code totalSlots * weight / sum(weights)}. A task
+ * may borrow idle slots beyond its share while no other task is waiting below its own share,
+ * which lets a lone task use every core. Borrowed slots are handed back as the borrower's cases
+ * complete; running cases are never preempted.
+ *
+ * <p>With {@code judge.execution.cpu-affinity} every slot is also a physical core: a case claims
+ * a free core for as long as it holds its slot, and the JVM's threads are moved to reserved cores
+ * so GC and stream pumping never share a core with a timed program. Prefetched generators hold
+ * no slot; they spawn across the case cores (see {@link CpuAffinity#onCaseCores}).
+ */
+@Service
+@Slf4j
+public class CpuSlotAllocator {
+
+    private final int totalSlots;
+    private final int interactiveWeight;
+    private final Object monitor = new Object();
+    private final Set<Lease> leases = new LinkedHashSet<>();
+    private int usedSlots;
+    /** Cores handed to cases, empty without affinity; {@code coreBusy[i]} guards {@code cores[i]}. */
+    private final int[] cores;
+    private final boolean[] coreBusy;
+
+    @Autowired
+    public CpuSlotAllocator(ExecutionProperties executionProperties) {
+        this(executionProperties.effectiveCpuSlots(), executionProperties.getInteractiveSlotWeight(),
+                caseCores(executionProperties));
+    }
+
+    public CpuSlotAllocator(int totalSlots, int interactiveWeight) {
+        this(totalSlots, interactiveWeight, List.of());
+    }
+
+    /**
+     * @param cores cores to pin cases to, one per slot; slots beyond {@code cores.size()} are
+     *              dropped. Empty leaves placement to the scheduler.
+     */
+    public CpuSlotAllocator(int totalSlots, int interactiveWeight, List<Integer> cores) {
+        int slots = Math.max(1, totalSlots);
+        this.totalSlots = cores.isEmpty() ? slots : Math.min(slots, cores.size());
+        this.interactiveWeight = Math.max(1, interactiveWeight);
+        this.cores = cores.stream().limit(this.totalSlots).mapToInt(Integer::intValue).toArray();
+        this.coreBusy = new boolean[this.cores.length];
+        if (this.cores.length > 0) {
+            CpuAffinity.useCaseCores(IntStream.of(this.cores).boxed().toList());
+        }
+    }
+
+    public int totalSlots() {
+        return totalSlots;
+    }
+
+    /**
+     * Registers a task. High-volume tasks weigh 1; smaller interactive tasks weigh
+     * {@code judge.execution.interactive-slot-weight} so they finish quickly next to a long run.
+     *
+     * @param maxSlots per-task ceiling on held slots
+     */
+    public Lease register(String taskId, ResolvedTaskPolicy policy, int maxSlots) {
+        return register(taskId, policy.highVolume() ? 1 : interactiveWeight, maxSlots);
+    }
+
+    public Lease register(String taskId, int weight, int maxSlots) {
+        Lease lease = new Lease(taskId, Math.max(1, weight), Math.max(1, Math.min(maxSlots, totalSlots)));
+        synchronized (monitor) {
+            leases.add(lease);
+            monitor.notifyAll();
+        }
+        return lease;
+    }
+
+    public boolean pinsCores() {
+        return cores.length > 0;
+    }
+
+    public Snapshot snapshot() {
+        synchronized (monitor) {
+            List<TaskSlots> tasks = new ArrayList<>(leases.size());
+            for (Lease lease : leases) {
+                tasks.add(new TaskSlots(lease.taskId, lease.weight, lease.used,
+                        lease.closed ? 0 : fairShareLocked(lease), lease.wanting));
+            }
+            return new Snapshot(totalSlots, usedSlots, List.copyOf(tasks));
+        }
+    }
+
+    public record Snapshot(int totalSlots, int usedSlots, List<TaskSlots> tasks) {
+    }
+
+    public record TaskSlots(String taskId, int weight, int usedSlots, int fairShare, boolean waiting) {
+    }
+
+    /**
+     * Splits the allowed cores into reserved ones for the JVM, which are pinned here, and the
+     * rest for cases. Leaves affinity off when it is unsupported or no core would remain.
+     */
+    private static List<Integer> caseCores(ExecutionProperties executionProperties) {
+        if (!executionProperties.isCpuAffinity()) {
+            return List.of();
+        }
+        if (!CpuAffinity.isSupported()) {
+            log.warn("cpu-affinity requested but sched_setaffinity is unavailable; cases are not pinned");
+            return List.of();
+        }
+        List<Integer> allowed = CpuAffinity.allowedCores();
+        int reserved = Math.max(1, executionProperties.getCpuAffinityReservedCores());
+        if (allowed.size() <= reserved) {
+            log.warn("cpu-affinity needs more than {} allowed cores, found {}; cases are not pinned",
+                    reserved, allowed.size());
+            return List.of();
+        }
+        List<Integer> jvmCores = allowed.subList(0, reserved);
+        int pinned = CpuAffinity.pinJvmThreads(jvmCores);
+        List<Integer> caseCores = List.copyOf(allowed.subList(reserved, allowed.size()));
+        log.info("Pinned {} JVM threads to cores {}; cases get exclusive cores {}", pinned, jvmCores, caseCores);
+        return caseCores;
+    }
+
+    private int fairShareLocked(Lease lease) {
+        int totalWeight = 0;
+        for (Lease other : leases) {
+            if (!other.closed) {
+                totalWeight += other.weight;
+            }
+        }
+        int share = (int) ((long) totalSlots * lease.weight / Math.max(1, totalWeight));
+        return Math.max(1, Math.min(lease.maxSlots, share));
+    }
+
+    private boolean canAcquireLocked(Lease lease) {
+        if (usedSlots >= totalSlots || lease.used >= lease.maxSlots) {
+            return false;
+        }
+        if (lease.used < fairShareLocked(lease)) {
+            return true;
+        }
+        for (Lease other : leases) {
+            if (other != lease && !other.closed && other.wanting && other.used < fairShareLocked(other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A task's claim on the pool. Slots are acquired per case and released when the case
+     * finishes, even if the lease has been closed in the meantime.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final String taskId;
+        private final int weight;
+        private final int maxSlots;
+        private int used;
+        /** Set when an acquire attempt failed; blocks other tasks from borrowing until it succeeds. */
+        private boolean wanting;
+        private boolean closed;
+
+        private Lease(String taskId, int weight, int maxSlots) {
+            this.taskId = taskId;
+            this.weight = weight;
+            this.maxSlots = maxSlots;
+        }
+
+        /**
+         * Takes one slot, waiting up to {@code timeoutMillis} for one to become available.
+         */
+        public boolean tryAcquire(long timeoutMillis) throws InterruptedException {
+            long deadline = System.nanoTime() + Math.max(0, timeoutMillis) * 1_000_000L;
+            synchronized (monitor) {
+                while (!closed && !canAcquireLocked(this)) {
+                    long remainingMillis = (deadline - System.nanoTime()) / 1_000_000L;
+                    if (remainingMillis <= 0) {
+                        wanting = true;
+                        return false;
+                    }
+                    wanting = true;
+                    monitor.wait(remainingMillis);
+                }
+                if (closed) {
+                    return false;
+                }
+                wanting = false;
+                used++;
+                usedSlots++;
+                return true;
+            }
+        }
+
+        /**
+         * Claims a free core for a case that holds one of this lease's slots.
+         *
+         * @return the core, or {@code -1} when cores are not pinned
+         */
+        public int claimCore() {
+            synchronized (monitor) {
+                for (int i = 0; i < cores.length; i++) {
+                    if (!coreBusy[i]) {
+                        coreBusy[i] = true;
+                        return cores[i];
+                    }
+                }
+                return -1;
+            }
+        }
+
+        public void releaseCore(int core) {
+            if (core < 0) {
+                return;
+            }
+            synchronized (monitor) {
+                for (int i = 0; i < cores.length; i++) {
+                    if (cores[i] == core) {
+                        coreBusy[i] = false;
+                        return;
+                    }
+                }
+            }
+        }
+
+        public void release() {
+            synchronized (monitor) {
+                if (used == 0) {
+                    return;
+                }
+                used--;
+                usedSlots--;
+                if (closed && used == 0) {
+                    leases.remove(this);
+                }
+                monitor.notifyAll();
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (monitor) {
+                closed = true;
+                if (used == 0) {
+                    leases.remove(this);
+                }
+                monitor.notifyAll();
+            }
+        }
+    }
+}
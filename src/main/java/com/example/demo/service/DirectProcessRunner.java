@@ -1,14 +1,17 @@
 package com.example.demo.service;
 
+import com.example.demo.config.AsyncConfig;
 import com.example.demo.exception.MemoryLimitExceededException;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -17,101 +20,280 @@ import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class DirectProcessRunner implements ProcessRunner {
 
     private static final String TRUSTED_LOCAL = "trusted-local";
     private static final int BUFFER_SIZE = 8192;
+    private static final long OUTPUT_WATCH_INTERVAL_MILLIS = 10;
+    /** Stats redirected output files of processes without an RLIMIT_FSIZE; one thread for all. */
+    private static final ScheduledExecutorService OUTPUT_WATCHER = Executors.newSingleThreadScheduledExecutor(
+            daemonThreads("output-watcher-"));
+    private static volatile Executor defaultIoExecutor;
 
     private final MemoryMonitorService memoryMonitorService;
+    /** Reaps with wait4 for exact CPU time and peak RSS; {@code null} falls back to ProcessBuilder. */
+    private final NativeProcessLauncher nativeLauncher;
+    private final Executor ioExecutor;
+
+    @Autowired
+    public DirectProcessRunner(
+            MemoryMonitorService memoryMonitorService,
+            @Qualifier(AsyncConfig.PROCESS_IO_EXECUTOR) Executor ioExecutor
+    ) {
+        this(memoryMonitorService, NativeProcessLauncher.load(), ioExecutor);
+    }
+
+    public DirectProcessRunner(MemoryMonitorService memoryMonitorService) {
+        this(memoryMonitorService, NativeProcessLauncher.load());
+    }
+
+    public DirectProcessRunner(MemoryMonitorService memoryMonitorService, NativeProcessLauncher nativeLauncher) {
+        this(memoryMonitorService, nativeLauncher, defaultIoExecutor());
+    }
+
+    public DirectProcessRunner(MemoryMonitorService memoryMonitorService, NativeProcessLauncher nativeLauncher,
+                               Executor ioExecutor) {
+        this.memoryMonitorService = memoryMonitorService;
+        this.nativeLauncher = nativeLauncher;
+        this.ioExecutor = ioExecutor;
+    }
+
+    @Override
+    public boolean supportsBufferedIo() {
+        return true;
+    }
 
     @Override
     public ProcessResult run(Request request) throws IOException, InterruptedException {
+        return run(request, ProcessTree.DESCENDANTS);
+    }
+
+    /**
+     * Runs the request with {@code tree} deciding how the process is launched, killed and
+     * accounted for.
+     */
+    ProcessResult run(Request request, ProcessTree tree) throws IOException, InterruptedException {
         ProcessResult validationFailure = validate(request);
         if (validationFailure != null) {
             return validationFailure;
         }
+        CancellationToken cancellationToken = request.cancellationToken();
+        if (cancellationToken != null && cancellationToken.isCancellationRequested()) {
+            return ProcessResult.failure(ProcessResult.Status.CANCELLED, "Cancelled before start");
+        }
 
         long started = System.nanoTime();
-        ProcessBuilder processBuilder = new ProcessBuilder(request.command());
+        Process process = start(request, tree);
+        CancellationToken.Registration cancellation = cancellationToken == null
+                ? null
+                : cancellationToken.onCancel(() -> tree.kill(process));
+        try {
+            return awaitProcess(request, tree, process, started);
+        } finally {
+            if (cancellation != null) {
+                cancellation.close();
+            }
+        }
+    }
+
+    /**
+     * The namespace launcher sets a sandboxed command's kernel limits itself, so only other
+     * commands are put behind {@code prlimit}.
+     */
+    private Process start(Request request, ProcessTree tree) throws IOException {
+        List<String> command = tree.launchCommand(request.kernelLimits() == null || NamespaceSandbox.isSandboxed(request.command())
+                ? request.command()
+                : request.kernelLimits().wrap(request.command()));
+        return CpuAffinity.spawnPinned(request.cpuCore(), () -> spawn(request, command));
+    }
+
+    private Process spawn(Request request, List<String> command) throws IOException {
+        if (nativeLauncher != null) {
+            return nativeLauncher.start(command, request.workingDirectory(), request.inputFile(), request.outputFile());
+        }
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
         processBuilder.directory(request.workingDirectory().toFile());
         if (request.inputFile() != null) {
             processBuilder.redirectInput(request.inputFile().toFile());
         }
+        if (request.outputFile() != null) {
+            processBuilder.redirectOutput(request.outputFile().toFile());
+        }
+        return processBuilder.start();
+    }
 
-        Process process = processBuilder.start();
+    private ProcessResult awaitProcess(Request request, ProcessTree tree, Process process, long started)
+            throws InterruptedException {
         AtomicReference<MemoryLimitExceededException> memoryExceeded = new AtomicReference<>();
-        CompletableFuture<MemoryMonitorService.MemoryUsage> memoryFuture =
-                memoryMonitorService.monitorProcess(process, request.memoryLimitBytes());
+        // wait4 cannot report a peak below the JVM's own, so sampling runs even under an address
+        // space cap or a cgroup's memory.max.
+        boolean kernelMemoryLimit = request.kernelLimits() != null
+                && request.kernelLimits().addressSpaceBytes() > 0
+                && process instanceof NativeProcessLauncher.NativeProcess;
+        // A sandboxed command runs below the launcher, whose own RSS says nothing about it.
+        CompletableFuture<MemoryMonitorService.MemoryUsage> memoryFuture = memoryMonitorService.monitorProcess(
+                process, request.memoryLimitBytes(),
+                NamespaceSandbox.isSandboxed(request.command()) ? NamespaceSandbox.COMMAND_DEPTH : 0);
         memoryFuture.whenComplete((usage, throwable) -> {
             MemoryLimitExceededException exceeded = unwrapMemoryExceeded(throwable);
             if (exceeded != null) {
                 memoryExceeded.compareAndSet(null, exceeded);
-                killProcessTree(process, request.killGrace());
+                killProcessTree(tree, process, request.killGrace());
             }
         });
 
-        CompletableFuture<StreamCapture> stdout = CompletableFuture.supplyAsync(() ->
-                captureStream(process.getInputStream(), request.outputFile(), request.maxOutputBytes(), process, request.killGrace()));
+        CompletableFuture<Void> stdin = request.inputBuffer() == null
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.runAsync(() -> feedInput(request.inputBuffer(), process), ioExecutor);
+        OutputFileWatch outputWatch = request.outputFile() == null ? null : watchOutputFile(request, tree, process);
+        CompletableFuture<StreamCapture> stdout = outputWatch != null
+                ? outputWatch.result
+                : CompletableFuture.supplyAsync(() -> captureStream(process.getInputStream(), request.outputBuffer(),
+                        request.maxOutputBytes(), 0, tree, process, request.killGrace()), ioExecutor);
         CompletableFuture<StreamCapture> stderr = CompletableFuture.supplyAsync(() ->
-                captureStream(process.getErrorStream(), null, request.maxErrorBytes(), process, request.killGrace()));
+                captureStream(process.getErrorStream(), null, request.maxErrorBytes(), request.errorCaptureBytes(),
+                        tree, process, request.killGrace()),
+                ioExecutor);
 
         boolean finished = process.waitFor(request.timeout().toMillis(), TimeUnit.MILLISECONDS);
         long executionTime = Duration.ofNanos(System.nanoTime() - started).toMillis();
+        awaitInputFeed(stdin, finished ? request.killGrace() : Duration.ZERO);
+        if (request.cancellationToken() != null && request.cancellationToken().isCancellationRequested()) {
+            killProcessTree(tree, process, request.killGrace());
+            Usage usage = usage(process, executionTime, memoryFuture);
+            return new ProcessResult(
+                    ProcessResult.Status.CANCELLED,
+                    awaitCapture(stdout, request.killGrace()).content(),
+                    awaitCapture(stderr, request.killGrace()).content(),
+                    usage.wallTime(),
+                    usage.memory(),
+                    safeExitValue(process),
+                    usage.cpuTime()
+            );
+        }
         if (!finished) {
-            boolean cleaned = killProcessTree(process, request.killGrace());
+            boolean cleaned = killProcessTree(tree, process, request.killGrace());
             StreamCapture error = awaitCapture(stderr, request.killGrace());
             String cleanupError = cleaned ? "" : " Process timed out and could not be fully terminated.";
+            Usage usage = usage(process, executionTime, memoryFuture);
             return new ProcessResult(
                     ProcessResult.Status.TIME_LIMIT_EXCEEDED,
                     awaitCapture(stdout, request.killGrace()).content(),
                     error.content() + cleanupError,
-                    executionTime,
-                    peakMemory(memoryFuture),
-                    -1
+                    usage.wallTime(),
+                    usage.memory(),
+                    -1,
+                    usage.cpuTime()
             );
         }
 
         StreamCapture output = awaitCapture(stdout, request.killGrace());
         StreamCapture error = awaitCapture(stderr, request.killGrace());
+        Usage usage = usage(process, executionTime, memoryFuture);
         MemoryLimitExceededException exceeded = memoryExceeded.get();
         if (exceeded != null) {
             return new ProcessResult(
                     ProcessResult.Status.MEMORY_LIMIT_EXCEEDED,
                     output.content(),
                     "Memory limit exceeded: " + exceeded.getMessage(),
-                    executionTime,
-                    exceeded.getCurrentUsage(),
-                    safeExitValue(process)
+                    usage.wallTime(),
+                    Math.max(exceeded.getCurrentUsage(), usage.memory()),
+                    safeExitValue(process),
+                    usage.cpuTime()
             );
         }
 
+        int exitCode = safeExitValue(process);
+        ProcessResult.Status kernelVerdict = kernelVerdict(request, exitCode, usage, error.content(), kernelMemoryLimit);
+        if (kernelVerdict != null) {
+            return new ProcessResult(kernelVerdict, output.content(), error.content(), usage.wallTime(), usage.memory(),
+                    exitCode, usage.cpuTime());
+        }
+
         if (output.limitExceeded() || error.limitExceeded()) {
             return new ProcessResult(
                     ProcessResult.Status.OUTPUT_LIMIT_EXCEEDED,
                     output.content(),
                     error.content(),
-                    executionTime,
-                    peakMemory(memoryFuture),
-                    safeExitValue(process)
+                    usage.wallTime(),
+                    usage.memory(),
+                    exitCode,
+                    usage.cpuTime()
             );
         }
 
-        int exitCode = safeExitValue(process);
         ProcessResult.Status status = exitCode == 0
                 ? ProcessResult.Status.SUCCESS
                 : ProcessResult.Status.RUNTIME_ERROR;
-        return new ProcessResult(status, output.content(), error.content(), executionTime, peakMemory(memoryFuture), exitCode);
+        if (exceedsCpuTimeLimit(request, usage)) {
+            status = ProcessResult.Status.TIME_LIMIT_EXCEEDED;
+        }
+        return new ProcessResult(status, output.content(), error.content(), usage.wallTime(), usage.memory(), exitCode,
+                usage.cpuTime());
+    }
+
+    /**
+     * Prefers the wait4 figures of a natively launched process over the JVM-side clock. Its peak
+     * RSS only raises the sampled peak: it is 0 when the kernel could not separate it from the
+     * JVM's own.
+     */
+    private Usage usage(Process process, long executionTime,
+                        CompletableFuture<MemoryMonitorService.MemoryUsage> memoryFuture) {
+        long sampledPeak = peakMemory(memoryFuture);
+        if (process instanceof NativeProcessLauncher.NativeProcess nativeProcess) {
+            NativeProcessLauncher.ResourceUsage resourceUsage = nativeProcess.resourceUsage();
+            if (resourceUsage != null) {
+                return new Usage(resourceUsage.wallTimeMillis(), resourceUsage.cpuTimeMillis(),
+                        Math.max(sampledPeak, resourceUsage.maxRssBytes()));
+            }
+        }
+        return new Usage(executionTime, -1, sampledPeak);
+    }
+
+    /**
+     * Verdict for a process stopped by one of its kernel limits. A wait4 peak RSS above the memory
+     * limit that the sampler missed between two samples is memory limit exceeded even if the
+     * process finished.
+     */
+    private static ProcessResult.Status kernelVerdict(Request request, int exitCode, Usage usage, String stderr,
+                                                      boolean kernelMemoryLimit) {
+        if (request.kernelLimits() == null) {
+            return null;
+        }
+        ProcessResult.Status status = request.kernelLimits().classify(exitCode, usage.cpuTime(), usage.memory(),
+                request.memoryLimitBytes(), stderr);
+        if (status == null && kernelMemoryLimit && usage.memory() > request.memoryLimitBytes()) {
+            status = ProcessResult.Status.MEMORY_LIMIT_EXCEEDED;
+        }
+        return status;
+    }
+
+    /**
+     * Without a CPU measurement the wall time stands in for it, which never under-reports.
+     */
+    private static boolean exceedsCpuTimeLimit(Request request, Usage usage) {
+        if (request.cpuTimeLimit() == null) {
+            return false;
+        }
+        long spent = usage.cpuTime() >= 0 ? usage.cpuTime() : usage.wallTime();
+        return spent > request.cpuTimeLimit().toMillis();
     }
 
     private ProcessResult validate(Request request) {
-        if (!TRUSTED_LOCAL.equals(request.profile())) {
+        if (!TRUSTED_LOCAL.equals(request.profile()) && !NamespaceSandbox.isSandboxed(request.command())) {
             return ProcessResult.failure(
                     ProcessResult.Status.SECURITY_VIOLATION,
                     "Direct process execution is only allowed for trusted-local profile"
@@ -123,6 +305,12 @@ public class DirectProcessRunner implements ProcessRunner {
         if (request.workingDirectory() == null || !Files.isDirectory(request.workingDirectory())) {
             return ProcessResult.failure(ProcessResult.Status.SECURITY_VIOLATION, "Invalid working directory");
         }
+        if (request.inputFile() != null && request.inputBuffer() != null) {
+            return ProcessResult.failure(ProcessResult.Status.RUNTIME_ERROR, "Process input must be either a file or a buffer");
+        }
+        if (request.outputFile() != null && request.outputBuffer() != null) {
+            return ProcessResult.failure(ProcessResult.Status.RUNTIME_ERROR, "Process output must be either a file or a buffer");
+        }
         if (request.inputFile() != null && !Files.isRegularFile(request.inputFile())) {
             return ProcessResult.failure(ProcessResult.Status.SECURITY_VIOLATION, "Input file is not readable");
         }
@@ -136,31 +324,81 @@ public class DirectProcessRunner implements ProcessRunner {
         return null;
     }
 
+    private void feedInput(CaseDataBuffer inputBuffer, Process process) {
+        try (InputStream in = inputBuffer.openInputStream();
+             OutputStream out = process.getOutputStream()) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            // The child closed stdin early or was killed; its exit status decides the verdict.
+            log.debug("Stopped feeding process input: {}", e.getMessage());
+        }
+    }
+
+    private void awaitInputFeed(CompletableFuture<Void> stdin, Duration grace) {
+        try {
+            stdin.get(Math.max(1, grace.toMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ignored) {
+            // A stuck writer is released when the process tree is killed below.
+        }
+    }
+
+    /**
+     * Stdout goes straight to the output file, so its size is the only thing left to police. A
+     * kernel file size limit stops the process by itself; otherwise the shared watcher stats the
+     * file and kills the tree once it passes the limit. Either way the file is cut back to the
+     * limit afterwards.
+     */
+    private OutputFileWatch watchOutputFile(Request request, ProcessTree tree, Process process) {
+        OutputFileWatch watch = new OutputFileWatch(request.outputFile(), request.maxOutputBytes());
+        boolean kernelFileLimit = request.kernelLimits() != null && request.kernelLimits().fileSizeBytes() > 0;
+        if (!kernelFileLimit) {
+            watch.watcher = OUTPUT_WATCHER.scheduleWithFixedDelay(() -> {
+                if (watch.overLimit()) {
+                    watch.exceeded.set(true);
+                    tree.kill(process);
+                }
+            }, OUTPUT_WATCH_INTERVAL_MILLIS, OUTPUT_WATCH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        process.onExit().thenRun(watch::finish);
+        return watch;
+    }
+
+    /**
+     * Copies a stream into {@code outputBuffer}, or into memory when there is none, killing the
+     * tree once it passes {@code maxBytes}. With a positive {@code retainBytes} only the head and
+     * tail of an in-memory capture are kept within that budget.
+     */
     private StreamCapture captureStream(
             InputStream inputStream,
-            Path outputFile,
+            CaseDataBuffer outputBuffer,
             long maxBytes,
+            long retainBytes,
+            ProcessTree tree,
             Process process,
             Duration killGrace
     ) {
         long limit = Math.max(0, maxBytes);
         long total = 0;
         boolean limitExceeded = false;
-        ByteArrayOutputStream memory = outputFile == null ? new ByteArrayOutputStream((int) Math.min(limit, 8192)) : null;
+        boolean inMemory = outputBuffer == null;
+        OutputStream memory = !inMemory
+                ? null
+                : retainBytes > 0
+                ? new HeadTailCapture(Math.min(retainBytes, limit))
+                : new ByteArrayOutputStream((int) Math.min(limit, 8192));
         try (InputStream in = inputStream;
-             OutputStream out = outputFile == null
+             OutputStream out = inMemory
                      ? memory
-                     : Files.newOutputStream(outputFile,
-                             StandardOpenOption.CREATE,
-                             StandardOpenOption.TRUNCATE_EXISTING,
-                             StandardOpenOption.WRITE)) {
+                     : outputBuffer.openOutputStream()) {
             byte[] buffer = new byte[BUFFER_SIZE];
             int read;
             while ((read = in.read(buffer)) != -1) {
                 long remaining = limit - total;
                 if (remaining <= 0) {
                     limitExceeded = true;
-                    killProcessTree(process, killGrace);
+                    killProcessTree(tree, process, killGrace);
                     break;
                 }
                 int toWrite = (int) Math.min(read, remaining);
@@ -168,15 +406,22 @@ public class DirectProcessRunner implements ProcessRunner {
                 total += toWrite;
                 if (toWrite < read) {
                     limitExceeded = true;
-                    killProcessTree(process, killGrace);
+                    killProcessTree(tree, process, killGrace);
                     break;
                 }
             }
         } catch (IOException e) {
             log.warn("Failed to capture process stream: {}", e.getMessage());
-            return new StreamCapture(memory == null ? "" : memory.toString(StandardCharsets.UTF_8), true);
+            return new StreamCapture(render(memory), true);
         }
-        return new StreamCapture(memory == null ? "" : memory.toString(StandardCharsets.UTF_8), limitExceeded);
+        return new StreamCapture(render(memory), limitExceeded);
+    }
+
+    private static String render(OutputStream memory) {
+        if (memory instanceof ByteArrayOutputStream bytes) {
+            return bytes.toString(StandardCharsets.UTF_8);
+        }
+        return memory == null ? "" : memory.toString();
     }
 
     private StreamCapture awaitCapture(CompletableFuture<StreamCapture> capture, Duration grace) {
@@ -224,24 +469,122 @@ public class DirectProcessRunner implements ProcessRunner {
         }
     }
 
-    private static boolean killProcessTree(Process process, Duration grace) {
+    private static boolean killProcessTree(ProcessTree tree, Process process, Duration grace) {
+        tree.kill(process);
+        try {
+            process.waitFor(Math.max(1, grace.toMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !process.isAlive();
+    }
+
+    /**
+     * Sends SIGKILL to the process and its descendants without waiting, so it is safe to call from
+     * a cancellation callback; the thread running the process observes the exit.
+     */
+    static void destroyProcessTree(Process process) {
         process.descendants().forEach(handle -> {
             try {
                 handle.destroyForcibly();
             } catch (Exception ignored) {
-                // The result below reports if the process is still alive.
+                // The waiting thread reports if the process is still alive.
             }
         });
         process.destroyForcibly();
-        try {
-            process.waitFor(Math.max(1, grace.toMillis()), TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return false;
+    }
+
+    /**
+     * How a process and everything it spawns is launched, killed and accounted for. The default
+     * walks {@link Process#descendants()}; {@link CgroupProcessRunner} confines the tree to a
+     * cgroup instead.
+     */
+    interface ProcessTree {
+
+        ProcessTree DESCENDANTS = new ProcessTree() {
+        };
+
+        default List<String> launchCommand(List<String> command) {
+            return command;
+        }
+
+        /**
+         * Kills the whole tree without waiting; safe to call from a cancellation callback.
+         */
+        default void kill(Process process) {
+            destroyProcessTree(process);
         }
-        return !process.isAlive();
     }
 
     private record StreamCapture(String content, boolean limitExceeded) {
     }
+
+    private static final class OutputFileWatch {
+
+        private final Path file;
+        private final long maxBytes;
+        private final AtomicBoolean exceeded = new AtomicBoolean();
+        private final CompletableFuture<StreamCapture> result = new CompletableFuture<>();
+        private volatile ScheduledFuture<?> watcher;
+
+        private OutputFileWatch(Path file, long maxBytes) {
+            this.file = file;
+            this.maxBytes = Math.max(0, maxBytes);
+        }
+
+        private boolean overLimit() {
+            try {
+                return Files.size(file) > maxBytes;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Stops watching once the process has exited and truncates an oversized file to the limit.
+         */
+        private void finish() {
+            ScheduledFuture<?> scheduled = watcher;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            boolean limitExceeded = exceeded.get();
+            if (overLimit()) {
+                limitExceeded = true;
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(maxBytes);
+                } catch (IOException e) {
+                    log.warn("Failed to truncate oversized output {}: {}", file, e.getMessage());
+                }
+            }
+            result.complete(new StreamCapture("", limitExceeded));
+        }
+    }
+
+    private static Executor defaultIoExecutor() {
+        Executor executor = defaultIoExecutor;
+        if (executor == null) {
+            synchronized (DirectProcessRunner.class) {
+                executor = defaultIoExecutor;
+                if (executor == null) {
+                    executor = Executors.newCachedThreadPool(daemonThreads("process-io-"));
+                    defaultIoExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record Usage(long wallTime, long cpuTime, long memory) {
+    }
 }
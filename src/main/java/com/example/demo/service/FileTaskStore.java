@@ -399,6 +399,9 @@ public class FileTaskStore implements TaskStore {
         copy.setSandboxRunHandle(task.getSandboxRunHandle());
         copy.setOwnership(task.getOwnership());
         copy.setWorkDir(Path.of(task.getWorkDir()).toAbsolutePath().normalize().toString());
+        copy.setGeneratorSeed(task.getGeneratorSeed());
+        copy.setBulkGenerator(task.isBulkGenerator());
+        copy.setMultiTestPackSize(task.getMultiTestPackSize());
         copy.setCreatedAt(task.getCreatedAt());
         copy.setStartedAt(task.getStartedAt());
         copy.setFinishedAt(task.getFinishedAt());
@@ -0,0 +1,204 @@
+package com.example.demo.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Producer stage of a task's cases: runs the generator for up to {@code depth} cases ahead of the
+ * highest case taken so far, with at most {@code concurrency} generators in flight, while case
+ * slots run the user program and oracle on inputs that are already there. When generation
+ * dominates and the solution is cheap, the slots no longer wait for the generator of their own
+ * case.
+ *
+ * <p>Generators run on the executor the cases run on, sharing its threads and process I/O pumps
+ * instead of adding threads beside them. Producer jobs hold no CPU slot or core of their own:
+ * waiting for a slot could deadlock against cases that hold one while waiting for their input.
+ * The caller decides where their processes run. A case taken before
+ * its generator started (out of order, with a depth of zero, or while the executor is busy with
+ * cases) is produced on the taking thread, so a case never waits for a generator queued behind
+ * itself.
+ *
+ * <p>Cases are scheduled in ascending order, which is the order the dispatcher hands them out.
+ * Inputs produced but never taken, because the task stopped early, are passed to the discard
+ * callback on {@link #close()}.
+ */
+public final class GeneratorPrefetcher<T> implements AutoCloseable {
+
+    private final int totalCases;
+    private final int depth;
+    private final int concurrency;
+    private final Executor executor;
+    private final Producer<T> producer;
+    private final Consumer<T> discard;
+    private final Map<Integer, Job> pending = new ConcurrentHashMap<>();
+    /** Scheduled jobs in case order; a job claimed by its case is skipped. */
+    private final Deque<Job> queue = new ArrayDeque<>();
+    private final Object monitor = new Object();
+    private int nextToSchedule = 1;
+    private int inFlight;
+    private boolean closed;
+
+    public GeneratorPrefetcher(int totalCases, int depth, int concurrency, Executor executor, Producer<T> producer,
+                               Consumer<T> discard) {
+        this.totalCases = totalCases;
+        this.depth = Math.max(0, depth);
+        this.concurrency = Math.max(1, concurrency);
+        this.executor = executor;
+        this.producer = producer;
+        this.discard = discard;
+    }
+
+    /**
+     * Starts producing the first {@code depth} cases before any slot asks for them.
+     */
+    public void start() {
+        synchronized (monitor) {
+            scheduleThroughLocked(depth);
+        }
+    }
+
+    /**
+     * Returns the input of {@code caseNumber}, waiting for its generator if it is still running,
+     * and tops the window up behind it.
+     *
+     * @throws Exception whatever the producer threw for this case
+     */
+    public T take(int caseNumber) throws Exception {
+        Job job;
+        synchronized (monitor) {
+            if (closed) {
+                throw new CancellationException("Generator prefetch closed");
+            }
+            scheduleThroughLocked(caseNumber + depth);
+            job = pending.remove(caseNumber);
+            if (job == null) {
+                job = new Job(caseNumber);
+            }
+        }
+        if (job.claim()) {
+            job.produce();
+        }
+        try {
+            return job.future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause()
+                    : e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops scheduling and discards every input that was produced but not taken. Generators
+     * already running finish and their inputs are discarded as they complete.
+     */
+    @Override
+    public void close() {
+        synchronized (monitor) {
+            closed = true;
+            queue.clear();
+        }
+        for (Job job : pending.values()) {
+            if (!job.claim()) {
+                job.future.whenComplete((input, failure) -> {
+                    if (input != null) {
+                        discard.accept(input);
+                    }
+                });
+            }
+        }
+        pending.clear();
+    }
+
+    private void scheduleThroughLocked(int lastCase) {
+        int last = Math.min(totalCases, lastCase);
+        while (nextToSchedule <= last) {
+            int caseNumber = nextToSchedule++;
+            if (!pending.containsKey(caseNumber)) {
+                Job job = new Job(caseNumber);
+                pending.put(caseNumber, job);
+                queue.add(job);
+            }
+        }
+        dispatchLocked();
+    }
+
+    private void dispatchLocked() {
+        while (!closed && inFlight < concurrency && !queue.isEmpty()) {
+            inFlight++;
+            try {
+                executor.execute(this::produceNext);
+            } catch (RuntimeException e) {
+                // Rejected: the queued cases are produced by the threads that take them.
+                inFlight--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Produces one queued case, then hands the executor thread back so cases of other tasks
+     * queued meanwhile are not held up behind this task's generators.
+     */
+    private void produceNext() {
+        try {
+            Job job;
+            synchronized (monitor) {
+                do {
+                    job = closed ? null : queue.poll();
+                } while (job != null && !job.claim());
+            }
+            if (job != null) {
+                job.produce();
+            }
+        } finally {
+            synchronized (monitor) {
+                inFlight--;
+                dispatchLocked();
+            }
+        }
+    }
+
+    /** One case's generator run; whoever claims it first, a producer or the taking case, runs it. */
+    private final class Job {
+        private final int caseNumber;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Job(int caseNumber) {
+            this.caseNumber = caseNumber;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        void produce() {
+            try {
+                future.complete(producer.produce(caseNumber));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(e);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Producer<T> {
+        T produce(int caseNumber) throws Exception;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Keeps the first and last bytes written to it within a fixed budget, plus the total count. The
+ * start of a diagnostic stream names the first error and the end shows how the process died, so
+ * that is what survives; the middle is replaced by a marker saying how much was dropped. Memory
+ * grows with what is written, up to the budget.
+ */
+public final class HeadTailCapture extends OutputStream {
+
+    public static final int DEFAULT_BUDGET = 64 * 1024;
+    /** Room kept free for the omission marker so the rendered text never exceeds the budget. */
+    private static final int MARKER_RESERVE = 64;
+    /** Below this a tail is not worth the marker; the capture keeps only the head. */
+    private static final int MIN_SPLIT_BUDGET = 4 * MARKER_RESERVE;
+
+    private final int headCapacity;
+    private final int tailCapacity;
+    private byte[] head = new byte[0];
+    private int headLength;
+    private byte[] tail;
+    private int tailPosition;
+    private long total;
+
+    public HeadTailCapture(long budget) {
+        int bytes = (int) Math.max(0, Math.min(Integer.MAX_VALUE - 8, budget));
+        if (bytes < MIN_SPLIT_BUDGET) {
+            headCapacity = bytes;
+            tailCapacity = 0;
+        } else {
+            headCapacity = (bytes - MARKER_RESERVE) / 2;
+            tailCapacity = bytes - MARKER_RESERVE - headCapacity;
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        total += length;
+        int toHead = Math.min(length, headCapacity - headLength);
+        if (toHead > 0) {
+            if (headLength + toHead > head.length) {
+                head = Arrays.copyOf(head, (int) Math.min(headCapacity, Math.max(headLength + toHead, 2L * head.length)));
+            }
+            System.arraycopy(bytes, offset, head, headLength, toHead);
+            headLength += toHead;
+            offset += toHead;
+            length -= toHead;
+        }
+        if (length <= 0 || tailCapacity == 0) {
+            return;
+        }
+        if (tail == null) {
+            tail = new byte[tailCapacity];
+        }
+        if (length >= tailCapacity) {
+            System.arraycopy(bytes, offset + length - tailCapacity, tail, 0, tailCapacity);
+            tailPosition = 0;
+            return;
+        }
+        int first = Math.min(length, tailCapacity - tailPosition);
+        System.arraycopy(bytes, offset, tail, tailPosition, first);
+        System.arraycopy(bytes, offset + first, tail, 0, length - first);
+        tailPosition = (tailPosition + length) % tailCapacity;
+    }
+
+    public long totalBytes() {
+        return total;
+    }
+
+    public boolean truncated() {
+        return total > headLength + tailLength();
+    }
+
+    /**
+     * Renders the capture as UTF-8, with a marker in place of the dropped middle. Characters cut
+     * at either edge are dropped rather than rendered as replacement characters.
+     */
+    @Override
+    public String toString() {
+        byte[] tailBytes = tailBytes();
+        if (!truncated()) {
+            return new String(concat(head, headLength, tailBytes), StandardCharsets.UTF_8);
+        }
+        int headEnd = completeUtf8Prefix(head, headLength);
+        int tailStart = firstUtf8Boundary(tailBytes);
+        long omitted = total - headEnd - (tailBytes.length - tailStart);
+        String marker = tailCapacity == 0 ? "" : "\n... [" + omitted + " bytes omitted] ...\n";
+        return new String(head, 0, headEnd, StandardCharsets.UTF_8)
+                + marker
+                + new String(tailBytes, tailStart, tailBytes.length - tailStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the head and tail of a file without loading the rest of it.
+     */
+    public static String readFile(Path file, long budget) throws IOException {
+        HeadTailCapture capture = new HeadTailCapture(budget);
+        try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+            long length = in.length();
+            byte[] headBytes = new byte[(int) Math.min(length, capture.headCapacity)];
+            in.readFully(headBytes);
+            capture.write(headBytes, 0, headBytes.length);
+            long remaining = length - headBytes.length;
+            long skipped = Math.max(0, remaining - capture.tailCapacity);
+            byte[] tailBytes = new byte[(int) (remaining - skipped)];
+            in.seek(headBytes.length + skipped);
+            in.readFully(tailBytes);
+            capture.total += skipped;
+            capture.write(tailBytes, 0, tailBytes.length);
+        }
+        return capture.toString();
+    }
+
+    private int tailLength() {
+        if (tail == null) {
+            return 0;
+        }
+        return (int) Math.min(tailCapacity, total - headLength);
+    }
+
+    private byte[] tailBytes() {
+        int length = tailLength();
+        byte[] bytes = new byte[length];
+        if (length == 0) {
+            return bytes;
+        }
+        if (length < tailCapacity) {
+            System.arraycopy(tail, 0, bytes, 0, length);
+        } else {
+            System.arraycopy(tail, tailPosition, bytes, 0, tailCapacity - tailPosition);
+            System.arraycopy(tail, 0, bytes, tailCapacity - tailPosition, tailPosition);
+        }
+        return bytes;
+    }
+
+    private static byte[] concat(byte[] first, int firstLength, byte[] second) {
+        byte[] bytes = Arrays.copyOf(first, firstLength + second.length);
+        System.arraycopy(second, 0, bytes, firstLength, second.length);
+        return bytes;
+    }
+
+    /** Length of {@code bytes} without a trailing, incomplete UTF-8 sequence. */
+    private static int completeUtf8Prefix(byte[] bytes, int length) {
+        int start = length;
+        while (start > 0 && start > length - 4 && (bytes[start - 1] & 0xC0) == 0x80) {
+            start--;
+        }
+        if (start == 0) {
+            return length;
+        }
+        int lead = bytes[start - 1] & 0xFF;
+        int expected = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        return length - (start - 1) >= expected ? length : start - 1;
+    }
+
+    /** Index of the first byte that starts a UTF-8 character. */
+    private static int firstUtf8Boundary(byte[] bytes) {
+        int index = 0;
+        while (index < bytes.length && index < 3 && (bytes[index] & 0xC0) == 0x80) {
+            index++;
+        }
+        return index;
+    }
+}
@@ -6,7 +6,8 @@ import com.example.demo.dto.JudgeProgressEvent;
 import com.example.demo.dto.TestCaseDetail;
 import com.example.demo.dto.TestCaseResult;
 import com.example.demo.model.JudgeTask;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
@@ -20,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -27,7 +29,7 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class JudgeFileService {
 
     private static final Pattern SAFE_ENTRY_NAME = Pattern.compile("[1-9][0-9]*\\.(in|out|ans)");
@@ -35,6 +37,22 @@ public class JudgeFileService {
 
     private final TaskStore taskStore;
     private final ExecutionProperties executionProperties;
+    private final Optional<CaseRegenerator> caseRegenerator;
+
+    public JudgeFileService(TaskStore taskStore, ExecutionProperties executionProperties) {
+        this(taskStore, executionProperties, Optional.empty());
+    }
+
+    @Autowired
+    public JudgeFileService(
+            TaskStore taskStore,
+            ExecutionProperties executionProperties,
+            Optional<CaseRegenerator> caseRegenerator
+    ) {
+        this.taskStore = taskStore;
+        this.executionProperties = executionProperties;
+        this.caseRegenerator = caseRegenerator == null ? Optional.empty() : caseRegenerator;
+    }
 
     public TestCaseDetail getTestCaseDetails(String judgeId, int caseNumber) throws IOException {
         JudgeTask task = requireTask(judgeId);
@@ -42,6 +60,7 @@ public class JudgeFileService {
         Path workDir = requireWorkDir(task);
 
         Path inputFile = caseFile(workDir, caseNumber, ".in");
+        regenerateIfMissing(task, workDir, caseNumber, inputFile);
         Path userOutputFile = caseFile(workDir, caseNumber, ".out");
         Path correctOutputFile = caseFile(workDir, caseNumber, ".ans");
         long maxBytes = detailLimit(task);
@@ -62,7 +81,9 @@ public class JudgeFileService {
     public Path getTestCaseInputFile(String judgeId, int caseNumber) throws IOException {
         JudgeTask task = requireTask(judgeId);
         validateCaseNumber(task, caseNumber);
-        Path inputFile = caseFile(requireWorkDir(task), caseNumber, ".in");
+        Path workDir = requireWorkDir(task);
+        Path inputFile = caseFile(workDir, caseNumber, ".in");
+        regenerateIfMissing(task, workDir, caseNumber, inputFile);
         if (!Files.isRegularFile(inputFile, LinkOption.NOFOLLOW_LINKS)) {
             throw new IOException("Input file not found for caseNumber " + caseNumber);
         }
@@ -71,10 +92,13 @@ public class JudgeFileService {
 
     public StreamingResponseBody streamAllTestCasesArchive(String judgeId) throws IOException {
         JudgeTask task = requireTask(judgeId);
+        Path workDir = requireWorkDir(task);
+        if (canRegenerate(task, workDir)) {
+            return streamRegeneratedArchive(task, workDir);
+        }
         if (task.getPolicy() != null && task.getPolicy().highVolume()) {
             throw new IOException("Full archive download is disabled for high-volume tasks; use per-case downloads");
         }
-        Path workDir = requireWorkDir(task);
         List<Path> inputFiles = listInputFiles(task, workDir);
         if (inputFiles.isEmpty()) {
             throw new IOException("No test case inputs available");
@@ -109,7 +133,12 @@ public class JudgeFileService {
         return outputStream -> {
             try (ZipOutputStream zipStream = new ZipOutputStream(outputStream)) {
                 for (int caseNumber : failedCases) {
-                    addFileToZip(zipStream, caseFile(workDir, caseNumber, ".in"), caseNumber + ".in");
+                    Path inputFile = caseFile(workDir, caseNumber, ".in");
+                    if (!Files.isRegularFile(inputFile, LinkOption.NOFOLLOW_LINKS) && canRegenerate(task, workDir)) {
+                        addRegeneratedCaseToZip(zipStream, task, workDir, caseNumber, true);
+                        continue;
+                    }
+                    addFileToZip(zipStream, inputFile, caseNumber + ".in");
                     addOptionalFileToZip(zipStream, caseFile(workDir, caseNumber, ".out"), caseNumber + ".out");
                     addOptionalFileToZip(zipStream, caseFile(workDir, caseNumber, ".ans"), caseNumber + ".ans");
                 }
@@ -117,6 +146,83 @@ public class JudgeFileService {
         };
     }
 
+    /**
+     * Archive of every judged case for seeded tasks. Cases whose artifacts were not retained
+     * are regenerated one at a time into a scratch directory, so the download never needs
+     * more than one case on disk beyond what the task already kept.
+     */
+    private StreamingResponseBody streamRegeneratedArchive(JudgeTask task, Path workDir) {
+        return outputStream -> {
+            try (ZipOutputStream zipStream = new ZipOutputStream(outputStream)) {
+                for (int caseNumber = 1; caseNumber <= task.getRequestedCases(); caseNumber++) {
+                    Path inputFile = caseFile(workDir, caseNumber, ".in");
+                    if (Files.isRegularFile(inputFile, LinkOption.NOFOLLOW_LINKS)) {
+                        addFileToZip(zipStream, inputFile, caseNumber + ".in");
+                        addOptionalFileToZip(zipStream, answerFile(workDir, caseNumber), caseNumber + ".out");
+                    } else if (CaseInputDigests.isRecorded(workDir, caseNumber)) {
+                        addRegeneratedCaseToZip(zipStream, task, workDir, caseNumber, false);
+                    }
+                }
+            }
+        };
+    }
+
+    private void addRegeneratedCaseToZip(ZipOutputStream zipStream, JudgeTask task, Path workDir, int caseNumber,
+                                         boolean includeUserOutput) throws IOException {
+        Path scratch = Files.createTempDirectory(workDir, ".regen-");
+        try {
+            regenerate(task, workDir, caseNumber, scratch);
+            addFileToZip(zipStream, scratch.resolve(caseNumber + ".in"), caseNumber + ".in");
+            if (includeUserOutput) {
+                addOptionalFileToZip(zipStream, scratch.resolve(caseNumber + ".out"), caseNumber + ".out");
+                addOptionalFileToZip(zipStream, scratch.resolve(caseNumber + ".ans"), caseNumber + ".ans");
+            } else {
+                addOptionalFileToZip(zipStream, answerFile(scratch, caseNumber), caseNumber + ".out");
+            }
+        } finally {
+            deleteScratch(scratch);
+        }
+    }
+
+    private Path answerFile(Path directory, int caseNumber) throws IOException {
+        Path answerFile = caseFile(directory, caseNumber, ".ans");
+        if (!Files.isRegularFile(answerFile, LinkOption.NOFOLLOW_LINKS)) {
+            answerFile = caseFile(directory, caseNumber, ".out");
+        }
+        return answerFile;
+    }
+
+    private boolean canRegenerate(JudgeTask task, Path workDir) {
+        return caseRegenerator.isPresent() && caseRegenerator.get().supports(task, workDir);
+    }
+
+    private void regenerateIfMissing(JudgeTask task, Path workDir, int caseNumber, Path inputFile) throws IOException {
+        if (Files.isRegularFile(inputFile, LinkOption.NOFOLLOW_LINKS) || !canRegenerate(task, workDir)) {
+            return;
+        }
+        regenerate(task, workDir, caseNumber, workDir);
+    }
+
+    private void regenerate(JudgeTask task, Path workDir, int caseNumber, Path targetDir) throws IOException {
+        try {
+            caseRegenerator.orElseThrow().regenerate(task, workDir, caseNumber, targetDir);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while regenerating case " + caseNumber, e);
+        }
+    }
+
+    private void deleteScratch(Path scratch) {
+        try (Stream<Path> files = Files.list(scratch)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(scratch);
+        } catch (IOException e) {
+            log.debug("Failed to delete regeneration scratch directory {}: {}", scratch, e.getMessage());
+        }
+    }
+
     public String archiveFilename(String judgeId) {
         String safeJudgeId = judgeId == null ? "unknown" : judgeId.replaceAll("[^A-Za-z0-9._-]", "_");
         return "testcases-" + safeJudgeId + ".zip";
@@ -17,6 +17,8 @@ import com.example.demo.model.JudgeOwnership;
 import com.example.demo.model.JudgeStatus;
 import com.example.demo.model.JudgeTask;
 import com.example.demo.model.UserSession;
+import com.example.demo.service.checker.CheckResult;
+import com.example.demo.service.checker.OutputChecker;
 import com.example.demo.service.sandbox.SandboxRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,11 +26,16 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -60,6 +67,9 @@ public class JudgeService {
     @Qualifier(AsyncConfig.TEST_CASE_EXECUTOR)
     private final ThreadPoolTaskExecutor testCaseExecutor;
     private final Optional<SandboxRunner> sandboxRunner;
+    private final Optional<CompileCache> compileCache;
+    private final Optional<PrecompiledHeaders> precompiledHeaders;
+    private final Optional<OracleAnswerCache> oracleAnswerCache;
     
     /**
      * 标记WebSocket会话为活跃状态
@@ -180,6 +190,45 @@ public class JudgeService {
 
     private record PendingJudgeTask(JudgeRequest request, ResolvedTaskPolicy policy) {}
 
+    /**
+     * 单个判题任务内所有测试点共享的执行上下文。
+     * generatorSeed 为空表示未启用种子生成；inputDigests 为空表示不记录输入校验值。
+     * cancellationToken 被取消时（任务取消、超出预算或首个非AC后停止）立即结束正在运行的进程。
+     * prefetcher 为空表示每个测试点在自己的槽位中运行生成器；bulkGenerator 为空表示每个测试点单独执行一次生成器。
+     * oracleAnswers 为空表示不缓存对拍答案。
+     * answerExecutable 是SPJ任务中用于生成标准答案的Brute Force程序，没有时为空；
+     * streamingSpecialJudge 为空表示SPJ按测试点逐个执行。
+     */
+    private record CaseRunContext(
+            JudgeRequest request,
+            ResolvedTaskPolicy policy,
+            Path tempDir,
+            Path genExecutable,
+            Path userExecutable,
+            Path judgeExecutable,
+            AtomicInteger retainedAcceptedCases,
+            Long generatorSeed,
+            CaseInputDigests inputDigests,
+            CancellationToken cancellationToken,
+            GeneratorPrefetcher<GeneratedInput> prefetcher,
+            BulkGenerator bulkGenerator,
+            OracleAnswerCache.Session oracleAnswers,
+            Path answerExecutable,
+            StreamingSpecialJudge streamingSpecialJudge
+    ) {}
+
+    /**
+     * 一个测试点的生成结果：流水线模式下输入在 input 缓冲中，否则在 inputFile 中
+     */
+    private record GeneratedInput(ProcessResult result, CaseDataBuffer input, Path inputFile) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            if (input != null) {
+                input.close();
+            }
+        }
+    }
+
     static class CompilationException extends RuntimeException {
         public CompilationException(String message) {
             super(message);
@@ -211,6 +260,9 @@ public class JudgeService {
                 .policy(policy)
                 .ownership(ownership)
                 .workDir(workDir.toString())
+                .generatorSeed(policy.seededGeneration() ? CaseSeeds.taskSeed(judgeId) : null)
+                .bulkGenerator(request.isBulkGenerator())
+                .multiTestPackSize(multiTestPackSize(request, policy))
                 .createdAt(Instant.now())
                 .build();
         try {
@@ -286,8 +338,9 @@ public class JudgeService {
                 Path userSource = tempDir.resolve("user.cpp");
                 Files.writeString(userSource, request.getUserCode());
 
-                CompletableFuture<Path> genFuture = CompletableFuture.supplyAsync(() -> compile(genSource, "generator", policy), testCaseExecutor);
-                CompletableFuture<Path> userFuture = CompletableFuture.supplyAsync(() -> compile(userSource, "user", policy), testCaseExecutor);
+                CompileStats compileStats = new CompileStats(new AtomicInteger(), new AtomicInteger());
+                CompletableFuture<Path> genFuture = CompletableFuture.supplyAsync(() -> compile(genSource, "generator", policy, compileStats), testCaseExecutor);
+                CompletableFuture<Path> userFuture = CompletableFuture.supplyAsync(() -> compile(userSource, "user", policy, compileStats), testCaseExecutor);
 
                 // 根据是否启用Special Judge决定编译内容
                 CompletableFuture<Path> judgeExecutableFuture;
@@ -295,21 +348,32 @@ public class JudgeService {
                     // 编译Special Judge代码
                     Path spjSource = tempDir.resolve("special_judge.cpp");
                     Files.writeString(spjSource, request.getSpecialJudgeCode());
-                    judgeExecutableFuture = CompletableFuture.supplyAsync(() -> compile(spjSource, "special_judge", policy), testCaseExecutor);
+                    judgeExecutableFuture = CompletableFuture.supplyAsync(() -> compile(spjSource, "special_judge", policy, compileStats), testCaseExecutor);
                 } else {
                     // 编译Brute Force代码
                     Path bfSource = tempDir.resolve("bruteforce.cpp");
                     Files.writeString(bfSource, request.getBruteForceCode());
-                    judgeExecutableFuture = CompletableFuture.supplyAsync(() -> compile(bfSource, "bruteforce", policy), testCaseExecutor);
+                    judgeExecutableFuture = CompletableFuture.supplyAsync(() -> compile(bfSource, "bruteforce", policy, compileStats), testCaseExecutor);
                 }
 
-                CompletableFuture.allOf(genFuture, userFuture, judgeExecutableFuture).join();
+                // 使用SPJ时如果同时提供了Brute Force代码，把它的输出作为标准答案一并交给SPJ
+                CompletableFuture<Path> answerExecutableFuture = CompletableFuture.completedFuture(null);
+                int sources = 3;
+                if (usesSpecialJudge(request) && request.getBruteForceCode() != null && !request.getBruteForceCode().trim().isEmpty()) {
+                    Path bfSource = tempDir.resolve("bruteforce.cpp");
+                    Files.writeString(bfSource, request.getBruteForceCode());
+                    answerExecutableFuture = CompletableFuture.supplyAsync(() -> compile(bfSource, "bruteforce", policy, compileStats), testCaseExecutor);
+                    sources = 4;
+                }
+
+                CompletableFuture.allOf(genFuture, userFuture, judgeExecutableFuture, answerExecutableFuture).join();
 
                 final Path genExecutable = genFuture.get();
                 final Path userExecutable = userFuture.get();
                 final Path judgeExecutable = judgeExecutableFuture.get();
+                final Path answerExecutable = answerExecutableFuture.get();
 
-                safeSendMessage(topic, new JudgeProgress("COMPILING", "编译成功", 15));
+                safeSendMessage(topic, new JudgeProgress("COMPILING", compileStats.message(sources), 15));
                 if (cancellationToken.isCancellationRequested()) {
                     safeSendStoppedMessage(topic, cancellationToken, 15, emptyStoppedSummary(policy.requestedCases(), schedulerContext.completedCases(), cancellationToken));
                     cleanupJudgeTask(judgeId);
@@ -317,6 +381,7 @@ public class JudgeService {
                 }
 
                 AtomicInteger completedCases = new AtomicInteger(0);
+                AtomicInteger retainedAcceptedCases = new AtomicInteger(0);
 
                 final int totalTestCases = policy.requestedCases();
                 final int updateThreshold = Math.max(1, totalTestCases / 100); // Update every 1%
@@ -326,24 +391,61 @@ public class JudgeService {
                         executionProperties.getMaxFailureSamples(),
                         executionProperties.getMaxSlowSamples()
                 );
-                Path finalTempDir = tempDir;
-                CaseBatchRunner.RunOutcome runOutcome = caseBatchRunner.run(
-                        totalTestCases,
-                        policy,
-                        cancellationToken,
-                        caseNumber -> runTestCase(caseNumber, request, policy, finalTempDir, genExecutable, userExecutable, judgeExecutable),
-                        result -> {
-                            resultAggregator.accept(result);
-                            schedulerContext.recordCompletedCase();
-                            int done = completedCases.incrementAndGet();
-                            if (!cancellationToken.isCancellationRequested()
-                                    && (done % updateThreshold == 0 || done == totalTestCases)) {
-                                int progress = Math.min(99, 15 + (int) ((double) done / totalTestCases * 85));
-                                safeSendMessage(topic, new JudgeProgress("RUNNING", String.format("已完成 %d / %d", done, totalTestCases), progress));
+                Long generatorSeed = policy.seededGeneration() ? resolveGeneratorSeed(judgeId) : null;
+                CaseBatchRunner.RunOutcome runOutcome;
+                // 子令牌随任务令牌一起取消，首个非AC后停止时也单独取消，以便立即结束仍在运行的测试点
+                CancellationToken caseCancellation = cancellationToken.child();
+                OracleAnswerCache.Session oracleAnswers = openOracleAnswers(usesSpecialJudge(request) ? answerExecutable : judgeExecutable);
+                try (CaseInputDigests inputDigests = generatorSeed != null ? CaseInputDigests.open(tempDir) : null;
+                     BulkGenerator bulkGenerator = request.isBulkGenerator()
+                             ? bulkGenerator(policy, tempDir, genExecutable,
+                                     generatorSeed != null ? generatorSeed : CaseSeeds.taskSeed(judgeId), caseCancellation)
+                             : null;
+                     GeneratorPrefetcher<GeneratedInput> prefetcher = generatorPrefetcher(policy, tempDir, genExecutable,
+                             generatorSeed, bulkGenerator, caseCancellation);
+                     StreamingSpecialJudge streamingSpecialJudge = startStreamingSpecialJudge(request, policy, judgeExecutable)) {
+                    CaseRunContext caseContext = new CaseRunContext(request, policy, tempDir, genExecutable, userExecutable,
+                            judgeExecutable, retainedAcceptedCases, generatorSeed, inputDigests, caseCancellation, prefetcher,
+                            bulkGenerator, oracleAnswers, answerExecutable, streamingSpecialJudge);
+                    if (prefetcher != null) {
+                        prefetcher.start();
+                    }
+                    runOutcome = caseBatchRunner.runPacked(
+                            judgeId,
+                            totalTestCases,
+                            multiTestPackSize(request, policy),
+                            policy,
+                            cancellationToken,
+                            (firstCase, count) -> runTestPack(firstCase, count, caseContext),
+                            result -> {
+                                if (JudgeStatus.CANCELLED.name().equals(result.getStatus())) {
+                                    // 因取消而被中断的测试点没有结论，不计入统计
+                                    return;
+                                }
+                                resultAggregator.accept(result);
+                                schedulerContext.recordCompletedCase();
+                                int done = completedCases.incrementAndGet();
+                                if (!cancellationToken.isCancellationRequested()
+                                        && (done % updateThreshold == 0 || done == totalTestCases)) {
+                                    int progress = Math.min(99, 15 + (int) ((double) done / totalTestCases * 85));
+                                    safeSendMessage(topic, new JudgeProgress("RUNNING", String.format("已完成 %d / %d", done, totalTestCases), progress));
+                                }
+                            },
+                            result -> {
+                                if (request.isStopOnFirstNonAc() && !isAcceptedStatus(result.getStatus())) {
+                                    caseCancellation.cancel();
+                                    return true;
+                                }
+                                return false;
                             }
-                        },
-                        result -> request.isStopOnFirstNonAc() && !isAcceptedStatus(result.getStatus())
-                );
+                    );
+                    if (bulkGenerator != null) {
+                        resultAggregator.recordGeneratorStats(bulkGenerator.execs(), bulkGenerator.timeSavedMillis());
+                    }
+                    if (oracleAnswers != null) {
+                        resultAggregator.recordOracleCacheStats(oracleAnswers.dedupeRatio(), oracleAnswers.timeSavedMillis());
+                    }
+                }
 
                 if (cancellationToken.isBudgetExceeded()) {
                     JudgeSummary summary = resultAggregator.toSummary();
@@ -388,6 +490,10 @@ public class JudgeService {
             e.printStackTrace();
             safeSendMessage(topic, new JudgeProgress("SYSTEM_ERROR", e.getMessage(), 100, null));
             cleanupJudgeTask(judgeId);
+        } finally {
+            if (tempDir != null) {
+                processRunner.releaseWorkingDirectory(tempDir);
+            }
         }
     }
 
@@ -571,38 +677,212 @@ public class JudgeService {
         return parent == null ? workDir.toAbsolutePath().normalize() : parent;
     }
 
-    private TestCaseResult runTestCase(int caseNumber, JudgeRequest request, ResolvedTaskPolicy policy, Path tempDir, Path genExecutable, Path userExecutable, Path judgeExecutable) {
+    private TestCaseResult runTestCase(int caseNumber, CaseRunContext context) {
+        ResolvedTaskPolicy policy = context.policy();
+        TestCaseResult result;
+        if (policy.pipelinedCaseIo() && processRunner.supportsBufferedIo()) {
+            result = runPipelinedTestCase(caseNumber, context);
+        } else {
+            result = runFileTestCase(caseNumber, context);
+            if (!retainArtifacts(context, result)) {
+                deleteCaseArtifacts(context.tempDir(), caseNumber);
+            }
+        }
+        return cancelledIfStopped(result, context);
+    }
+
+    /**
+     * 取消时进程被强制结束，此时的失败不是程序本身的结论
+     */
+    private TestCaseResult cancelledIfStopped(TestCaseResult result, CaseRunContext context) {
+        if (context.cancellationToken().isCancellationRequested() && !isAcceptedStatus(result.getStatus())) {
+            return new TestCaseResult(result.getCaseNumber(), JudgeStatus.CANCELLED.name(), result.getTimeUsed(), result.getMemoryUsed());
+        }
+        return result;
+    }
+
+    /**
+     * 多测打包：把一包测试点的输入拼成首行为 T 的一个输入，用户程序只执行一次，输出按测试点拆分后
+     * 逐个与对拍答案比较；整包未在单个测试点的限制内完成，或拆分后某个测试点不一致时，从该测试点起
+     * 逐个测试点重新执行，定位出错的测试点。单独执行的测试点以 T=1 的一包作为输入，程序读到的格式不变。
+     */
+    private List<TestCaseResult> runTestPack(int firstCase, int count, CaseRunContext context) {
+        if (multiTestPackSize(context.request(), context.policy()) <= 1) {
+            return List.of(runTestCase(firstCase, context));
+        }
+        List<GeneratedInput> inputs = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                inputs.add(takeBufferedInput(firstCase + i, context));
+            }
+            List<TestCaseResult> results = new ArrayList<>(count == 1 ? List.of() : judgePack(firstCase, inputs, context));
+            for (int i = results.size(); i < count; i++) {
+                GeneratedInput generated = inputs.get(i);
+                if (generated.result().status() != ProcessResult.Status.SUCCESS) {
+                    results.add(judgeBufferedCase(firstCase + i, context, generated));
+                    continue;
+                }
+                try (CaseDataBuffer single = singleCasePack(generated.input(), context.tempDir())) {
+                    results.add(judgeBufferedCase(firstCase + i, context, new GeneratedInput(generated.result(), single, null)));
+                }
+            }
+            return results.stream()
+                    .map(result -> cancelledIfStopped(result, context))
+                    .toList();
+        } catch (Exception e) {
+            e.printStackTrace();
+            List<TestCaseResult> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(cancelledIfStopped(new TestCaseResult(firstCase + i, "System Error", 0, 0), context));
+            }
+            return results;
+        } finally {
+            for (GeneratedInput input : inputs) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    log.warn("Failed to release input of a multi-test pack: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 整包执行一次用户程序，时间和内存限制与单个测试点相同，整包通过时每个测试点都不可能超限。
+     * 对拍答案逐个测试点生成（可命中答案缓存），用户输出按每个答案的行数拆分后逐个比较。
+     * 返回从包首开始连续通过的测试点的AC结果，时间和内存为整包的值，是各测试点的上界；
+     * 生成失败、用户程序失败或超限时返回空列表，未通过的测试点由调用方逐个重新判定。
+     */
+    private List<TestCaseResult> judgePack(int firstCase, List<GeneratedInput> inputs, CaseRunContext context)
+            throws IOException, InterruptedException {
+        for (GeneratedInput input : inputs) {
+            if (input.result().status() != ProcessResult.Status.SUCCESS) {
+                return List.of();
+            }
+        }
+        ResolvedTaskPolicy policy = context.policy();
+        Path tempDir = context.tempDir();
+        int count = inputs.size();
+        long bufferMemoryBytes = executionProperties.getCaseBufferMemoryBytes();
+        long maxOutputBytes = policy.maxOutputBytesPerCase() * count;
+        long caseTimeLimit = policy.caseTimeLimit().toMillis();
+        try (CaseDataBuffer packedInput = new CaseDataBuffer(bufferMemoryBytes, tempDir);
+             CaseDataBuffer userOutput = new CaseDataBuffer(bufferMemoryBytes, tempDir)) {
+            try (OutputStream out = new BufferedOutputStream(packedInput.openOutputStream())) {
+                MultiTestInput.write(inputs.stream().map(GeneratedInput::input).toList(), out);
+            }
+            ProcessResult userResult = runBufferedProcess(context.userExecutable(), List.of(), packedInput, userOutput,
+                    caseTimeLimit, policy.memoryLimitBytes(), maxOutputBytes, policy, context.cancellationToken());
+            if (userResult.status() != ProcessResult.Status.SUCCESS) {
+                return List.of();
+            }
+            OutputChecker checker = outputChecker(context.request());
+            List<TestCaseResult> results = new ArrayList<>(count);
+            try (InputStream actual = openLimited(userOutput, maxOutputBytes)) {
+                MultiTestOutput packedOutput = new MultiTestOutput(actual);
+                for (int i = 0; i < count; i++) {
+                    int caseNumber = firstCase + i;
+                    // 对拍程序同样按多测格式读入，逐个测试点以 T=1 的一包运行，答案与单独重判时共用缓存
+                    try (CaseDataBuffer input = singleCasePack(inputs.get(i).input(), tempDir);
+                         CaseDataBuffer answer = new CaseDataBuffer(bufferMemoryBytes, tempDir)) {
+                        ProcessResult bfResult = runOracle(context.oracleAnswers(), input::openInputStream, OracleAnswerCache.Target.of(answer),
+                                () -> runBufferedProcess(context.judgeExecutable(), List.of(), input, answer, caseTimeLimit * 5,
+                                        memoryConfiguration.getDefaultLimit() * 2, policy, context.cancellationToken()));
+                        if (bfResult.status() != ProcessResult.Status.SUCCESS) {
+                            return results;
+                        }
+                        long lines;
+                        try (InputStream expected = answer.openInputStream()) {
+                            lines = MultiTestOutput.lines(expected);
+                        }
+                        CheckResult check;
+                        try (InputStream expected = openLimited(answer, policy.maxOutputBytesPerCase())) {
+                            check = checker.check(expected, packedOutput.nextCase(lines));
+                        }
+                        // 最后一个测试点之后还有输出时，多余的输出算在它身上，由调用方单独重新判定
+                        if (!check.accepted() || (i == count - 1 && packedOutput.hasRemaining())) {
+                            return results;
+                        }
+                        TestCaseResult result = userCaseResult(caseNumber, "AC", userResult);
+                        result.setPackSize(count);
+                        keepCaseArtifacts(context, result, input, null, answer);
+                        results.add(result);
+                    }
+                }
+                return results;
+            }
+        }
+    }
+
+    /**
+     * 只含一个测试点的多测输入，首行为 1
+     */
+    private CaseDataBuffer singleCasePack(CaseDataBuffer input, Path tempDir) throws IOException {
+        CaseDataBuffer packed = new CaseDataBuffer(executionProperties.getCaseBufferMemoryBytes(), tempDir);
+        try (OutputStream out = new BufferedOutputStream(packed.openOutputStream())) {
+            MultiTestInput.write(List.of(input), out);
+        } catch (IOException | RuntimeException e) {
+            packed.close();
+            throw e;
+        }
+        return packed;
+    }
+
+    private TestCaseResult runFileTestCase(int caseNumber, CaseRunContext context) {
+        JudgeRequest request = context.request();
+        ResolvedTaskPolicy policy = context.policy();
+        Path tempDir = context.tempDir();
         try {
             Path inputFile = tempDir.resolve(caseNumber + ".in");
             Path userOutputFile = tempDir.resolve(caseNumber + ".out");
 
-            ProcessResult genResult = runProcess(genExecutable, null, inputFile, 5000, memoryConfiguration.getDefaultLimit(), policy);
+            ProcessResult genResult = context.prefetcher() != null
+                    ? context.prefetcher().take(caseNumber).result()
+                    : generateCase(context.genExecutable(), context.generatorSeed(), context.bulkGenerator(), caseNumber,
+                            false, tempDir, policy, context.cancellationToken()).result();
             if (genResult.status() != ProcessResult.Status.SUCCESS) {
                 return new TestCaseResult(caseNumber, generatorFailureStatus(genResult.status()), 0, 0);
             }
+            if (context.inputDigests() != null) {
+                try (InputStream generated = Files.newInputStream(inputFile)) {
+                    context.inputDigests().record(caseNumber, generated);
+                }
+            }
 
             // 使用创建任务时解析出的策略快照，避免启动时被新配置覆盖。
             long userMemoryLimit = policy.memoryLimitBytes();
             long caseTimeLimit = policy.caseTimeLimit().toMillis();
-            ProcessResult userResult = runProcess(userExecutable, inputFile, userOutputFile, caseTimeLimit, userMemoryLimit, policy);
+            ProcessResult userResult = runProcess(context.userExecutable(), inputFile, userOutputFile, caseTimeLimit, userMemoryLimit, policy,
+                    context.cancellationToken());
             if (userResult.status() != ProcessResult.Status.SUCCESS) {
-                String statusStr = switch (userResult.status()) {
-                    case TIME_LIMIT_EXCEEDED -> "TLE";
-                    case MEMORY_LIMIT_EXCEEDED -> "MLE";
-                    case OUTPUT_LIMIT_EXCEEDED -> "OUTPUT_LIMIT_EXCEEDED";
-                    case RUNTIME_ERROR -> "RE";
-                    default -> "System Error";
-                };
-                return new TestCaseResult(caseNumber, statusStr, userResult.executionTime(), userResult.memoryUsed() / 1024); // Convert to KB
+                return userCaseResult(caseNumber, userFailureStatus(userResult.status()), userResult);
             }
 
             // 根据是否启用Special Judge选择不同的判题逻辑
-            if (request.isUseSpecialJudge() && request.getSpecialJudgeCode() != null && !request.getSpecialJudgeCode().trim().isEmpty()) {
-                // 使用Special Judge进行判题
-                return runSpecialJudge(caseNumber, request, policy, tempDir, judgeExecutable, inputFile, userOutputFile, userResult);
+            if (usesSpecialJudge(request)) {
+                // 使用Special Judge进行判题；有Brute Force时先生成标准答案
+                Path answerFile = null;
+                if (context.answerExecutable() != null) {
+                    answerFile = tempDir.resolve(caseNumber + ".ans");
+                    Path bfOutputFile = answerFile;
+                    ProcessResult bfResult = runOracle(context.oracleAnswers(), () -> Files.newInputStream(inputFile), OracleAnswerCache.Target.of(bfOutputFile),
+                            () -> runProcess(context.answerExecutable(), inputFile, bfOutputFile, policy.caseTimeLimit().toMillis() * 5, memoryConfiguration.getDefaultLimit() * 2, policy,
+                                    context.cancellationToken()));
+                    if (bfResult.status() != ProcessResult.Status.SUCCESS) {
+                        return new TestCaseResult(caseNumber, "System Error", 0, 0);
+                    }
+                }
+                TestCaseResult streamed = runStreamingSpecialJudge(caseNumber, context, StreamingSpecialJudge.Payload.of(inputFile),
+                        StreamingSpecialJudge.Payload.of(userOutputFile), answerFile == null ? null : StreamingSpecialJudge.Payload.of(answerFile), userResult);
+                if (streamed != null) {
+                    return streamed;
+                }
+                return runSpecialJudge(caseNumber, request, policy, tempDir, context.judgeExecutable(), inputFile, userOutputFile, answerFile, userResult,
+                        context.cancellationToken());
             } else {
                 // 使用Brute Force进行判题
-                return runBruteForceJudge(caseNumber, request, policy, tempDir, judgeExecutable, inputFile, userOutputFile, userResult);
+                return runBruteForceJudge(caseNumber, request, policy, tempDir, context.judgeExecutable(), inputFile, userOutputFile, userResult,
+                        context.oracleAnswers(), context.cancellationToken());
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -610,6 +890,326 @@ public class JudgeService {
         }
     }
 
+    /**
+     * 流水线模式：生成器输出保存在内存缓冲中，再通过管道分别喂给用户程序和对拍程序，
+     * 只有保留策略要求保留的测试点才会把 N.in / N.out / N.ans 写入任务目录。
+     */
+    private TestCaseResult runPipelinedTestCase(int caseNumber, CaseRunContext context) {
+        try (GeneratedInput generated = takeBufferedInput(caseNumber, context)) {
+            return judgeBufferedCase(caseNumber, context, generated);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new TestCaseResult(caseNumber, "System Error", 0, 0);
+        }
+    }
+
+    /**
+     * 取得流水线模式下一个测试点的输入，生成成功时记录输入校验值
+     */
+    private GeneratedInput takeBufferedInput(int caseNumber, CaseRunContext context) throws Exception {
+        GeneratedInput generated = context.prefetcher() != null
+                ? context.prefetcher().take(caseNumber)
+                : generateCase(context.genExecutable(), context.generatorSeed(), context.bulkGenerator(), caseNumber,
+                        true, context.tempDir(), context.policy(), context.cancellationToken());
+        try {
+            if (context.inputDigests() != null && generated.result().status() == ProcessResult.Status.SUCCESS) {
+                try (InputStream generatedInput = generated.input().openInputStream()) {
+                    context.inputDigests().record(caseNumber, generatedInput);
+                }
+            }
+            return generated;
+        } catch (IOException | RuntimeException e) {
+            generated.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 用已生成的输入判定一个测试点，不关闭 generated
+     */
+    private TestCaseResult judgeBufferedCase(int caseNumber, CaseRunContext context, GeneratedInput generated) {
+        JudgeRequest request = context.request();
+        ResolvedTaskPolicy policy = context.policy();
+        Path tempDir = context.tempDir();
+        long bufferMemoryBytes = executionProperties.getCaseBufferMemoryBytes();
+        try (CaseDataBuffer userOutput = new CaseDataBuffer(bufferMemoryBytes, tempDir);
+             CaseDataBuffer answer = new CaseDataBuffer(bufferMemoryBytes, tempDir)) {
+            CaseDataBuffer input = generated.input();
+            ProcessResult genResult = generated.result();
+            if (genResult.status() != ProcessResult.Status.SUCCESS) {
+                TestCaseResult result = new TestCaseResult(caseNumber, generatorFailureStatus(genResult.status()), 0, 0);
+                keepCaseArtifacts(context, result, input, null, null);
+                return result;
+            }
+
+            long caseTimeLimit = policy.caseTimeLimit().toMillis();
+            ProcessResult userResult = runBufferedProcess(context.userExecutable(), List.of(), input, userOutput, caseTimeLimit, policy.memoryLimitBytes(), policy,
+                    context.cancellationToken());
+            if (userResult.status() != ProcessResult.Status.SUCCESS) {
+                TestCaseResult result = userCaseResult(caseNumber, userFailureStatus(userResult.status()), userResult);
+                keepCaseArtifacts(context, result, input, userOutput, null);
+                return result;
+            }
+
+            if (usesSpecialJudge(request)) {
+                CaseDataBuffer oracleAnswer = null;
+                if (context.answerExecutable() != null) {
+                    ProcessResult bfResult = runOracle(context.oracleAnswers(), input::openInputStream, OracleAnswerCache.Target.of(answer),
+                            () -> runBufferedProcess(context.answerExecutable(), List.of(), input, answer, caseTimeLimit * 5, memoryConfiguration.getDefaultLimit() * 2, policy,
+                                    context.cancellationToken()));
+                    if (bfResult.status() != ProcessResult.Status.SUCCESS) {
+                        TestCaseResult result = new TestCaseResult(caseNumber, "System Error", 0, 0);
+                        keepCaseArtifacts(context, result, input, userOutput, null);
+                        return result;
+                    }
+                    oracleAnswer = answer;
+                }
+                // 常驻SPJ直接从缓冲区读取数据，不需要落盘
+                TestCaseResult streamed = runStreamingSpecialJudge(caseNumber, context, StreamingSpecialJudge.Payload.of(input),
+                        StreamingSpecialJudge.Payload.of(userOutput), oracleAnswer == null ? null : StreamingSpecialJudge.Payload.of(oracleAnswer), userResult);
+                if (streamed != null) {
+                    keepCaseArtifacts(context, streamed, input, userOutput, oracleAnswer);
+                    return streamed;
+                }
+                // SPJ按文件路径读取数据，需要先落盘；不需要保留时再删除。
+                writeCaseArtifacts(tempDir, caseNumber, input, userOutput, oracleAnswer);
+                Path inputFile = tempDir.resolve(caseNumber + ".in");
+                Path userOutputFile = tempDir.resolve(caseNumber + ".out");
+                Path answerFile = oracleAnswer == null ? null : tempDir.resolve(caseNumber + ".ans");
+                TestCaseResult result = runSpecialJudge(caseNumber, request, policy, tempDir, context.judgeExecutable(), inputFile, userOutputFile, answerFile, userResult,
+                        context.cancellationToken());
+                if (!retainArtifacts(context, result)) {
+                    deleteCaseArtifacts(tempDir, caseNumber);
+                }
+                return result;
+            }
+
+            ProcessResult bfResult = runOracle(context.oracleAnswers(), input::openInputStream, OracleAnswerCache.Target.of(answer),
+                    () -> runBufferedProcess(context.judgeExecutable(), List.of(), input, answer, caseTimeLimit * 5, memoryConfiguration.getDefaultLimit() * 2, policy,
+                            context.cancellationToken()));
+            if (bfResult.status() != ProcessResult.Status.SUCCESS) {
+                TestCaseResult result = new TestCaseResult(caseNumber, "System Error", 0, 0);
+                keepCaseArtifacts(context, result, input, userOutput, answer);
+                return result;
+            }
+
+            CheckResult check;
+            try (InputStream expected = openLimited(answer, policy.maxOutputBytesPerCase());
+                 InputStream actual = openLimited(userOutput, policy.maxOutputBytesPerCase())) {
+                check = outputChecker(request).check(expected, actual);
+            }
+            TestCaseResult result = check.accepted()
+                    ? userCaseResult(caseNumber, "AC", userResult)
+                    : wrongAnswer(caseNumber, userResult, check);
+            keepCaseArtifacts(context, result, input, userOutput, answer);
+            return result;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new TestCaseResult(caseNumber, "System Error", 0, 0);
+        }
+    }
+
+    /**
+     * 按保留策略决定测试点数据是否留在任务目录中。
+     */
+    private boolean retainArtifacts(CaseRunContext context, TestCaseResult result) {
+        ArtifactRetention retention = context.policy().artifactRetention();
+        if (isAcceptedStatus(result.getStatus())) {
+            return retention.retainAccepted(context.retainedAcceptedCases());
+        }
+        return retention.retainFailures();
+    }
+
+    /**
+     * 启用种子生成时，把当前测试点的种子作为生成器的第一个命令行参数。
+     */
+    private List<String> generatorArguments(Long generatorSeed, int caseNumber) {
+        if (generatorSeed == null) {
+            return List.of();
+        }
+        return List.of(String.valueOf(CaseSeeds.caseSeed(generatorSeed, caseNumber)));
+    }
+
+    private ProcessResult generateInput(Path genExecutable, List<String> arguments, Path inputFile,
+                                        ResolvedTaskPolicy policy, CancellationToken cancellationToken)
+            throws IOException, InterruptedException {
+        return runProcess(genExecutable, arguments, List.of(), null, inputFile,
+                5000, memoryConfiguration.getDefaultLimit(), policy, cancellationToken);
+    }
+
+    private GeneratedInput generateBufferedInput(Path genExecutable, List<String> arguments, Path tempDir,
+                                                 ResolvedTaskPolicy policy, CancellationToken cancellationToken)
+            throws IOException, InterruptedException {
+        CaseDataBuffer input = new CaseDataBuffer(executionProperties.getCaseBufferMemoryBytes(), tempDir);
+        try {
+            ProcessResult result = runBufferedProcess(genExecutable, arguments, null, input,
+                    5000, memoryConfiguration.getDefaultLimit(), policy, cancellationToken);
+            return new GeneratedInput(result, input, null);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            try {
+                input.close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 生成一个测试点的输入：buffered 时写入内存缓冲，否则写入 N.in。
+     * 批量生成器由所在分块的一次执行产出，其余情况每个测试点执行一次生成器。
+     */
+    private GeneratedInput generateCase(Path genExecutable, Long generatorSeed, BulkGenerator bulkGenerator, int caseNumber,
+                                        boolean buffered, Path tempDir, ResolvedTaskPolicy policy,
+                                        CancellationToken cancellationToken) throws IOException, InterruptedException {
+        if (bulkGenerator != null) {
+            BulkGenerator.GeneratedCase generated = bulkGenerator.take(caseNumber);
+            if (buffered) {
+                return new GeneratedInput(generated.result(), generated.input(), null);
+            }
+            Path inputFile = tempDir.resolve(caseNumber + ".in");
+            try (CaseDataBuffer input = generated.input()) {
+                input.copyTo(inputFile);
+            }
+            return new GeneratedInput(generated.result(), null, inputFile);
+        }
+        List<String> arguments = generatorArguments(generatorSeed, caseNumber);
+        if (buffered) {
+            return generateBufferedInput(genExecutable, arguments, tempDir, policy, cancellationToken);
+        }
+        Path inputFile = tempDir.resolve(caseNumber + ".in");
+        return new GeneratedInput(generateInput(genExecutable, arguments, inputFile, policy, cancellationToken), null, inputFile);
+    }
+
+    /**
+     * 批量生成器：一次执行生成 policy.bulkGeneratorChunk() 个测试点，按分隔行拆分成各测试点的输入
+     */
+    private BulkGenerator bulkGenerator(ResolvedTaskPolicy policy, Path tempDir, Path genExecutable, long taskSeed,
+                                        CancellationToken cancellationToken) {
+        return new BulkGenerator(
+                policy.requestedCases(),
+                policy.bulkGeneratorChunk(),
+                taskSeed,
+                executionProperties.getCaseBufferMemoryBytes(),
+                tempDir,
+                (arguments, count, output) -> processRunner.run(ProcessRunner.Request.builder()
+                        .command(processCommand(genExecutable, arguments))
+                        .workingDirectory(genExecutable.getParent())
+                        .outputBuffer(output)
+                        .timeout(java.time.Duration.ofMillis(5000L * count))
+                        .killGrace(java.time.Duration.ofSeconds(5))
+                        .memoryLimitBytes(memoryConfiguration.getDefaultLimit())
+                        .maxOutputBytes(policy.maxOutputBytesPerCase() * count)
+                        .maxErrorBytes(policy.maxOutputBytesPerCase())
+                        .errorCaptureBytes(executionProperties.getStderrCaptureBytes())
+                        .profile(policy.profile())
+                        .requireSandbox(policy.sandboxRequired())
+                        .cancellationToken(cancellationToken)
+                        .cpuCore(CpuAffinity.assignedCore())
+                        .build()));
+    }
+
+    /**
+     * 启用生成器预取时，在测试点线程池中提前生成后续测试点的输入（流水线模式写入内存缓冲，
+     * 否则写入 N.in），测试点槽位只运行用户程序和对拍程序。生成器与测试点共用同一线程池，
+     * 不占用额外的进程I/O线程；生成器不持有CPU槽位，开启CPU亲和时在测试点核心上运行，
+     * 不会挤占JVM的保留核心。任务提前结束时未使用的输入会被丢弃。
+     */
+    private GeneratorPrefetcher<GeneratedInput> generatorPrefetcher(ResolvedTaskPolicy policy, Path tempDir, Path genExecutable,
+                                                                   Long generatorSeed, BulkGenerator bulkGenerator,
+                                                                   CancellationToken cancellationToken) {
+        if (policy.generatorPrefetchDepth() <= 0) {
+            return null;
+        }
+        boolean buffered = policy.pipelinedCaseIo() && processRunner.supportsBufferedIo();
+        return new GeneratorPrefetcher<>(
+                policy.requestedCases(),
+                policy.generatorPrefetchDepth(),
+                policy.generatorPrefetchConcurrency(),
+                testCaseExecutor,
+                caseNumber -> CpuAffinity.onCaseCores(() -> generateCase(genExecutable, generatorSeed, bulkGenerator,
+                        caseNumber, buffered, tempDir, policy, cancellationToken)),
+                generated -> {
+                    try {
+                        generated.close();
+                        if (generated.inputFile() != null) {
+                            Files.deleteIfExists(generated.inputFile());
+                        }
+                    } catch (IOException e) {
+                        log.warn("Failed to discard prefetched input: {}", e.getMessage());
+                    }
+                });
+    }
+
+    private Long resolveGeneratorSeed(String judgeId) throws IOException {
+        Optional<JudgeTask> task = taskStore.find(judgeId);
+        if (task.isPresent() && task.get().getGeneratorSeed() != null) {
+            return task.get().getGeneratorSeed();
+        }
+        return CaseSeeds.taskSeed(judgeId);
+    }
+
+    private void keepCaseArtifacts(CaseRunContext context, TestCaseResult result, CaseDataBuffer input,
+                                   CaseDataBuffer userOutput, CaseDataBuffer answer) throws IOException {
+        if (retainArtifacts(context, result)) {
+            writeCaseArtifacts(context.tempDir(), result.getCaseNumber(), input, userOutput, answer);
+        }
+    }
+
+    private void writeCaseArtifacts(Path tempDir, int caseNumber, CaseDataBuffer input, CaseDataBuffer userOutput,
+                                   CaseDataBuffer answer) throws IOException {
+        input.copyTo(tempDir.resolve(caseNumber + ".in"));
+        if (userOutput != null) {
+            userOutput.copyTo(tempDir.resolve(caseNumber + ".out"));
+        }
+        if (answer != null) {
+            answer.copyTo(tempDir.resolve(caseNumber + ".ans"));
+        }
+    }
+
+    /**
+     * 删除已通过测试点的数据文件，失败只记录日志，不影响判题结果。
+     */
+    private void deleteCaseArtifacts(Path tempDir, int caseNumber) {
+        for (String suffix : List.of(".in", ".out", ".ans")) {
+            Path artifact = tempDir.resolve(caseNumber + suffix);
+            try {
+                Files.deleteIfExists(artifact);
+            } catch (IOException e) {
+                log.warn("Failed to delete case artifact {}: {}", artifact, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 多测打包只用于流水线模式下的对拍判题；SPJ按文件逐个测试点判定，不打包
+     */
+    private int multiTestPackSize(JudgeRequest request, ResolvedTaskPolicy policy) {
+        if (policy.multiTestPackSize() <= 1
+                || usesSpecialJudge(request)
+                || !policy.pipelinedCaseIo()
+                || !processRunner.supportsBufferedIo()) {
+            return 1;
+        }
+        return policy.multiTestPackSize();
+    }
+
+    private boolean usesSpecialJudge(JudgeRequest request) {
+        return request.isUseSpecialJudge()
+                && request.getSpecialJudgeCode() != null
+                && !request.getSpecialJudgeCode().trim().isEmpty();
+    }
+
+    private String userFailureStatus(ProcessResult.Status status) {
+        return switch (status) {
+            case TIME_LIMIT_EXCEEDED -> "TLE";
+            case MEMORY_LIMIT_EXCEEDED -> "MLE";
+            case OUTPUT_LIMIT_EXCEEDED -> "OUTPUT_LIMIT_EXCEEDED";
+            case RUNTIME_ERROR -> "RE";
+            default -> "System Error";
+        };
+    }
+
     private String generatorFailureStatus(ProcessResult.Status status) {
         if (status == ProcessResult.Status.OUTPUT_LIMIT_EXCEEDED) {
             return "OUTPUT_LIMIT_EXCEEDED";
@@ -621,25 +1221,38 @@ public class JudgeService {
      * 使用Special Judge进行判题
      */
     private TestCaseResult runSpecialJudge(int caseNumber, JudgeRequest request, ResolvedTaskPolicy policy, Path tempDir, Path spjExecutable,
-                                         Path inputFile, Path userOutputFile, ProcessResult userResult) throws IOException, InterruptedException {
+                                         Path inputFile, Path userOutputFile, Path answerFile, ProcessResult userResult,
+                                         CancellationToken cancellationToken) throws IOException, InterruptedException {
         // Special Judge通常接受三个参数：输入文件、用户输出文件、标准输出文件（可选）
-        // 这里我们只传递输入文件和用户输出文件，SPJ程序负责验证输出是否正确
+        // 标准输出文件只在同时提供了Brute Force代码时传递，SPJ程序负责验证输出是否正确
         // SPJ程序应该返回退出码：0表示AC，非0表示WA或其他错误
         
         long spjTimeLimit = policy.caseTimeLimit().toMillis() * 2;
         // 为SPJ创建参数文件，传递必要信息
         Path spjArgsFile = tempDir.resolve(caseNumber + ".spj_args");
         String args = String.format("%s\n%s\n", inputFile.toAbsolutePath(), userOutputFile.toAbsolutePath());
+        if (answerFile != null) {
+            args += answerFile.toAbsolutePath() + "\n";
+        }
         Files.writeString(spjArgsFile, args);
         
-        // 重新运行SPJ，这次传递参数文件
+        // 重新运行SPJ，这次传递参数文件；沙箱中SPJ只能读取参数文件里列出的文件
+        List<Path> spjReadable = new ArrayList<>(3);
+        spjReadable.add(inputFile);
+        spjReadable.add(userOutputFile);
+        if (answerFile != null) {
+            spjReadable.add(answerFile);
+        }
         ProcessResult spjResult = runProcess(
                 spjExecutable,
+                List.of(),
+                spjReadable,
                 spjArgsFile,
                 null,
                 spjTimeLimit,
                 memoryConfiguration.getDefaultLimit(),
-                policy
+                policy,
+                cancellationToken
         );
         Files.deleteIfExists(spjArgsFile);
 
@@ -648,7 +1261,7 @@ public class JudgeService {
                 || spjResult.status() == ProcessResult.Status.OUTPUT_LIMIT_EXCEEDED
                 || spjResult.status() == ProcessResult.Status.SECURITY_VIOLATION
                 || spjResult.status() == ProcessResult.Status.SANDBOX_UNAVAILABLE) {
-            return new TestCaseResult(caseNumber, "System Error", userResult.executionTime(), userResult.memoryUsed() / 1024);
+            return userCaseResult(caseNumber, "System Error", userResult);
         }
 
         int spjExitCode = spjResult.exitCode();
@@ -657,7 +1270,7 @@ public class JudgeService {
         log.debug("SPJ执行结果: exitCode={}, executionTime={}ms", spjExitCode, spjExecutionTime);
         
         if (spjResult.exitCode() == 0) {
-            return new TestCaseResult(caseNumber, "AC", userResult.executionTime(), userResult.memoryUsed() / 1024);
+            return userCaseResult(caseNumber, "AC", userResult);
         } else {
             // 根据SPJ的退出码决定结果，通常非0表示WA
             String status = switch (spjResult.exitCode()) {
@@ -665,7 +1278,7 @@ public class JudgeService {
                 case 2 -> "PE";  // Presentation Error
                 default -> "WA"; // 默认为Wrong Answer
             };
-            return new TestCaseResult(caseNumber, status, userResult.executionTime(), userResult.memoryUsed() / 1024);
+            return userCaseResult(caseNumber, status, userResult);
         }
     }
     
@@ -673,24 +1286,116 @@ public class JudgeService {
      * 使用Brute Force进行判题
      */
     private TestCaseResult runBruteForceJudge(int caseNumber, JudgeRequest request, ResolvedTaskPolicy policy, Path tempDir, Path bfExecutable,
-                                            Path inputFile, Path userOutputFile, ProcessResult userResult) throws IOException, InterruptedException {
+                                            Path inputFile, Path userOutputFile, ProcessResult userResult,
+                                            OracleAnswerCache.Session oracleAnswers,
+                                            CancellationToken cancellationToken) throws IOException, InterruptedException {
         Path bfOutputFile = tempDir.resolve(caseNumber + ".ans");
         
-        ProcessResult bfResult = runProcess(bfExecutable, inputFile, bfOutputFile, policy.caseTimeLimit().toMillis() * 5, memoryConfiguration.getDefaultLimit() * 2, policy);
+        ProcessResult bfResult = runOracle(oracleAnswers, () -> Files.newInputStream(inputFile), OracleAnswerCache.Target.of(bfOutputFile),
+                () -> runProcess(bfExecutable, inputFile, bfOutputFile, policy.caseTimeLimit().toMillis() * 5, memoryConfiguration.getDefaultLimit() * 2, policy,
+                        cancellationToken));
         if (bfResult.status() != ProcessResult.Status.SUCCESS) {
             return new TestCaseResult(caseNumber, "System Error", 0, 0);
         }
 
-        String userOutput = readUtf8FileLimited(userOutputFile, policy.maxOutputBytesPerCase());
-        String bfOutput = readUtf8FileLimited(bfOutputFile, policy.maxOutputBytesPerCase());
+        CheckResult check;
+        try (InputStream expected = openLimited(bfOutputFile, policy.maxOutputBytesPerCase());
+             InputStream actual = openLimited(userOutputFile, policy.maxOutputBytesPerCase())) {
+            check = outputChecker(request).check(expected, actual);
+        }
 
-        if (outputsMatch(userOutput, bfOutput, request.getPrecision())) {
-            return new TestCaseResult(caseNumber, "AC", userResult.executionTime(), userResult.memoryUsed() / 1024);
+        if (check.accepted()) {
+            return userCaseResult(caseNumber, "AC", userResult);
         } else {
-            return new TestCaseResult(caseNumber, "WA", userResult.executionTime(), userResult.memoryUsed() / 1024);
+            return wrongAnswer(caseNumber, userResult, check);
         }
     }
 
+    /**
+     * 对拍答案缓存：oracleExecutable 为空（SPJ任务没有Brute Force）时不打开缓存
+     */
+    private OracleAnswerCache.Session openOracleAnswers(Path oracleExecutable) throws IOException {
+        if (oracleExecutable == null || oracleAnswerCache.isEmpty()) {
+            return null;
+        }
+        return oracleAnswerCache.get().open(oracleExecutable);
+    }
+
+    /**
+     * 请求声明SPJ支持流式协议时，启动常驻的SPJ进程；握手失败（旧式SPJ）时返回 null，按测试点逐个执行
+     */
+    private StreamingSpecialJudge startStreamingSpecialJudge(JudgeRequest request, ResolvedTaskPolicy policy, Path spjExecutable)
+            throws InterruptedException {
+        if (!usesSpecialJudge(request) || !request.isStreamingSpecialJudge()) {
+            return null;
+        }
+        long memoryLimit = memoryConfiguration.getDefaultLimit();
+        KernelLimits limits = KernelLimits.isSupported()
+                ? new KernelLimits(0, memoryLimit * KernelLimits.ADDRESS_SPACE_FACTOR, 0, 0)
+                : null;
+        StreamingSpecialJudge streaming = StreamingSpecialJudge.start(
+                () -> processRunner.startPersistent(processCommand(spjExecutable, List.of(StreamingSpecialJudge.FLAG)),
+                        spjExecutable.getParent(), limits, policy.profile(), policy.sandboxRequired()),
+                policy.caseTimeLimit().multipliedBy(2));
+        if (streaming == null) {
+            log.info("Special judge did not answer the streaming handshake; running it once per case");
+        }
+        return streaming;
+    }
+
+    /**
+     * 用常驻SPJ判定一个测试点；没有常驻SPJ或其进程异常退出时返回 null，由调用方按测试点执行SPJ
+     */
+    private TestCaseResult runStreamingSpecialJudge(int caseNumber, CaseRunContext context, StreamingSpecialJudge.Payload input,
+                                                    StreamingSpecialJudge.Payload userOutput, StreamingSpecialJudge.Payload answer,
+                                                    ProcessResult userResult) throws IOException, InterruptedException {
+        if (context.streamingSpecialJudge() == null) {
+            return null;
+        }
+        StreamingSpecialJudge.Verdict verdict = context.streamingSpecialJudge().check(caseNumber, input, userOutput, answer,
+                context.policy().caseTimeLimit().multipliedBy(2));
+        if (verdict == null) {
+            return null;
+        }
+        String status = switch (verdict) {
+            case ACCEPTED -> "AC";
+            case PRESENTATION_ERROR -> "PE";
+            case WRONG_ANSWER -> "WA";
+            case TIME_LIMIT_EXCEEDED -> "System Error";
+        };
+        return userCaseResult(caseNumber, status, userResult);
+    }
+
+    private ProcessResult runOracle(OracleAnswerCache.Session oracleAnswers, OracleAnswerCache.Source input,
+                                    OracleAnswerCache.Target answer, OracleAnswerCache.Oracle oracle)
+            throws IOException, InterruptedException {
+        return oracleAnswers == null ? oracle.run() : oracleAnswers.answer(input, answer, oracle);
+    }
+
+    /**
+     * 按请求选择比较器；未指定时沿用按空白分词、数值按精度比较的默认规则。
+     */
+    private OutputChecker outputChecker(JudgeRequest request) {
+        return OutputChecker.forMode(request.getChecker(), request.getPrecision(), request.getRelativePrecision());
+    }
+
+    /**
+     * 用户程序的测试点结果：时间为墙钟时间，能测量时同时记录CPU时间；内存换算为KB
+     */
+    private TestCaseResult userCaseResult(int caseNumber, String status, ProcessResult userResult) {
+        TestCaseResult result = new TestCaseResult(caseNumber, status, userResult.executionTime(), userResult.memoryUsed() / 1024);
+        if (userResult.cpuTime() >= 0) {
+            result.setCpuTimeUsed(userResult.cpuTime());
+        }
+        return result;
+    }
+
+    private TestCaseResult wrongAnswer(int caseNumber, ProcessResult userResult, CheckResult check) {
+        TestCaseResult result = userCaseResult(caseNumber, "WA", userResult);
+        result.setMismatchOffset(check.mismatchOffset());
+        return result;
+    }
+
     private Path resolveTaskWorkDir(String judgeId) throws IOException {
         Optional<JudgeTask> task = taskStore.find(judgeId);
         if (task.isPresent()) {
@@ -699,60 +1404,39 @@ public class JudgeService {
         return taskStore.taskDirectory(judgeId);
     }
 
-    private boolean outputsMatch(String userOutput, String bfOutput, double precision) {
-        String[] userLines = userOutput.trim().split("\\s+");
-        String[] bfLines = bfOutput.trim().split("\\s+");
-        if (userLines.length != bfLines.length) {
-            return false;
-        }
-        for (int i = 0; i < userLines.length; i++) {
-            try {
-                double userVal = Double.parseDouble(userLines[i]);
-                double bfVal = Double.parseDouble(bfLines[i]);
-                if (Math.abs(userVal - bfVal) > precision) {
-                    return false;
-                }
-            } catch (NumberFormatException e) {
-                if (!userLines[i].equals(bfLines[i])) {
-                    return false;
-                }
+    /**
+     * 统计编译缓存与预编译头的命中次数，用于编译进度消息
+     */
+    private record CompileStats(AtomicInteger cacheHits, AtomicInteger precompiledHeaderHits) {
+
+        String message(int sources) {
+            List<String> hits = new ArrayList<>(2);
+            if (cacheHits.get() > 0) {
+                hits.add("缓存命中 " + cacheHits.get() + "/" + sources);
+            }
+            if (precompiledHeaderHits.get() > 0) {
+                hits.add("预编译头命中 " + precompiledHeaderHits.get() + "/" + sources);
             }
+            return hits.isEmpty() ? "编译成功" : "编译成功（" + String.join("，", hits) + "）";
         }
-        return true;
     }
 
-    private Path compile(Path sourceFile, String executableName, ResolvedTaskPolicy policy) {
+    private Path compile(Path sourceFile, String executableName, ResolvedTaskPolicy policy, CompileStats stats) {
         Path executablePath = sourceFile.getParent().resolve(executableName);
-        ProcessRunner.Request request = ProcessRunner.Request.builder()
-                .command(List.of(
-                        "g++",
-                        sourceFile.toAbsolutePath().toString(),
-                        "-o",
-                        executablePath.toAbsolutePath().toString(),
-                        "-O2",
-                        "-std=c++14"
-                ))
-                .workingDirectory(sourceFile.getParent())
-                .timeout(java.time.Duration.ofSeconds(60))
-                .killGrace(java.time.Duration.ofSeconds(5))
-                .memoryLimitBytes(memoryConfiguration.getDefaultLimit())
-                .maxOutputBytes(executionProperties.getMaxOutputBytesPerCase())
-                .maxErrorBytes(executionProperties.getMaxOutputBytesPerCase())
-                .profile(policy.profile())
-                .requireSandbox(policy.sandboxRequired())
-                .build();
-
+        List<String> flags = List.of("g++", "-O2", "-std=c++14");
         try {
-            ProcessResult result = processRunner.run(request);
-            if (result.status() == ProcessResult.Status.SUCCESS) {
-                return executablePath;
-            }
-            if (result.status() == ProcessResult.Status.TIME_LIMIT_EXCEEDED) {
-                throw new CompilationException("Compilation timed out for " + sourceFile.getFileName());
+            if (compileCache.isPresent()) {
+                CompileCache.Outcome outcome = compileCache.get().compile(sourceFile, executablePath, flags,
+                        executable -> runCompiler(sourceFile, executable, flags, policy, stats));
+                if (outcome.cacheHit()) {
+                    stats.cacheHits().incrementAndGet();
+                }
+            } else {
+                runCompiler(sourceFile, executablePath, flags, policy, stats);
             }
-            String compilerOutput = result.error().isBlank() ? result.output() : result.error();
-            String detail = compilerOutput.isBlank() ? "" : ":\n" + compilerOutput;
-            throw new CompilationException("Compilation failed for " + sourceFile.getFileName() + detail);
+            // 沙箱中的程序与文件属主同一uid，去掉写权限，使其无法改写自己或其他可执行文件
+            executablePath.toFile().setWritable(false, false);
+            return executablePath;
         } catch (IOException | InterruptedException e) {
             if (e instanceof InterruptedException) {
                 Thread.currentThread().interrupt();
@@ -761,37 +1445,211 @@ public class JudgeService {
         }
     }
 
+    private void runCompiler(Path sourceFile, Path executablePath, List<String> flags, ResolvedTaskPolicy policy,
+                             CompileStats stats) throws IOException, InterruptedException {
+        Optional<Path> precompiledHeader = precompiledHeaders.isPresent()
+                ? precompiledHeaders.get().includeDirectory(sourceFile, flags)
+                : Optional.empty();
+        ProcessResult result = runCompilerProcess(sourceFile, executablePath, flags, precompiledHeader, policy);
+        if (result.status() == ProcessResult.Status.SUCCESS) {
+            // 只有 -H 输出中出现了加载的 .gch 才算预编译头命中
+            if (precompiledHeader.isPresent() && PrecompiledHeaders.used(result.error())) {
+                stats.precompiledHeaderHits().incrementAndGet();
+            }
+            return;
+        }
+        if (result.status() == ProcessResult.Status.TIME_LIMIT_EXCEEDED) {
+            throw new CompilationException("Compilation timed out for " + sourceFile.getFileName());
+        }
+        String compilerError = result.error();
+        if (precompiledHeader.isPresent()) {
+            if (!PrecompiledHeaders.used(compilerError)) {
+                // 预编译头未被使用时 -H 会输出完整的头文件树，可能挤掉真正的诊断信息，不带预编译头重新编译一次
+                result = runCompilerProcess(sourceFile, executablePath, flags, Optional.empty(), policy);
+                compilerError = result.error();
+            } else {
+                compilerError = PrecompiledHeaders.withoutIncludeTrace(compilerError);
+            }
+        }
+        String compilerOutput = compilerError.isBlank() ? result.output() : compilerError;
+        String detail = compilerOutput.isBlank() ? "" : ":\n" + compilerOutput;
+        throw new CompilationException("Compilation failed for " + sourceFile.getFileName() + detail);
+    }
+
+    private ProcessResult runCompilerProcess(Path sourceFile, Path executablePath, List<String> flags, Optional<Path> precompiledHeader,
+                                             ResolvedTaskPolicy policy) throws IOException, InterruptedException {
+        // 编译器只能写入一个独立的输出目录，任务目录在沙箱中不可写
+        Path outputDirectory = Files.createTempDirectory(executablePath.getParent(), ".compile-");
+        Path output = outputDirectory.resolve(executablePath.getFileName());
+        try {
+            List<String> command = new ArrayList<>(flags.size() + 7);
+            command.add(flags.get(0));
+            command.add(sourceFile.toAbsolutePath().toString());
+            command.add("-o");
+            command.add(output.toAbsolutePath().toString());
+            command.addAll(flags.subList(1, flags.size()));
+            List<Path> readablePaths = new ArrayList<>(2);
+            readablePaths.add(sourceFile);
+            if (precompiledHeader.isPresent()) {
+                // -H 打印实际加载的头文件，用于确认预编译头确实被使用
+                command.add("-I" + precompiledHeader.get());
+                command.add("-Winvalid-pch");
+                command.add(PrecompiledHeaders.TRACE_FLAG);
+                readablePaths.add(precompiledHeader.get());
+            }
+            ProcessRunner.Request request = ProcessRunner.Request.builder()
+                    .command(command)
+                    .workingDirectory(sourceFile.getParent())
+                    .readablePaths(readablePaths)
+                    .outputDirectory(outputDirectory)
+                    .timeout(java.time.Duration.ofSeconds(60))
+                    .killGrace(java.time.Duration.ofSeconds(5))
+                    .memoryLimitBytes(memoryConfiguration.getDefaultLimit())
+                    .maxOutputBytes(executionProperties.getMaxOutputBytesPerCase())
+                    .maxErrorBytes(executionProperties.getMaxOutputBytesPerCase())
+                    .errorCaptureBytes(executionProperties.getCompilerDiagnosticsBytes())
+                    .profile(policy.profile())
+                    .requireSandbox(policy.sandboxRequired())
+                    .build();
+            ProcessResult result = processRunner.run(request);
+            if (result.status() == ProcessResult.Status.SUCCESS) {
+                Files.move(output, executablePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return result;
+        } finally {
+            Files.deleteIfExists(output);
+            Files.deleteIfExists(outputDirectory);
+        }
+    }
+
+    private ProcessResult runProcess(
+            Path executable,
+            Path inputFile,
+            Path outputFile,
+            long timeLimit,
+            long memoryLimit,
+            ResolvedTaskPolicy policy,
+            CancellationToken cancellationToken
+    ) throws IOException, InterruptedException {
+        return runProcess(executable, List.of(), List.of(), inputFile, outputFile, timeLimit, memoryLimit, policy,
+                cancellationToken);
+    }
+
     private ProcessResult runProcess(
             Path executable,
+            List<String> arguments,
+            List<Path> readablePaths,
             Path inputFile,
             Path outputFile,
             long timeLimit,
             long memoryLimit,
-            ResolvedTaskPolicy policy
+            ResolvedTaskPolicy policy,
+            CancellationToken cancellationToken
     ) throws IOException, InterruptedException {
         ProcessRunner.Request request = ProcessRunner.Request.builder()
-                .command(List.of(executable.toAbsolutePath().toString()))
+                .command(processCommand(executable, arguments))
                 .workingDirectory(executable.getParent())
+                .readablePaths(readablePaths)
                 .inputFile(inputFile)
                 .outputFile(outputFile)
-                .timeout(java.time.Duration.ofMillis(timeLimit))
+                .timeout(wallTimeout(timeLimit, policy))
+                .cpuTimeLimit(policy.cpuTimeLimit() ? java.time.Duration.ofMillis(timeLimit) : null)
+                .kernelLimits(kernelLimits(timeLimit, memoryLimit, policy))
                 .killGrace(java.time.Duration.ofSeconds(5))
                 .memoryLimitBytes(memoryLimit)
                 .maxOutputBytes(policy.maxOutputBytesPerCase())
                 .maxErrorBytes(policy.maxOutputBytesPerCase())
+                .errorCaptureBytes(executionProperties.getStderrCaptureBytes())
                 .profile(policy.profile())
                 .requireSandbox(policy.sandboxRequired())
+                .cancellationToken(cancellationToken)
+                .cpuCore(CpuAffinity.assignedCore())
                 .build();
         return processRunner.run(request);
     }
 
-    private String readUtf8FileLimited(Path file, long maxBytes) throws IOException {
+    private ProcessResult runBufferedProcess(
+            Path executable,
+            List<String> arguments,
+            CaseDataBuffer inputBuffer,
+            CaseDataBuffer outputBuffer,
+            long timeLimit,
+            long memoryLimit,
+            ResolvedTaskPolicy policy,
+            CancellationToken cancellationToken
+    ) throws IOException, InterruptedException {
+        return runBufferedProcess(executable, arguments, inputBuffer, outputBuffer, timeLimit, memoryLimit,
+                policy.maxOutputBytesPerCase(), policy, cancellationToken);
+    }
+
+    private ProcessResult runBufferedProcess(
+            Path executable,
+            List<String> arguments,
+            CaseDataBuffer inputBuffer,
+            CaseDataBuffer outputBuffer,
+            long timeLimit,
+            long memoryLimit,
+            long maxOutputBytes,
+            ResolvedTaskPolicy policy,
+            CancellationToken cancellationToken
+    ) throws IOException, InterruptedException {
+        ProcessRunner.Request request = ProcessRunner.Request.builder()
+                .command(processCommand(executable, arguments))
+                .workingDirectory(executable.getParent())
+                .inputBuffer(inputBuffer)
+                .outputBuffer(outputBuffer)
+                .timeout(wallTimeout(timeLimit, policy))
+                .cpuTimeLimit(policy.cpuTimeLimit() ? java.time.Duration.ofMillis(timeLimit) : null)
+                .kernelLimits(kernelLimits(timeLimit, memoryLimit, policy))
+                .killGrace(java.time.Duration.ofSeconds(5))
+                .memoryLimitBytes(memoryLimit)
+                .maxOutputBytes(maxOutputBytes)
+                .maxErrorBytes(policy.maxOutputBytesPerCase())
+                .errorCaptureBytes(executionProperties.getStderrCaptureBytes())
+                .profile(policy.profile())
+                .requireSandbox(policy.sandboxRequired())
+                .cancellationToken(cancellationToken)
+                .cpuCore(CpuAffinity.assignedCore())
+                .build();
+        return processRunner.run(request);
+    }
+
+    /**
+     * 按CPU时间判定超时时，墙钟时间只用于结束阻塞（如等待输入）的进程，放宽为两倍
+     */
+    private java.time.Duration wallTimeout(long timeLimit, ResolvedTaskPolicy policy) {
+        return java.time.Duration.ofMillis(policy.cpuTimeLimit() ? timeLimit * 2 : timeLimit);
+    }
+
+    private KernelLimits kernelLimits(long timeLimit, long memoryLimit, ResolvedTaskPolicy policy) {
+        if (!policy.kernelLimits()) {
+            return null;
+        }
+        return KernelLimits.forCase(java.time.Duration.ofMillis(timeLimit), memoryLimit,
+                policy.maxOutputBytesPerCase(), executionProperties.getKernelProcessLimit());
+    }
+
+    private List<String> processCommand(Path executable, List<String> arguments) {
+        List<String> command = new ArrayList<>(arguments.size() + 1);
+        command.add(executable.toAbsolutePath().toString());
+        command.addAll(arguments);
+        return command;
+    }
+
+    private InputStream openLimited(CaseDataBuffer buffer, long maxBytes) throws IOException {
+        if (buffer.size() > maxBytes) {
+            throw new IOException("Buffered output exceeds configured output byte limit");
+        }
+        return buffer.openInputStream();
+    }
+
+    private InputStream openLimited(Path file, long maxBytes) throws IOException {
         if (!Files.exists(file)) {
-            return "";
+            return InputStream.nullInputStream();
         }
         if (Files.size(file) > maxBytes) {
             throw new IOException("File exceeds configured output byte limit");
         }
-        return Files.readString(file);
+        return Files.newInputStream(file);
     }
 }
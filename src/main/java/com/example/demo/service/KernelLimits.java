@@ -0,0 +1,167 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resource limits the kernel enforces on a child process: CPU seconds (SIGXCPU), address space
+ * (allocations fail with ENOMEM), size of files it writes (SIGXFSZ) and number of processes of the
+ * user (fork fails with EAGAIN). A value of 0 leaves that limit unset.
+ *
+ * <p>The limits are applied by prefixing the command with util-linux {@code prlimit}, which sets
+ * them on itself and then execs the command, so they are in force before the first instruction of
+ * the program and the launched pid is still the one the runner waits for. Under the namespace
+ * sandbox the launcher sets them instead, see {@link NamespaceSandbox}.
+ */
+@Slf4j
+public record KernelLimits(long cpuSeconds, long addressSpaceBytes, long fileSizeBytes, long processes) {
+
+    /** The address space cap is this many times the memory limit; RSS is still judged exactly. */
+    static final int ADDRESS_SPACE_FACTOR = 2;
+
+    private static final int SIGABRT = 6;
+    private static final int SIGKILL = 9;
+    private static final int SIGXCPU = 24;
+    private static final int SIGXFSZ = 25;
+
+    private static final String BAD_ALLOC_TERMINATE = "terminate called after throwing an instance of 'std::bad_alloc'";
+
+    private static volatile Path prlimit;
+    private static volatile boolean probed;
+
+    /**
+     * Limits for one case: CPU is rounded up to whole seconds, the address space gets
+     * {@link #ADDRESS_SPACE_FACTOR} times the memory limit so that lazily touched allocations are
+     * judged on RSS, and the file size cap matches the output limit.
+     */
+    public static KernelLimits forCase(Duration timeLimit, long memoryLimitBytes, long maxOutputBytes, long processes) {
+        long cpuSeconds = Math.max(1, (timeLimit.toMillis() + 999) / 1000);
+        return new KernelLimits(cpuSeconds, addressSpaceFor(memoryLimitBytes), Math.max(0, maxOutputBytes),
+                Math.max(0, processes));
+    }
+
+    /**
+     * @return the address space cap for {@code memoryLimitBytes}, or 0 when there is none
+     */
+    public static long addressSpaceFor(long memoryLimitBytes) {
+        if (memoryLimitBytes <= 0 || memoryLimitBytes > Long.MAX_VALUE / ADDRESS_SPACE_FACTOR) {
+            return 0;
+        }
+        return memoryLimitBytes * ADDRESS_SPACE_FACTOR;
+    }
+
+    /**
+     * Whether {@code prlimit} is available; without it the runner keeps its Java-side limits only.
+     */
+    public static boolean isSupported() {
+        return prlimitExecutable() != null;
+    }
+
+    /**
+     * @return the command wrapped by {@code prlimit}, or {@code command} itself when unsupported
+     */
+    public List<String> wrap(List<String> command) {
+        Path executable = prlimitExecutable();
+        if (executable == null) {
+            return command;
+        }
+        List<String> wrapped = new ArrayList<>(command.size() + 6);
+        wrapped.add(executable.toString());
+        if (cpuSeconds > 0) {
+            // SIGXCPU at the soft limit; a program that handles it is killed one second later.
+            wrapped.add("--cpu=" + cpuSeconds + ":" + (cpuSeconds + 1));
+        }
+        if (addressSpaceBytes > 0) {
+            wrapped.add("--as=" + addressSpaceBytes);
+        }
+        if (fileSizeBytes > 0) {
+            wrapped.add("--fsize=" + fileSizeBytes);
+        }
+        if (processes > 0) {
+            wrapped.add("--nproc=" + processes);
+        }
+        wrapped.add("--");
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    /**
+     * Maps how a process under these limits ended to the verdict the kernel enforced, or
+     * {@code null} when its exit was not caused by one of the limits.
+     *
+     * <p>A failed exit is memory limit exceeded when its wait4 peak RSS went over the memory limit.
+     * It is also memory limit exceeded when the process aborted on an uncaught
+     * {@code std::bad_alloc} under the address space cap, whatever its peak: the refused
+     * allocation was never resident, so the peak is usually far below the limit. The libstdc++
+     * message alone does not count, so a program that prints it and exits stays a runtime error.
+     *
+     * @param exitCode exit status, {@code 128 + signal} for a signal death
+     * @param cpuTimeMillis measured CPU time, or -1 when unknown
+     * @param peakMemoryBytes peak RSS, or 0 when unknown
+     */
+    public ProcessResult.Status classify(int exitCode, long cpuTimeMillis, long peakMemoryBytes, long memoryLimitBytes,
+                                         String stderr) {
+        if (exitCode == 128 + SIGXCPU
+                || (exitCode == 128 + SIGKILL && cpuSeconds > 0 && cpuTimeMillis >= (cpuSeconds + 1) * 1000)) {
+            return ProcessResult.Status.TIME_LIMIT_EXCEEDED;
+        }
+        if (exitCode == 128 + SIGXFSZ) {
+            return ProcessResult.Status.OUTPUT_LIMIT_EXCEEDED;
+        }
+        if (exitCode != 0 && addressSpaceBytes > 0 && memoryLimitBytes > 0) {
+            if (peakMemoryBytes > memoryLimitBytes) {
+                return ProcessResult.Status.MEMORY_LIMIT_EXCEEDED;
+            }
+            if (exitCode == 128 + SIGABRT && abortedOnBadAlloc(stderr)) {
+                return ProcessResult.Status.MEMORY_LIMIT_EXCEEDED;
+            }
+        }
+        return null;
+    }
+
+    private static boolean abortedOnBadAlloc(String stderr) {
+        return stderr != null && stderr.lines().anyMatch(line -> line.startsWith(BAD_ALLOC_TERMINATE));
+    }
+
+    private static Path prlimitExecutable() {
+        if (!probed) {
+            synchronized (KernelLimits.class) {
+                if (!probed) {
+                    prlimit = findPrlimit();
+                    probed = true;
+                    if (prlimit == null) {
+                        log.warn("prlimit not found; kernel resource limits are disabled");
+                    }
+                }
+            }
+        }
+        return prlimit;
+    }
+
+    private static Path findPrlimit() {
+        if (!System.getProperty("os.name").toLowerCase().contains("linux")) {
+            return null;
+        }
+        String path = System.getenv("PATH");
+        List<String> directories = new ArrayList<>(List.of("/usr/bin", "/bin"));
+        if (path != null) {
+            directories.addAll(0, List.of(path.split(File.pathSeparator)));
+        }
+        for (String directory : directories) {
+            if (directory.isBlank()) {
+                continue;
+            }
+            Path candidate = Path.of(directory, "prlimit");
+            if (Files.isExecutable(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
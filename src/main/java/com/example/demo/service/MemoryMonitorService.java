@@ -2,36 +2,90 @@ package com.example.demo.service;
 
 import com.example.demo.config.MemoryConfiguration;
 import com.example.demo.exception.MemoryLimitExceededException;
-import lombok.RequiredArgsConstructor;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Platform;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PreDestroy;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 内存监控服务
  * 用于监控进程的内存使用情况，实现内存限制功能
+ *
+ * <p>所有被监控的进程共用一个采样线程：每一轮只读取到期进程的 {@code /proc/<pid>/statm}，
+ * 不再为每次采样启动 {@code cat}/{@code ps} 子进程。采样间隔自适应：进程刚启动时按
+ * {@code initial-check-interval} 密集采样，随运行时间逐步放宽到 {@code check-interval}。
+ * 采样线程自身消耗的CPU时间作为指标 {@code judge.memory.sampler.cpu} 上报。
  */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class MemoryMonitorService {
-    
+
+    private static final Path PROC = Path.of("/proc");
+
     private final MemoryConfiguration memoryConfig;
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(5);
-    
+    private final boolean procAvailable = !isWindows() && Files.isDirectory(PROC.resolve("self"));
+    private final long pageSize = procAvailable ? pageSize() : 4096;
+    private final Map<Long, MonitoredProcess> monitored = new ConcurrentHashMap<>();
+    private final Object wakeup = new Object();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong samplerCpuNanos = new AtomicLong();
+    private final AtomicLong samplerWallNanos = new AtomicLong();
+    private Thread sampler;
+    private boolean shutdown;
+
     /**
      * 内存监控结果
      */
     public record MemoryUsage(long virtualMemory, long physicalMemory, long peakMemory) {}
-    
+
+    /**
+     * 采样线程的累计开销
+     *
+     * @param cpuNanos 采样线程消耗的CPU时间；平台不支持线程CPU计时时为 -1
+     */
+    public record SamplerStats(int monitoredProcesses, long ticks, long samples, long cpuNanos, long wallNanos) {}
+
+    @Autowired
+    public MemoryMonitorService(MemoryConfiguration memoryConfig) {
+        this(memoryConfig, Metrics.globalRegistry);
+    }
+
+    public MemoryMonitorService(MemoryConfiguration memoryConfig, MeterRegistry meterRegistry) {
+        this.memoryConfig = memoryConfig;
+        Gauge.builder("judge.memory.sampler.monitored", monitored, Map::size)
+                .description("Processes currently watched by the memory sampler")
+                .register(meterRegistry);
+        FunctionCounter.builder("judge.memory.sampler.samples", samples, AtomicLong::get)
+                .description("Memory samples taken")
+                .register(meterRegistry);
+        FunctionCounter.builder("judge.memory.sampler.cpu", samplerCpuNanos, nanos -> nanos.get() / 1e9)
+                .description("CPU seconds spent by the memory sampler thread")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
     /**
      * 监控进程内存使用情况
      * 
@@ -40,55 +94,128 @@ public class MemoryMonitorService {
      * @return CompletableFuture包装的内存使用结果
      */
     public CompletableFuture<MemoryUsage> monitorProcess(Process process, long memoryLimit) {
-        AtomicLong peakMemory = new AtomicLong(0);
-        AtomicLong currentVirtual = new AtomicLong(0);
-        AtomicLong currentPhysical = new AtomicLong(0);
-        AtomicBoolean memoryExceeded = new AtomicBoolean(false);
-        
-        CompletableFuture<MemoryUsage> future = new CompletableFuture<>();
-        
-        // 定期检查内存使用情况
-        var monitorTask = scheduler.scheduleAtFixedRate(() -> {
-            try {
-                if (!process.isAlive()) {
-                    // 进程已结束，返回结果
-                    future.complete(new MemoryUsage(
-                        currentVirtual.get(), 
-                        currentPhysical.get(), 
-                        peakMemory.get()
-                    ));
+        return monitorProcess(process, memoryLimit, 0);
+    }
+
+    /**
+     * 监控 process 之下第 depth 代的进程（每一代取第一个子进程），例如启动器 fork 出的被测命令；
+     * 超限时结束的仍是 process。目标进程出现之前不采样。
+     */
+    public CompletableFuture<MemoryUsage> monitorProcess(Process process, long memoryLimit, int depth) {
+        MonitoredProcess entry = new MonitoredProcess(process, memoryLimit, Math.max(0, depth), System.nanoTime());
+        monitored.put(process.pid(), entry);
+        entry.future.whenComplete((result, throwable) -> monitored.remove(process.pid(), entry));
+        process.onExit().thenRun(() -> entry.complete());
+        synchronized (wakeup) {
+            if (shutdown) {
+                entry.future.completeExceptionally(new IllegalStateException("Memory monitor is shut down"));
+                return entry.future;
+            }
+            if (sampler == null) {
+                sampler = new Thread(this::sampleLoop, "memory-sampler");
+                sampler.setDaemon(true);
+                sampler.start();
+            }
+            wakeup.notifyAll();
+        }
+        return entry.future;
+    }
+
+    public SamplerStats samplerStats() {
+        return new SamplerStats(monitored.size(), ticks.get(), samples.get(),
+                threads.isCurrentThreadCpuTimeSupported() ? samplerCpuNanos.get() : -1, samplerWallNanos.get());
+    }
+
+    private void sampleLoop() {
+        boolean cpuTimed = threads.isCurrentThreadCpuTimeSupported();
+        while (true) {
+            long tickStarted = System.nanoTime();
+            long cpuStarted = cpuTimed ? threads.getCurrentThreadCpuTime() : 0;
+            long nextDue = Long.MAX_VALUE;
+            boolean sampled = false;
+            for (MonitoredProcess entry : monitored.values()) {
+                if (entry.future.isDone()) {
+                    continue;
+                }
+                if (entry.nextSampleNanos - tickStarted <= 0) {
+                    sample(entry, tickStarted);
+                    sampled = true;
+                }
+                if (!entry.future.isDone()) {
+                    nextDue = Math.min(nextDue, entry.nextSampleNanos);
+                }
+            }
+            if (sampled) {
+                ticks.incrementAndGet();
+                samplerWallNanos.addAndGet(System.nanoTime() - tickStarted);
+                if (cpuTimed) {
+                    samplerCpuNanos.addAndGet(threads.getCurrentThreadCpuTime() - cpuStarted);
+                }
+            }
+            synchronized (wakeup) {
+                if (shutdown) {
                     return;
                 }
-                
-                MemoryUsage usage = getProcessMemoryUsage(process.pid());
-                if (usage != null) {
-                    currentVirtual.set(usage.virtualMemory());
-                    currentPhysical.set(usage.physicalMemory());
-                    
-                    // 更新峰值内存
-                    long currentPeak = Math.max(usage.virtualMemory(), usage.physicalMemory());
-                    peakMemory.updateAndGet(existing -> Math.max(existing, currentPeak));
-                    
-                    // 检查是否超出内存限制
-                    if (usage.physicalMemory() > memoryLimit && memoryExceeded.compareAndSet(false, true)) {
-                        process.destroyForcibly();
-                        future.completeExceptionally(new MemoryLimitExceededException(
-                            usage.physicalMemory(), memoryLimit
-                        ));
-                        return;
+                try {
+                    if (nextDue == Long.MAX_VALUE) {
+                        if (monitored.isEmpty()) {
+                            wakeup.wait();
+                        }
+                    } else {
+                        long waitNanos = nextDue - System.nanoTime();
+                        if (waitNanos > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(wakeup, waitNanos);
+                        }
                     }
+                } catch (InterruptedException e) {
+                    return;
                 }
-            } catch (Exception e) {
-                if (!future.isDone()) {
-                    future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void sample(MonitoredProcess entry, long now) {
+        try {
+            if (!entry.process.isAlive()) {
+                entry.complete();
+                return;
+            }
+            long pid = entry.targetPid();
+            if (pid < 0) {
+                entry.nextSampleNanos = now + nextInterval(0);
+                return;
+            }
+            MemoryUsage usage = getProcessMemoryUsage(pid);
+            samples.incrementAndGet();
+            if (usage != null) {
+                entry.currentVirtual = usage.virtualMemory();
+                entry.currentPhysical = usage.physicalMemory();
+                entry.peakMemory = Math.max(entry.peakMemory, Math.max(usage.virtualMemory(), usage.physicalMemory()));
+
+                // 检查是否超出内存限制
+                // 先标记超限再结束进程，避免退出回调抢先以正常结果完成
+                if (usage.physicalMemory() > entry.memoryLimit) {
+                    entry.future.completeExceptionally(new MemoryLimitExceededException(
+                        usage.physicalMemory(), entry.memoryLimit
+                    ));
+                    entry.process.destroyForcibly();
+                    return;
                 }
             }
-        }, 0, memoryConfig.getCheckInterval(), TimeUnit.MILLISECONDS);
-        
-        // 当future完成时取消监控任务
-        future.whenComplete((result, throwable) -> monitorTask.cancel(true));
-        
-        return future;
+            entry.nextSampleNanos = now + nextInterval(now - entry.startedNanos);
+        } catch (Exception e) {
+            entry.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 刚启动的进程内存增长最快，先按初始间隔密集采样；之后间隔约为已运行时间的1/10，
+     * 上限为 check-interval。
+     */
+    long nextInterval(long ageNanos) {
+        long initial = TimeUnit.MILLISECONDS.toNanos(Math.max(1, memoryConfig.getInitialCheckInterval()));
+        long max = TimeUnit.MILLISECONDS.toNanos(Math.max(1, memoryConfig.getCheckInterval()));
+        return Math.max(Math.min(initial, max), Math.min(max, ageNanos / 10));
     }
     
     /**
@@ -98,50 +225,90 @@ public class MemoryMonitorService {
      * @return 内存使用情况，如果获取失败返回null
      */
     private MemoryUsage getProcessMemoryUsage(long pid) {
-        boolean isWindows = System.getProperty("os.name").toLowerCase().contains("windows");
-        
-        if (isWindows) {
+        if (isWindows()) {
             // Windows系统使用wmic命令
             return getMemoryUsageWindows(pid);
-        } else {
-            // Linux系统使用/proc文件系统
+        }
+        if (procAvailable) {
+            // Linux系统直接读取/proc文件系统
             return getMemoryUsageLinux(pid);
         }
+        return getMemoryUsageWithPs(pid);
     }
     
     /**
-     * Linux系统获取内存使用情况
+     * Linux系统获取内存使用情况：/proc/[pid]/statm 前两列为虚拟内存与常驻内存页数
      */
     private MemoryUsage getMemoryUsageLinux(long pid) {
         try {
-            // 在Linux系统上读取/proc/[pid]/status文件获取内存信息
-            ProcessBuilder pb = new ProcessBuilder("cat", "/proc/" + pid + "/status");
-            Process proc = pb.start();
-            
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(proc.getInputStream()))) {
-                String line;
-                long vmRSS = 0; // 物理内存 (KB)
-                long vmSize = 0; // 虚拟内存 (KB)
-                
-                while ((line = reader.readLine()) != null) {
-                    if (line.startsWith("VmRSS:")) {
-                        String[] parts = line.split("\\s+");
-                        if (parts.length >= 2) {
-                            vmRSS = Long.parseLong(parts[1]) * 1024; // 转换为字节
-                        }
-                    } else if (line.startsWith("VmSize:")) {
-                        String[] parts = line.split("\\s+");
-                        if (parts.length >= 2) {
-                            vmSize = Long.parseLong(parts[1]) * 1024; // 转换为字节
-                        }
-                    }
+            String statm = new String(Files.readAllBytes(PROC.resolve(Long.toString(pid)).resolve("statm")),
+                    StandardCharsets.US_ASCII);
+            int firstSpace = statm.indexOf(' ');
+            int secondSpace = statm.indexOf(' ', firstSpace + 1);
+            long sizePages = Long.parseLong(statm, 0, firstSpace, 10);
+            long residentPages = Long.parseLong(statm, firstSpace + 1, secondSpace, 10);
+            return new MemoryUsage(sizePages * pageSize, residentPages * pageSize, 0);
+        } catch (IOException | RuntimeException e) {
+            // 进程已退出或无权读取
+            return null;
+        }
+    }
+
+    private static long pageSize() {
+        try {
+            return NativeLibrary.getInstance(Platform.C_LIBRARY_NAME).getFunction("getpagesize").invokeInt(new Object[0]);
+        } catch (Throwable e) {
+            return 4096;
+        }
+    }
+
+    private static boolean isWindows() {
+        return System.getProperty("os.name").toLowerCase().contains("windows");
+    }
+
+    /**
+     * 单个被监控进程的采样状态，只在采样线程中读写（future除外）
+     */
+    private static final class MonitoredProcess {
+
+        private final Process process;
+        private final long memoryLimit;
+        private final int depth;
+        private final long startedNanos;
+        private final CompletableFuture<MemoryUsage> future = new CompletableFuture<>();
+        private volatile long nextSampleNanos;
+        private volatile long currentVirtual;
+        private volatile long currentPhysical;
+        private volatile long peakMemory;
+        private long targetPid = -1;
+
+        private MonitoredProcess(Process process, long memoryLimit, int depth, long startedNanos) {
+            this.process = process;
+            this.memoryLimit = memoryLimit;
+            this.depth = depth;
+            this.startedNanos = startedNanos;
+            this.nextSampleNanos = startedNanos;
+        }
+
+        /**
+         * 被采样进程的pid，尚未 fork 出来时为 -1；查找子进程要扫描 /proc，找到后不再查找
+         */
+        private long targetPid() {
+            if (targetPid < 0) {
+                // 自行 wait4 的进程不支持 toHandle，按pid查找
+                ProcessHandle target = ProcessHandle.of(process.pid()).orElse(null);
+                for (int generation = 0; generation < depth && target != null; generation++) {
+                    target = target.children().findFirst().orElse(null);
+                }
+                if (target != null) {
+                    targetPid = target.pid();
                 }
-                
-                return new MemoryUsage(vmSize, vmRSS, 0);
             }
-        } catch (IOException | NumberFormatException e) {
-            // 如果无法获取内存信息，尝试使用ps命令作为备选方案
-            return getMemoryUsageWithPs(pid);
+            return targetPid;
+        }
+
+        private void complete() {
+            future.complete(new MemoryUsage(currentVirtual, currentPhysical, peakMemory));
         }
     }
     
@@ -263,14 +430,10 @@ public class MemoryMonitorService {
      */
     @PreDestroy
     public void shutdown() {
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-            Thread.currentThread().interrupt();
+        synchronized (wakeup) {
+            shutdown = true;
+            wakeup.notifyAll();
         }
+        monitored.values().forEach(MonitoredProcess::complete);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Input of a multi-test pack: a first line holding the number of cases {@code T}, followed by the
+ * inputs of the cases in order, the format most competitive-programming solutions already read.
+ * An input that does not end in a newline gets one, so the next case starts on its own line.
+ */
+public final class MultiTestInput {
+
+    private MultiTestInput() {
+    }
+
+    public static void write(List<CaseDataBuffer> inputs, OutputStream output) throws IOException {
+        output.write((inputs.size() + "\n").getBytes(StandardCharsets.US_ASCII));
+        byte[] chunk = new byte[8192];
+        for (CaseDataBuffer input : inputs) {
+            try (InputStream in = input.openInputStream()) {
+                writeCase(in, output, chunk);
+            }
+        }
+    }
+
+    /**
+     * A pack of {@code input} alone, which is how a pack task runs a case judged on its own.
+     */
+    public static void writeSingle(Path input, OutputStream output) throws IOException {
+        output.write("1\n".getBytes(StandardCharsets.US_ASCII));
+        try (InputStream in = Files.newInputStream(input)) {
+            writeCase(in, output, new byte[8192]);
+        }
+    }
+
+    private static void writeCase(InputStream in, OutputStream output, byte[] chunk) throws IOException {
+        int last = '\n';
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            if (read > 0) {
+                output.write(chunk, 0, read);
+                last = chunk[read - 1];
+            }
+        }
+        if (last != '\n') {
+            output.write('\n');
+        }
+    }
+}
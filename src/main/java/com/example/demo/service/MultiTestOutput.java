@@ -0,0 +1,124 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Output of a multi-test pack read back case by case. A packed output carries no case
+ * boundaries, so each case takes as many lines as its expected answer has; a program that
+ * formats a case differently shifts every later case, which then fails to match and is judged on
+ * its own instead.
+ */
+public final class MultiTestOutput {
+
+    private final InputStream source;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+    private Segment current;
+
+    public MultiTestOutput(InputStream source) {
+        this.source = source;
+    }
+
+    /**
+     * @return the newlines of {@code answer}, plus one for a last line without a newline
+     */
+    public static long lines(InputStream answer) throws IOException {
+        byte[] chunk = new byte[8192];
+        long lines = 0;
+        int last = '\n';
+        int read;
+        while ((read = answer.read(chunk)) != -1) {
+            for (int i = 0; i < read; i++) {
+                if (chunk[i] == '\n') {
+                    lines++;
+                }
+            }
+            if (read > 0) {
+                last = chunk[read - 1];
+            }
+        }
+        return last == '\n' ? lines : lines + 1;
+    }
+
+    /**
+     * The next {@code lines} lines of the output, or fewer at its end. Whatever the previous case
+     * left unread is skipped first.
+     */
+    public InputStream nextCase(long lines) throws IOException {
+        skipCurrent();
+        current = new Segment(lines);
+        return current;
+    }
+
+    /**
+     * Whether output is left over after the cases taken so far.
+     */
+    public boolean hasRemaining() throws IOException {
+        skipCurrent();
+        return fill();
+    }
+
+    private void skipCurrent() throws IOException {
+        if (current != null) {
+            byte[] discard = new byte[8192];
+            while (current.read(discard, 0, discard.length) != -1) {
+                // skip
+            }
+            current = null;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        while (position == limit) {
+            int read = source.read(buffer);
+            if (read < 0) {
+                return false;
+            }
+            position = 0;
+            limit = read;
+        }
+        return true;
+    }
+
+    private final class Segment extends InputStream {
+
+        private long remainingLines;
+
+        private Segment(long lines) {
+            this.remainingLines = lines;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remainingLines == 0 || !fill()) {
+                return -1;
+            }
+            byte value = buffer[position++];
+            if (value == '\n') {
+                remainingLines--;
+            }
+            return value & 0xff;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (remainingLines == 0 || !fill()) {
+                return -1;
+            }
+            int copied = 0;
+            while (copied < length && position < limit && remainingLines > 0) {
+                byte value = buffer[position++];
+                target[offset + copied++] = value;
+                if (value == '\n') {
+                    remainingLines--;
+                }
+            }
+            return copied;
+        }
+    }
+}
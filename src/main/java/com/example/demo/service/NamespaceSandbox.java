@@ -0,0 +1,183 @@
+package com.example.demo.service;
+
+import com.example.demo.config.SandboxConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sandboxes a single exec with {@code ns-launcher}: fresh user, mount, pid, net, ipc and uts
+ * namespaces, a seccomp filter, and a root that holds only read-only system paths, the program
+ * and the files its request names, each at its own path, plus a private {@code /tmp} that is the
+ * run's scratch and working directory. The task directory itself is never mounted, so a program
+ * cannot read other cases' answers or touch the oracle, checker and generator; stdin and stdout
+ * arrive as descriptors opened outside. Only a request's {@link ProcessRunner.Request#outputDirectory()
+ * output directory}, such as a compile's, is writable. It costs a few milliseconds over direct
+ * execution, where firejail copied the task directory in and out on every run.
+ *
+ * <p>The launcher is a small C program, {@code src/main/c/ns-launcher.c}, built ahead of time by
+ * {@code scripts/build-ns-launcher.sh} and found at {@code judge.sandbox.namespace-launcher-path}.
+ * It is used only after a trial run succeeds; a missing launcher, or a kernel that refuses
+ * unprivileged user namespaces, leaves it unavailable.
+ *
+ * <p>The launcher also sets a command's {@link KernelLimits} itself, once inside the user
+ * namespace, so that the process limit counts the sandbox's processes rather than all of the
+ * service user's. The kernel exempts processes of the host root from it, so it only holds when
+ * the service does not run as root. The command runs {@link #COMMAND_DEPTH} generations below the
+ * launcher, which is what the memory sampler has to follow.
+ */
+@Service
+@Slf4j
+public class NamespaceSandbox {
+
+    /** The command is a child of the namespace's init, itself a child of the launcher. */
+    public static final int COMMAND_DEPTH = 2;
+
+    private static final String NAMESPACE = "namespace";
+    private static final long PROBE_TIMEOUT_SECONDS = 60;
+    /** Launchers probed by this JVM; commands starting with one are sandboxed. */
+    private static final Set<String> LAUNCHERS = ConcurrentHashMap.newKeySet();
+
+    private final SandboxConfiguration sandboxConfig;
+    private volatile Path launcher;
+    private volatile boolean probed;
+
+    public NamespaceSandbox(SandboxConfiguration sandboxConfig) {
+        this.sandboxConfig = sandboxConfig;
+    }
+
+    public boolean isAvailable() {
+        if (!sandboxConfig.isEnabled() || !NAMESPACE.equalsIgnoreCase(sandboxConfig.getLauncher())) {
+            return false;
+        }
+        if (!probed) {
+            synchronized (this) {
+                if (!probed) {
+                    launcher = probe();
+                    probed = true;
+                }
+            }
+        }
+        return launcher != null;
+    }
+
+    /**
+     * @param readablePaths   files besides the program that {@code command} may read
+     * @param outputDirectory the only host directory {@code command} may write, or {@code null}
+     * @param limits          limits the launcher sets on {@code command}, or {@code null}
+     * @return {@code command} run by the launcher
+     */
+    public List<String> wrap(List<String> command, List<Path> readablePaths, Path outputDirectory,
+                             KernelLimits limits) {
+        if (!isAvailable()) {
+            throw new IllegalStateException("Namespace sandbox is unavailable");
+        }
+        return launcherCommand(launcher, command, readablePaths, outputDirectory, limits);
+    }
+
+    /**
+     * Whether {@code command} runs under a launcher of this JVM, so its profile's need for a
+     * sandbox is met.
+     */
+    public static boolean isSandboxed(List<String> command) {
+        return command != null && !command.isEmpty() && LAUNCHERS.contains(command.get(0));
+    }
+
+    private List<String> launcherCommand(Path executable, List<String> command, List<Path> readablePaths,
+                                         Path outputDirectory, KernelLimits limits) {
+        List<String> wrapped = new ArrayList<>(command.size() + 2 * sandboxConfig.getReadOnlyPaths().size()
+                + 2 * readablePaths.size() + 8);
+        wrapped.add(executable.toString());
+        for (String path : sandboxConfig.getReadOnlyPaths()) {
+            wrapped.add("-r");
+            wrapped.add(path);
+        }
+        if (command.get(0).startsWith("/")) {
+            wrapped.add("-r");
+            wrapped.add(command.get(0));
+        }
+        for (Path path : readablePaths) {
+            wrapped.add("-r");
+            wrapped.add(path.toAbsolutePath().normalize().toString());
+        }
+        if (outputDirectory != null) {
+            wrapped.add("-o");
+            wrapped.add(outputDirectory.toAbsolutePath().normalize().toString());
+        }
+        if (!sandboxConfig.isNetworkDisabled()) {
+            wrapped.add("-n");
+        }
+        if (limits != null) {
+            addLimit(wrapped, "-c", limits.cpuSeconds());
+            addLimit(wrapped, "-m", limits.addressSpaceBytes());
+            addLimit(wrapped, "-f", limits.fileSizeBytes());
+            addLimit(wrapped, "-p", limits.processes());
+        }
+        wrapped.add("--");
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    private static void addLimit(List<String> command, String option, long value) {
+        if (value > 0) {
+            command.add(option);
+            command.add(Long.toString(value));
+        }
+    }
+
+    private Path probe() {
+        if (!System.getProperty("os.name").toLowerCase().contains("linux")) {
+            return null;
+        }
+        String configured = sandboxConfig.getNamespaceLauncherPath();
+        Path executable = configured == null || configured.isBlank() ? null : Path.of(configured).toAbsolutePath();
+        if (executable == null || !Files.isRegularFile(executable) || !Files.isExecutable(executable)) {
+            log.warn("ns-launcher not installed at {} (build it with scripts/build-ns-launcher.sh); "
+                    + "namespace sandbox disabled", configured);
+            return null;
+        }
+        try {
+            String probeError = run(launcherCommand(executable, List.of("true"), List.of(), null, null),
+                    Path.of(System.getProperty("java.io.tmpdir")));
+            if (probeError != null) {
+                log.warn("Namespace sandbox unavailable on this host, falling back to firejail: {}", probeError);
+                return null;
+            }
+            LAUNCHERS.add(executable.toString());
+            log.info("Sandboxing with user/mount/pid/net namespaces and seccomp via {}", executable);
+            return executable;
+        } catch (IOException e) {
+            log.warn("Failed to probe ns-launcher, namespace sandbox disabled: {}", e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * @return {@code null} on a zero exit, otherwise what went wrong
+     */
+    private static String run(List<String> command, Path directory) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+                .directory(directory.toFile())
+                .redirectErrorStream(true)
+                .start();
+        process.getOutputStream().close();
+        if (!process.waitFor(PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            return command.get(0) + " timed out";
+        }
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+        return process.exitValue() == 0 ? null : "exit " + process.exitValue() + ": " + output;
+    }
+}
@@ -0,0 +1,684 @@
+package com.example.demo.service;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Library;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Starts processes with glibc {@code posix_spawnp} and reaps them with {@code wait4}, which
+ * returns the exact CPU time and peak RSS of the child and every descendant it waited for.
+ * {@link ProcessBuilder} cannot provide this: the JDK reaps its children on its own thread and
+ * discards their resource usage.
+ *
+ * <p>At exec the kernel folds the high-water RSS of the mm being replaced into the child's
+ * {@code maxrss}; for a spawned child that mm is the JVM's, so {@code wait4} never reports less
+ * than the JVM's own peak. A {@code maxrss} that does not exceed the JVM's {@code VmHWM} is
+ * therefore reported as unknown and callers keep their sampled peak.
+ *
+ * <p>All children are reaped by one {@code native-reaper} thread that waits on their pidfds with
+ * {@code epoll}, instead of a blocked thread per child. Kernels without {@code pidfd_open}
+ * (before 5.3) get a waiting thread per child.
+ *
+ * <p>Only available on 64-bit Linux with glibc 2.34 or newer ({@code addchdir_np} and
+ * {@code addclosefrom_np}); {@link #load()} returns {@code null} elsewhere and callers fall back to
+ * {@link ProcessBuilder}.
+ */
+@Slf4j
+public final class NativeProcessLauncher {
+
+    private static final int O_RDONLY = 0;
+    private static final int O_WRONLY = 1;
+    private static final int O_CREAT = 0x40;
+    private static final int O_TRUNC = 0x200;
+    private static final int O_CLOEXEC = 0x80000;
+    private static final int P_PID = 1;
+    private static final int WEXITED = 4;
+    private static final int WNOWAIT = 0x01000000;
+    private static final int SIGKILL = 9;
+    private static final int EINTR = 4;
+    private static final int ESRCH = 3;
+    private static final int SIGINFO_SIZE = 128;
+    /** {@code struct rusage} on LP64: two {@code timeval}s followed by fourteen longs. */
+    private static final int RUSAGE_SIZE = 144;
+    private static final int FILE_ACTIONS_SIZE = 128;
+    private static final int BUFFER_SIZE = 8192;
+    /** Same number in the x86_64 and the generic (arm64) syscall tables. */
+    private static final long SYS_PIDFD_OPEN = 434;
+    private static final int EPOLL_CTL_ADD = 1;
+    private static final int EPOLL_CTL_DEL = 2;
+    private static final int EPOLLIN = 1;
+    private static final int MAX_EVENTS = 64;
+    /** {@code struct epoll_event} is packed on x86_64 only. */
+    private static final int EPOLL_EVENT_SIZE = Platform.isIntel() ? 12 : 16;
+    private static final int EPOLL_DATA_OFFSET = Platform.isIntel() ? 4 : 8;
+
+    private static volatile NativeProcessLauncher instance;
+    private static volatile boolean probed;
+
+    private final LibC libc;
+    /** {@code null} when epoll cannot be used; every child then gets a thread from {@link #reapers}. */
+    private final SharedReaper sharedReaper;
+    private final ExecutorService reapers = Executors.newCachedThreadPool(daemonThreads());
+
+    private NativeProcessLauncher(LibC libc) {
+        this.libc = libc;
+        this.sharedReaper = SharedReaper.open(this);
+    }
+
+    /**
+     * Returns the shared launcher, or {@code null} when posix_spawn/wait4 cannot be used here.
+     */
+    public static NativeProcessLauncher load() {
+        if (!probed) {
+            synchronized (NativeProcessLauncher.class) {
+                if (!probed) {
+                    instance = probe();
+                    probed = true;
+                }
+            }
+        }
+        return instance;
+    }
+
+    private static NativeProcessLauncher probe() {
+        try {
+            if (!Platform.isLinux() || Native.LONG_SIZE != 8) {
+                return null;
+            }
+            NativeLibrary c = NativeLibrary.getInstance(Platform.C_LIBRARY_NAME);
+            c.getFunction("posix_spawn_file_actions_addchdir_np");
+            c.getFunction("posix_spawn_file_actions_addclosefrom_np");
+            return new NativeProcessLauncher(Native.load(Platform.C_LIBRARY_NAME, LibC.class));
+        } catch (Throwable e) {
+            log.info("posix_spawn launcher unavailable, using ProcessBuilder: {}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Starts {@code command} in {@code workingDirectory}. Stdin is read from {@code inputFile} when
+     * given, otherwise from a pipe. Stdout is opened onto {@code outputFile} when given, so the
+     * child writes it directly and {@link Process#getInputStream()} is empty; otherwise it is a
+     * pipe. Stderr is always a pipe.
+     */
+    public NativeProcess start(List<String> command, Path workingDirectory, Path inputFile, Path outputFile)
+            throws IOException {
+        int[] stdin = null;
+        int[] stdout = null;
+        int[] stderr = null;
+        Memory actions = new Memory(FILE_ACTIONS_SIZE);
+        check(libc.posix_spawn_file_actions_init(actions), "posix_spawn_file_actions_init");
+        try {
+            stdin = inputFile == null ? pipe() : null;
+            stdout = outputFile == null ? pipe() : null;
+            stderr = pipe();
+            if (inputFile == null) {
+                check(libc.posix_spawn_file_actions_adddup2(actions, stdin[0], 0), "adddup2");
+            } else {
+                check(libc.posix_spawn_file_actions_addopen(actions, 0, inputFile.toAbsolutePath().toString(),
+                        O_RDONLY, 0), "addopen");
+            }
+            if (outputFile == null) {
+                check(libc.posix_spawn_file_actions_adddup2(actions, stdout[1], 1), "adddup2");
+            } else {
+                check(libc.posix_spawn_file_actions_addopen(actions, 1, outputFile.toAbsolutePath().toString(),
+                        O_WRONLY | O_CREAT | O_TRUNC, 0644), "addopen");
+            }
+            check(libc.posix_spawn_file_actions_adddup2(actions, stderr[1], 2), "adddup2");
+            // The JVM does not open every descriptor close-on-exec; never leak them to the child.
+            check(libc.posix_spawn_file_actions_addclosefrom_np(actions, 3), "addclosefrom_np");
+            check(libc.posix_spawn_file_actions_addchdir_np(actions, workingDirectory.toString()), "addchdir_np");
+
+            IntByReference pid = new IntByReference();
+            String[] argv = command.toArray(String[]::new);
+            String[] envp = environment();
+            // posix_spawnp returns once the child has exec'd, so the clock starts before the call.
+            long startedNanos = System.nanoTime();
+            check(libc.posix_spawnp(pid, argv[0], actions, null, argv, envp), "posix_spawnp " + argv[0]);
+
+            NativeProcess process = new NativeProcess(
+                    pid.getValue(),
+                    startedNanos,
+                    stdin == null ? OutputStream.nullOutputStream() : new FdOutputStream(stdin[1]),
+                    stdout == null ? InputStream.nullInputStream() : new FdInputStream(stdout[0]),
+                    new FdInputStream(stderr[0]));
+            closeQuietly(stdin == null ? -1 : stdin[0]);
+            closeQuietly(stdout == null ? -1 : stdout[1]);
+            closeQuietly(stderr[1]);
+            if (sharedReaper == null || !sharedReaper.register(process)) {
+                reapers.execute(process::reap);
+            }
+            return process;
+        } catch (IOException | RuntimeException e) {
+            for (int[] fds : new int[][]{stdin, stdout, stderr}) {
+                if (fds != null) {
+                    closeQuietly(fds[0]);
+                    closeQuietly(fds[1]);
+                }
+            }
+            throw e;
+        } finally {
+            libc.posix_spawn_file_actions_destroy(actions);
+        }
+    }
+
+    /**
+     * Whether children are reaped by the shared epoll thread rather than a thread each.
+     */
+    public boolean usesSharedReaper() {
+        return sharedReaper != null;
+    }
+
+    private int[] pipe() throws IOException {
+        int[] fds = new int[2];
+        try {
+            libc.pipe2(fds, O_CLOEXEC);
+        } catch (LastErrorException e) {
+            throw new IOException("pipe2 failed: errno " + e.getErrorCode(), e);
+        }
+        return fds;
+    }
+
+    private static String[] environment() {
+        Map<String, String> env = System.getenv();
+        String[] entries = new String[env.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : env.entrySet()) {
+            entries[i++] = entry.getKey() + "=" + entry.getValue();
+        }
+        return entries;
+    }
+
+    private static void check(int result, String call) throws IOException {
+        if (result != 0) {
+            throw new IOException(call + " failed: errno " + result);
+        }
+    }
+
+    private void closeQuietly(int fd) {
+        if (fd < 0) {
+            return;
+        }
+        try {
+            libc.close(fd);
+        } catch (LastErrorException ignored) {
+            // Nothing useful to do about a failed close.
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "native-reaper-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * One thread that reaps every child whose pidfd it watches. A pidfd becomes readable when the
+     * child has exited, so {@link NativeProcess#reap()} finds it already a zombie and returns at
+     * once. The pidfd refers to the unreaped child, so it can never name a recycled pid.
+     */
+    private static final class SharedReaper implements Runnable {
+
+        private final NativeProcessLauncher launcher;
+        private final int epoll;
+        /** Watched children by pidfd. */
+        private final Map<Integer, NativeProcess> processes = new ConcurrentHashMap<>();
+        private volatile boolean pidfdUnsupported;
+
+        private SharedReaper(NativeProcessLauncher launcher, int epoll) {
+            this.launcher = launcher;
+            this.epoll = epoll;
+        }
+
+        static SharedReaper open(NativeProcessLauncher launcher) {
+            int epoll;
+            try {
+                epoll = launcher.libc.epoll_create1(O_CLOEXEC);
+            } catch (LastErrorException | UnsatisfiedLinkError e) {
+                log.info("epoll unavailable, reaping each process on its own thread: {}", e.toString());
+                return null;
+            }
+            SharedReaper reaper = new SharedReaper(launcher, epoll);
+            Thread thread = new Thread(reaper, "native-reaper");
+            thread.setDaemon(true);
+            thread.start();
+            return reaper;
+        }
+
+        /**
+         * @return {@code false} when the child cannot be watched and needs a thread of its own
+         */
+        boolean register(NativeProcess process) {
+            if (pidfdUnsupported) {
+                return false;
+            }
+            int pidfd;
+            try {
+                pidfd = (int) launcher.libc.syscall(SYS_PIDFD_OPEN, process.pid, 0);
+            } catch (LastErrorException e) {
+                if (!pidfdUnsupported) {
+                    pidfdUnsupported = true;
+                    log.info("pidfd_open unavailable (errno {}), reaping each process on its own thread",
+                            e.getErrorCode());
+                }
+                return false;
+            }
+            processes.put(pidfd, process);
+            try (Memory event = new Memory(EPOLL_EVENT_SIZE)) {
+                event.clear();
+                event.setInt(0, EPOLLIN);
+                event.setLong(EPOLL_DATA_OFFSET, pidfd);
+                launcher.libc.epoll_ctl(epoll, EPOLL_CTL_ADD, pidfd, event);
+                return true;
+            } catch (LastErrorException e) {
+                processes.remove(pidfd);
+                launcher.closeQuietly(pidfd);
+                log.warn("Failed to watch process {}: errno {}", process.pid, e.getErrorCode());
+                return false;
+            }
+        }
+
+        @Override
+        public void run() {
+            try (Memory events = new Memory((long) EPOLL_EVENT_SIZE * MAX_EVENTS)) {
+                while (true) {
+                    int ready;
+                    try {
+                        ready = launcher.libc.epoll_wait(epoll, events, MAX_EVENTS, -1);
+                    } catch (LastErrorException e) {
+                        if (e.getErrorCode() == EINTR) {
+                            continue;
+                        }
+                        log.error("epoll_wait failed, shared reaper stopped: errno {}", e.getErrorCode());
+                        return;
+                    }
+                    for (int i = 0; i < ready; i++) {
+                        int pidfd = (int) events.getLong((long) i * EPOLL_EVENT_SIZE + EPOLL_DATA_OFFSET);
+                        NativeProcess process = processes.remove(pidfd);
+                        try {
+                            launcher.libc.epoll_ctl(epoll, EPOLL_CTL_DEL, pidfd, null);
+                        } catch (LastErrorException ignored) {
+                            // Closing the pidfd removes it from the set as well.
+                        }
+                        launcher.closeQuietly(pidfd);
+                        if (process != null) {
+                            process.reap();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * High-water RSS of this JVM ({@code VmHWM}); a child's {@code maxrss} up to this value may be
+     * the JVM's own. Returns {@link Long#MAX_VALUE} when unknown so no {@code maxrss} is trusted.
+     */
+    static long launcherPeakRss() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("VmHWM:")) {
+                    String kilobytes = line.substring("VmHWM:".length()).replace("kB", "").trim();
+                    return Long.parseLong(kilobytes) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to read VmHWM of the launcher: {}", e.getMessage());
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * CPU time and peak resident set of a reaped process tree.
+     *
+     * @param maxRssBytes largest resident set of the process or any descendant it waited for, or 0
+     *                    when {@code wait4} could not tell it apart from the JVM's own peak
+     * @param wallTimeMicros from the call of {@code posix_spawnp} to the observed exit
+     */
+    public record ResourceUsage(long userCpuMicros, long systemCpuMicros, long maxRssBytes, long wallTimeMicros) {
+
+        public long cpuTimeMillis() {
+            return (userCpuMicros + systemCpuMicros) / 1000;
+        }
+
+        public long wallTimeMillis() {
+            return wallTimeMicros / 1000;
+        }
+    }
+
+    /**
+     * A child started by {@link #start}. The child stays unreaped until its exit has been observed
+     * under {@link #lock}, so {@link #destroyForcibly()} can never signal a recycled pid.
+     */
+    public final class NativeProcess extends Process {
+
+        private final int pid;
+        private final long startedNanos;
+        private final OutputStream stdin;
+        private final InputStream stdout;
+        private final InputStream stderr;
+        private final CompletableFuture<Process> exit = new CompletableFuture<>();
+        private final Object lock = new Object();
+        private boolean reaped;
+        private int exitCode;
+        private ResourceUsage resourceUsage;
+
+        private NativeProcess(int pid, long startedNanos, OutputStream stdin, InputStream stdout, InputStream stderr) {
+            this.pid = pid;
+            this.startedNanos = startedNanos;
+            this.stdin = stdin;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        private void reap() {
+            try (Memory siginfo = new Memory(SIGINFO_SIZE); Memory rusage = new Memory(RUSAGE_SIZE)) {
+                while (true) {
+                    try {
+                        libc.waitid(P_PID, pid, siginfo, WEXITED | WNOWAIT);
+                        break;
+                    } catch (LastErrorException e) {
+                        if (e.getErrorCode() != EINTR) {
+                            throw e;
+                        }
+                    }
+                }
+                long wallTimeMicros = (System.nanoTime() - startedNanos) / 1000;
+                IntByReference status = new IntByReference();
+                synchronized (lock) {
+                    libc.wait4(pid, status, 0, rusage);
+                    reaped = true;
+                    exitCode = decodeStatus(status.getValue());
+                    long maxRss = rusage.getLong(32) * 1024;
+                    resourceUsage = new ResourceUsage(
+                            rusage.getLong(0) * 1_000_000 + rusage.getLong(8),
+                            rusage.getLong(16) * 1_000_000 + rusage.getLong(24),
+                            maxRss > launcherPeakRss() ? maxRss : 0,
+                            wallTimeMicros);
+                }
+                exit.complete(this);
+            } catch (Throwable e) {
+                log.warn("Failed to reap process {}: {}", pid, e.toString());
+                synchronized (lock) {
+                    reaped = true;
+                    exitCode = -1;
+                }
+                exit.complete(this);
+            }
+        }
+
+        private static int decodeStatus(int status) {
+            int signal = status & 0x7f;
+            return signal == 0 ? (status >> 8) & 0xff : 128 + signal;
+        }
+
+        /**
+         * Returns the usage reported by {@code wait4}, or {@code null} while the process runs.
+         */
+        public ResourceUsage resourceUsage() {
+            synchronized (lock) {
+                return resourceUsage;
+            }
+        }
+
+        @Override
+        public long pid() {
+            return pid;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return stdin;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return stdout;
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return stderr;
+        }
+
+        @Override
+        public int waitFor() throws InterruptedException {
+            try {
+                exit.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+            return exitValue();
+        }
+
+        @Override
+        public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+            try {
+                exit.get(timeout, unit);
+                return true;
+            } catch (TimeoutException e) {
+                return false;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int exitValue() {
+            synchronized (lock) {
+                if (!reaped) {
+                    throw new IllegalThreadStateException("process hasn't exited");
+                }
+                return exitCode;
+            }
+        }
+
+        @Override
+        public boolean isAlive() {
+            return !exit.isDone();
+        }
+
+        @Override
+        public CompletableFuture<Process> onExit() {
+            return exit.copy();
+        }
+
+        @Override
+        public void destroy() {
+            destroyForcibly();
+        }
+
+        @Override
+        public Process destroyForcibly() {
+            synchronized (lock) {
+                if (!reaped) {
+                    try {
+                        libc.kill(pid, SIGKILL);
+                    } catch (LastErrorException e) {
+                        if (e.getErrorCode() != ESRCH) {
+                            log.warn("Failed to kill process {}: errno {}", pid, e.getErrorCode());
+                        }
+                    }
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public Stream<ProcessHandle> children() {
+            return ProcessHandle.of(pid).map(ProcessHandle::children).orElseGet(Stream::empty);
+        }
+
+        @Override
+        public Stream<ProcessHandle> descendants() {
+            return ProcessHandle.of(pid).map(ProcessHandle::descendants).orElseGet(Stream::empty);
+        }
+    }
+
+    private final class FdInputStream extends InputStream {
+
+        private final int fd;
+        private final Memory buffer = new Memory(BUFFER_SIZE);
+        private boolean closed;
+
+        private FdInputStream(int fd) {
+            this.fd = fd;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                try {
+                    int read = (int) libc.read(fd, buffer, Math.min(len, BUFFER_SIZE));
+                    if (read == 0) {
+                        return -1;
+                    }
+                    buffer.read(0, b, off, read);
+                    return read;
+                } catch (LastErrorException e) {
+                    if (e.getErrorCode() != EINTR) {
+                        throw new IOException("read failed: errno " + e.getErrorCode(), e);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                closeQuietly(fd);
+                buffer.close();
+            }
+        }
+    }
+
+    private final class FdOutputStream extends OutputStream {
+
+        private final int fd;
+        private final Memory buffer = new Memory(BUFFER_SIZE);
+        private boolean closed;
+
+        private FdOutputStream(int fd) {
+            this.fd = fd;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            while (len > 0) {
+                int chunk = Math.min(len, BUFFER_SIZE);
+                buffer.write(0, b, off, chunk);
+                int written = 0;
+                while (written < chunk) {
+                    try {
+                        written += (int) libc.write(fd, buffer.share(written), chunk - written);
+                    } catch (LastErrorException e) {
+                        if (e.getErrorCode() != EINTR) {
+                            throw new IOException("write failed: errno " + e.getErrorCode(), e);
+                        }
+                    }
+                }
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                closeQuietly(fd);
+                buffer.close();
+            }
+        }
+    }
+
+    interface LibC extends Library {
+
+        int posix_spawn_file_actions_init(Pointer actions);
+
+        int posix_spawn_file_actions_destroy(Pointer actions);
+
+        int posix_spawn_file_actions_addopen(Pointer actions, int fd, String path, int oflag, int mode);
+
+        int posix_spawn_file_actions_adddup2(Pointer actions, int fd, int newFd);
+
+        int posix_spawn_file_actions_addchdir_np(Pointer actions, String path);
+
+        int posix_spawn_file_actions_addclosefrom_np(Pointer actions, int from);
+
+        int posix_spawnp(IntByReference pid, String file, Pointer actions, Pointer attributes, String[] argv, String[] envp);
+
+        int pipe2(int[] fds, int flags) throws LastErrorException;
+
+        int waitid(int idType, int id, Pointer info, int options) throws LastErrorException;
+
+        int wait4(int pid, IntByReference status, int options, Pointer rusage) throws LastErrorException;
+
+        int kill(int pid, int signal) throws LastErrorException;
+
+        /** Used for {@code pidfd_open}, which glibc before 2.36 does not wrap. */
+        long syscall(long number, long arg1, long arg2) throws LastErrorException;
+
+        int epoll_create1(int flags) throws LastErrorException;
+
+        int epoll_ctl(int epoll, int op, int fd, Pointer event) throws LastErrorException;
+
+        int epoll_wait(int epoll, Pointer events, int maxEvents, int timeout) throws LastErrorException;
+
+        /** {@code size_t}/{@code ssize_t} are mapped to {@code long}; the launcher only loads on LP64. */
+        long read(int fd, Pointer buffer, long count) throws LastErrorException;
+
+        long write(int fd, Pointer buffer, long count) throws LastErrorException;
+
+        int close(int fd) throws LastErrorException;
+    }
+}
@@ -0,0 +1,412 @@
+package com.example.demo.service;
+
+import com.example.demo.config.ExecutionProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Answers of the brute-force oracle keyed by SHA-256 over the oracle binary and the input bytes.
+ * Generators with a small input space produce many byte-identical inputs; a hit writes the cached
+ * answer where the oracle would have written it and skips the oracle run, so the comparator runs
+ * unchanged. The oracle is assumed to be deterministic.
+ *
+ * <p>Each task has its own {@link Session}, holding answers up to
+ * {@code judge.execution.oracle-cache-max-answer-bytes} in memory within
+ * {@code judge.execution.oracle-cache-task-max-bytes}. With {@code oracle-cache-shared} answers
+ * are also stored under {@code <storage base>/oracle-cache} for later tasks judged with the same
+ * oracle binary, and evicted in least-recently-used order beyond
+ * {@code oracle-cache-shared-max-bytes}.
+ */
+@Service
+@Slf4j
+public class OracleAnswerCache {
+
+    static final String DIRECTORY_NAME = "oracle-cache";
+
+    private final ExecutionProperties executionProperties;
+    private final Path sharedDirectory;
+    /** Access-ordered index of shared entries and their sizes, loaded from disk on first use. */
+    private final LinkedHashMap<String, Long> sharedEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean indexLoaded;
+    private long sharedBytes;
+
+    @Autowired
+    public OracleAnswerCache(ExecutionProperties executionProperties, FileTaskStore taskStore) {
+        this(executionProperties, taskStore.storageBase().resolve(DIRECTORY_NAME));
+    }
+
+    public OracleAnswerCache(ExecutionProperties executionProperties, Path sharedDirectory) {
+        this.executionProperties = executionProperties;
+        this.sharedDirectory = sharedDirectory.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Opens the cache of one task judged with {@code oracleExecutable}.
+     *
+     * @return {@code null} when the cache is disabled
+     */
+    public Session open(Path oracleExecutable) throws IOException {
+        if (!executionProperties.isOracleCacheEnabled()) {
+            return null;
+        }
+        MessageDigest digest = sha256();
+        try (InputStream in = Files.newInputStream(oracleExecutable)) {
+            in.transferTo(new DigestOutputStream(digest));
+        }
+        return new Session(digest.digest());
+    }
+
+    /**
+     * The input bytes of a case, opened as often as needed.
+     */
+    @FunctionalInterface
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Where the oracle writes its answer: read back after a miss, written on a hit.
+     */
+    public interface Target {
+
+        OutputStream openOutput() throws IOException;
+
+        InputStream openInput() throws IOException;
+
+        long size() throws IOException;
+
+        static Target of(CaseDataBuffer buffer) {
+            return new Target() {
+                @Override
+                public OutputStream openOutput() {
+                    return buffer.openOutputStream();
+                }
+
+                @Override
+                public InputStream openInput() throws IOException {
+                    return buffer.openInputStream();
+                }
+
+                @Override
+                public long size() {
+                    return buffer.size();
+                }
+            };
+        }
+
+        static Target of(Path file) {
+            return new Target() {
+                @Override
+                public OutputStream openOutput() throws IOException {
+                    return Files.newOutputStream(file);
+                }
+
+                @Override
+                public InputStream openInput() throws IOException {
+                    return Files.newInputStream(file);
+                }
+
+                @Override
+                public long size() throws IOException {
+                    return Files.size(file);
+                }
+            };
+        }
+    }
+
+    @FunctionalInterface
+    public interface Oracle {
+        ProcessResult run() throws IOException, InterruptedException;
+    }
+
+    private record Entry(byte[] answer, long oracleMillis) {
+    }
+
+    public final class Session {
+
+        private final byte[] oracleHash;
+        private final Map<String, Entry> answers = new ConcurrentHashMap<>();
+        private final Map<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+        private final AtomicLong memoryBytes = new AtomicLong();
+        private final AtomicInteger lookups = new AtomicInteger();
+        private final AtomicInteger hits = new AtomicInteger();
+        private final AtomicLong timeSavedMillis = new AtomicLong();
+
+        private Session(byte[] oracleHash) {
+            this.oracleHash = oracleHash;
+        }
+
+        /**
+         * Produces the oracle's answer to {@code input} in {@code target}, from the cache when
+         * an identical input was answered before and from {@code oracle} otherwise. Concurrent
+         * cases with the same input wait for the first one instead of running the oracle too.
+         */
+        public ProcessResult answer(Source input, Target target, Oracle oracle) throws IOException, InterruptedException {
+            lookups.incrementAndGet();
+            String key = key(input);
+            Entry cached = answers.get(key);
+            if (cached == null) {
+                cached = loadShared(key);
+            }
+            if (cached != null) {
+                return hit(cached, target);
+            }
+
+            CompletableFuture<Entry> flight = new CompletableFuture<>();
+            CompletableFuture<Entry> existing = inFlight.putIfAbsent(key, flight);
+            if (existing != null) {
+                Entry shared = existing.join();
+                if (shared != null) {
+                    return hit(shared, target);
+                }
+                return oracle.run();
+            }
+            Entry entry = null;
+            try {
+                ProcessResult result = oracle.run();
+                if (result.status() == ProcessResult.Status.SUCCESS) {
+                    entry = remember(key, target, result.executionTime());
+                }
+                return result;
+            } finally {
+                flight.complete(entry);
+                inFlight.remove(key, flight);
+            }
+        }
+
+        public int lookups() {
+            return lookups.get();
+        }
+
+        public int hits() {
+            return hits.get();
+        }
+
+        /**
+         * @return the share of oracle runs answered from the cache
+         */
+        public double dedupeRatio() {
+            int total = lookups.get();
+            return total == 0 ? 0 : (double) hits.get() / total;
+        }
+
+        /**
+         * @return the oracle time recorded for every answer served from the cache
+         */
+        public long timeSavedMillis() {
+            return timeSavedMillis.get();
+        }
+
+        private ProcessResult hit(Entry entry, Target target) throws IOException {
+            try (OutputStream out = target.openOutput()) {
+                out.write(entry.answer());
+            }
+            hits.incrementAndGet();
+            timeSavedMillis.addAndGet(entry.oracleMillis());
+            return new ProcessResult(ProcessResult.Status.SUCCESS, "", "", 0, 0, 0);
+        }
+
+        private Entry remember(String key, Target target, long oracleMillis) throws IOException {
+            long size = target.size();
+            if (size > executionProperties.getOracleCacheMaxAnswerBytes()) {
+                return null;
+            }
+            byte[] answer;
+            try (InputStream in = target.openInput()) {
+                answer = in.readAllBytes();
+            }
+            Entry entry = new Entry(answer, oracleMillis);
+            if (memoryBytes.addAndGet(answer.length) <= executionProperties.getOracleCacheTaskMaxBytes()) {
+                answers.putIfAbsent(key, entry);
+            } else {
+                memoryBytes.addAndGet(-answer.length);
+            }
+            storeShared(key, entry);
+            return entry;
+        }
+
+        private String key(Source input) throws IOException {
+            MessageDigest digest = sha256();
+            digest.update(oracleHash);
+            try (InputStream in = input.open()) {
+                in.transferTo(new DigestOutputStream(digest));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+
+    private Entry loadShared(String key) {
+        if (!executionProperties.isOracleCacheShared()) {
+            return null;
+        }
+        Path file = entryPath(key);
+        synchronized (this) {
+            try {
+                loadIndex();
+            } catch (IOException e) {
+                log.debug("Failed to index oracle cache: {}", e.getMessage());
+                return null;
+            }
+            if (sharedEntries.get(key) == null) {
+                return null;
+            }
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            long oracleMillis = in.readLong();
+            byte[] answer = in.readAllBytes();
+            touch(file);
+            return new Entry(answer, oracleMillis);
+        } catch (IOException e) {
+            // Evicted between the index lookup and the read; run the oracle instead.
+            synchronized (this) {
+                Long size = sharedEntries.remove(key);
+                if (size != null) {
+                    sharedBytes -= size;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void storeShared(String key, Entry entry) {
+        if (!executionProperties.isOracleCacheShared()) {
+            return;
+        }
+        try {
+            Path target = entryPath(key);
+            Files.createDirectories(target.getParent());
+            Path staged = Files.createTempFile(target.getParent(), ".stage-", ".ans");
+            try {
+                try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(staged))) {
+                    out.writeLong(entry.oracleMillis());
+                    out.write(entry.answer());
+                }
+                Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(staged);
+            }
+            synchronized (this) {
+                loadIndex();
+                Long previous = sharedEntries.put(key, Files.size(target));
+                sharedBytes += sharedEntries.get(key) - (previous == null ? 0 : previous);
+                evict(key);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to store oracle cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void evict(String keep) {
+        long maxBytes = executionProperties.getOracleCacheSharedMaxBytes();
+        Iterator<Map.Entry<String, Long>> eldest = sharedEntries.entrySet().iterator();
+        while (eldest.hasNext() && sharedBytes > maxBytes) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(entryPath(entry.getKey()));
+            } catch (IOException e) {
+                log.debug("Failed to evict oracle cache entry {}: {}", entry.getKey(), e.getMessage());
+            }
+            sharedBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        if (indexLoaded) {
+            return;
+        }
+        indexLoaded = true;
+        if (!Files.isDirectory(sharedDirectory, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(sharedDirectory, 2)) {
+            stream.filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+                    .filter(path -> !path.getFileName().toString().startsWith("."))
+                    .forEach(files::add);
+        }
+        files.sort(Comparator.comparing(OracleAnswerCache::lastModified));
+        for (Path file : files) {
+            long size = Files.size(file);
+            sharedEntries.put(file.getFileName().toString(), size);
+            sharedBytes += size;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            log.debug("Failed to update oracle cache access time for {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path entryPath(String key) {
+        return sharedDirectory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class DigestOutputStream extends OutputStream {
+
+        private final MessageDigest digest;
+
+        private DigestOutputStream(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(int b) {
+            digest.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            digest.update(bytes, offset, length);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.demo.service;
+
+import com.example.demo.config.CompilerConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Precompiled {@code <bits/stdc++.h>} headers, one per compiler identity and flag set, kept under
+ * {@code <compile cache>/pch/<key>/bits/stdc++.h.gch}. g++ looks for {@code name.gch} in every
+ * include directory before the header itself, so passing that directory with {@code -I} makes
+ * the compiler pick the precompiled header up for sources that include it first, and fall back to
+ * the real header for everything else.
+ *
+ * <p>Headers are built lazily by the first compile that needs one; concurrent compiles wait for
+ * that build. A failed build is remembered so later compiles do not retry it.
+ */
+@Service
+@Slf4j
+public class PrecompiledHeaders {
+
+    static final String HEADER = "bits/stdc++.h";
+    static final String DIRECTORY_NAME = "pch";
+
+    /** g++ only uses a PCH when its include precedes every token of the translation unit. */
+    private static final Pattern LEADING_INCLUDE = Pattern.compile(
+            "\\A(?:\\s+|//[^\\n]*|/\\*.*?\\*/)*#\\s*include\\s*<bits/stdc\\+\\+\\.h>", Pattern.DOTALL);
+    private static final Duration BUILD_TIMEOUT = Duration.ofSeconds(120);
+    /** {@code -H} makes g++ print {@code ! <path>.gch} when it actually loads a precompiled header. */
+    public static final String TRACE_FLAG = "-H";
+    private static final Pattern TRACE_LINE = Pattern.compile("(?:\\.+|[!x])? \\S.*");
+    private static final String GUARD_HINT = "Multiple include guards may be useful for:";
+
+    private final CompilerConfiguration compilerConfiguration;
+    private final CompileCache compileCache;
+    private final ProcessRunner processRunner;
+    private final Path directory;
+    private final Map<String, CompletableFuture<Optional<Path>>> builds = new ConcurrentHashMap<>();
+
+    public PrecompiledHeaders(
+            CompilerConfiguration compilerConfiguration,
+            CompileCache compileCache,
+            @Qualifier("directProcessRunner") ProcessRunner processRunner
+    ) {
+        this.compilerConfiguration = compilerConfiguration;
+        this.compileCache = compileCache;
+        this.processRunner = processRunner;
+        this.directory = compileCache.cacheDirectory().resolve(DIRECTORY_NAME);
+    }
+
+    /**
+     * Returns the include directory holding a precompiled header usable for {@code source}, or
+     * empty when the source does not start with {@code #include <bits/stdc++.h>} or no header
+     * could be built for these flags.
+     *
+     * @param flags the compiler executable followed by every flag that affects code generation
+     */
+    public Optional<Path> includeDirectory(Path source, List<String> flags) throws IOException, InterruptedException {
+        if (!compilerConfiguration.isPrecompiledHeaderEnabled() || !includesHeaderFirst(source)) {
+            return Optional.empty();
+        }
+        String identity = compileCache.compilerIdentity(flags.get(0), source.getParent());
+        if (identity == null) {
+            return Optional.empty();
+        }
+        String key = CompileCache.key(HEADER.getBytes(StandardCharsets.UTF_8), identity, flags);
+        Path includeDirectory = directory.resolve(key);
+        if (Files.isRegularFile(includeDirectory.resolve(HEADER + ".gch"), LinkOption.NOFOLLOW_LINKS)) {
+            return Optional.of(includeDirectory);
+        }
+
+        CompletableFuture<Optional<Path>> build = new CompletableFuture<>();
+        CompletableFuture<Optional<Path>> existing = builds.putIfAbsent(key, build);
+        if (existing != null) {
+            return existing.join();
+        }
+        Optional<Path> built = Optional.empty();
+        try {
+            built = build(includeDirectory, flags);
+        } catch (InterruptedException e) {
+            // Let a later compile retry instead of remembering the interrupted build as failed.
+            builds.remove(key, build);
+            throw e;
+        } finally {
+            build.complete(built);
+        }
+        return built;
+    }
+
+    /**
+     * Returns whether the stderr of a compile run with {@link #TRACE_FLAG} shows that g++ loaded
+     * the precompiled header rather than parsing {@code <bits/stdc++.h>} itself.
+     */
+    public static boolean used(String compilerError) {
+        return compilerError.lines().anyMatch(line -> line.startsWith("! ") && line.endsWith(HEADER + ".gch"));
+    }
+
+    /**
+     * Drops the include tree printed by {@link #TRACE_FLAG} so only the compiler diagnostics remain.
+     */
+    public static String withoutIncludeTrace(String compilerError) {
+        StringBuilder diagnostics = new StringBuilder(compilerError.length());
+        boolean guardHints = false;
+        for (String line : (Iterable<String>) compilerError.lines()::iterator) {
+            if (line.equals(GUARD_HINT)) {
+                guardHints = true;
+                continue;
+            }
+            if (guardHints && line.startsWith("/")) {
+                continue;
+            }
+            guardHints = false;
+            if (!TRACE_LINE.matcher(line).matches()) {
+                diagnostics.append(line).append('\n');
+            }
+        }
+        return diagnostics.toString();
+    }
+
+    static boolean includesHeaderFirst(Path source) throws IOException {
+        return LEADING_INCLUDE.matcher(Files.readString(source, StandardCharsets.ISO_8859_1)).lookingAt();
+    }
+
+    private Optional<Path> build(Path includeDirectory, List<String> flags) throws InterruptedException {
+        Path header = includeDirectory.resolve(HEADER + ".gch");
+        try {
+            Files.createDirectories(header.getParent());
+            Path wrapper = Files.createTempFile(includeDirectory, ".stdc++-", ".h");
+            Path staged = Files.createTempFile(header.getParent(), ".stage-", ".gch");
+            try {
+                Files.writeString(wrapper, "#include <" + HEADER + ">\n");
+                List<String> command = new ArrayList<>(flags.size() + 5);
+                command.add(flags.get(0));
+                command.add("-x");
+                command.add("c++-header");
+                command.add(wrapper.toString());
+                command.add("-o");
+                command.add(staged.toString());
+                command.addAll(flags.subList(1, flags.size()));
+                long started = System.nanoTime();
+                ProcessResult result = processRunner.run(ProcessRunner.Request.builder()
+                        .command(command)
+                        .workingDirectory(includeDirectory)
+                        .timeout(BUILD_TIMEOUT)
+                        .killGrace(Duration.ofSeconds(5))
+                        .memoryLimitBytes(1024L * 1024 * 1024)
+                        .maxOutputBytes(64 * 1024)
+                        .maxErrorBytes(64 * 1024)
+                        .build());
+                if (result.status() != ProcessResult.Status.SUCCESS || Files.size(staged) == 0) {
+                    log.warn("Precompiled header build failed for {}: {}", flags, result.error());
+                    return Optional.empty();
+                }
+                Files.move(staged, header, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                log.info("Built precompiled {} for {} in {} ms", HEADER, flags, (System.nanoTime() - started) / 1_000_000);
+                return Optional.of(includeDirectory);
+            } finally {
+                Files.deleteIfExists(wrapper);
+                Files.deleteIfExists(staged);
+            }
+        } catch (IOException e) {
+            log.warn("Precompiled header build failed for {}: {}", flags, e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
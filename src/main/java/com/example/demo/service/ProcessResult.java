@@ -1,12 +1,18 @@
 package com.example.demo.service;
 
+/**
+ * @param executionTime wall-clock milliseconds from start to exit
+ * @param cpuTime user plus system CPU milliseconds of the process tree, or {@code -1} when the
+ *                runner cannot measure it
+ */
 public record ProcessResult(
         Status status,
         String output,
         String error,
         long executionTime,
         long memoryUsed,
-        int exitCode
+        int exitCode,
+        long cpuTime
 ) {
 
     public enum Status {
@@ -16,7 +22,8 @@ public record ProcessResult(
         OUTPUT_LIMIT_EXCEEDED,
         RUNTIME_ERROR,
         SECURITY_VIOLATION,
-        SANDBOX_UNAVAILABLE
+        SANDBOX_UNAVAILABLE,
+        CANCELLED
     }
 
     public ProcessResult {
@@ -24,6 +31,10 @@ public record ProcessResult(
         error = error == null ? "" : error;
     }
 
+    public ProcessResult(Status status, String output, String error, long executionTime, long memoryUsed, int exitCode) {
+        this(status, output, error, executionTime, memoryUsed, exitCode, -1);
+    }
+
     public static ProcessResult failure(Status status, String error) {
         return new ProcessResult(status, "", error, 0, 0, -1);
     }
@@ -9,36 +9,82 @@ public interface ProcessRunner {
 
     ProcessResult run(Request request) throws IOException, InterruptedException;
 
+    /**
+     * Whether {@link Request#inputBuffer()} and {@link Request#outputBuffer()} are streamed
+     * through process pipes. Runners that need files on disk return {@code false}.
+     */
+    default boolean supportsBufferedIo() {
+        return false;
+    }
+
     record Request(
             List<String> command,
             Path workingDirectory,
             Path inputFile,
             Path outputFile,
+            CaseDataBuffer inputBuffer,
+            CaseDataBuffer outputBuffer,
             Duration timeout,
             Duration killGrace,
             long memoryLimitBytes,
             long maxOutputBytes,
             long maxErrorBytes,
+            long errorCaptureBytes,
             String profile,
-            boolean requireSandbox
+            boolean requireSandbox,
+            CancellationToken cancellationToken,
+            Duration cpuTimeLimit,
+            KernelLimits kernelLimits,
+            int cpuCore,
+            List<Path> readablePaths,
+            Path outputDirectory
     ) {
 
         public static Builder builder() {
             return new Builder();
         }
 
+        /**
+         * The same request running {@code command} instead, e.g. the original behind a launcher.
+         */
+        public Request withCommand(List<String> command) {
+            return new Request(List.copyOf(command), workingDirectory, inputFile, outputFile, inputBuffer,
+                    outputBuffer, timeout, killGrace, memoryLimitBytes, maxOutputBytes, maxErrorBytes,
+                    errorCaptureBytes, profile, requireSandbox, cancellationToken, cpuTimeLimit, kernelLimits,
+                    cpuCore, readablePaths, outputDirectory);
+        }
+
+        /**
+         * The same request under {@code kernelLimits} instead.
+         */
+        public Request withKernelLimits(KernelLimits kernelLimits) {
+            return new Request(command, workingDirectory, inputFile, outputFile, inputBuffer, outputBuffer, timeout,
+                    killGrace, memoryLimitBytes, maxOutputBytes, maxErrorBytes, errorCaptureBytes, profile,
+                    requireSandbox, cancellationToken, cpuTimeLimit, kernelLimits, cpuCore, readablePaths,
+                    outputDirectory);
+        }
+
         public static final class Builder {
             private List<String> command;
             private Path workingDirectory;
             private Path inputFile;
             private Path outputFile;
+            private CaseDataBuffer inputBuffer;
+            private CaseDataBuffer outputBuffer;
             private Duration timeout = Duration.ofSeconds(2);
             private Duration killGrace = Duration.ofSeconds(2);
             private long memoryLimitBytes = 256L * 1024 * 1024;
             private long maxOutputBytes = 1024L * 1024;
             private long maxErrorBytes = 1024L * 1024;
+            private long errorCaptureBytes = HeadTailCapture.DEFAULT_BUDGET;
             private String profile = "trusted-local";
             private boolean requireSandbox;
+            private CancellationToken cancellationToken;
+            private Duration cpuTimeLimit;
+            private KernelLimits kernelLimits;
+            private int cpuCore = -1;
+            private List<Path> readablePaths = List.of();
+            private Path outputDirectory;
 
             public Builder command(List<String> command) {
                 this.command = command == null ? null : List.copyOf(command);
@@ -60,6 +106,16 @@ public interface ProcessRunner {
                 return this;
             }
 
+            public Builder inputBuffer(CaseDataBuffer inputBuffer) {
+                this.inputBuffer = inputBuffer;
+                return this;
+            }
+
+            public Builder outputBuffer(CaseDataBuffer outputBuffer) {
+                this.outputBuffer = outputBuffer;
+                return this;
+            }
+
             public Builder timeout(Duration timeout) {
                 this.timeout = timeout;
                 return this;
@@ -85,6 +141,15 @@ public interface ProcessRunner {
                 return this;
             }
 
+            /**
+             * Memory kept for captured stderr: its first and last bytes within this budget.
+             * {@link #maxErrorBytes} still bounds how much stderr the process may write.
+             */
+            public Builder errorCaptureBytes(long errorCaptureBytes) {
+                this.errorCaptureBytes = errorCaptureBytes;
+                return this;
+            }
+
             public Builder profile(String profile) {
                 this.profile = profile;
                 return this;
@@ -95,19 +160,83 @@ public interface ProcessRunner {
                 return this;
             }
 
+            /**
+             * Token whose cancellation kills the running process tree; the runner then reports
+             * {@link ProcessResult.Status#CANCELLED}.
+             */
+            public Builder cancellationToken(CancellationToken cancellationToken) {
+                this.cancellationToken = cancellationToken;
+                return this;
+            }
+
+            /**
+             * Judges the time limit on CPU time instead of wall time; {@link #timeout} then only
+             * bounds how long a blocked process may run. Runners that cannot measure CPU time fall
+             * back to comparing wall time against this limit.
+             */
+            public Builder cpuTimeLimit(Duration cpuTimeLimit) {
+                this.cpuTimeLimit = cpuTimeLimit;
+                return this;
+            }
+
+            /**
+             * Resource limits applied by the kernel before the program starts. Runners that
+             * cannot apply them rely on their own polling limits.
+             */
+            public Builder kernelLimits(KernelLimits kernelLimits) {
+                this.kernelLimits = kernelLimits;
+                return this;
+            }
+
+            /**
+             * Core the process (and everything it forks) is pinned to; {@code -1} leaves it to the
+             * scheduler. Runners that cannot set CPU affinity ignore it.
+             */
+            public Builder cpuCore(int cpuCore) {
+                this.cpuCore = cpuCore;
+                return this;
+            }
+
+            /**
+             * Files besides the program that a sandboxed process may open by path. stdin and
+             * stdout are opened outside the sandbox and need no entry.
+             */
+            public Builder readablePaths(List<Path> readablePaths) {
+                this.readablePaths = List.copyOf(readablePaths);
+                return this;
+            }
+
+            /**
+             * The only host directory a sandboxed process may write, such as a compiler's output
+             * directory; {@code null} leaves it none.
+             */
+            public Builder outputDirectory(Path outputDirectory) {
+                this.outputDirectory = outputDirectory;
+                return this;
+            }
+
             public Request build() {
                 return new Request(
                         command,
                         workingDirectory,
                         inputFile,
                         outputFile,
+                        inputBuffer,
+                        outputBuffer,
                         timeout,
                         killGrace,
                         memoryLimitBytes,
                         maxOutputBytes,
                         maxErrorBytes,
+                        errorCaptureBytes,
                         profile,
-                        requireSandbox
+                        requireSandbox,
+                        cancellationToken,
+                        cpuTimeLimit,
+                        kernelLimits,
+                        cpuCore,
+                        readablePaths,
+                        outputDirectory
                 );
             }
         }
@@ -1,7 +1,14 @@
 package com.example.demo.service;
 
+import lombok.Builder;
+
 import java.time.Duration;
 
+/**
+ * Per-task execution knobs resolved by {@link TaskPolicyResolver}. Build it with {@link #builder()};
+ * optional knobs left unset fall back to the defaults applied in the compact constructor.
+ */
+@Builder(toBuilder = true)
 public record ResolvedTaskPolicy(
         String profile,
         boolean highVolume,
@@ -13,6 +20,25 @@ public record ResolvedTaskPolicy(
         Duration maxTaskRuntime,
         long memoryLimitBytes,
         long maxOutputBytesPerCase,
-        boolean sandboxRequired
+        boolean sandboxRequired,
+        boolean pipelinedCaseIo,
+        ArtifactRetention artifactRetention,
+        boolean seededGeneration,
+        boolean continuousDispatch,
+        boolean cpuTimeLimit,
+        boolean kernelLimits,
+        int generatorPrefetchDepth,
+        int generatorPrefetchConcurrency,
+        int bulkGeneratorChunk,
+        int multiTestPackSize
 ) {
+
+    public ResolvedTaskPolicy {
+        if (artifactRetention == null) {
+            artifactRetention = ArtifactRetention.ALL;
+        }
+        generatorPrefetchConcurrency = Math.max(1, generatorPrefetchConcurrency);
+        bulkGeneratorChunk = Math.max(1, bulkGeneratorChunk);
+        multiTestPackSize = Math.max(1, multiTestPackSize);
+    }
 }
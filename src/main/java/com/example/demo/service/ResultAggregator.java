@@ -43,6 +43,10 @@ public class ResultAggregator {
     private int systemError;
     private int outputLimitExceeded;
     private JudgeProgressEvent firstFailure;
+    private Integer generatorExecs;
+    private Long generatorTimeSavedMillis;
+    private Double oracleDedupeRatio;
+    private Long oracleTimeSavedMillis;
 
     public ResultAggregator(boolean highVolume, int totalCases, int maxFailureSamples, int maxSlowSamples) {
         this.highVolume = highVolume;
@@ -83,8 +87,24 @@ public class ResultAggregator {
         return new JudgeProgress(status, message, 100, results, summary);
     }
 
+    /**
+     * Records how many processes a bulk generator needed and the wall time it saved.
+     */
+    public synchronized void recordGeneratorStats(int execs, long timeSavedMillis) {
+        this.generatorExecs = execs;
+        this.generatorTimeSavedMillis = timeSavedMillis;
+    }
+
+    /**
+     * Records the share of oracle runs answered from the answer cache and the oracle time it saved.
+     */
+    public synchronized void recordOracleCacheStats(double dedupeRatio, long timeSavedMillis) {
+        this.oracleDedupeRatio = dedupeRatio;
+        this.oracleTimeSavedMillis = timeSavedMillis;
+    }
+
     public synchronized JudgeSummary toSummary() {
-        return new JudgeSummary(
+        JudgeSummary summary = new JudgeSummary(
                 totalCases,
                 completedCases,
                 ac,
@@ -99,6 +119,11 @@ public class ResultAggregator {
                 sortedSlowSamples(),
                 null
         );
+        summary.setGeneratorExecs(generatorExecs);
+        summary.setGeneratorTimeSavedMillis(generatorTimeSavedMillis);
+        summary.setOracleDedupeRatio(oracleDedupeRatio);
+        summary.setOracleTimeSavedMillis(oracleTimeSavedMillis);
+        return summary;
     }
 
     public synchronized int completedCases() {
@@ -1,30 +1,64 @@
 package com.example.demo.service;
 
 import com.example.demo.config.SandboxConfiguration;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 @Service
 public class SandboxProcessRunner implements ProcessRunner {
 
+    private static final String TRUSTED_LOCAL = "trusted-local";
+
     private final SandboxConfiguration sandboxConfiguration;
     private final SandboxService sandboxService;
+    private final NamespaceSandbox namespaceSandbox;
     private final ProcessRunner directRunner;
 
     public SandboxProcessRunner(
             SandboxConfiguration sandboxConfiguration,
             SandboxService sandboxService,
-            @Qualifier("directProcessRunner") ProcessRunner directRunner
+            ProcessRunner directRunner
+    ) {
+        this(sandboxConfiguration, sandboxService, null, directRunner);
+    }
+
+    @Autowired
+    public SandboxProcessRunner(
+            SandboxConfiguration sandboxConfiguration,
+            SandboxService sandboxService,
+            NamespaceSandbox namespaceSandbox,
+            @Qualifier("cgroupProcessRunner") ProcessRunner directRunner
     ) {
         this.sandboxConfiguration = sandboxConfiguration;
         this.sandboxService = sandboxService;
+        this.namespaceSandbox = namespaceSandbox;
         this.directRunner = directRunner;
     }
 
+    @Override
+    public boolean supportsBufferedIo() {
+        return (isNamespaceSandboxAvailable() || !isSandboxAvailable()) && directRunner.supportsBufferedIo();
+    }
+
     @Override
     public ProcessResult run(Request request) throws IOException, InterruptedException {
+        if (isNamespaceSandboxAvailable() && request.workingDirectory() != null
+                && request.command() != null && !request.command().isEmpty()) {
+            // One exec under the launcher, which sets the kernel limits; the rest of the limits,
+            // accounting and buffered I/O stay the direct runner's.
+            KernelLimits limits = namespaceLimits(request.kernelLimits(), request.memoryLimitBytes());
+            return directRunner.run(request
+                    .withCommand(namespaceSandbox.wrap(request.command(), request.readablePaths(),
+                            request.outputDirectory(), limits))
+                    .withKernelLimits(limits));
+        }
         if (!isSandboxAvailable()) {
             if (request.requireSandbox()) {
                 return ProcessResult.failure(
@@ -35,14 +69,67 @@ public class SandboxProcessRunner implements ProcessRunner {
             return directRunner.run(request);
         }
 
+        if (isCancelled(request)) {
+            return ProcessResult.failure(ProcessResult.Status.CANCELLED, "Cancelled before start");
+        }
+        if (request.inputBuffer() == null && request.outputBuffer() == null) {
+            return runInSandbox(request, request.inputFile(), request.outputFile());
+        }
+        return runWithStagedBuffers(request);
+    }
+
+    /**
+     * The sandbox maps stdin/stdout by file name, so buffered case data is staged as hidden
+     * files in the working directory for the duration of one invocation.
+     */
+    private ProcessResult runWithStagedBuffers(Request request) throws IOException, InterruptedException {
+        Path stagedInput = null;
+        Path stagedOutput = null;
+        try {
+            Path inputFile = request.inputFile();
+            if (request.inputBuffer() != null) {
+                stagedInput = Files.createTempFile(request.workingDirectory(), ".stdin-", ".in");
+                request.inputBuffer().copyTo(stagedInput);
+                inputFile = stagedInput;
+            }
+            Path outputFile = request.outputFile();
+            if (request.outputBuffer() != null) {
+                stagedOutput = Files.createTempFile(request.workingDirectory(), ".stdout-", ".out");
+                outputFile = stagedOutput;
+            }
+            ProcessResult result = runInSandbox(request, inputFile, outputFile);
+            if (stagedOutput != null) {
+                try (OutputStream out = request.outputBuffer().openOutputStream()) {
+                    Files.copy(stagedOutput, out);
+                }
+            }
+            return result;
+        } finally {
+            if (stagedInput != null) {
+                Files.deleteIfExists(stagedInput);
+            }
+            if (stagedOutput != null) {
+                Files.deleteIfExists(stagedOutput);
+            }
+        }
+    }
+
+    private ProcessResult runInSandbox(Request request, Path inputFile, Path outputFile)
+            throws IOException, InterruptedException {
         SandboxService.SandboxResult result = sandboxService.executeInSandbox(
                 request.command().toArray(String[]::new),
                 request.workingDirectory(),
-                request.inputFile(),
-                request.outputFile(),
+                inputFile,
+                outputFile,
                 request.timeout().toMillis(),
-                request.memoryLimitBytes()
+                request.memoryLimitBytes(),
+                request.cancellationToken()
         );
+        if (isCancelled(request)) {
+            // The kill on cancellation looks like a sandbox SIGKILL; report it as what it was.
+            return new ProcessResult(ProcessResult.Status.CANCELLED, result.output(), result.error(),
+                    result.executionTime(), 0, result.exitCode());
+        }
         if (result.securityViolation()) {
             return new ProcessResult(
                     ProcessResult.Status.SECURITY_VIOLATION,
@@ -56,9 +143,70 @@ public class SandboxProcessRunner implements ProcessRunner {
         ProcessResult.Status status = result.exitCode() == 0
                 ? ProcessResult.Status.SUCCESS
                 : ProcessResult.Status.RUNTIME_ERROR;
+        if (request.cpuTimeLimit() != null && result.executionTime() > request.cpuTimeLimit().toMillis()) {
+            // The sandbox cannot report CPU time; wall time is an upper bound for it.
+            status = ProcessResult.Status.TIME_LIMIT_EXCEEDED;
+        }
         return new ProcessResult(status, result.output(), result.error(), result.executionTime(), 0, result.exitCode());
     }
 
+    /**
+     * Starts a long-lived process whose stdin and stdout the caller talks to, such as a special
+     * judge that stays up for a whole task. Only the namespace launcher can sandbox a process
+     * that outlives one run; without it the process may run unsandboxed only for the
+     * trusted-local profile, as with the direct runner. Otherwise this returns {@code null}.
+     * stderr is left as a pipe for the caller to drain.
+     */
+    public Process startPersistent(List<String> command, Path workingDirectory, KernelLimits kernelLimits,
+                                   String profile, boolean requireSandbox) throws IOException {
+        List<String> launched;
+        if (isNamespaceSandboxAvailable()) {
+            launched = namespaceSandbox.wrap(command, List.of(), null, namespaceLimits(kernelLimits, 0));
+        } else if (isSandboxAvailable() || requireSandbox || !TRUSTED_LOCAL.equals(profile)) {
+            return null;
+        } else {
+            launched = kernelLimits == null ? command : kernelLimits.wrap(command);
+        }
+        return new ProcessBuilder(launched)
+                .directory(workingDirectory.toFile())
+                .start();
+    }
+
+    /**
+     * The request's kernel limits with what firejail always set added: an address space cap for
+     * its memory limit and the sandbox's process limit.
+     */
+    private KernelLimits namespaceLimits(KernelLimits requested, long memoryLimitBytes) {
+        long processes = sandboxConfiguration.getMaxProcesses();
+        if (requested == null) {
+            return new KernelLimits(0, KernelLimits.addressSpaceFor(memoryLimitBytes), 0, Math.max(0, processes));
+        }
+        if (requested.processes() > 0 && (processes <= 0 || requested.processes() < processes)) {
+            processes = requested.processes();
+        }
+        long addressSpace = requested.addressSpaceBytes() > 0
+                ? requested.addressSpaceBytes()
+                : KernelLimits.addressSpaceFor(memoryLimitBytes);
+        return new KernelLimits(requested.cpuSeconds(), addressSpace, requested.fileSizeBytes(), Math.max(0, processes));
+    }
+
+    /**
+     * Drops the sandbox root kept for a task's working directory once the task is over.
+     */
+    public void releaseWorkingDirectory(Path workingDirectory) {
+        if (sandboxService != null) {
+            sandboxService.releaseTaskSandbox(workingDirectory);
+        }
+    }
+
+    private static boolean isCancelled(Request request) {
+        return request.cancellationToken() != null && request.cancellationToken().isCancellationRequested();
+    }
+
+    private boolean isNamespaceSandboxAvailable() {
+        return sandboxConfiguration.isEnabled() && namespaceSandbox != null && namespaceSandbox.isAvailable();
+    }
+
     private boolean isSandboxAvailable() {
         return sandboxConfiguration.isEnabled()
                 && sandboxService != null
@@ -2,7 +2,6 @@ package com.example.demo.service;
 
 import com.example.demo.config.SandboxConfiguration;
 import com.example.demo.exception.SecurityViolationException;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
@@ -10,23 +9,44 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 安全沙箱服务
  * 提供代码执行的安全隔离环境，限制文件系统访问、网络访问和系统调用
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class SandboxService {
     
     private final SandboxConfiguration sandboxConfig;
     
+    /**
+     * firejail / timeout 是否可用：启动时探测一次，之后按 TTL 在后台刷新，执行路径只读缓存
+     */
+    private final CapabilityRegistry.Capability<Boolean> firejailProbe;
+    private final CapabilityRegistry.Capability<Boolean> timeoutProbe;
+    
+    /**
+     * 任务级沙箱根目录，按任务工作目录索引，任务结束时释放
+     */
+    private final Map<Path, TaskSandbox> taskSandboxes = new ConcurrentHashMap<>();
+    
+    public SandboxService(SandboxConfiguration sandboxConfig, CapabilityRegistry capabilityRegistry) {
+        this.sandboxConfig = sandboxConfig;
+        this.firejailProbe = capabilityRegistry.register("firejail", () -> commandExists("firejail"), false);
+        this.timeoutProbe = capabilityRegistry.register("timeout", () -> commandExists("timeout"), false);
+    }
+    
     /**
      * 沙箱执行结果
      */
@@ -57,6 +77,20 @@ public class SandboxService {
             Path outputFile, 
             long timeLimit, 
             long memoryLimit) throws IOException, InterruptedException {
+        return executeInSandbox(command, workingDir, inputFile, outputFile, timeLimit, memoryLimit, null);
+    }
+
+    /**
+     * 在沙箱环境中执行命令；cancellationToken 被取消时立即结束进程树
+     */
+    public SandboxResult executeInSandbox(
+            String[] command, 
+            Path workingDir, 
+            Path inputFile, 
+            Path outputFile, 
+            long timeLimit, 
+            long memoryLimit,
+            CancellationToken cancellationToken) throws IOException, InterruptedException {
         
         log.debug("开始沙箱执行: {}", String.join(" ", command));
         log.debug("工作目录: {}", workingDir);
@@ -69,11 +103,11 @@ public class SandboxService {
         if (!sandboxConfig.isEnabled() || isWindows) {
             // 如果沙箱未启用或在Windows系统下，直接执行命令
             log.debug(isWindows ? "Windows系统，直接执行命令" : "沙箱未启用，直接执行命令");
-            return executeDirectly(command, workingDir, inputFile, outputFile, timeLimit);
+            return executeDirectly(command, workingDir, inputFile, outputFile, timeLimit, cancellationToken);
         }
         
         // Linux系统下的沙箱执行
-        return executeLinuxSandbox(command, workingDir, inputFile, outputFile, timeLimit, memoryLimit);
+        return executeLinuxSandbox(command, workingDir, inputFile, outputFile, timeLimit, memoryLimit, cancellationToken);
     }
 
     public boolean isSandboxAvailable() {
@@ -90,7 +124,8 @@ public class SandboxService {
             Path inputFile, 
             Path outputFile, 
             long timeLimit, 
-            long memoryLimit) throws IOException, InterruptedException {
+            long memoryLimit,
+            CancellationToken cancellationToken) throws IOException, InterruptedException {
         
         // 检查firejail是否可用
         boolean firejailAvailable = isFirejailAvailable();
@@ -99,11 +134,11 @@ public class SandboxService {
         if (!firejailAvailable) {
             // 如果firejail不可用，回退到直接执行但添加基本限制
             System.out.println("Firejail不可用，回退到直接执行");
-            return executeWithBasicLimits(command, workingDir, inputFile, outputFile, timeLimit, memoryLimit);
+            return executeWithBasicLimits(command, workingDir, inputFile, outputFile, timeLimit, memoryLimit, cancellationToken);
         }
         
         // 使用firejail沙箱执行
-        return executeWithFirejail(command, workingDir, inputFile, outputFile, timeLimit, memoryLimit);
+        return executeWithFirejail(command, workingDir, inputFile, outputFile, timeLimit, memoryLimit, cancellationToken);
     }
     
     /**
@@ -115,7 +150,8 @@ public class SandboxService {
             Path inputFile, 
             Path outputFile, 
             long timeLimit, 
-            long memoryLimit) throws IOException, InterruptedException {
+            long memoryLimit,
+            CancellationToken cancellationToken) throws IOException, InterruptedException {
         
         // 检查timeout命令是否可用
         boolean timeoutAvailable = isTimeoutAvailable();
@@ -128,30 +164,24 @@ public class SandboxService {
             limitedCommand.add(String.valueOf(timeLimit / 1000 + 5)); // 转换为秒，加5秒缓冲
             limitedCommand.addAll(Arrays.asList(command));
             
-            return executeDirectly(limitedCommand.toArray(new String[0]), workingDir, inputFile, outputFile, timeLimit);
+            return executeDirectly(limitedCommand.toArray(new String[0]), workingDir, inputFile, outputFile, timeLimit, cancellationToken);
         } else {
             // 如果timeout也不可用，只能直接执行
             System.out.println("Timeout命令不可用，直接执行");
-            return executeDirectly(command, workingDir, inputFile, outputFile, timeLimit);
+            return executeDirectly(command, workingDir, inputFile, outputFile, timeLimit, cancellationToken);
         }
     }
     
     /**
-     * 检查timeout命令是否可用
+     * 检查timeout命令是否可用（读取缓存的探测结果）
      */
     private boolean isTimeoutAvailable() {
-        try {
-            ProcessBuilder pb = new ProcessBuilder("which", "timeout");
-            Process process = pb.start();
-            boolean finished = process.waitFor(5, TimeUnit.SECONDS);
-            return finished && process.exitValue() == 0;
-        } catch (Exception e) {
-            return false;
-        }
+        return timeoutProbe.get();
     }
     
     /**
-     * 使用firejail执行沙箱
+     * 使用firejail执行沙箱：每个任务只建一个沙箱根目录，可执行文件只暂存一次；
+     * 每次执行仅在独立的 run 目录中放入本次的输入文件与参数文件，执行后只删除该目录
      */
     private SandboxResult executeWithFirejail(
             String[] command, 
@@ -159,52 +189,52 @@ public class SandboxService {
             Path inputFile, 
             Path outputFile, 
             long timeLimit, 
-            long memoryLimit) throws IOException, InterruptedException {
+            long memoryLimit,
+            CancellationToken cancellationToken) throws IOException, InterruptedException {
         
-        // 创建受限的沙箱环境
-        Path sandboxDir = createSandboxEnvironment(workingDir);
-        System.out.println("创建沙箱环境: " + sandboxDir);
+        TaskSandbox taskSandbox = taskSandbox(workingDir);
+        Path runDir = taskSandbox.createRunDirectory();
+        log.debug("沙箱执行目录: {}", runDir);
         
         try {
-            // 构建安全的执行命令
-            // 注意：在沙箱中，可执行文件的路径需要相对于沙箱目录
-            String executableName = Paths.get(command[0]).getFileName().toString();
-            String[] sandboxCommand = { "./" + executableName };
-            List<String> secureCommand = buildSecureCommand(sandboxCommand, sandboxDir, inputFile, outputFile, memoryLimit);
-            System.out.println("安全命令: " + String.join(" ", secureCommand));
+            // 可执行文件从暂存副本复制进 run 目录，参数中任务目录下的文件复制进来并改为相对路径
+            Path executable = Paths.get(command[0]);
+            String executableName = executable.getFileName().toString();
+            taskSandbox.copyInto(taskSandbox.stageExecutable(executable), runDir.resolve(executableName));
+            String[] sandboxCommand = new String[command.length];
+            sandboxCommand[0] = "./" + executableName;
+            for (int i = 1; i < command.length; i++) {
+                sandboxCommand[i] = exposeArgument(command[i], workingDir, runDir);
+            }
+            List<String> secureCommand = buildSecureCommand(sandboxCommand, runDir, inputFile, outputFile, memoryLimit);
+            log.debug("安全命令: {}", String.join(" ", secureCommand));
             
             ProcessBuilder processBuilder = new ProcessBuilder(secureCommand);
-            processBuilder.directory(sandboxDir.toFile());
+            processBuilder.directory(runDir.toFile());
             
-            // 处理输入输出重定向 - 在沙箱中需要映射到沙箱内的文件
             if (inputFile != null) {
-                Path sandboxInputFile = sandboxDir.resolve(inputFile.getFileName());
-                if (Files.exists(sandboxInputFile)) {
-                    processBuilder.redirectInput(sandboxInputFile.toFile());
-                    System.out.println("沙箱输入重定向: " + sandboxInputFile);
-                } else {
-                    System.err.println("沙箱输入文件不存在: " + sandboxInputFile);
-                }
+                Path sandboxInputFile = runDir.resolve(inputFile.getFileName());
+                Files.copy(inputFile, sandboxInputFile, StandardCopyOption.REPLACE_EXISTING);
+                processBuilder.redirectInput(sandboxInputFile.toFile());
             }
             
-            if (outputFile != null) {
-                Path sandboxOutputFile = sandboxDir.resolve(outputFile.getFileName());
+            Path sandboxOutputFile = outputFile == null ? null : runDir.resolve(outputFile.getFileName());
+            if (sandboxOutputFile != null) {
                 processBuilder.redirectOutput(sandboxOutputFile.toFile());
-                System.out.println("沙箱输出重定向: " + sandboxOutputFile);
             }
             
             // 设置环境变量限制
             Map<String, String> env = processBuilder.environment();
             env.clear(); // 清除所有环境变量
             env.put("PATH", "/usr/bin:/bin"); // 只保留基本的PATH
-            env.put("HOME", sandboxDir.toString());
-            env.put("TMP", sandboxDir.toString());
-            env.put("TMPDIR", sandboxDir.toString());
+            env.put("HOME", runDir.toString());
+            env.put("TMP", runDir.toString());
+            env.put("TMPDIR", runDir.toString());
             
             long startTime = System.currentTimeMillis();
             Process process = processBuilder.start();
             
-            boolean finished = process.waitFor(timeLimit, TimeUnit.MILLISECONDS);
+            boolean finished = awaitProcess(process, timeLimit, cancellationToken);
             long executionTime = System.currentTimeMillis() - startTime;
             
             if (!finished) {
@@ -213,7 +243,7 @@ public class SandboxService {
             }
             
             int exitCode = process.exitValue();
-            System.out.println("进程执行完成: exitCode=" + exitCode + ", executionTime=" + executionTime);
+            log.debug("进程执行完成: exitCode={}, executionTime={}", exitCode, executionTime);
             
             // 检查是否有安全违规
             boolean securityViolation = false;
@@ -227,42 +257,94 @@ public class SandboxService {
             String output = "";
             String error = "";
             
-            // 从沙箱内的输出文件读取结果
-            if (outputFile != null) {
-                Path sandboxOutputFile = sandboxDir.resolve(outputFile.getFileName());
-                if (Files.exists(sandboxOutputFile)) {
-                    output = Files.readString(sandboxOutputFile);
-                    // 将结果复制回原始输出文件位置
-                    Files.copy(sandboxOutputFile, outputFile, StandardCopyOption.REPLACE_EXISTING);
-                    System.out.println("复制输出文件: " + sandboxOutputFile + " -> " + outputFile);
-                }
+            // 将 run 目录中的输出移回原始输出文件位置
+            if (sandboxOutputFile != null && Files.exists(sandboxOutputFile)) {
+                Files.move(sandboxOutputFile, outputFile, StandardCopyOption.REPLACE_EXISTING);
+                output = Files.readString(outputFile);
             }
             
             return new SandboxResult(exitCode, output, error, executionTime, securityViolation, violationReason);
             
-        } catch (Exception e) {
-            System.err.println("沙箱执行异常: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
         } finally {
-            // 清理沙箱环境
-            cleanupSandboxEnvironment(sandboxDir);
+            // 只清理本次执行的 run 目录；任务沙箱在任务结束时释放
+            cleanupSandboxEnvironment(runDir);
         }
     }
     
     /**
-     * 创建沙箱环境
+     * 释放任务的沙箱根目录（任务结束时调用）
      */
-    private Path createSandboxEnvironment(Path workingDir) throws IOException {
-        Path sandboxDir = Files.createTempDirectory(Paths.get(sandboxConfig.getBaseDirectory()), "sandbox-");
+    public void releaseTaskSandbox(Path workingDir) {
+        TaskSandbox taskSandbox = taskSandboxes.remove(workingDir.toAbsolutePath().normalize());
+        if (taskSandbox != null) {
+            cleanupSandboxEnvironment(taskSandbox.root);
+        }
+    }
+    
+    private TaskSandbox taskSandbox(Path workingDir) throws IOException {
+        Path key = workingDir.toAbsolutePath().normalize();
+        try {
+            return taskSandboxes.computeIfAbsent(key, ignored -> {
+                try {
+                    return new TaskSandbox(createSandboxEnvironment());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * 任务目录下的已有文件（如特判的 N.in/N.out/N.ans）复制进 run 目录并改用文件名；其他参数原样传递
+     */
+    private static String exposeArgument(String argument, Path workingDir, Path runDir) throws IOException {
+        Path path;
+        try {
+            path = Paths.get(argument);
+        } catch (InvalidPathException e) {
+            return argument;
+        }
+        if (!path.isAbsolute() || !path.normalize().startsWith(workingDir.toAbsolutePath().normalize())
+                || !Files.isRegularFile(path)) {
+            return argument;
+        }
+        Files.copy(path, runDir.resolve(path.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        return path.getFileName().toString();
+    }
+
+    /**
+     * 等待进程结束；令牌被取消时立即结束整个进程树，而不是等到时间限制
+     */
+    private boolean awaitProcess(Process process, long timeLimit, CancellationToken cancellationToken)
+            throws InterruptedException {
+        if (cancellationToken == null) {
+            return process.waitFor(timeLimit, TimeUnit.MILLISECONDS);
+        }
+        CancellationToken.Registration cancellation = cancellationToken.onCancel(() -> {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        });
+        try {
+            return process.waitFor(timeLimit, TimeUnit.MILLISECONDS);
+        } finally {
+            cancellation.close();
+        }
+    }
+
+    /**
+     * 创建任务沙箱根目录
+     */
+    private Path createSandboxEnvironment() throws IOException {
+        Path baseDirectory = Paths.get(sandboxConfig.getBaseDirectory());
+        Files.createDirectories(baseDirectory);
+        Path sandboxDir = Files.createTempDirectory(baseDirectory, "sandbox-");
         
         // 设置严格的目录权限
         Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwx------");
         Files.setPosixFilePermissions(sandboxDir, permissions);
         
-        // 复制必要的文件到沙箱
-        copyNecessaryFiles(workingDir, sandboxDir);
-        
         return sandboxDir;
     }
     
@@ -321,11 +403,18 @@ public class SandboxService {
     }
     
     /**
-     * 检查firejail是否可用
+     * 检查firejail是否可用（读取缓存的探测结果）
      */
     private boolean isFirejailAvailable() {
+        return firejailProbe.get();
+    }
+
+    /**
+     * 通过 which 检查命令是否在 PATH 中；由 CapabilityRegistry 在启动时和后台定期调用
+     */
+    private static boolean commandExists(String command) {
         try {
-            ProcessBuilder pb = new ProcessBuilder("which", "firejail");
+            ProcessBuilder pb = new ProcessBuilder("which", command);
             Process process = pb.start();
             boolean finished = process.waitFor(5, TimeUnit.SECONDS);
             return finished && process.exitValue() == 0;
@@ -335,42 +424,56 @@ public class SandboxService {
     }
     
     /**
-     * 复制必要的文件到沙箱
+     * 任务沙箱：bin/ 中的可执行文件每个只从任务目录复制一次，源文件变化时才重新复制；
+     * 每次执行的 run-N/ 目录得到自己的副本。firejail 中的进程与文件属主是同一 uid，
+     * 能恢复写权限并在改写后还原大小与修改时间，硬链接会让一次执行篡改之后的执行，
+     * 因此 bin/ 中的文件从不暴露给沙箱进程
      */
-    private void copyNecessaryFiles(Path source, Path target) throws IOException {
-        System.out.println("复制文件从 " + source + " 到 " + target);
-        
-        // 只复制可执行文件和输入文件
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(source)) {
-            for (Path entry : stream) {
-                if (Files.isRegularFile(entry)) {
-                    String fileName = entry.getFileName().toString();
-                    System.out.println("检查文件: " + fileName);
-                    
-                    // 只复制可执行文件、输入文件和必要的库文件
-                    if (fileName.endsWith(".in") || 
-                        fileName.endsWith(".out") || 
-                        fileName.endsWith(".ans") ||
-                        Files.isExecutable(entry)) {
-                        
-                        Path targetPath = target.resolve(fileName);
-                        Files.copy(entry, targetPath, StandardCopyOption.REPLACE_EXISTING);
-                        
-                        // 如果是可执行文件，确保它有执行权限
-                        if (Files.isExecutable(entry)) {
-                            try {
-                                Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwx------");
-                                Files.setPosixFilePermissions(targetPath, permissions);
-                                System.out.println("设置可执行权限: " + fileName);
-                            } catch (Exception e) {
-                                System.err.println("设置权限失败: " + fileName + " - " + e.getMessage());
-                            }
-                        }
-                        
-                        System.out.println("复制文件: " + fileName);
-                    }
-                }
+    private static final class TaskSandbox {
+        
+        private final Path root;
+        private final Path binDirectory;
+        private final Map<Path, StagedExecutable> executables = new HashMap<>();
+        private final AtomicLong runSequence = new AtomicLong();
+        
+        private TaskSandbox(Path root) throws IOException {
+            this.root = root;
+            this.binDirectory = Files.createDirectory(root.resolve("bin"));
+        }
+        
+        synchronized Path stageExecutable(Path executable) throws IOException {
+            Path source = executable.toAbsolutePath().normalize();
+            BasicFileAttributes sourceAttributes = Files.readAttributes(source, BasicFileAttributes.class);
+            StagedExecutable staged = executables.get(source);
+            if (staged != null && staged.matches(sourceAttributes)) {
+                return staged.path();
             }
+            Path target = binDirectory.resolve(source.getFileName());
+            Path temporary = Files.createTempFile(binDirectory, ".stage-", "");
+            Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+            Files.setPosixFilePermissions(temporary, PosixFilePermissions.fromString("r-x------"));
+            // 替换而不是覆盖：正在从旧文件复制的 run 目录不受影响
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            executables.put(source, new StagedExecutable(target, sourceAttributes.size(),
+                    sourceAttributes.lastModifiedTime()));
+            return target;
+        }
+        
+        Path createRunDirectory() throws IOException {
+            Path runDir = Files.createDirectory(root.resolve("run-" + runSequence.incrementAndGet()));
+            Files.setPosixFilePermissions(runDir, PosixFilePermissions.fromString("rwx------"));
+            return runDir;
+        }
+        
+        void copyInto(Path staged, Path target) throws IOException {
+            Files.copy(staged, target, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+    
+    private record StagedExecutable(Path path, long sourceSize, FileTime sourceModified) {
+        
+        boolean matches(BasicFileAttributes source) {
+            return source.size() == sourceSize && source.lastModifiedTime().equals(sourceModified);
         }
     }
     
@@ -398,7 +501,8 @@ public class SandboxService {
     /**
      * 直接执行命令（沙箱未启用时的备选方案）
      */
-    private SandboxResult executeDirectly(String[] command, Path workingDir, Path inputFile, Path outputFile, long timeLimit) 
+    private SandboxResult executeDirectly(String[] command, Path workingDir, Path inputFile, Path outputFile, long timeLimit,
+                                          CancellationToken cancellationToken)
             throws IOException, InterruptedException {
         
         System.out.println("直接执行命令: " + String.join(" ", command));
@@ -423,7 +527,7 @@ public class SandboxService {
         long startTime = System.currentTimeMillis();
         Process process = processBuilder.start();
         
-        boolean finished = process.waitFor(timeLimit, TimeUnit.MILLISECONDS);
+        boolean finished = awaitProcess(process, timeLimit, cancellationToken);
         long executionTime = System.currentTimeMillis() - startTime;
         
         if (!finished) {
@@ -433,7 +537,9 @@ public class SandboxService {
         
         int exitCode = process.exitValue();
         String output = outputFile != null && Files.exists(outputFile) ? Files.readString(outputFile) : "";
-        String error = Files.exists(errorFile.toPath()) ? Files.readString(errorFile.toPath()) : "";
+        String error = Files.exists(errorFile.toPath())
+                ? HeadTailCapture.readFile(errorFile.toPath(), HeadTailCapture.DEFAULT_BUDGET)
+                : "";
         
         // 清理错误文件
         try {
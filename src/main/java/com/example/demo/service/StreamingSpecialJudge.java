@@ -0,0 +1,331 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Special judges that stay alive for the whole task instead of being executed once per case.
+ *
+ * <p>Protocol: the checker is started as {@code special_judge --stream} and first writes the line
+ * {@value #HANDSHAKE} to stdout. For every case it then reads from stdin a header line
+ * {@code <case> <inputBytes> <outputBytes> <answerBytes>}, followed by exactly that many bytes of
+ * the case input, the user output and the oracle answer ({@code -1} answer bytes when there is no
+ * oracle), and writes one line {@code <case> AC|WA|PE [message]}, flushing stdout after every line.
+ * Closing stdin ends the checker. A checker that does not write the handshake in time is a legacy
+ * checker; {@link #start} returns {@code null} and the caller executes it per case as before.
+ *
+ * <p>Concurrent cases each borrow their own checker process, started on demand. A process that
+ * crashes or breaks the protocol is dropped and its case gets no verdict, so the caller can fall
+ * back to a per-case exec; one that exceeds the time limit is killed. A verdict other than AC, WA
+ * or PE breaks the protocol too. What a checker writes to stderr is kept within the
+ * {@link HeadTailCapture} budget and logged when it is dropped.
+ */
+@Slf4j
+public final class StreamingSpecialJudge implements AutoCloseable {
+
+    public static final String FLAG = "--stream";
+    public static final String HANDSHAKE = "SPJ-STREAM 1";
+
+    private static final String END_OF_STREAM = "\u0000eof";
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "spj-stream-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Launcher launcher;
+    private final Duration handshakeTimeout;
+    private final Deque<Connection> idle = new ConcurrentLinkedDeque<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    private StreamingSpecialJudge(Launcher launcher, Duration handshakeTimeout) {
+        this.launcher = launcher;
+        this.handshakeTimeout = handshakeTimeout;
+    }
+
+    /**
+     * Starts the first checker process and waits for its handshake.
+     *
+     * @return {@code null} when the checker cannot be started or does not speak the protocol
+     */
+    public static StreamingSpecialJudge start(Launcher launcher, Duration handshakeTimeout) throws InterruptedException {
+        StreamingSpecialJudge judge = new StreamingSpecialJudge(launcher, handshakeTimeout);
+        Connection first = judge.connect();
+        if (first == null) {
+            return null;
+        }
+        judge.idle.push(first);
+        return judge;
+    }
+
+    /**
+     * Sends one case to an idle checker process and waits up to {@code timeout} for its verdict.
+     *
+     * @param answer the oracle answer, or {@code null}
+     * @return {@code null} when no checker process could judge the case
+     */
+    public Verdict check(int caseNumber, Payload input, Payload output, Payload answer, Duration timeout)
+            throws IOException, InterruptedException {
+        Connection connection = idle.poll();
+        if (connection == null) {
+            connection = connect();
+            if (connection == null) {
+                return null;
+            }
+        }
+        Verdict verdict;
+        try {
+            verdict = connection.check(caseNumber, input, output, answer, timeout);
+        } catch (IOException e) {
+            log.debug("Streaming special judge failed on case {}: {}; stderr: {}", caseNumber, e.getMessage(),
+                    connection.errors());
+            connection.destroy();
+            return null;
+        }
+        if (verdict == Verdict.TIME_LIMIT_EXCEEDED || closed) {
+            connection.destroy();
+        } else {
+            idle.push(connection);
+        }
+        return verdict;
+    }
+
+    /**
+     * Closes the checkers' stdin so they exit, and kills those that do not.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Connection connection : connections) {
+            connection.finish();
+        }
+    }
+
+    private Connection connect() throws InterruptedException {
+        if (closed) {
+            return null;
+        }
+        Process process;
+        try {
+            process = launcher.launch();
+        } catch (IOException e) {
+            log.debug("Failed to start streaming special judge: {}", e.getMessage());
+            return null;
+        }
+        if (process == null) {
+            return null;
+        }
+        Connection connection = new Connection(process);
+        String greeting = connection.lines.poll(handshakeTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        if (!HANDSHAKE.equals(greeting)) {
+            connection.destroy();
+            return null;
+        }
+        connections.add(connection);
+        return connection;
+    }
+
+    public enum Verdict {
+        ACCEPTED,
+        WRONG_ANSWER,
+        PRESENTATION_ERROR,
+        TIME_LIMIT_EXCEEDED
+    }
+
+    /**
+     * Starts one checker process with stdin and stdout connected to pipes.
+     */
+    @FunctionalInterface
+    public interface Launcher {
+        Process launch() throws IOException;
+    }
+
+    /**
+     * Case data sent to the checker: its length goes into the frame header ahead of the bytes.
+     */
+    public interface Payload {
+
+        long size() throws IOException;
+
+        InputStream open() throws IOException;
+
+        static Payload of(CaseDataBuffer buffer) {
+            return new Payload() {
+                @Override
+                public long size() {
+                    return buffer.size();
+                }
+
+                @Override
+                public InputStream open() throws IOException {
+                    return buffer.openInputStream();
+                }
+            };
+        }
+
+        static Payload of(Path file) {
+            return new Payload() {
+                @Override
+                public long size() throws IOException {
+                    return Files.size(file);
+                }
+
+                @Override
+                public InputStream open() throws IOException {
+                    return Files.newInputStream(file);
+                }
+            };
+        }
+    }
+
+    private final class Connection {
+
+        private final Process process;
+        private final OutputStream stdin;
+        private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        private final HeadTailCapture errors = new HeadTailCapture(HeadTailCapture.DEFAULT_BUDGET);
+        private volatile boolean timedOut;
+
+        private Connection(Process process) {
+            this.process = process;
+            this.stdin = new BufferedOutputStream(process.getOutputStream());
+            Thread reader = new Thread(this::readLines, "spj-stream-reader");
+            reader.setDaemon(true);
+            reader.start();
+            Thread errorReader = new Thread(this::readErrors, "spj-stream-stderr");
+            errorReader.setDaemon(true);
+            errorReader.start();
+        }
+
+        private Verdict check(int caseNumber, Payload input, Payload output, Payload answer, Duration timeout)
+                throws IOException, InterruptedException {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            timedOut = false;
+            ScheduledFuture<?> watchdog = WATCHDOG.schedule(() -> {
+                timedOut = true;
+                process.destroyForcibly();
+            }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+            try {
+                String header = caseNumber + " " + input.size() + " " + output.size() + " "
+                        + (answer == null ? -1 : answer.size()) + "\n";
+                stdin.write(header.getBytes(StandardCharsets.US_ASCII));
+                copy(input);
+                copy(output);
+                if (answer != null) {
+                    copy(answer);
+                }
+                stdin.flush();
+                String line = lines.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (line == null || timedOut) {
+                    return Verdict.TIME_LIMIT_EXCEEDED;
+                }
+                return parse(caseNumber, line);
+            } catch (IOException e) {
+                if (timedOut) {
+                    return Verdict.TIME_LIMIT_EXCEEDED;
+                }
+                throw e;
+            } finally {
+                watchdog.cancel(false);
+            }
+        }
+
+        private Verdict parse(int caseNumber, String line) throws IOException {
+            if (END_OF_STREAM.equals(line)) {
+                throw new IOException("checker exited");
+            }
+            String[] fields = line.strip().split("\\s+", 3);
+            if (fields.length < 2 || !fields[0].equals(String.valueOf(caseNumber))) {
+                throw new IOException("unexpected reply: " + line);
+            }
+            return switch (fields[1]) {
+                case "AC" -> Verdict.ACCEPTED;
+                case "WA" -> Verdict.WRONG_ANSWER;
+                case "PE" -> Verdict.PRESENTATION_ERROR;
+                default -> throw new IOException("unknown verdict: " + line);
+            };
+        }
+
+        private void copy(Payload payload) throws IOException {
+            try (InputStream in = payload.open()) {
+                in.transferTo(stdin);
+            }
+        }
+
+        private void readLines() {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+            } catch (IOException e) {
+                // Killed or crashed; reported as the end of the stream below.
+            }
+            lines.add(END_OF_STREAM);
+        }
+
+        /**
+         * Drains stderr so a chatty checker never blocks on a full pipe.
+         */
+        private void readErrors() {
+            byte[] chunk = new byte[8192];
+            try (InputStream in = process.getErrorStream()) {
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    synchronized (errors) {
+                        errors.write(chunk, 0, read);
+                    }
+                }
+            } catch (IOException e) {
+                // Killed or crashed; whatever was captured is kept.
+            }
+        }
+
+        private String errors() {
+            synchronized (errors) {
+                return errors.toString();
+            }
+        }
+
+        private void finish() {
+            try {
+                stdin.close();
+                if (!process.waitFor(1, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (IOException e) {
+                process.destroyForcibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+
+        private void destroy() {
+            connections.remove(this);
+            process.destroyForcibly();
+        }
+    }
+}
@@ -41,20 +41,31 @@ public class TaskPolicyResolver {
             throw reject(requestedCases, "maxOutputBytesPerCase must be positive for profile " + profile());
         }
         boolean highVolume = requestedCases >= Math.max(1, executionProperties.getLargeModeThreshold());
-
-        return new ResolvedTaskPolicy(
-                profile(),
-                highVolume,
-                maxCasesPerTask,
-                requestedCases,
-                executionProperties.getBatchSize(),
-                executionProperties.getMaxConcurrentCasesPerTask(),
-                caseTimeLimit,
-                executionProperties.getMaxTaskRuntime(),
-                memoryLimitBytes,
-                maxOutputBytesPerCase,
-                executionProperties.isRequireSandbox()
-        );
+        ArtifactRetention artifactRetention = resolveArtifactRetention(requestedCases);
+
+        return ResolvedTaskPolicy.builder()
+                .profile(profile())
+                .highVolume(highVolume)
+                .maxCasesPerTask(maxCasesPerTask)
+                .requestedCases(requestedCases)
+                .batchSize(executionProperties.getBatchSize())
+                .maxConcurrentCasesPerTask(executionProperties.getMaxConcurrentCasesPerTask())
+                .caseTimeLimit(caseTimeLimit)
+                .maxTaskRuntime(executionProperties.getMaxTaskRuntime())
+                .memoryLimitBytes(memoryLimitBytes)
+                .maxOutputBytesPerCase(maxOutputBytesPerCase)
+                .sandboxRequired(executionProperties.isRequireSandbox())
+                .pipelinedCaseIo(executionProperties.isPipelinedCaseIo())
+                .artifactRetention(artifactRetention)
+                .seededGeneration(executionProperties.isSeededGeneration())
+                .continuousDispatch(executionProperties.isContinuousDispatch())
+                .cpuTimeLimit(executionProperties.isCpuTimeLimit())
+                .kernelLimits(executionProperties.isKernelLimits())
+                .generatorPrefetchDepth(executionProperties.getGeneratorPrefetchDepth())
+                .generatorPrefetchConcurrency(executionProperties.getGeneratorPrefetchConcurrency())
+                .bulkGeneratorChunk(executionProperties.getBulkGeneratorChunk())
+                .multiTestPackSize(resolveMultiTestPackSize(request))
+                .build();
     }
 
     public void validate(JudgeRequest request, ResolvedTaskPolicy policy) {
@@ -64,6 +75,23 @@ public class TaskPolicyResolver {
         }
     }
 
+    private int resolveMultiTestPackSize(JudgeRequest request) {
+        return Math.max(1, Math.min(request.getMultiTestPackSize(), executionProperties.getMultiTestPackMaxSize()));
+    }
+
+    private ArtifactRetention resolveArtifactRetention(int requestedCases) {
+        ArtifactRetention retention;
+        try {
+            retention = ArtifactRetention.parse(executionProperties.getArtifactRetention());
+        } catch (IllegalArgumentException e) {
+            throw reject(requestedCases, e.getMessage() + " for profile " + profile());
+        }
+        if (retention.mode() == ArtifactRetention.Mode.NONE && !executionProperties.isSeededGeneration()) {
+            throw reject(requestedCases, "Artifact retention none requires seededGeneration for profile " + profile());
+        }
+        return retention;
+    }
+
     private Duration resolveTimeLimit(JudgeRequest request) {
         long submittedMillis = request.getTimeLimit();
         if (submittedMillis == 0) {
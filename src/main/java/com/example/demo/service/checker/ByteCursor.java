@@ -0,0 +1,83 @@
+package com.example.demo.service.checker;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Single-byte lookahead over an input stream backed by a fixed buffer, tracking the absolute
+ * offset of the next byte.
+ */
+final class ByteCursor {
+
+    static final int EOF = -1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream input;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long consumed;
+    private boolean eof;
+
+    ByteCursor(InputStream input) {
+        this.input = input;
+    }
+
+    int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position] & 0xff;
+    }
+
+    int next() throws IOException {
+        int value = peek();
+        if (value != EOF) {
+            position++;
+        }
+        return value;
+    }
+
+    long offset() {
+        return consumed + position;
+    }
+
+    /**
+     * Skips bytes matched by {@link #isWhitespace(int)} and returns the first other byte
+     * without consuming it.
+     */
+    int skipWhitespace() throws IOException {
+        int value = peek();
+        while (value != EOF && isWhitespace(value)) {
+            position++;
+            value = peek();
+        }
+        return value;
+    }
+
+    /**
+     * Same set as the {@code \s} regex class the previous {@code split("\\s+")} comparison used.
+     */
+    static boolean isWhitespace(int value) {
+        return value == ' ' || value == '\n' || value == '\r' || value == '\t' || value == 0x0B || value == '\f';
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        consumed += limit;
+        position = 0;
+        limit = 0;
+        int read;
+        do {
+            read = input.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.service.checker;
+
+/**
+ * Outcome of one output comparison. {@code mismatchOffset} is the byte offset in the user
+ * output where the first difference starts, or {@code -1} when the outputs were accepted.
+ */
+public record CheckResult(boolean accepted, long mismatchOffset, String message) {
+
+    private static final CheckResult ACCEPTED = new CheckResult(true, -1, null);
+
+    public static CheckResult accept() {
+        return ACCEPTED;
+    }
+
+    public static CheckResult mismatch(long offset, String message) {
+        return new CheckResult(false, offset, message);
+    }
+}
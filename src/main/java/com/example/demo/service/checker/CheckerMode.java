@@ -0,0 +1,15 @@
+package com.example.demo.service.checker;
+
+/**
+ * Comparison rule applied between the oracle answer and the user output.
+ */
+public enum CheckerMode {
+    /** Byte-for-byte identical output. */
+    EXACT,
+    /** Line by line, ignoring trailing whitespace on each line and trailing blank lines. */
+    LINES,
+    /** Whitespace-separated tokens must be identical. */
+    TOKENS,
+    /** Tokens, with numeric tokens compared under an absolute/relative tolerance. */
+    FLOAT_TOKENS
+}
@@ -0,0 +1,30 @@
+package com.example.demo.service.checker;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+final class ExactChecker implements OutputChecker {
+
+    @Override
+    public CheckResult check(InputStream expected, InputStream actual) throws IOException {
+        ByteCursor expectedCursor = new ByteCursor(expected);
+        ByteCursor actualCursor = new ByteCursor(actual);
+        while (true) {
+            long offset = actualCursor.offset();
+            int expectedByte = expectedCursor.next();
+            int actualByte = actualCursor.next();
+            if (expectedByte != actualByte) {
+                if (actualByte == ByteCursor.EOF) {
+                    return CheckResult.mismatch(offset, "output ended early");
+                }
+                if (expectedByte == ByteCursor.EOF) {
+                    return CheckResult.mismatch(offset, "extra output");
+                }
+                return CheckResult.mismatch(offset, "byte differs");
+            }
+            if (expectedByte == ByteCursor.EOF) {
+                return CheckResult.accept();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demo.service.checker;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Compares outputs line by line. Spaces, tabs and carriage returns at the end of a line are
+ * ignored, as are blank lines at the end of either output. Both streams are walked in lockstep
+ * so trailing whitespace never has to be buffered.
+ */
+final class LineChecker implements OutputChecker {
+
+    @Override
+    public CheckResult check(InputStream expected, InputStream actual) throws IOException {
+        ByteCursor expectedCursor = new ByteCursor(expected);
+        ByteCursor actualCursor = new ByteCursor(actual);
+        long line = 1;
+        while (true) {
+            int expectedByte = expectedCursor.peek();
+            int actualByte = actualCursor.peek();
+            if (expectedByte == actualByte) {
+                if (expectedByte == ByteCursor.EOF) {
+                    return CheckResult.accept();
+                }
+                if (expectedByte == '\n') {
+                    line++;
+                }
+                expectedCursor.next();
+                actualCursor.next();
+                continue;
+            }
+
+            long mismatchOffset = actualCursor.offset();
+            expectedByte = skipLineSpace(expectedCursor);
+            actualByte = skipLineSpace(actualCursor);
+            if (isLineEnd(expectedByte) && isLineEnd(actualByte)) {
+                if (expectedByte == actualByte) {
+                    continue;
+                }
+                ByteCursor longer = expectedByte == ByteCursor.EOF ? actualCursor : expectedCursor;
+                if (onlyWhitespaceRemains(longer)) {
+                    return CheckResult.accept();
+                }
+            }
+            return CheckResult.mismatch(mismatchOffset, "line " + line + " differs");
+        }
+    }
+
+    private int skipLineSpace(ByteCursor cursor) throws IOException {
+        int value = cursor.peek();
+        while (value == ' ' || value == '\t' || value == '\r') {
+            cursor.next();
+            value = cursor.peek();
+        }
+        return value;
+    }
+
+    private boolean isLineEnd(int value) {
+        return value == '\n' || value == ByteCursor.EOF;
+    }
+
+    private boolean onlyWhitespaceRemains(ByteCursor cursor) throws IOException {
+        return cursor.skipWhitespace() == ByteCursor.EOF;
+    }
+}
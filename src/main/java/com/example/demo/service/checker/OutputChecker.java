@@ -0,0 +1,37 @@
+package com.example.demo.service.checker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares an expected answer with a user output as two byte streams. Implementations read
+ * through fixed-size buffers and never hold either output in memory, so the cost of a
+ * comparison does not grow with {@code max-output-bytes-per-case}.
+ */
+public interface OutputChecker {
+
+    CheckResult check(InputStream expected, InputStream actual) throws IOException;
+
+    default CheckResult check(Path expected, Path actual) throws IOException {
+        try (InputStream expectedStream = Files.newInputStream(expected);
+             InputStream actualStream = Files.newInputStream(actual)) {
+            return check(expectedStream, actualStream);
+        }
+    }
+
+    /**
+     * @param absoluteTolerance allowed absolute difference for {@link CheckerMode#FLOAT_TOKENS}
+     * @param relativeTolerance allowed difference relative to the expected value; {@code 0}
+     *                          keeps the comparison purely absolute
+     */
+    static OutputChecker forMode(CheckerMode mode, double absoluteTolerance, double relativeTolerance) {
+        return switch (mode == null ? CheckerMode.FLOAT_TOKENS : mode) {
+            case EXACT -> new ExactChecker();
+            case LINES -> new LineChecker();
+            case TOKENS -> new TokenChecker(false, 0, 0);
+            case FLOAT_TOKENS -> new TokenChecker(true, absoluteTolerance, relativeTolerance);
+        };
+    }
+}
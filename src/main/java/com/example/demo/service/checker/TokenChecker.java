@@ -0,0 +1,147 @@
+package com.example.demo.service.checker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares whitespace-separated tokens. Tokens are matched byte by byte straight out of the
+ * read buffers; only when two tokens differ are they decoded and, in float mode, parsed with
+ * {@link Double#parseDouble(String)} and compared under the configured tolerance. Accepted
+ * outputs therefore allocate nothing per token.
+ */
+final class TokenChecker implements OutputChecker {
+
+    /** Longest token that is still considered for numeric comparison. */
+    private static final int MAX_NUMERIC_TOKEN_BYTES = 1024;
+    private static final int PREVIEW_BYTES = 32;
+
+    private final boolean numeric;
+    private final double absoluteTolerance;
+    private final double relativeTolerance;
+
+    TokenChecker(boolean numeric, double absoluteTolerance, double relativeTolerance) {
+        this.numeric = numeric;
+        this.absoluteTolerance = absoluteTolerance;
+        this.relativeTolerance = relativeTolerance;
+    }
+
+    @Override
+    public CheckResult check(InputStream expected, InputStream actual) throws IOException {
+        ByteCursor expectedCursor = new ByteCursor(expected);
+        ByteCursor actualCursor = new ByteCursor(actual);
+        TokenBuffer expectedToken = new TokenBuffer();
+        TokenBuffer actualToken = new TokenBuffer();
+        long tokenIndex = 0;
+        while (true) {
+            int expectedByte = expectedCursor.skipWhitespace();
+            int actualByte = actualCursor.skipWhitespace();
+            tokenIndex++;
+            long tokenOffset = actualCursor.offset();
+            if (expectedByte == ByteCursor.EOF && actualByte == ByteCursor.EOF) {
+                return CheckResult.accept();
+            }
+            if (actualByte == ByteCursor.EOF) {
+                return CheckResult.mismatch(tokenOffset, "output ended early at token " + tokenIndex);
+            }
+            if (expectedByte == ByteCursor.EOF) {
+                return CheckResult.mismatch(tokenOffset, "extra output at token " + tokenIndex);
+            }
+            if (!matchToken(expectedCursor, actualCursor, expectedToken, actualToken)) {
+                return CheckResult.mismatch(tokenOffset, "token " + tokenIndex + " differs: expected '"
+                        + expectedToken.preview() + "' but found '" + actualToken.preview() + "'");
+            }
+        }
+    }
+
+    private boolean matchToken(ByteCursor expected, ByteCursor actual, TokenBuffer expectedToken,
+                               TokenBuffer actualToken) throws IOException {
+        expectedToken.reset();
+        actualToken.reset();
+        while (true) {
+            int expectedByte = expected.peek();
+            int actualByte = actual.peek();
+            boolean expectedEnd = isTokenEnd(expectedByte);
+            boolean actualEnd = isTokenEnd(actualByte);
+            if (expectedEnd && actualEnd) {
+                return true;
+            }
+            if (expectedEnd || actualEnd || expectedByte != actualByte) {
+                break;
+            }
+            expectedToken.append(expectedByte);
+            actualToken.append(actualByte);
+            expected.next();
+            actual.next();
+        }
+        readRest(expected, expectedToken);
+        readRest(actual, actualToken);
+        return numeric && numericallyEqual(expectedToken, actualToken);
+    }
+
+    private void readRest(ByteCursor cursor, TokenBuffer token) throws IOException {
+        while (!isTokenEnd(cursor.peek())) {
+            token.append(cursor.next());
+        }
+    }
+
+    private boolean numericallyEqual(TokenBuffer expectedToken, TokenBuffer actualToken) {
+        if (expectedToken.truncated() || actualToken.truncated()) {
+            return false;
+        }
+        double expectedValue;
+        double actualValue;
+        try {
+            expectedValue = Double.parseDouble(expectedToken.text());
+            actualValue = Double.parseDouble(actualToken.text());
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        double difference = Math.abs(actualValue - expectedValue);
+        if (!(difference > absoluteTolerance)) {
+            return true;
+        }
+        return relativeTolerance > 0 && difference <= relativeTolerance * Math.abs(expectedValue);
+    }
+
+    private static boolean isTokenEnd(int value) {
+        return value == ByteCursor.EOF || ByteCursor.isWhitespace(value);
+    }
+
+    /**
+     * Keeps at most {@link #MAX_NUMERIC_TOKEN_BYTES} of the current token; longer tokens are
+     * only remembered as truncated.
+     */
+    private static final class TokenBuffer {
+        private final byte[] bytes = new byte[MAX_NUMERIC_TOKEN_BYTES];
+        private int length;
+        private boolean truncated;
+
+        void reset() {
+            length = 0;
+            truncated = false;
+        }
+
+        void append(int value) {
+            if (length < bytes.length) {
+                bytes[length++] = (byte) value;
+            } else {
+                truncated = true;
+            }
+        }
+
+        boolean truncated() {
+            return truncated;
+        }
+
+        String text() {
+            // Latin-1 keeps one char per byte, so non-ASCII tokens still fail to parse as before.
+            return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+        }
+
+        String preview() {
+            String text = new String(bytes, 0, Math.min(length, PREVIEW_BYTES), StandardCharsets.UTF_8);
+            return length > PREVIEW_BYTES || truncated ? text + "..." : text;
+        }
+    }
+}
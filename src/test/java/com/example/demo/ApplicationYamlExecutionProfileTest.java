@@ -49,6 +49,12 @@ class ApplicationYamlExecutionProfileTest {
         assertThat(properties.getMaxDetailPreviewBytes()).isEqualTo(DEFAULT_DETAIL_PREVIEW_BYTES);
         assertThat(properties.getMaxTaskRuntime()).isEqualTo(Duration.ofHours(2));
         assertThat(properties.isRequireSandbox()).isFalse();
+        assertThat(properties.getArtifactRetention()).isEqualTo("failures-only");
+        assertThat(properties.isSeededGeneration()).isTrue();
+        assertThat(properties.isContinuousDispatch()).isTrue();
+        assertThat(properties.getMaxConcurrentCasesPerTask()).isZero();
+        assertThat(properties.getGeneratorPrefetchDepth()).isEqualTo(16);
+        assertThat(properties.getGeneratorPrefetchConcurrency()).isEqualTo(2);
     }
 
     private void assertHighVolumeProfile(String profile, boolean requireSandbox, long maxOutputBytesPerCase) throws Exception {
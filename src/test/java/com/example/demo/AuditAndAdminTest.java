@@ -101,6 +101,7 @@ class AuditAndAdminTest {
         assertThat(json.path("queuedCount").asInt()).isGreaterThanOrEqualTo(0);
         assertThat(json.path("runningCount").asInt()).isGreaterThanOrEqualTo(1);
         assertThat(json.path("providerHealth").path("provider").asText()).isNotBlank();
+        assertThat(json.path("cpuSlots").path("totalSlots").asInt()).isGreaterThanOrEqualTo(1);
         assertThat(json.path("recentFailureCounts").path("SYSTEM_ERROR").asInt()).isGreaterThanOrEqualTo(1);
         assertThat(json.path("taskResourceSummaries")).isNotEmpty();
         assertThat(json.path("taskResourceSummaries").toString()).contains(runningJudgeId);
@@ -220,19 +221,19 @@ class AuditAndAdminTest {
     }
 
     private ResolvedTaskPolicy policy(int cases) {
-        return new ResolvedTaskPolicy(
-                executionProperties.getProfile(),
-                false,
-                executionProperties.getMaxCasesPerTask(),
-                cases,
-                executionProperties.getBatchSize(),
-                executionProperties.getMaxConcurrentCasesPerTask(),
-                Duration.ofMillis(2_000),
-                executionProperties.getMaxTaskRuntime(),
-                268_435_456L,
-                executionProperties.getMaxOutputBytesPerCase(),
-                executionProperties.isRequireSandbox()
-        );
+        return ResolvedTaskPolicy.builder()
+                .profile(executionProperties.getProfile())
+                .highVolume(false)
+                .maxCasesPerTask(executionProperties.getMaxCasesPerTask())
+                .requestedCases(cases)
+                .batchSize(executionProperties.getBatchSize())
+                .maxConcurrentCasesPerTask(executionProperties.getMaxConcurrentCasesPerTask())
+                .caseTimeLimit(Duration.ofMillis(2_000))
+                .maxTaskRuntime(executionProperties.getMaxTaskRuntime())
+                .memoryLimitBytes(268_435_456L)
+                .maxOutputBytesPerCase(executionProperties.getMaxOutputBytesPerCase())
+                .sandboxRequired(executionProperties.isRequireSandbox())
+                .build();
     }
 
     private String session(String userId, boolean admin) {
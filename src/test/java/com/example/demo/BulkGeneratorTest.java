@@ -0,0 +1,118 @@
+package com.example.demo;
+
+import com.example.demo.service.BulkGenerator;
+import com.example.demo.service.CaseDataBuffer;
+import com.example.demo.service.ProcessResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void splitsCasesOnDelimiterLinesIncludingCrLf() throws Exception {
+        List<ByteArrayOutputStream> cases = new ArrayList<>();
+        String output = "3\n1 2 3\n#end-of-case\n#end-of-cases is data\n#end-of-case\r\nlast\n#end-of-case\nextra\n";
+
+        int emitted = BulkGenerator.split(stream(output), 3, index -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            cases.add(bytes);
+            return bytes;
+        });
+
+        assertThat(emitted).isEqualTo(3);
+        assertThat(cases.get(0).toString(StandardCharsets.UTF_8)).isEqualTo("3\n1 2 3\n");
+        assertThat(cases.get(1).toString(StandardCharsets.UTF_8)).isEqualTo("#end-of-cases is data\n");
+        assertThat(cases.get(2).toString(StandardCharsets.UTF_8)).isEqualTo("last\n");
+    }
+
+    @Test
+    void unterminatedTrailingCaseIsNotCounted() throws Exception {
+        List<ByteArrayOutputStream> cases = new ArrayList<>();
+
+        int emitted = BulkGenerator.split(stream("a\n#end-of-case\nb\n"), 3, index -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            cases.add(bytes);
+            return bytes;
+        });
+
+        assertThat(emitted).isEqualTo(1);
+        assertThat(cases.get(1).toString(StandardCharsets.UTF_8)).isEqualTo("b\n");
+    }
+
+    @Test
+    void oneExecProducesAWholeChunkWithCaseSeedsIndependentOfChunking() throws Exception {
+        List<List<String>> runs = new CopyOnWriteArrayList<>();
+        BulkGenerator.ChunkRunner runner = (arguments, count, output) -> {
+            runs.add(arguments);
+            long baseSeed = Long.parseLong(arguments.get(2));
+            try (OutputStream out = output.openOutputStream()) {
+                for (int j = 0; j < count; j++) {
+                    out.write(((baseSeed + j) + "\n" + BulkGenerator.DELIMITER + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return new ProcessResult(ProcessResult.Status.SUCCESS, "", "", 1, 0, 0);
+        };
+
+        try (BulkGenerator generator = new BulkGenerator(10, 4, 42L, 1024, tempDir, runner)) {
+            for (int caseNumber = 1; caseNumber <= 10; caseNumber++) {
+                BulkGenerator.GeneratedCase generated = generator.take(caseNumber);
+                assertThat(generated.result().status()).isEqualTo(ProcessResult.Status.SUCCESS);
+                assertThat(read(generated.input())).isEqualTo(BulkGenerator.caseSeed(42L, caseNumber) + "\n");
+                generated.input().close();
+            }
+            assertThat(generator.execs()).isEqualTo(1 + 3);
+        }
+        assertThat(runs).extracting(arguments -> arguments.get(1)).containsExactly("1", "4", "4", "1");
+        assertThat(runs.get(0)).isEqualTo(BulkGenerator.arguments(1, BulkGenerator.caseSeed(42L, 1)));
+    }
+
+    @Test
+    void casesTheGeneratorDidNotEmitFail() throws Exception {
+        BulkGenerator.ChunkRunner runner = (arguments, count, output) -> {
+            try (OutputStream out = output.openOutputStream()) {
+                out.write(("only\n" + BulkGenerator.DELIMITER + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return new ProcessResult(ProcessResult.Status.SUCCESS, "", "", 1, 0, 0);
+        };
+
+        try (BulkGenerator generator = new BulkGenerator(4, 3, 7L, 1024, tempDir, runner)) {
+            BulkGenerator.GeneratedCase second = generator.take(2);
+            BulkGenerator.GeneratedCase third = generator.take(3);
+
+            assertThat(second.result().status()).isEqualTo(ProcessResult.Status.SUCCESS);
+            assertThat(read(second.input())).isEqualTo("only\n");
+            assertThat(third.result().status()).isEqualTo(ProcessResult.Status.RUNTIME_ERROR);
+            assertThat(third.result().error()).contains("emitted 1 of 3");
+            assertThat(read(third.input())).isEmpty();
+            assertThat(generator.execs()).isEqualTo(1);
+            second.input().close();
+            third.input().close();
+        }
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(CaseDataBuffer buffer) throws IOException {
+        try (InputStream in = buffer.openInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.demo;
+
+import com.example.demo.config.ExecutionProperties;
+import com.example.demo.service.CapabilityRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CapabilityRegistryTest {
+
+    private CapabilityRegistry registry;
+
+    @AfterEach
+    void tearDown() {
+        if (registry != null) {
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    void readsAreServedFromTheCacheUntilTheBackgroundRefresh() throws Exception {
+        registry = registry(Duration.ofMillis(200));
+        AtomicInteger probes = new AtomicInteger();
+        CapabilityRegistry.Capability<Integer> capability =
+                registry.register("counter", probes::incrementAndGet, 0);
+
+        assertThat(capability.get()).isEqualTo(1);
+        for (int i = 0; i < 1000; i++) {
+            capability.get();
+        }
+        assertThat(probes.get()).isEqualTo(1);
+
+        Instant first = capability.probedAt();
+        Thread.sleep(600);
+        assertThat(probes.get()).isGreaterThan(1);
+        assertThat(capability.get()).isGreaterThan(1);
+        assertThat(capability.probedAt().isAfter(first)).isTrue();
+    }
+
+    @Test
+    void failedProbeKeepsThePreviousValueAndRecordsTheError() throws Exception {
+        registry = registry(Duration.ofMillis(100));
+        AtomicInteger probes = new AtomicInteger();
+        CapabilityRegistry.Capability<Boolean> capability = registry.register("flaky", () -> {
+            if (probes.incrementAndGet() > 1) {
+                throw new IllegalStateException("provider unreachable");
+            }
+            return true;
+        }, false);
+
+        assertThat(capability.get()).isTrue();
+        Thread.sleep(300);
+
+        assertThat(capability.get()).isTrue();
+        CapabilityRegistry.ProbeStatus status = registry.snapshot().get(0);
+        assertThat(status.name()).isEqualTo("flaky");
+        assertThat(status.error()).isEqualTo("provider unreachable");
+        assertThat(status.probedAt()).isNotNull();
+    }
+
+    @Test
+    void registeringANameTwiceReusesTheFirstProbe() {
+        registry = registry(Duration.ofMinutes(5));
+        CapabilityRegistry.Capability<String> first = registry.register("tool", () -> "first", null);
+        CapabilityRegistry.Capability<String> second = registry.register("tool", () -> "second", null);
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.get()).isEqualTo("first");
+        assertThat(registry.snapshot()).hasSize(1);
+    }
+
+    private static CapabilityRegistry registry(Duration ttl) {
+        ExecutionProperties properties = new ExecutionProperties();
+        properties.setCapabilityProbeTtl(ttl);
+        return new CapabilityRegistry(properties);
+    }
+}
@@ -181,24 +181,129 @@ class CaseBatchRunnerTest {
         assertThat(finalProgress.getSummary().getFirstFailedCase()).isEqualTo(2);
     }
 
+    @Test
+    void continuousDispatchKeepsSlotsBusyAcrossBatchBoundariesWithUnevenCases() {
+        int totalCases = 40;
+        int maxConcurrentCases = 4;
+        CaseBatchRunner.CaseExecution unevenCases = caseNumber -> {
+            // One slow case per batch of four; the rest finish almost immediately.
+            Thread.sleep(caseNumber % maxConcurrentCases == 1 ? 100 : 5);
+            return new TestCaseResult(caseNumber, "AC", 1, 1);
+        };
+
+        long batchedStarted = System.nanoTime();
+        CaseBatchRunner.RunOutcome batched = runner(Executors.newFixedThreadPool(maxConcurrentCases)).run(
+                totalCases, policy(totalCases, maxConcurrentCases, maxConcurrentCases, false),
+                new CancellationToken(), unevenCases, result -> {
+                });
+        long batchedMillis = (System.nanoTime() - batchedStarted) / 1_000_000;
+
+        long continuousStarted = System.nanoTime();
+        CaseBatchRunner.RunOutcome continuous = runner(Executors.newFixedThreadPool(maxConcurrentCases)).run(
+                totalCases, policy(totalCases, maxConcurrentCases, maxConcurrentCases, true),
+                new CancellationToken(), unevenCases, result -> {
+                });
+        long continuousMillis = (System.nanoTime() - continuousStarted) / 1_000_000;
+
+        assertThat(batched.getCompletedCases()).isEqualTo(totalCases);
+        assertThat(continuous.getCompletedCases()).isEqualTo(totalCases);
+        assertThat(continuous.getPeakScheduledFutures()).isEqualTo(maxConcurrentCases);
+        // Batched: ten barriers of ~100 ms. Continuous: the slow cases overlap, ~300 ms total.
+        assertThat(batchedMillis).isGreaterThanOrEqualTo(1_000);
+        assertThat(continuousMillis).isLessThan(batchedMillis * 6 / 10);
+    }
+
+    @Test
+    void continuousDispatchKeepsCancellationAndStopSemantics() {
+        CancellationToken token = new CancellationToken();
+        AtomicInteger startedCases = new AtomicInteger();
+        CaseBatchRunner.RunOutcome cancelled = runner(Executors.newFixedThreadPool(4)).run(
+                100,
+                policy(100, 10, 2, true),
+                token,
+                caseNumber -> {
+                    startedCases.incrementAndGet();
+                    token.cancel();
+                    return new TestCaseResult(caseNumber, "AC", 1, 1);
+                },
+                result -> {
+                }
+        );
+
+        assertThat(cancelled.isCancelled()).isTrue();
+        assertThat(startedCases.get()).isLessThanOrEqualTo(2);
+        assertThat(cancelled.getCompletedCases()).isEqualTo(cancelled.getSubmittedCases());
+
+        List<TestCaseResult> results = new ArrayList<>();
+        CaseBatchRunner.RunOutcome stopped = new CaseBatchRunner(Runnable::run).run(
+                10,
+                policy(10, 3, 1, true),
+                new CancellationToken(),
+                caseNumber -> new TestCaseResult(caseNumber, caseNumber == 5 ? "WA" : "AC", 1, 1),
+                results::add,
+                result -> !"AC".equals(result.getStatus())
+        );
+
+        assertThat(stopped.isStoppedAfterResult()).isTrue();
+        assertThat(stopped.getSubmittedCases()).isEqualTo(5);
+        assertThat(results).extracting(TestCaseResult::getCaseNumber).containsExactly(1, 2, 3, 4, 5);
+    }
+
+    @Test
+    void packedDispatchRunsConsecutivePacksAndReportsEveryCase() {
+        List<String> packs = Collections.synchronizedList(new ArrayList<>());
+        List<TestCaseResult> results = Collections.synchronizedList(new ArrayList<>());
+
+        CaseBatchRunner.RunOutcome outcome = runner(Executors.newFixedThreadPool(2)).runPacked(
+                null,
+                8,
+                3,
+                policy(8, 2, 2),
+                new CancellationToken(),
+                (firstCase, count) -> {
+                    packs.add(firstCase + "+" + count);
+                    List<TestCaseResult> pack = new ArrayList<>();
+                    for (int i = 0; i < count; i++) {
+                        pack.add(new TestCaseResult(firstCase + i, "AC", 1, 1));
+                    }
+                    // A pack that comes back short is padded with system errors.
+                    return firstCase == 4 ? pack.subList(0, 2) : pack;
+                },
+                results::add,
+                result -> false
+        );
+
+        assertThat(packs).containsExactlyInAnyOrder("1+3", "4+3", "7+2");
+        assertThat(outcome.getSubmittedCases()).isEqualTo(8);
+        assertThat(outcome.getCompletedCases()).isEqualTo(8);
+        assertThat(results).extracting(TestCaseResult::getCaseNumber).containsExactlyInAnyOrder(1, 2, 3, 4, 5, 6, 7, 8);
+        assertThat(results.stream().filter(result -> !"AC".equals(result.getStatus())).toList())
+                .extracting(TestCaseResult::getCaseNumber).containsExactly(6);
+    }
+
     private CaseBatchRunner runner(ExecutorService executor) {
         executors.add(executor);
         return new CaseBatchRunner(executor);
     }
 
     private ResolvedTaskPolicy policy(int requestedCases, int batchSize, int maxConcurrentCases) {
-        return new ResolvedTaskPolicy(
-                "local-large",
-                requestedCases >= 5_000,
-                100_000,
-                requestedCases,
-                batchSize,
-                maxConcurrentCases,
-                Duration.ofSeconds(2),
-                Duration.ofMinutes(30),
-                268_435_456L,
-                1_048_576L,
-                false
-        );
+        return policy(requestedCases, batchSize, maxConcurrentCases, false);
+    }
+
+    private ResolvedTaskPolicy policy(int requestedCases, int batchSize, int maxConcurrentCases, boolean continuousDispatch) {
+        return ResolvedTaskPolicy.builder()
+                .profile("local-large")
+                .highVolume(requestedCases >= 5_000)
+                .maxCasesPerTask(100_000)
+                .requestedCases(requestedCases)
+                .batchSize(batchSize)
+                .maxConcurrentCasesPerTask(maxConcurrentCases)
+                .caseTimeLimit(Duration.ofSeconds(2))
+                .maxTaskRuntime(Duration.ofMinutes(30))
+                .memoryLimitBytes(268_435_456L)
+                .maxOutputBytesPerCase(1_048_576L)
+                .sandboxRequired(false)
+                .continuousDispatch(continuousDispatch)
+                .build();
     }
 }
@@ -0,0 +1,141 @@
+package com.example.demo;
+
+import com.example.demo.config.ExecutionProperties;
+import com.example.demo.config.MemoryConfiguration;
+import com.example.demo.service.CgroupProcessRunner;
+import com.example.demo.service.DirectProcessRunner;
+import com.example.demo.service.MemoryMonitorService;
+import com.example.demo.service.ProcessResult;
+import com.example.demo.service.ProcessRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against a fake cgroupfs tree: the test program finds its own leaf through
+ * {@code cgroup.procs} and writes the figures the kernel would report.
+ */
+class CgroupProcessRunnerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final DirectProcessRunner directRunner =
+            new DirectProcessRunner(new MemoryMonitorService(new MemoryConfiguration()));
+
+    @Test
+    void fallsBackToDirectExecutionWithoutDelegatedControllers() throws Exception {
+        Path root = Files.createDirectories(tempDir.resolve("cgroup"));
+        Files.writeString(root.resolve("cgroup.subtree_control"), "cpu\n");
+        CgroupProcessRunner runner = new CgroupProcessRunner(directRunner, root, 64);
+
+        ProcessResult result = runner.run(request(List.of("sh", "-c", "echo ok")).build());
+
+        assertThat(runner.isAvailable()).isFalse();
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+        assertThat(result.output()).isEqualTo("ok\n");
+        try (Stream<Path> leaves = Files.list(root)) {
+            assertThat(leaves.filter(Files::isDirectory).count()).isZero();
+        }
+    }
+
+    @Test
+    void oomKillInTheLeafIsMemoryLimitExceeded() throws Exception {
+        Path root = delegatedRoot();
+        CgroupProcessRunner runner = new CgroupProcessRunner(directRunner, root, 32);
+
+        ProcessResult result = runner.run(request(reportFromLeaf(root, "oom 1\noom_kill 1", 5_000, 70_000_000))
+                .memoryLimitBytes(64L << 20)
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.MEMORY_LIMIT_EXCEEDED);
+        assertThat(result.memoryUsed()).isEqualTo(64L << 20);
+        assertThat(result.cpuTime()).isEqualTo(5);
+        Path leaf = onlyLeaf(root);
+        assertThat(Files.readString(leaf.resolve("memory.max"))).isEqualTo(Long.toString(64L << 20));
+        assertThat(Files.readString(leaf.resolve("pids.max"))).isEqualTo("32");
+        assertThat(Files.readString(leaf.resolve("cpu.max"))).isEqualTo("100000 100000");
+    }
+
+    @Test
+    void cpuTimeOfTheWholeLeafIsJudgedAgainstTheCpuTimeLimit() throws Exception {
+        Path root = delegatedRoot();
+        CgroupProcessRunner runner = new CgroupProcessRunner(directRunner, root, 32);
+
+        ProcessResult result = runner.run(request(reportFromLeaf(root, "oom 0\noom_kill 0", 900_000, 1_000_000))
+                .cpuTimeLimit(Duration.ofMillis(500))
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.TIME_LIMIT_EXCEEDED);
+        assertThat(result.cpuTime()).isEqualTo(900);
+    }
+
+    @Test
+    void reportedMemoryIsThePeakRssNotTheLeafCharge() throws Exception {
+        Path root = delegatedRoot();
+        CgroupProcessRunner runner = new CgroupProcessRunner(directRunner, root, 32);
+
+        // memory.peak also charges the wrapper and page cache; a leaf charge of 900 MB must not leak out.
+        ProcessResult result = runner.run(request(reportFromLeaf(root, "oom 0\noom_kill 0", 1_000, 900_000_000))
+                .memoryLimitBytes(1L << 30)
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+        assertThat(result.memoryUsed()).isLessThan(64L << 20);
+    }
+
+    @Test
+    void cgroupExecutionNeedsAnExplicitlyDelegatedRoot() throws Exception {
+        ExecutionProperties properties = new ExecutionProperties();
+        assertThat(properties.isCgroupExecution()).isFalse();
+
+        properties.setCgroupExecution(true);
+        assertThat(new CgroupProcessRunner(directRunner, properties).isAvailable()).isFalse();
+
+        properties.setCgroupRoot(delegatedRoot().toString());
+        assertThat(new CgroupProcessRunner(directRunner, properties).isAvailable()).isTrue();
+    }
+
+    private Path delegatedRoot() throws Exception {
+        Path root = Files.createDirectories(tempDir.resolve("cgroup"));
+        Files.writeString(root.resolve("cgroup.subtree_control"), "cpu memory pids\n");
+        return root;
+    }
+
+    /**
+     * A shell script that plays the kernel: it looks up the leaf listing its pid and writes the
+     * accounting files the runner reads back.
+     */
+    private static List<String> reportFromLeaf(Path root, String events, long cpuMicros, long peakBytes) {
+        String script = "leaf=$(dirname \"$(grep -lx $$ \"$1\"/*/cgroup.procs)\") && "
+                + "printf '" + events.replace("\n", "\\n") + "\\n' > \"$leaf/memory.events\" && "
+                + "printf 'usage_usec " + cpuMicros + "\\n' > \"$leaf/cpu.stat\" && "
+                + "echo " + peakBytes + " > \"$leaf/memory.peak\"";
+        return List.of("sh", "-c", script, "sh", root.toString());
+    }
+
+    private static Path onlyLeaf(Path root) throws Exception {
+        try (Stream<Path> leaves = Files.list(root)) {
+            List<Path> directories = leaves.filter(Files::isDirectory).toList();
+            assertThat(directories).hasSize(1);
+            return directories.get(0);
+        }
+    }
+
+    private ProcessRunner.Request.Builder request(List<String> command) throws Exception {
+        Path workingDirectory = Files.createDirectories(tempDir.resolve("work"));
+        return ProcessRunner.Request.builder()
+                .command(command)
+                .workingDirectory(workingDirectory)
+                .timeout(Duration.ofSeconds(5))
+                .killGrace(Duration.ofMillis(200))
+                .profile("trusted-local");
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.demo;
+
+import com.example.demo.config.CompilerConfiguration;
+import com.example.demo.service.CompileCache;
+import com.example.demo.service.ProcessResult;
+import com.example.demo.service.ProcessRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompileCacheTest {
+
+    private static final List<String> FLAGS = List.of("g++", "-O2", "-std=c++14");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void identicalSourceIsServedFromCacheWithoutRecompiling() throws Exception {
+        CompileCache cache = cache(new CompilerConfiguration(), "g++ (GCC) 13.2.0");
+        AtomicInteger compiles = new AtomicInteger();
+
+        CompileCache.Outcome first = cache.compile(source("a", "int main(){}"), tempDir.resolve("a/user"), FLAGS,
+                executable -> fakeCompile(executable, "bin-1", compiles));
+        CompileCache.Outcome second = cache.compile(source("b", "int main(){}"), tempDir.resolve("b/user"), FLAGS,
+                executable -> fakeCompile(executable, "bin-2", compiles));
+
+        assertThat(first.cacheHit()).isFalse();
+        assertThat(second.cacheHit()).isTrue();
+        assertThat(compiles.get()).isEqualTo(1);
+        assertThat(Files.readString(tempDir.resolve("b/user"))).isEqualTo("bin-1");
+        assertThat(Files.isExecutable(tempDir.resolve("b/user"))).isTrue();
+    }
+
+    @Test
+    void flagsAndCompilerVersionArePartOfTheKey() throws Exception {
+        AtomicInteger compiles = new AtomicInteger();
+        CompileCache gcc13 = cache(new CompilerConfiguration(), "g++ (GCC) 13.2.0");
+        CompileCache gcc14 = cache(new CompilerConfiguration(), "g++ (GCC) 14.1.0");
+
+        gcc13.compile(source("a", "int main(){}"), tempDir.resolve("a/user"), FLAGS,
+                executable -> fakeCompile(executable, "bin", compiles));
+        CompileCache.Outcome otherFlags = gcc13.compile(source("b", "int main(){}"), tempDir.resolve("b/user"),
+                List.of("g++", "-O0", "-std=c++14"), executable -> fakeCompile(executable, "bin", compiles));
+        CompileCache.Outcome otherCompiler = gcc14.compile(source("c", "int main(){}"), tempDir.resolve("c/user"), FLAGS,
+                executable -> fakeCompile(executable, "bin", compiles));
+
+        assertThat(otherFlags.cacheHit()).isFalse();
+        assertThat(otherCompiler.cacheHit()).isFalse();
+        assertThat(compiles.get()).isEqualTo(3);
+    }
+
+    @Test
+    void concurrentMissesForTheSameSourceCompileOnce() throws Exception {
+        CompileCache cache = cache(new CompilerConfiguration(), "g++ (GCC) 13.2.0");
+        AtomicInteger compiles = new AtomicInteger();
+        CountDownLatch compiling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<CompileCache.Outcome> leader = executor.submit(() -> cache.compile(
+                    source("leader", "int main(){}"), tempDir.resolve("leader/user"), FLAGS, executable -> {
+                        compiling.countDown();
+                        assertThat(release.await(5, TimeUnit.SECONDS)).isTrue();
+                        fakeCompile(executable, "bin", compiles);
+                    }));
+            assertThat(compiling.await(5, TimeUnit.SECONDS)).isTrue();
+            List<Future<CompileCache.Outcome>> followers = List.of(
+                    executor.submit(() -> cache.compile(source("f1", "int main(){}"), tempDir.resolve("f1/user"), FLAGS,
+                            executable -> fakeCompile(executable, "bin", compiles))),
+                    executor.submit(() -> cache.compile(source("f2", "int main(){}"), tempDir.resolve("f2/user"), FLAGS,
+                            executable -> fakeCompile(executable, "bin", compiles))));
+            Thread.sleep(100);
+            release.countDown();
+
+            assertThat(leader.get(5, TimeUnit.SECONDS).cacheHit()).isFalse();
+            for (Future<CompileCache.Outcome> follower : followers) {
+                assertThat(follower.get(5, TimeUnit.SECONDS).cacheHit()).isTrue();
+            }
+            assertThat(compiles.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedCompilesAreNotCached() throws Exception {
+        CompileCache cache = cache(new CompilerConfiguration(), "g++ (GCC) 13.2.0");
+        AtomicInteger compiles = new AtomicInteger();
+
+        assertThatThrownBy(() -> cache.compile(source("a", "broken"), tempDir.resolve("a/user"), FLAGS, executable -> {
+            compiles.incrementAndGet();
+            throw new IllegalStateException("compile error");
+        })).isInstanceOf(IllegalStateException.class);
+        CompileCache.Outcome retry = cache.compile(source("b", "broken"), tempDir.resolve("b/user"), FLAGS,
+                executable -> fakeCompile(executable, "bin", compiles));
+
+        assertThat(retry.cacheHit()).isFalse();
+        assertThat(compiles.get()).isEqualTo(2);
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedBeyondTheEntryLimit() throws Exception {
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.setCacheMaxEntries(2);
+        CompileCache cache = cache(configuration, "g++ (GCC) 13.2.0");
+        AtomicInteger compiles = new AtomicInteger();
+
+        cache.compile(source("one", "1"), tempDir.resolve("one/user"), FLAGS, executable -> fakeCompile(executable, "1", compiles));
+        cache.compile(source("two", "2"), tempDir.resolve("two/user"), FLAGS, executable -> fakeCompile(executable, "2", compiles));
+        assertThat(cache.compile(source("one-again", "1"), tempDir.resolve("one-again/user"), FLAGS,
+                executable -> fakeCompile(executable, "1", compiles)).cacheHit()).isTrue();
+        cache.compile(source("three", "3"), tempDir.resolve("three/user"), FLAGS, executable -> fakeCompile(executable, "3", compiles));
+
+        assertThat(cache.compile(source("one-last", "1"), tempDir.resolve("one-last/user"), FLAGS,
+                executable -> fakeCompile(executable, "1", compiles)).cacheHit()).isTrue();
+        assertThat(cache.compile(source("two-last", "2"), tempDir.resolve("two-last/user"), FLAGS,
+                executable -> fakeCompile(executable, "2", compiles)).cacheHit()).isFalse();
+        assertThat(compiles.get()).isEqualTo(4);
+    }
+
+    @Test
+    void unknownCompilerVersionDisablesCaching() throws Exception {
+        CompileCache cache = cache(new CompilerConfiguration(), null);
+        AtomicInteger compiles = new AtomicInteger();
+
+        cache.compile(source("a", "int main(){}"), tempDir.resolve("a/user"), FLAGS,
+                executable -> fakeCompile(executable, "bin", compiles));
+        CompileCache.Outcome second = cache.compile(source("b", "int main(){}"), tempDir.resolve("b/user"), FLAGS,
+                executable -> fakeCompile(executable, "bin", compiles));
+
+        assertThat(second.cacheHit()).isFalse();
+        assertThat(compiles.get()).isEqualTo(2);
+        assertThat(cache.cacheDirectory()).doesNotExist();
+    }
+
+    private CompileCache cache(CompilerConfiguration configuration, String version) {
+        ProcessRunner probe = request -> version == null
+                ? ProcessResult.failure(ProcessResult.Status.RUNTIME_ERROR, "not found")
+                : new ProcessResult(ProcessResult.Status.SUCCESS, version + "\nCopyright\n", "", 1, 0, 0);
+        return new CompileCache(configuration, tempDir.resolve("cache"), probe);
+    }
+
+    private Path source(String directory, String code) throws Exception {
+        Path dir = Files.createDirectories(tempDir.resolve(directory));
+        return Files.writeString(dir.resolve("user.cpp"), code);
+    }
+
+    private void fakeCompile(Path executable, String content, AtomicInteger compiles) throws IOException {
+        compiles.incrementAndGet();
+        Files.writeString(executable, content);
+    }
+}
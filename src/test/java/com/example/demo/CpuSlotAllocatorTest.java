@@ -0,0 +1,176 @@
+package com.example.demo;
+
+import com.example.demo.dto.TestCaseResult;
+import com.example.demo.service.CaseBatchRunner;
+import com.example.demo.service.CancellationToken;
+import com.example.demo.service.CpuAffinity;
+import com.example.demo.service.CpuSlotAllocator;
+import com.example.demo.service.ResolvedTaskPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CpuSlotAllocatorTest {
+
+    @Test
+    void loneTaskMayUseEverySlot() throws Exception {
+        CpuSlotAllocator allocator = new CpuSlotAllocator(4, 2);
+
+        try (CpuSlotAllocator.Lease lease = allocator.register("solo", 1, 16)) {
+            for (int i = 0; i < 4; i++) {
+                assertThat(lease.tryAcquire(0)).isTrue();
+            }
+            assertThat(lease.tryAcquire(0)).isFalse();
+            assertThat(allocator.snapshot().usedSlots()).isEqualTo(4);
+            assertThat(allocator.snapshot().tasks().get(0).fairShare()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void borrowedSlotsReturnToAWaitingTaskAsTheyAreReleased() throws Exception {
+        CpuSlotAllocator allocator = new CpuSlotAllocator(4, 2);
+        CpuSlotAllocator.Lease first = allocator.register("first", 1, 4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(first.tryAcquire(0)).isTrue();
+        }
+
+        CpuSlotAllocator.Lease second = allocator.register("second", 1, 4);
+        assertThat(second.tryAcquire(0)).isFalse();
+        first.release();
+        // The borrower may not take the freed slot back while the other task is short of its share.
+        assertThat(first.tryAcquire(0)).isFalse();
+        assertThat(second.tryAcquire(0)).isTrue();
+        first.release();
+        assertThat(second.tryAcquire(0)).isTrue();
+        assertThat(second.tryAcquire(0)).isFalse();
+
+        CpuSlotAllocator.Snapshot snapshot = allocator.snapshot();
+        assertThat(snapshot.usedSlots()).isEqualTo(4);
+        assertThat(snapshot.tasks()).extracting(CpuSlotAllocator.TaskSlots::usedSlots).containsExactly(2, 2);
+        assertThat(snapshot.tasks()).extracting(CpuSlotAllocator.TaskSlots::fairShare).containsExactly(2, 2);
+    }
+
+    @Test
+    void interactiveTasksOutweighHighVolumeTasks() {
+        CpuSlotAllocator allocator = new CpuSlotAllocator(6, 2);
+
+        allocator.register("bulk", policy(100_000, true), 6);
+        allocator.register("interactive", policy(100, false), 6);
+
+        assertThat(allocator.snapshot().tasks()).extracting(CpuSlotAllocator.TaskSlots::fairShare).containsExactly(2, 4);
+    }
+
+    @Test
+    void closedLeaseKeepsInFlightSlotsUntilReleased() throws Exception {
+        CpuSlotAllocator allocator = new CpuSlotAllocator(2, 2);
+        CpuSlotAllocator.Lease lease = allocator.register("stopped", 1, 2);
+        assertThat(lease.tryAcquire(0)).isTrue();
+
+        lease.close();
+        assertThat(allocator.snapshot().usedSlots()).isEqualTo(1);
+        assertThat(lease.tryAcquire(0)).isFalse();
+
+        lease.release();
+        assertThat(allocator.snapshot().usedSlots()).isZero();
+        assertThat(allocator.snapshot().tasks()).isEmpty();
+    }
+
+    @Test
+    void concurrentTasksNeverOversubscribeTheHostSlots() throws Exception {
+        int totalSlots = 3;
+        CpuSlotAllocator allocator = new CpuSlotAllocator(totalSlots, 2);
+        ExecutorService caseExecutor = Executors.newFixedThreadPool(8);
+        ExecutorService taskExecutor = Executors.newFixedThreadPool(2);
+        try {
+            CaseBatchRunner runner = new CaseBatchRunner(caseExecutor, allocator);
+            AtomicInteger active = new AtomicInteger();
+            AtomicInteger peakActive = new AtomicInteger();
+            CaseBatchRunner.CaseExecution execution = caseNumber -> {
+                peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                    return new TestCaseResult(caseNumber, "AC", 1, 1);
+                } finally {
+                    active.decrementAndGet();
+                }
+            };
+
+            CompletableFuture<CaseBatchRunner.RunOutcome> first = CompletableFuture.supplyAsync(() -> runner.run(
+                    "first", 200, policy(200, false), new CancellationToken(), execution, result -> {
+                    }, result -> false), taskExecutor);
+            CompletableFuture<CaseBatchRunner.RunOutcome> second = CompletableFuture.supplyAsync(() -> runner.run(
+                    "second", 200, policy(200, false), new CancellationToken(), execution, result -> {
+                    }, result -> false), taskExecutor);
+
+            assertThat(first.get(30, TimeUnit.SECONDS).getCompletedCases()).isEqualTo(200);
+            assertThat(second.get(30, TimeUnit.SECONDS).getCompletedCases()).isEqualTo(200);
+            assertThat(peakActive.get()).isLessThanOrEqualTo(totalSlots);
+            assertThat(allocator.snapshot().usedSlots()).isZero();
+            assertThat(allocator.snapshot().tasks()).isEmpty();
+        } finally {
+            caseExecutor.shutdownNow();
+            taskExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void pinnedSlotsGiveEachInFlightCaseAnExclusiveCore() throws Exception {
+        CpuSlotAllocator allocator = new CpuSlotAllocator(8, 2, List.of(5, 6, 7));
+        assertThat(allocator.totalSlots()).isEqualTo(3);
+        ExecutorService caseExecutor = Executors.newFixedThreadPool(8);
+        try {
+            CaseBatchRunner runner = new CaseBatchRunner(caseExecutor, allocator);
+            Set<Integer> busyCores = ConcurrentHashMap.newKeySet();
+            AtomicInteger sharedCore = new AtomicInteger();
+            CaseBatchRunner.CaseExecution execution = caseNumber -> {
+                int core = CpuAffinity.assignedCore();
+                if (!busyCores.add(core)) {
+                    sharedCore.incrementAndGet();
+                }
+                try {
+                    Thread.sleep(2);
+                    return new TestCaseResult(caseNumber, "AC", 1, 1);
+                } finally {
+                    busyCores.remove(core);
+                }
+            };
+            Set<Integer> reportedCores = ConcurrentHashMap.newKeySet();
+
+            CaseBatchRunner.RunOutcome outcome = runner.run("pinned", 100, policy(100, false), new CancellationToken(),
+                    execution, result -> reportedCores.add(result.getCpuCore()), result -> false);
+
+            assertThat(outcome.getCompletedCases()).isEqualTo(100);
+            assertThat(sharedCore.get()).isZero();
+            assertThat(Set.of(5, 6, 7).containsAll(reportedCores)).isTrue();
+            assertThat(CpuAffinity.assignedCore()).isEqualTo(-1);
+        } finally {
+            caseExecutor.shutdownNow();
+        }
+    }
+
+    private ResolvedTaskPolicy policy(int requestedCases, boolean highVolume) {
+        return ResolvedTaskPolicy.builder()
+                .profile("local-large")
+                .highVolume(highVolume)
+                .maxCasesPerTask(100_000)
+                .requestedCases(requestedCases)
+                .batchSize(100)
+                .maxConcurrentCasesPerTask(0)
+                .caseTimeLimit(Duration.ofSeconds(2))
+                .maxTaskRuntime(Duration.ofMinutes(30))
+                .memoryLimitBytes(268_435_456L)
+                .maxOutputBytesPerCase(1_048_576L)
+                .sandboxRequired(false)
+                .build();
+    }
+}
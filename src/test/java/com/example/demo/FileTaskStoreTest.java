@@ -215,19 +215,19 @@ class FileTaskStoreTest {
     }
 
     private ResolvedTaskPolicy policy() {
-        return new ResolvedTaskPolicy(
-                "trusted-local",
-                false,
-                10_000,
-                12,
-                100,
-                4,
-                Duration.ofSeconds(2),
-                Duration.ofMinutes(30),
-                268_435_456L,
-                1_048_576L,
-                false
-        );
+        return ResolvedTaskPolicy.builder()
+                .profile("trusted-local")
+                .highVolume(false)
+                .maxCasesPerTask(10_000)
+                .requestedCases(12)
+                .batchSize(100)
+                .maxConcurrentCasesPerTask(4)
+                .caseTimeLimit(Duration.ofSeconds(2))
+                .maxTaskRuntime(Duration.ofMinutes(30))
+                .memoryLimitBytes(268_435_456L)
+                .maxOutputBytesPerCase(1_048_576L)
+                .sandboxRequired(false)
+                .build();
     }
 
     private static class MoveFailingFileTaskStore extends FileTaskStore {
@@ -0,0 +1,123 @@
+package com.example.demo;
+
+import com.example.demo.service.GeneratorPrefetcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeneratorPrefetcherTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void producesUpToDepthCasesAheadOfTheHighestTakenCase() throws Exception {
+        Set<Integer> produced = ConcurrentHashMap.newKeySet();
+        CountDownLatch firstWindow = new CountDownLatch(3);
+        try (GeneratorPrefetcher<String> prefetcher = new GeneratorPrefetcher<>(10, 3, 2, executor, caseNumber -> {
+            produced.add(caseNumber);
+            firstWindow.countDown();
+            return "input-" + caseNumber;
+        }, input -> {
+        })) {
+            prefetcher.start();
+            assertThat(firstWindow.await(5, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(50);
+            assertThat(produced).containsExactlyInAnyOrder(1, 2, 3);
+
+            assertThat(prefetcher.take(1)).isEqualTo("input-1");
+            assertThat(prefetcher.take(2)).isEqualTo("input-2");
+            assertThat(prefetcher.take(3)).isEqualTo("input-3");
+            assertThat(prefetcher.take(4)).isEqualTo("input-4");
+            Thread.sleep(50);
+            assertThat(produced).containsExactlyInAnyOrder(1, 2, 3, 4, 5, 6, 7);
+        }
+    }
+
+    @Test
+    void neverProducesPastTheLastCase() throws Exception {
+        Set<Integer> produced = ConcurrentHashMap.newKeySet();
+        try (GeneratorPrefetcher<Integer> prefetcher = new GeneratorPrefetcher<>(2, 8, 1, executor, caseNumber -> {
+            produced.add(caseNumber);
+            return caseNumber;
+        }, input -> {
+        })) {
+            prefetcher.start();
+            assertThat(prefetcher.take(2)).isEqualTo(2);
+            assertThat(prefetcher.take(1)).isEqualTo(1);
+            assertThat(produced).containsExactlyInAnyOrder(1, 2);
+        }
+    }
+
+    @Test
+    void producerFailureIsRethrownToTheCaseThatTakesIt() throws Exception {
+        try (GeneratorPrefetcher<String> prefetcher = new GeneratorPrefetcher<>(3, 2, 1, executor, caseNumber -> {
+            if (caseNumber == 2) {
+                throw new IOException("generator crashed");
+            }
+            return "ok";
+        }, input -> {
+        })) {
+            prefetcher.start();
+            assertThat(prefetcher.take(1)).isEqualTo("ok");
+            assertThatThrownBy(() -> prefetcher.take(2))
+                    .isInstanceOf(IOException.class)
+                    .hasMessage("generator crashed");
+            assertThat(prefetcher.take(3)).isEqualTo("ok");
+        }
+    }
+
+    @Test
+    void closeDiscardsInputsThatWereNeverTaken() throws Exception {
+        List<String> discarded = new CopyOnWriteArrayList<>();
+        CountDownLatch produced = new CountDownLatch(4);
+        GeneratorPrefetcher<String> prefetcher = new GeneratorPrefetcher<>(100, 4, 2, executor, caseNumber -> {
+            produced.countDown();
+            return "input-" + caseNumber;
+        }, discarded::add);
+        prefetcher.start();
+        assertThat(prefetcher.take(1)).isEqualTo("input-1");
+        assertThat(produced.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(50);
+
+        prefetcher.close();
+
+        assertThat(discarded).doesNotContain("input-1");
+        assertThat(discarded).contains("input-2", "input-3", "input-4");
+    }
+
+    @Test
+    void caseOnTheOnlyExecutorThreadProducesItsOwnInput() throws Exception {
+        ExecutorService caseExecutor = Executors.newSingleThreadExecutor();
+        try (GeneratorPrefetcher<String> prefetcher = new GeneratorPrefetcher<>(4, 2, 2, caseExecutor,
+                caseNumber -> "input-" + caseNumber, input -> {
+        })) {
+            // The case holds the executor's only thread, so prefetched generators queue behind it.
+            Future<String> taken = caseExecutor.submit(() -> {
+                prefetcher.start();
+                return prefetcher.take(1) + "," + prefetcher.take(2);
+            });
+
+            assertThat(taken.get(5, TimeUnit.SECONDS)).isEqualTo("input-1,input-2");
+        } finally {
+            caseExecutor.shutdownNow();
+        }
+    }
+}
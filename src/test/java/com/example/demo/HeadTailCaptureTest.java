@@ -0,0 +1,58 @@
+package com.example.demo;
+
+import com.example.demo.service.HeadTailCapture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeadTailCaptureTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void keepsTheFirstErrorAndTheLastLinesWithinTheBudget() {
+        HeadTailCapture capture = new HeadTailCapture(1024);
+        byte[] line = "noise noise noise noise noise\n".getBytes(StandardCharsets.UTF_8);
+        capture.write("error: first failure\n".getBytes(StandardCharsets.UTF_8), 0, 21);
+        for (int i = 0; i < 10_000; i++) {
+            capture.write(line, 0, line.length);
+        }
+        capture.write("Segmentation fault\n".getBytes(StandardCharsets.UTF_8), 0, 19);
+
+        String rendered = capture.toString();
+        assertThat(capture.truncated()).isTrue();
+        assertThat(capture.totalBytes()).isEqualTo(21 + 10_000L * line.length + 19);
+        assertThat(rendered).startsWith("error: first failure\n");
+        assertThat(rendered).endsWith("Segmentation fault\n");
+        assertThat(rendered).contains("bytes omitted");
+        assertThat(rendered.getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(1024);
+    }
+
+    @Test
+    void shortOutputIsKeptWhole() {
+        HeadTailCapture capture = new HeadTailCapture(1024);
+        byte[] text = "编译错误\n".getBytes(StandardCharsets.UTF_8);
+        capture.write(text, 0, text.length);
+
+        assertThat(capture.truncated()).isFalse();
+        assertThat(capture.toString()).isEqualTo("编译错误\n");
+    }
+
+    @Test
+    void readsOnlyTheEndsOfALargeFile() throws Exception {
+        Path file = tempDir.resolve("stderr.txt");
+        Files.writeString(file, "head\n" + "x".repeat(1_000_000) + "\ntail\n");
+
+        String rendered = HeadTailCapture.readFile(file, 512);
+
+        assertThat(rendered).startsWith("head\n");
+        assertThat(rendered).endsWith("\ntail\n");
+        assertThat(rendered.length()).isLessThanOrEqualTo(512);
+    }
+}
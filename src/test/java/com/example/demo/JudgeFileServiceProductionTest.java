@@ -121,19 +121,19 @@ class JudgeFileServiceProductionTest {
     }
 
     private ResolvedTaskPolicy policy(int requestedCases) {
-        return new ResolvedTaskPolicy(
-                "trusted-local",
-                false,
-                Math.max(requestedCases, 1),
-                requestedCases,
-                100,
-                4,
-                Duration.ofSeconds(1),
-                Duration.ofMinutes(1),
-                64L * 1024 * 1024,
-                1024,
-                false
-        );
+        return ResolvedTaskPolicy.builder()
+                .profile("trusted-local")
+                .highVolume(false)
+                .maxCasesPerTask(Math.max(requestedCases, 1))
+                .requestedCases(requestedCases)
+                .batchSize(100)
+                .maxConcurrentCasesPerTask(4)
+                .caseTimeLimit(Duration.ofSeconds(1))
+                .maxTaskRuntime(Duration.ofMinutes(1))
+                .memoryLimitBytes(64L * 1024 * 1024)
+                .maxOutputBytesPerCase(1024)
+                .sandboxRequired(false)
+                .build();
     }
 
     private boolean createDirectoryLink(Path link, Path target) {
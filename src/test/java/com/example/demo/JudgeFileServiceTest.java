@@ -1,14 +1,21 @@
 package com.example.demo;
 
 import com.example.demo.config.ExecutionProperties;
+import com.example.demo.config.MemoryConfiguration;
 import com.example.demo.dto.TestCaseDetail;
 import com.example.demo.dto.JudgeProgress;
 import com.example.demo.dto.JudgeSummary;
 import com.example.demo.dto.TestCaseResult;
 import com.example.demo.model.JudgeStatus;
 import com.example.demo.model.JudgeTask;
+import com.example.demo.service.ArtifactRetention;
+import com.example.demo.service.CaseInputDigests;
+import com.example.demo.service.CaseRegenerator;
+import com.example.demo.service.CaseSeeds;
 import com.example.demo.service.FileTaskStore;
 import com.example.demo.service.JudgeFileService;
+import com.example.demo.service.ProcessResult;
+import com.example.demo.service.ProcessRunner;
 import com.example.demo.service.ResolvedTaskPolicy;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -21,12 +28,14 @@ import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBo
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -206,6 +215,116 @@ class JudgeFileServiceTest {
                 .hasMessageContaining("high-volume");
     }
 
+    @Test
+    void regeneratesMissingSeededCaseFromRecordedSeed() throws Exception {
+        Path workDir = createSeededTask("seeded-detail", 3, false);
+        JudgeFileService seededService = seededService(false);
+
+        TestCaseDetail detail = seededService.getTestCaseDetails("seeded-detail", 2);
+
+        String expectedInput = seededInput("seeded-detail", 2);
+        assertThat(detail.getInput()).isEqualTo(expectedInput);
+        assertThat(detail.getUserOutput()).isEqualTo(expectedInput.toUpperCase());
+        assertThat(detail.getCorrectOutput()).isEqualTo("answer " + expectedInput);
+        assertThat(workDir.resolve("2.in")).exists();
+        try (var files = Files.list(workDir)) {
+            assertThat(files.map(file -> file.getFileName().toString()).filter(name -> name.startsWith(".regen-")).toList()).isEmpty();
+        }
+    }
+
+    @Test
+    void regeneratesPackTaskCaseAsASingleCasePack() throws Exception {
+        Path workDir = createSeededTask("seeded-pack", 3, false, 4);
+        JudgeFileService seededService = seededService(false);
+
+        TestCaseDetail detail = seededService.getTestCaseDetails("seeded-pack", 2);
+
+        String expectedInput = "1\n" + seededInput("seeded-pack", 2);
+        assertThat(detail.getInput()).isEqualTo(expectedInput);
+        assertThat(detail.getUserOutput()).isEqualTo(expectedInput.toUpperCase());
+        assertThat(detail.getCorrectOutput()).isEqualTo("answer " + expectedInput);
+        assertThat(workDir.resolve("2.in")).hasContent(expectedInput);
+    }
+
+    @Test
+    void refusesRegeneratedInputThatDiffersFromJudgedInput() throws Exception {
+        Path workDir = createSeededTask("seeded-drift", 1, false);
+        JudgeFileService driftingService = seededService(true);
+
+        assertThatThrownBy(() -> driftingService.getTestCaseDetails("seeded-drift", 1))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("differs from the judged input");
+        assertThat(workDir.resolve("1.in")).doesNotExist();
+    }
+
+    @Test
+    void streamsHighVolumeAllCaseDownloadForSeededTask() throws Exception {
+        Path workDir = createSeededTask("seeded-large", 3, true);
+        Files.writeString(workDir.resolve("3.in"), seededInput("seeded-large", 3));
+        Files.writeString(workDir.resolve("3.ans"), "kept answer");
+
+        StreamingResponseBody body = seededService(false).streamAllTestCasesArchive("seeded-large");
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        body.writeTo(buffer);
+
+        assertThat(zipEntryNames(buffer.toByteArray())).containsExactly("1.in", "1.out", "2.in", "2.out", "3.in", "3.out");
+        assertThat(workDir.resolve("1.in")).doesNotExist();
+    }
+
+    private JudgeFileService seededService(boolean ignoreSeed) {
+        ProcessRunner runner = request -> {
+            String program = Path.of(request.command().get(0)).getFileName().toString();
+            String output = switch (program) {
+                case "generator" -> "seed " + (ignoreSeed ? "0" : request.command().get(1)) + "\n";
+                case "user" -> Files.readString(request.inputFile()).toUpperCase();
+                default -> "answer " + Files.readString(request.inputFile());
+            };
+            Files.writeString(request.outputFile(), output);
+            return new ProcessResult(ProcessResult.Status.SUCCESS, "", "", 1, 1, 0);
+        };
+        CaseRegenerator regenerator = new CaseRegenerator(runner, new MemoryConfiguration());
+        return new JudgeFileService(taskStore, new ExecutionProperties(), Optional.of(regenerator));
+    }
+
+    private Path createSeededTask(String judgeId, int requestedCases, boolean highVolume) throws IOException {
+        return createSeededTask(judgeId, requestedCases, highVolume, 1);
+    }
+
+    private Path createSeededTask(String judgeId, int requestedCases, boolean highVolume, int multiTestPackSize)
+            throws IOException {
+        Path workDir = taskStore.taskDirectory(judgeId);
+        ResolvedTaskPolicy base = policy(requestedCases, highVolume, 1024);
+        ResolvedTaskPolicy seededPolicy = base.toBuilder()
+                .artifactRetention(ArtifactRetention.NONE)
+                .seededGeneration(true)
+                .build();
+        taskStore.create(JudgeTask.builder()
+                .judgeId(judgeId)
+                .status(JudgeStatus.COMPLETED)
+                .requestedCases(requestedCases)
+                .mode("trusted-local")
+                .policy(seededPolicy)
+                .workDir(workDir.toString())
+                .generatorSeed(CaseSeeds.taskSeed(judgeId))
+                .multiTestPackSize(multiTestPackSize)
+                .createdAt(Instant.now())
+                .build());
+        for (String executable : List.of("generator", "user", "bruteforce")) {
+            Files.writeString(workDir.resolve(executable), "binary");
+        }
+        try (CaseInputDigests digests = CaseInputDigests.open(workDir)) {
+            for (int caseNumber = 1; caseNumber <= requestedCases; caseNumber++) {
+                digests.record(caseNumber, new ByteArrayInputStream(
+                        seededInput(judgeId, caseNumber).getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+        return workDir;
+    }
+
+    private String seededInput(String judgeId, int caseNumber) {
+        return "seed " + CaseSeeds.caseSeed(CaseSeeds.taskSeed(judgeId), caseNumber) + "\n";
+    }
+
     private List<String> zipEntryNames(byte[] archiveBytes) throws IOException {
         List<String> names = new ArrayList<>();
         try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archiveBytes))) {
@@ -234,18 +353,18 @@ class JudgeFileServiceTest {
     }
 
     private ResolvedTaskPolicy policy(int requestedCases, boolean highVolume, long maxBytes) {
-        return new ResolvedTaskPolicy(
-                "trusted-local",
-                highVolume,
-                Math.max(requestedCases, 1),
-                requestedCases,
-                100,
-                4,
-                Duration.ofSeconds(1),
-                Duration.ofMinutes(1),
-                64L * 1024 * 1024,
-                maxBytes,
-                false
-        );
+        return ResolvedTaskPolicy.builder()
+                .profile("trusted-local")
+                .highVolume(highVolume)
+                .maxCasesPerTask(Math.max(requestedCases, 1))
+                .requestedCases(requestedCases)
+                .batchSize(100)
+                .maxConcurrentCasesPerTask(4)
+                .caseTimeLimit(Duration.ofSeconds(1))
+                .maxTaskRuntime(Duration.ofMinutes(1))
+                .memoryLimitBytes(64L * 1024 * 1024)
+                .maxOutputBytesPerCase(maxBytes)
+                .sandboxRequired(false)
+                .build();
     }
 }
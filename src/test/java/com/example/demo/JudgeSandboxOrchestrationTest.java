@@ -193,7 +193,10 @@ class JudgeSandboxOrchestrationTest {
                 scheduler,
                 securityValidator(execution, sandbox),
                 caseExecutor,
-                runner
+                runner,
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty()
         );
     }
 
@@ -373,19 +373,19 @@ class JudgeSchedulerTest {
     }
 
     private ResolvedTaskPolicy policy(int requestedCases, Duration maxTaskRuntime) {
-        return new ResolvedTaskPolicy(
-                "scheduler-test",
-                requestedCases >= 5_000,
-                100_000,
-                requestedCases,
-                100,
-                4,
-                Duration.ofSeconds(2),
-                maxTaskRuntime,
-                268_435_456L,
-                1_048_576L,
-                false
-        );
+        return ResolvedTaskPolicy.builder()
+                .profile("scheduler-test")
+                .highVolume(requestedCases >= 5_000)
+                .maxCasesPerTask(100_000)
+                .requestedCases(requestedCases)
+                .batchSize(100)
+                .maxConcurrentCasesPerTask(4)
+                .caseTimeLimit(Duration.ofSeconds(2))
+                .maxTaskRuntime(maxTaskRuntime)
+                .memoryLimitBytes(268_435_456L)
+                .maxOutputBytesPerCase(1_048_576L)
+                .sandboxRequired(false)
+                .build();
     }
 
     private void awaitStatus(FileTaskStore store, String judgeId, JudgeStatus expectedStatus) throws Exception {
@@ -0,0 +1,228 @@
+package com.example.demo;
+
+import com.example.demo.config.AuthConfiguration;
+import com.example.demo.config.ExecutionProperties;
+import com.example.demo.config.MemoryConfiguration;
+import com.example.demo.config.SandboxConfiguration;
+import com.example.demo.config.SecurityModeStartupValidator;
+import com.example.demo.config.WebSocketConfig;
+import com.example.demo.dto.JudgeProgress;
+import com.example.demo.dto.JudgeRequest;
+import com.example.demo.dto.JudgeSummary;
+import com.example.demo.service.CaseBatchRunner;
+import com.example.demo.service.CaseSeeds;
+import com.example.demo.service.DirectProcessRunner;
+import com.example.demo.service.FileTaskStore;
+import com.example.demo.service.JudgeScheduler;
+import com.example.demo.service.JudgeService;
+import com.example.demo.service.MemoryMonitorService;
+import com.example.demo.service.ProgressPublisher;
+import com.example.demo.service.QuotaService;
+import com.example.demo.service.SandboxEventIngestor;
+import com.example.demo.service.SandboxProcessRunner;
+import com.example.demo.service.TaskPolicyResolver;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JudgeServiceMultiTestPackTest {
+
+    private static final String GENERATOR = """
+            #include <cstdio>
+            int main(int argc, char **argv) { std::printf("%s\\n", argv[1]); return 0; }
+            """;
+    private static final String BRUTE_FORCE = """
+            #include <cstdio>
+            int main() {
+                int t;
+                std::scanf("%d", &t);
+                while (t--) { long long v; std::scanf("%lld", &v); std::printf("%lld\\n", v); }
+                return 0;
+            }
+            """;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .build();
+    private ExecutorService schedulerExecutor;
+    private ThreadPoolTaskExecutor caseExecutor;
+    private JudgeScheduler scheduler;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void requireCompiler() throws Exception {
+        Process probe = new ProcessBuilder("g++", "--version").redirectErrorStream(true).start();
+        probe.getInputStream().readAllBytes();
+        Assumptions.assumeTrue(probe.waitFor(10, TimeUnit.SECONDS) && probe.exitValue() == 0, "g++ unavailable");
+    }
+
+    @AfterEach
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        if (schedulerExecutor != null) {
+            schedulerExecutor.shutdownNow();
+        }
+        if (caseExecutor != null) {
+            caseExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void caseThatTimesOutInsideAPackIsReportedAsTle() throws Exception {
+        String judgeId = "pack-tle";
+        long slowInput = CaseSeeds.caseSeed(CaseSeeds.taskSeed(judgeId), 3);
+        // Case 3 runs 600ms against a 400ms limit; the other three cases together take well under it.
+        String user = """
+                #include <cstdio>
+                #include <ctime>
+                int main() {
+                    int t;
+                    std::scanf("%d", &t);
+                    while (t--) {
+                        long long v;
+                        std::scanf("%lld", &v);
+                        if (v == SLOW) { std::clock_t s = std::clock(); while (std::clock() - s < CLOCKS_PER_SEC * 6 / 10) {} }
+                        std::printf("%lld\\n", v);
+                    }
+                    return 0;
+                }
+                """.replace("SLOW", slowInput + "LL");
+
+        JudgeSummary summary = judge(judgeId, user);
+
+        assertThat(summary.getCompletedCases()).isEqualTo(4);
+        assertThat(summary.getAc()).isEqualTo(3);
+        assertThat(summary.getTle()).isEqualTo(1);
+        assertThat(summary.getFirstFailedCase()).isEqualTo(3);
+    }
+
+    @Test
+    void packedOutputIsCheckedCaseByCase() throws Exception {
+        String judgeId = "pack-wa";
+        long wrongInput = CaseSeeds.caseSeed(CaseSeeds.taskSeed(judgeId), 2);
+        String user = """
+                #include <cstdio>
+                int main() {
+                    int t;
+                    std::scanf("%d", &t);
+                    while (t--) {
+                        long long v;
+                        std::scanf("%lld", &v);
+                        if (v == WRONG) { std::printf("wrong\\n"); } else { std::printf("%lld\\n", v); }
+                    }
+                    return 0;
+                }
+                """.replace("WRONG", wrongInput + "LL");
+
+        JudgeSummary summary = judge(judgeId, user);
+
+        assertThat(summary.getCompletedCases()).isEqualTo(4);
+        assertThat(summary.getAc()).isEqualTo(3);
+        assertThat(summary.getWa()).isEqualTo(1);
+        assertThat(summary.getFirstFailedCase()).isEqualTo(2);
+    }
+
+    private JudgeSummary judge(String judgeId, String userCode) throws Exception {
+        JudgeService service = service();
+        JudgeRequest request = new JudgeRequest();
+        request.setGeneratorCode(GENERATOR);
+        request.setUserCode(userCode);
+        request.setBruteForceCode(BRUTE_FORCE);
+        request.setTestCases(4);
+        request.setMultiTestPackSize(4);
+        request.setTimeLimit(400);
+        request.setMemoryLimit(268_435_456L);
+
+        service.createJudgeTask(request, judgeId);
+        service.startJudgeTask(judgeId);
+        return awaitFinished(service, judgeId).getSummary();
+    }
+
+    private JudgeService service() {
+        ExecutionProperties execution = new ExecutionProperties();
+        execution.setPipelinedCaseIo(true);
+        execution.setSeededGeneration(true);
+        execution.setMinTimeLimit(Duration.ofMillis(100));
+        execution.setMaxTaskRuntime(Duration.ofSeconds(60));
+        MemoryConfiguration memory = new MemoryConfiguration();
+        FileTaskStore store = new FileTaskStore(objectMapper, tempDir);
+        TaskPolicyResolver policyResolver = new TaskPolicyResolver(execution, memory);
+        schedulerExecutor = Executors.newSingleThreadExecutor();
+        scheduler = new JudgeScheduler(execution, store, schedulerExecutor);
+        caseExecutor = new ThreadPoolTaskExecutor();
+        caseExecutor.setCorePoolSize(1);
+        caseExecutor.setMaxPoolSize(1);
+        caseExecutor.initialize();
+        ProgressPublisher publisher = new ProgressPublisher(
+                new SimpMessagingTemplate((message, timeout) -> true),
+                store,
+                objectMapper,
+                Clock.systemUTC(),
+                Duration.ZERO
+        );
+        SandboxConfiguration sandbox = new SandboxConfiguration();
+        sandbox.setEnabled(false);
+        SandboxProcessRunner runner = new SandboxProcessRunner(sandbox, null,
+                new DirectProcessRunner(new MemoryMonitorService(memory)));
+
+        return new JudgeService(
+                memory,
+                execution,
+                runner,
+                publisher,
+                new SandboxEventIngestor(publisher, execution),
+                policyResolver,
+                new QuotaService(execution, store),
+                store,
+                new CaseBatchRunner(caseExecutor),
+                scheduler,
+                securityValidator(execution, sandbox),
+                caseExecutor,
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty()
+        );
+    }
+
+    private SecurityModeStartupValidator securityValidator(ExecutionProperties execution, SandboxConfiguration sandbox) {
+        AuthConfiguration auth = new AuthConfiguration();
+        auth.setAccessCode("changed-secret");
+        auth.setDefaultAccessCode("123");
+        return new SecurityModeStartupValidator(auth, execution, sandbox, new WebSocketConfig("https://safe.example.com"));
+    }
+
+    private JudgeProgress awaitFinished(JudgeService service, String judgeId) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(60).toNanos();
+        JudgeProgress progress = null;
+        while (System.nanoTime() < deadline) {
+            progress = service.getJudgeStatus(judgeId);
+            if (progress.getProgress() == 100 && progress.getSummary() != null) {
+                return progress;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Timed out waiting for " + judgeId + ", last status "
+                + (progress == null ? null : progress.getStatus() + ": " + progress.getMessage()));
+    }
+}
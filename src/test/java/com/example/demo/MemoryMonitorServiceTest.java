@@ -0,0 +1,63 @@
+package com.example.demo;
+
+import com.example.demo.config.MemoryConfiguration;
+import com.example.demo.exception.MemoryLimitExceededException;
+import com.example.demo.service.MemoryMonitorService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryMonitorServiceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MemoryMonitorService monitor = new MemoryMonitorService(new MemoryConfiguration(), registry);
+
+    @AfterEach
+    void tearDown() {
+        monitor.shutdown();
+    }
+
+    @Test
+    void oneSamplerWatchesEveryProcessWithoutForkingHelpers() throws Exception {
+        Assumptions.assumeTrue(Files.isReadable(Path.of("/proc/self/statm")), "requires /proc");
+        Process first = new ProcessBuilder("sleep", "0.3").start();
+        Process second = new ProcessBuilder("sleep", "0.3").start();
+
+        var firstUsage = monitor.monitorProcess(first, 1L << 30);
+        var secondUsage = monitor.monitorProcess(second, 1L << 30);
+        Thread.sleep(100);
+        // Only the two monitored processes: sampling reads /proc instead of starting cat/ps.
+        assertThat(ProcessHandle.current().children().count()).isEqualTo(2);
+
+        assertThat(firstUsage.get(5, TimeUnit.SECONDS).peakMemory()).isPositive();
+        assertThat(secondUsage.get(5, TimeUnit.SECONDS).peakMemory()).isPositive();
+        MemoryMonitorService.SamplerStats stats = monitor.samplerStats();
+        assertThat(stats.monitoredProcesses()).isZero();
+        assertThat(stats.samples()).isGreaterThanOrEqualTo(stats.ticks());
+        assertThat(stats.ticks()).isPositive();
+        assertThat(registry.get("judge.memory.sampler.samples").functionCounter().count())
+                .isEqualTo((double) stats.samples());
+    }
+
+    @Test
+    void processOverTheLimitIsKilledOnTheFirstDenseSample() throws Exception {
+        Assumptions.assumeTrue(Files.isReadable(Path.of("/proc/self/statm")), "requires /proc");
+        Process process = new ProcessBuilder("sleep", "10").start();
+        long started = System.nanoTime();
+
+        assertThatThrownBy(() -> monitor.monitorProcess(process, 1).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(MemoryLimitExceededException.class);
+        assertThat(process.waitFor(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(1000);
+    }
+}
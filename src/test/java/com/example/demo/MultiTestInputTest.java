@@ -0,0 +1,41 @@
+package com.example.demo;
+
+import com.example.demo.service.CaseDataBuffer;
+import com.example.demo.service.MultiTestInput;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MultiTestInputTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void prefixesTheCaseCountAndStartsEveryCaseOnItsOwnLine() throws Exception {
+        List<CaseDataBuffer> inputs = new ArrayList<>();
+        for (String input : List.of("3\n1 2 3\n", "1\n7", "")) {
+            CaseDataBuffer buffer = new CaseDataBuffer(1024, tempDir);
+            try (OutputStream out = buffer.openOutputStream()) {
+                out.write(input.getBytes(StandardCharsets.UTF_8));
+            }
+            inputs.add(buffer);
+        }
+
+        ByteArrayOutputStream packed = new ByteArrayOutputStream();
+        MultiTestInput.write(inputs, packed);
+
+        assertThat(packed.toString(StandardCharsets.UTF_8)).isEqualTo("3\n3\n1 2 3\n1\n7\n");
+        for (CaseDataBuffer input : inputs) {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.demo;
+
+import com.example.demo.service.MultiTestOutput;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MultiTestOutputTest {
+
+    @Test
+    void countsAFinalLineWithoutNewline() throws Exception {
+        assertThat(MultiTestOutput.lines(stream(""))).isZero();
+        assertThat(MultiTestOutput.lines(stream("1\n2\n"))).isEqualTo(2);
+        assertThat(MultiTestOutput.lines(stream("1\n2"))).isEqualTo(2);
+    }
+
+    @Test
+    void everyCaseTakesItsLinesEvenWhenTheLastOneLeftSomeUnread() throws Exception {
+        MultiTestOutput output = new MultiTestOutput(stream("a\nb b\nc\nd\n"));
+
+        InputStream first = output.nextCase(2);
+        assertThat(first.read()).isEqualTo('a');
+        assertThat(text(output.nextCase(1))).isEqualTo("c\n");
+        assertThat(output.hasRemaining()).isTrue();
+        assertThat(text(output.nextCase(5))).isEqualTo("d\n");
+        assertThat(output.hasRemaining()).isFalse();
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(InputStream in) throws Exception {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+}
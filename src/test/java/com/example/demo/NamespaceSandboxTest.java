@@ -0,0 +1,177 @@
+package com.example.demo;
+
+import com.example.demo.config.MemoryConfiguration;
+import com.example.demo.config.SandboxConfiguration;
+import com.example.demo.service.DirectProcessRunner;
+import com.example.demo.service.KernelLimits;
+import com.example.demo.service.MemoryMonitorService;
+import com.example.demo.service.NamespaceSandbox;
+import com.example.demo.service.ProcessResult;
+import com.example.demo.service.ProcessRunner;
+import com.example.demo.service.SandboxProcessRunner;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NamespaceSandboxTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SandboxProcessRunner runner;
+    private Path taskDirectory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SandboxConfiguration configuration = new SandboxConfiguration();
+        configuration.setEnabled(true);
+        configuration.setNamespaceLauncherPath(buildLauncher().toString());
+        NamespaceSandbox sandbox = new NamespaceSandbox(configuration);
+        Assumptions.assumeTrue(sandbox.isAvailable(), "user namespaces unavailable");
+        runner = new SandboxProcessRunner(configuration, null, sandbox,
+                new DirectProcessRunner(new MemoryMonitorService(new MemoryConfiguration())));
+        taskDirectory = Files.createDirectories(tempDir.resolve("task"));
+    }
+
+    @Test
+    void commandSeesOnlyDeclaredFilesReadOnlySystemPathsAndItsScratch() throws Exception {
+        Path input = Files.writeString(taskDirectory.resolve("1.in"), "data\n");
+        Files.writeString(taskDirectory.resolve("2.ans"), "answer\n");
+
+        ProcessResult result = runner.run(request(
+                "cat " + input + "; cat " + taskDirectory.resolve("2.ans") + " 2>/dev/null || echo hidden; "
+                        + "echo x > " + input + " 2>/dev/null || echo read-only; "
+                        + "touch /usr/x 2>/dev/null || echo read-only; "
+                        + "echo scratch > s && cat s && pwd")
+                .readablePaths(List.of(input))
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+        assertThat(result.output()).isEqualTo("data\nhidden\nread-only\nread-only\nscratch\n/tmp\n");
+        assertThat(Files.readString(input)).isEqualTo("data\n");
+        assertThat(taskDirectory.resolve("s")).doesNotExist();
+    }
+
+    @Test
+    void onlyTheOutputDirectoryIsWritable() throws Exception {
+        Path outputDirectory = Files.createDirectories(taskDirectory.resolve(".compile-1"));
+
+        ProcessResult result = runner.run(request(
+                "echo built > " + outputDirectory.resolve("user") + "; "
+                        + "echo forged > " + taskDirectory.resolve("bruteforce") + " 2>/dev/null; true")
+                .outputDirectory(outputDirectory)
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+        assertThat(Files.readString(outputDirectory.resolve("user"))).isEqualTo("built\n");
+        assertThat(taskDirectory.resolve("bruteforce")).doesNotExist();
+    }
+
+    @Test
+    void missingLauncherLeavesTheSandboxUnavailable() {
+        SandboxConfiguration configuration = new SandboxConfiguration();
+        configuration.setEnabled(true);
+        configuration.setNamespaceLauncherPath(tempDir.resolve("missing").toString());
+
+        assertThat(new NamespaceSandbox(configuration).isAvailable()).isFalse();
+    }
+
+    @Test
+    void seccompRefusesNewNamespaces() throws Exception {
+        ProcessResult result = runner.run(request("unshare -r true 2>/dev/null || echo refused").build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+        assertThat(result.output()).isEqualTo("refused\n");
+    }
+
+    @Test
+    void kernelLimitsStillApplyInsideTheSandbox() throws Exception {
+        ProcessResult result = runner.run(request("while :; do :; done")
+                .timeout(Duration.ofSeconds(10))
+                .kernelLimits(new KernelLimits(1, 0, 0, 0))
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.TIME_LIMIT_EXCEEDED);
+    }
+
+    @Test
+    void commandOverItsMemoryLimitIsMemoryLimitExceeded() throws Exception {
+        // 96 MB resident stays under the 128 MB address space cap; only sampling the command catches it.
+        Path program = compile("hog", """
+                #include <stdlib.h>
+                #include <string.h>
+                #include <unistd.h>
+                int main(void) {
+                    size_t size = 96u << 20;
+                    char *block = malloc(size);
+                    if (block == NULL) return 3;
+                    memset(block, 1, size);
+                    sleep(30);
+                    return block[size - 1] == 1 ? 0 : 4;
+                }
+                """);
+
+        ProcessResult result = runner.run(ProcessRunner.Request.builder()
+                .command(List.of(program.toString()))
+                .workingDirectory(taskDirectory)
+                .timeout(Duration.ofSeconds(10))
+                .killGrace(Duration.ofMillis(500))
+                .memoryLimitBytes(64L << 20)
+                .profile("intranet-large")
+                .requireSandbox(true)
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.MEMORY_LIMIT_EXCEEDED);
+        assertThat(result.memoryUsed()).isGreaterThan(64L << 20);
+    }
+
+    @Test
+    void sandboxProcessLimitStopsAForkBomb() throws Exception {
+        // The kernel does not apply RLIMIT_NPROC to the host root's processes.
+        Assumptions.assumeFalse(Integer.valueOf(0).equals(Files.getAttribute(Path.of("/proc/self"), "unix:uid")),
+                "running as root");
+
+        ProcessResult result = runner.run(request("for i in 1 2 3 4 5 6 7 8 9 10 11 12; do sleep 2 & done; wait").build());
+
+        assertThat(result.error()).contains("fork");
+    }
+
+    private ProcessRunner.Request.Builder request(String script) {
+        return ProcessRunner.Request.builder()
+                .command(List.of("sh", "-c", script))
+                .workingDirectory(taskDirectory)
+                .timeout(Duration.ofSeconds(5))
+                .killGrace(Duration.ofMillis(500))
+                .profile("intranet-large")
+                .requireSandbox(true);
+    }
+
+    private Path compile(String name, String source) throws Exception {
+        Path sourceFile = Files.writeString(tempDir.resolve(name + ".c"), source);
+        Path executable = tempDir.resolve(name);
+        Process build = new ProcessBuilder("cc", "-O0", "-o", executable.toString(), sourceFile.toString())
+                .redirectErrorStream(true)
+                .start();
+        build.getInputStream().transferTo(System.err);
+        assertThat(build.waitFor(60, TimeUnit.SECONDS) && build.exitValue() == 0).isTrue();
+        return executable;
+    }
+
+    private Path buildLauncher() throws Exception {
+        Path executable = tempDir.resolve("ns-launcher");
+        Process build = new ProcessBuilder("cc", "-O2", "-o", executable.toString(), "src/main/c/ns-launcher.c")
+                .redirectErrorStream(true)
+                .start();
+        Assumptions.assumeTrue(build.waitFor(60, TimeUnit.SECONDS) && build.exitValue() == 0, "cc unavailable");
+        return executable;
+    }
+}
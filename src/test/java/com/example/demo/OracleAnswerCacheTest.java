@@ -0,0 +1,103 @@
+package com.example.demo;
+
+import com.example.demo.config.ExecutionProperties;
+import com.example.demo.service.OracleAnswerCache;
+import com.example.demo.service.ProcessResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OracleAnswerCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void identicalInputsRunTheOracleOnceAndReplayItsAnswer() throws Exception {
+        ExecutionProperties properties = new ExecutionProperties();
+        OracleAnswerCache.Session session = new OracleAnswerCache(properties, tempDir.resolve("cache"))
+                .open(oracle("bruteforce-v1"));
+        AtomicInteger oracleRuns = new AtomicInteger();
+
+        for (String input : new String[]{"1 2\n", "1 2\n", "3 4\n", "1 2\n"}) {
+            Path answer = tempDir.resolve("case.ans");
+            ProcessResult result = session.answer(source(input), OracleAnswerCache.Target.of(answer), () -> {
+                oracleRuns.incrementAndGet();
+                Files.writeString(answer, "sum of " + input);
+                return new ProcessResult(ProcessResult.Status.SUCCESS, "", "", 40, 0, 0);
+            });
+
+            assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+            assertThat(Files.readString(answer)).isEqualTo("sum of " + input);
+        }
+
+        assertThat(oracleRuns.get()).isEqualTo(2);
+        assertThat(session.lookups()).isEqualTo(4);
+        assertThat(session.hits()).isEqualTo(2);
+        assertThat(session.dedupeRatio()).isEqualTo(0.5);
+        assertThat(session.timeSavedMillis()).isEqualTo(80);
+    }
+
+    @Test
+    void failedOracleRunsAndOversizedAnswersAreNotCached() throws Exception {
+        ExecutionProperties properties = new ExecutionProperties();
+        properties.setOracleCacheMaxAnswerBytes(4);
+        OracleAnswerCache.Session session = new OracleAnswerCache(properties, tempDir.resolve("cache"))
+                .open(oracle("bruteforce-v1"));
+        Path answer = tempDir.resolve("case.ans");
+        AtomicInteger oracleRuns = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            session.answer(source("crash\n"), OracleAnswerCache.Target.of(answer), () -> {
+                oracleRuns.incrementAndGet();
+                return new ProcessResult(ProcessResult.Status.RUNTIME_ERROR, "", "", 1, 0, 1);
+            });
+            session.answer(source("big\n"), OracleAnswerCache.Target.of(answer), () -> {
+                oracleRuns.incrementAndGet();
+                Files.writeString(answer, "too long\n");
+                return new ProcessResult(ProcessResult.Status.SUCCESS, "", "", 1, 0, 0);
+            });
+        }
+
+        assertThat(oracleRuns.get()).isEqualTo(4);
+        assertThat(session.hits()).isZero();
+    }
+
+    @Test
+    void sharedAnswersOnlyServeTasksWithTheSameOracleBinary() throws Exception {
+        ExecutionProperties properties = new ExecutionProperties();
+        properties.setOracleCacheShared(true);
+        OracleAnswerCache cache = new OracleAnswerCache(properties, tempDir.resolve("cache"));
+        Path answer = tempDir.resolve("case.ans");
+        AtomicInteger oracleRuns = new AtomicInteger();
+        OracleAnswerCache.Oracle oracle = () -> {
+            oracleRuns.incrementAndGet();
+            Files.writeString(answer, "3\n");
+            return new ProcessResult(ProcessResult.Status.SUCCESS, "", "", 25, 0, 0);
+        };
+
+        cache.open(oracle("bruteforce-v1")).answer(source("1 2\n"), OracleAnswerCache.Target.of(answer), oracle);
+        OracleAnswerCache.Session sameOracle = cache.open(oracle("bruteforce-v1"));
+        sameOracle.answer(source("1 2\n"), OracleAnswerCache.Target.of(answer), oracle);
+        cache.open(oracle("bruteforce-v2")).answer(source("1 2\n"), OracleAnswerCache.Target.of(answer), oracle);
+
+        assertThat(oracleRuns.get()).isEqualTo(2);
+        assertThat(sameOracle.hits()).isEqualTo(1);
+        assertThat(sameOracle.timeSavedMillis()).isEqualTo(25);
+    }
+
+    private Path oracle(String binary) throws Exception {
+        return Files.writeString(tempDir.resolve(binary), binary);
+    }
+
+    private static OracleAnswerCache.Source source(String input) {
+        return () -> new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.demo;
+
+import com.example.demo.service.checker.CheckResult;
+import com.example.demo.service.checker.CheckerMode;
+import com.example.demo.service.checker.OutputChecker;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputCheckerTest {
+
+    @Test
+    void floatTokensKeepsLegacyWhitespaceAndPrecisionRules() throws Exception {
+        OutputChecker checker = OutputChecker.forMode(CheckerMode.FLOAT_TOKENS, 1e-6, 0);
+
+        assertThat(check(checker, "1 2.0000001\n3\n", "  1\t2\r\n3  ").accepted()).isTrue();
+        assertThat(check(checker, "", " \n").accepted()).isTrue();
+        assertThat(check(checker, "abc 1e3", "abc 1000.0").accepted()).isTrue();
+
+        CheckResult result = check(checker, "1 2 3", "1 2.001 3");
+        assertThat(result.accepted()).isFalse();
+        assertThat(result.mismatchOffset()).isEqualTo(2);
+        assertThat(result.message()).contains("token 2").contains("2.001");
+    }
+
+    @Test
+    void floatTokensAcceptsRelativeToleranceWhenConfigured() throws Exception {
+        OutputChecker absoluteOnly = OutputChecker.forMode(CheckerMode.FLOAT_TOKENS, 1e-9, 0);
+        OutputChecker relative = OutputChecker.forMode(CheckerMode.FLOAT_TOKENS, 1e-9, 1e-6);
+
+        assertThat(check(absoluteOnly, "1000000000", "1000000000.5").accepted()).isFalse();
+        assertThat(check(relative, "1000000000", "1000000000.5").accepted()).isTrue();
+        assertThat(check(relative, "1", "1.5").accepted()).isFalse();
+    }
+
+    @Test
+    void tokensReportsMissingAndExtraOutput() throws Exception {
+        OutputChecker checker = OutputChecker.forMode(CheckerMode.TOKENS, 0, 0);
+
+        assertThat(check(checker, "1.0", "1").accepted()).isFalse();
+
+        CheckResult early = check(checker, "1 2 3", "1 2\n");
+        assertThat(early.accepted()).isFalse();
+        assertThat(early.mismatchOffset()).isEqualTo(4);
+        assertThat(early.message()).contains("ended early");
+
+        CheckResult extra = check(checker, "1 2", "1 2 3");
+        assertThat(extra.accepted()).isFalse();
+        assertThat(extra.message()).contains("extra output");
+    }
+
+    @Test
+    void linesIgnoresTrailingSpacesAndBlankLinesOnly() throws Exception {
+        OutputChecker checker = OutputChecker.forMode(CheckerMode.LINES, 0, 0);
+
+        assertThat(check(checker, "a b\nc\n", "a b  \r\nc").accepted()).isTrue();
+        assertThat(check(checker, "a b\nc", "a b\nc\n\n \n").accepted()).isTrue();
+
+        CheckResult result = check(checker, "a b\nc d\n", "a b\nc  d\n");
+        assertThat(result.accepted()).isFalse();
+        assertThat(result.mismatchOffset()).isEqualTo(6);
+        assertThat(result.message()).contains("line 2");
+        assertThat(check(checker, "a\nb\n", "a b\n").accepted()).isFalse();
+    }
+
+    @Test
+    void exactRequiresIdenticalBytes() throws Exception {
+        OutputChecker checker = OutputChecker.forMode(CheckerMode.EXACT, 0, 0);
+
+        assertThat(check(checker, "1 2\n", "1 2\n").accepted()).isTrue();
+        CheckResult result = check(checker, "1 2\n", "1 2");
+        assertThat(result.accepted()).isFalse();
+        assertThat(result.mismatchOffset()).isEqualTo(3);
+    }
+
+    @Test
+    void tokensSpanningReadBuffersAreComparedWithoutLoadingWholeOutput() throws Exception {
+        OutputChecker checker = OutputChecker.forMode(CheckerMode.FLOAT_TOKENS, 1e-9, 0);
+        String longToken = "x".repeat(200_000);
+
+        assertThat(check(checker, "1 " + longToken + " 2", "1 " + longToken + " 2").accepted()).isTrue();
+        CheckResult result = check(checker, "1 " + longToken + "a", "1 " + longToken + "b");
+        assertThat(result.accepted()).isFalse();
+        assertThat(result.mismatchOffset()).isEqualTo(2);
+    }
+
+    private CheckResult check(OutputChecker checker, String expected, String actual) throws IOException {
+        return checker.check(stream(expected), stream(actual));
+    }
+
+    private InputStream stream(String value) {
+        return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
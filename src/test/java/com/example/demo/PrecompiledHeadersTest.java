@@ -0,0 +1,222 @@
+package com.example.demo;
+
+import com.example.demo.config.CompilerConfiguration;
+import com.example.demo.config.MemoryConfiguration;
+import com.example.demo.service.CompileCache;
+import com.example.demo.service.DirectProcessRunner;
+import com.example.demo.service.MemoryMonitorService;
+import com.example.demo.service.PrecompiledHeaders;
+import com.example.demo.service.ProcessResult;
+import com.example.demo.service.ProcessRunner;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrecompiledHeadersTest {
+
+    private static final List<String> FLAGS = List.of("g++", "-O2", "-std=c++14");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void headerIsBuiltOnceAndReusedForSourcesThatIncludeItFirst() throws Exception {
+        AtomicInteger builds = new AtomicInteger();
+        PrecompiledHeaders headers = headers(fakeCompiler(builds, true));
+
+        Optional<Path> first = headers.includeDirectory(source("a.cpp", """
+                // solution
+                /* multi
+                   line */
+                #include <bits/stdc++.h>
+                int main() {}
+                """), FLAGS);
+        Optional<Path> second = headers.includeDirectory(source("b.cpp", "#include<bits/stdc++.h>\nint main(){}"), FLAGS);
+
+        assertThat(first).isPresent();
+        assertThat(second).isEqualTo(first);
+        assertThat(first.get().resolve("bits/stdc++.h.gch")).isRegularFile();
+        assertThat(builds.get()).isEqualTo(1);
+    }
+
+    @Test
+    void sourcesWithOtherLeadingCodeDoNotUseTheHeader() throws Exception {
+        AtomicInteger builds = new AtomicInteger();
+        PrecompiledHeaders headers = headers(fakeCompiler(builds, true));
+
+        assertThat(headers.includeDirectory(source("a.cpp", "#include <iostream>\n#include <bits/stdc++.h>\n"), FLAGS)).isEmpty();
+        assertThat(headers.includeDirectory(source("b.cpp", "#define LOCAL\n#include <bits/stdc++.h>\n"), FLAGS)).isEmpty();
+        assertThat(builds.get()).isZero();
+    }
+
+    @Test
+    void differentFlagsGetSeparateHeaders() throws Exception {
+        AtomicInteger builds = new AtomicInteger();
+        PrecompiledHeaders headers = headers(fakeCompiler(builds, true));
+        Path source = source("a.cpp", "#include <bits/stdc++.h>\n");
+
+        Optional<Path> o2 = headers.includeDirectory(source, FLAGS);
+        Optional<Path> o0 = headers.includeDirectory(source, List.of("g++", "-O0", "-std=c++14"));
+
+        assertThat(o2).isPresent();
+        assertThat(o0).isPresent();
+        assertThat(o0.get()).isNotEqualTo(o2.get());
+        assertThat(builds.get()).isEqualTo(2);
+    }
+
+    @Test
+    void failedBuildIsNotRetried() throws Exception {
+        AtomicInteger builds = new AtomicInteger();
+        PrecompiledHeaders headers = headers(fakeCompiler(builds, false));
+        Path source = source("a.cpp", "#include <bits/stdc++.h>\n");
+
+        assertThat(headers.includeDirectory(source, FLAGS)).isEmpty();
+        assertThat(headers.includeDirectory(source, FLAGS)).isEmpty();
+        assertThat(builds.get()).isEqualTo(1);
+    }
+
+    @Test
+    void onlyALoadedHeaderInTheIncludeTraceCountsAsUsed() {
+        String hit = "! /cache/pch/k/bits/stdc++.h.gch\n a.cpp\n";
+        String miss = """
+                a.cpp:1:25: warning: /cache/pch/k/bits/stdc++.h.gch: not used because `__STRICT_ANSI__' not defined [-Winvalid-pch]
+                x /cache/pch/k/bits/stdc++.h.gch
+                . /usr/include/c++/12/bits/stdc++.h
+                .. /usr/include/c++/12/cassert
+                """;
+
+        assertThat(PrecompiledHeaders.used(hit)).isTrue();
+        assertThat(PrecompiledHeaders.used(miss)).isFalse();
+        assertThat(PrecompiledHeaders.used("")).isFalse();
+    }
+
+    @Test
+    void includeTraceIsStrippedFromCompilerDiagnostics() {
+        String error = """
+                ! /cache/pch/k/bits/stdc++.h.gch
+                 a.cpp
+                a.cpp: In function 'int main()':
+                a.cpp:2:21: error: expected primary-expression before ';' token
+                    2 | int main(){ int x = ; }
+                      |                     ^
+                Multiple include guards may be useful for:
+                /usr/include/assert.h
+                /usr/include/c++/12/bits/regex.h
+                """;
+
+        assertThat(PrecompiledHeaders.withoutIncludeTrace(error)).isEqualTo("""
+                a.cpp: In function 'int main()':
+                a.cpp:2:21: error: expected primary-expression before ';' token
+                    2 | int main(){ int x = ; }
+                      |                     ^
+                """);
+    }
+
+    /**
+     * Cold vs PCH latency of the three-source compile fan-out with the real g++. Run with
+     * {@code -Djudge.benchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "judge.benchmark", matches = "true")
+    void benchmarkColdVersusPrecompiledHeaderCompile() throws Exception {
+        ProcessRunner runner = new DirectProcessRunner(new MemoryMonitorService(new MemoryConfiguration()));
+        Assumptions.assumeTrue(runner.run(ProcessRunner.Request.builder()
+                .command(List.of("g++", "--version"))
+                .workingDirectory(tempDir)
+                .build()).status() == ProcessResult.Status.SUCCESS, "g++ unavailable");
+        PrecompiledHeaders headers = headers(runner);
+        List<Path> sources = List.of(
+                source("generator.cpp", "#include <bits/stdc++.h>\nint main(int c, char** v) { std::mt19937 r(c); std::cout << r() % 100 << '\\n'; }\n"),
+                source("user.cpp", "#include <bits/stdc++.h>\nusing namespace std;\nint main() { long long x; cin >> x; cout << x * 2 << '\\n'; }\n"),
+                source("bruteforce.cpp", "#include <bits/stdc++.h>\nusing namespace std;\nint main() { long long x; cin >> x; cout << x + x << '\\n'; }\n"));
+
+        long buildStarted = System.nanoTime();
+        Path includeDirectory = headers.includeDirectory(sources.get(0), FLAGS).orElseThrow();
+        long buildMillis = (System.nanoTime() - buildStarted) / 1_000_000;
+
+        long coldMillis = compileAll(runner, sources, null);
+        long pchMillis = compileAll(runner, sources, includeDirectory);
+
+        System.out.printf("PCH build %d ms; three-source compile: cold %d ms, with PCH %d ms%n",
+                buildMillis, coldMillis, pchMillis);
+        assertThat(pchMillis).isLessThan(coldMillis);
+    }
+
+    private long compileAll(ProcessRunner runner, List<Path> sources, Path includeDirectory) throws Exception {
+        long started = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        List<ProcessResult> results = Collections.synchronizedList(new ArrayList<>());
+        for (Path source : sources) {
+            List<String> command = new ArrayList<>(List.of("g++", source.toString(), "-o",
+                    source.resolveSibling(source.getFileName() + ".bin").toString(), "-O2", "-std=c++14"));
+            if (includeDirectory != null) {
+                command.add("-I" + includeDirectory);
+                command.add("-Winvalid-pch");
+                command.add(PrecompiledHeaders.TRACE_FLAG);
+            }
+            Thread thread = new Thread(() -> {
+                try {
+                    results.add(runner.run(ProcessRunner.Request.builder()
+                            .command(command)
+                            .workingDirectory(tempDir)
+                            .timeout(Duration.ofSeconds(60))
+                            .memoryLimitBytes(1024L * 1024 * 1024)
+                            .build()));
+                } catch (IOException | InterruptedException e) {
+                    results.add(ProcessResult.failure(ProcessResult.Status.RUNTIME_ERROR, e.getMessage()));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (ProcessResult result : results) {
+            assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+            if (includeDirectory != null) {
+                assertThat(PrecompiledHeaders.used(result.error())).isTrue();
+            }
+        }
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+
+    private PrecompiledHeaders headers(ProcessRunner runner) {
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        CompileCache cache = new CompileCache(configuration, tempDir.resolve("cache"), runner);
+        return new PrecompiledHeaders(configuration, cache, runner);
+    }
+
+    /** Answers {@code --version} and writes the {@code -o} target for header builds. */
+    private ProcessRunner fakeCompiler(AtomicInteger builds, boolean succeed) {
+        return request -> {
+            List<String> command = request.command();
+            if (command.contains("--version")) {
+                return new ProcessResult(ProcessResult.Status.SUCCESS, "g++ (GCC) 13.2.0\n", "", 1, 0, 0);
+            }
+            builds.incrementAndGet();
+            if (!succeed) {
+                return ProcessResult.failure(ProcessResult.Status.RUNTIME_ERROR, "fatal error");
+            }
+            Files.writeString(Path.of(command.get(command.indexOf("-o") + 1)), "gch");
+            return new ProcessResult(ProcessResult.Status.SUCCESS, "", "", 1, 0, 0);
+        };
+    }
+
+    private Path source(String name, String code) throws IOException {
+        return Files.writeString(tempDir.resolve(name), code);
+    }
+}
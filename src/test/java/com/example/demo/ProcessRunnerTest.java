@@ -1,24 +1,40 @@
 package com.example.demo;
 
+import com.example.demo.config.MemoryConfiguration;
 import com.example.demo.config.SandboxConfiguration;
 import com.example.demo.exception.MemoryLimitExceededException;
+import com.example.demo.service.CancellationToken;
+import com.example.demo.service.CaseDataBuffer;
+import com.example.demo.service.CpuAffinity;
+import com.example.demo.service.CpuSlotAllocator;
 import com.example.demo.service.DirectProcessRunner;
+import com.example.demo.service.KernelLimits;
 import com.example.demo.service.MemoryMonitorService;
+import com.example.demo.service.NativeProcessLauncher;
 import com.example.demo.service.ProcessResult;
 import com.example.demo.service.ProcessRunner;
 import com.example.demo.service.SandboxProcessRunner;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -73,6 +89,320 @@ class ProcessRunnerTest {
         assertThat(elapsedMillis).isLessThan(3_000);
     }
 
+    @Test
+    void directRunnerKillsProcessTreeAsSoonAsTaskIsCancelled() throws Exception {
+        DirectProcessRunner runner = directRunnerWithMemoryUsage(1024);
+        CancellationToken task = new CancellationToken();
+        CancellationToken cases = task.child();
+
+        CompletableFuture<ProcessResult> running = CompletableFuture.supplyAsync(() -> {
+            try {
+                return runner.run(request("sleep")
+                        .timeout(Duration.ofSeconds(30))
+                        .killGrace(Duration.ofSeconds(5))
+                        .cancellationToken(cases)
+                        .build());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (ProcessHandle.current().children().findAny().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+
+        long cancelled = System.nanoTime();
+        task.cancelForBudgetExceeded();
+        ProcessResult result = running.get(10, TimeUnit.SECONDS);
+        long latencyMillis = Duration.ofNanos(System.nanoTime() - cancelled).toMillis();
+
+        System.out.printf("cancel-to-terminal latency: %d ms%n", latencyMillis);
+        assertThat(cases.isBudgetExceeded()).isTrue();
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.CANCELLED);
+        assertThat(latencyMillis).isLessThan(1_000);
+        assertThat(ProcessHandle.current().children().filter(ProcessHandle::isAlive).count()).isZero();
+    }
+
+    @Test
+    void directRunnerDoesNotStartProcessForCancelledToken() throws Exception {
+        DirectProcessRunner runner = directRunnerWithMemoryUsage(1024);
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+
+        ProcessResult result = runner.run(request("normal").cancellationToken(token).build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.CANCELLED);
+        assertThat(result.output()).isEmpty();
+    }
+
+    @Test
+    void directRunnerReportsCpuTimeAndPeakRssFromWait4() throws Exception {
+        Assumptions.assumeTrue(NativeProcessLauncher.load() != null, "posix_spawn launcher unavailable");
+        DirectProcessRunner runner = directRunnerWithMemoryUsage(0);
+
+        ProcessResult result = runner.run(request("spin")
+                .timeout(Duration.ofSeconds(10))
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+        assertThat(result.cpuTime()).isGreaterThanOrEqualTo(900);
+        assertThat(result.executionTime()).isGreaterThanOrEqualTo(1_000);
+    }
+
+    @Test
+    void wait4PeakRssAboveTheJvmsOwnIsReported() throws Exception {
+        Assumptions.assumeTrue(NativeProcessLauncher.load() != null, "posix_spawn launcher unavailable");
+        DirectProcessRunner runner = directRunnerWithMemoryUsage(0);
+        long touched = ownPeakRss() + (64L << 20);
+
+        ProcessResult result = runner.run(request("touch")
+                .command(javaCommand("touch", Long.toString(touched)))
+                .memoryLimitBytes(touched * 2)
+                .timeout(Duration.ofSeconds(30))
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+        // The sampler saw nothing; the peak comes from ru_maxrss alone.
+        assertThat(result.memoryUsed()).isGreaterThanOrEqualTo(touched);
+    }
+
+    @Test
+    void wait4PeakRssInheritedFromTheJvmIsNotReported() throws Exception {
+        Assumptions.assumeTrue(NativeProcessLauncher.load() != null, "posix_spawn launcher unavailable");
+        DirectProcessRunner runner = directRunnerWithMemoryUsage(0);
+
+        ProcessResult result = runner.run(request("normal")
+                .command(List.of("sh", "-c", "exit 0"))
+                .build());
+
+        // ru_maxrss of a spawned child starts at the JVM's VmHWM, which must not be charged to it.
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+        assertThat(result.memoryUsed()).isLessThan(ownPeakRss());
+    }
+
+    @Test
+    void concurrentChildrenAreReapedByOneSharedThread() throws Exception {
+        NativeProcessLauncher launcher = NativeProcessLauncher.load();
+        Assumptions.assumeTrue(launcher != null && launcher.usesSharedReaper(), "pidfd/epoll reaper unavailable");
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            processes.add(launcher.start(List.of("sh", "-c", "sleep 0.2; exit " + i), tempDir, null, null));
+        }
+
+        long reaperThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("native-reaper"))
+                .count();
+        assertThat(reaperThreads).isEqualTo(1);
+        for (int i = 0; i < processes.size(); i++) {
+            assertThat(processes.get(i).waitFor(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(processes.get(i).exitValue()).isEqualTo(i);
+        }
+    }
+
+    /**
+     * Spawns per second through {@link DirectProcessRunner} with the posix_spawn launcher and with
+     * {@link ProcessBuilder}. Run with {@code -Djudge.benchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "judge.benchmark", matches = "true")
+    void benchmarkPosixSpawnVersusProcessBuilder() throws Exception {
+        NativeProcessLauncher launcher = NativeProcessLauncher.load();
+        Assumptions.assumeTrue(launcher != null, "posix_spawn launcher unavailable");
+        MemoryMonitorService monitor = new MemoryMonitorService(new MemoryConfiguration());
+        DirectProcessRunner nativeRunner = new DirectProcessRunner(monitor, launcher);
+        DirectProcessRunner builderRunner = new DirectProcessRunner(monitor, (NativeProcessLauncher) null);
+        ProcessRunner.Request request = ProcessRunner.Request.builder()
+                .command(List.of("true"))
+                .workingDirectory(tempDir)
+                .profile("trusted-local")
+                .build();
+        // Heap the size of a judge node, so fork has page tables worth copying.
+        byte[][] heap = new byte[256][];
+        for (int i = 0; i < heap.length; i++) {
+            heap[i] = new byte[1 << 20];
+        }
+
+        spawnsPerSecond(nativeRunner, request, 200);
+        spawnsPerSecond(builderRunner, request, 200);
+        double nativeRate = spawnsPerSecond(nativeRunner, request, 2_000);
+        double builderRate = spawnsPerSecond(builderRunner, request, 2_000);
+
+        System.out.printf("spawns/sec with %d MiB live heap: posix_spawn %.0f, ProcessBuilder %.0f%n",
+                heap.length, nativeRate, builderRate);
+        assertThat(nativeRate).isPositive();
+    }
+
+    private static double spawnsPerSecond(ProcessRunner runner, ProcessRunner.Request request, int spawns)
+            throws Exception {
+        long started = System.nanoTime();
+        for (int i = 0; i < spawns; i++) {
+            assertThat(runner.run(request).status()).isEqualTo(ProcessResult.Status.SUCCESS);
+        }
+        return spawns * 1e9 / (System.nanoTime() - started);
+    }
+
+    @Test
+    void pinnedProcessRunsOnlyOnItsCoreAndTheSpawningThreadIsRestored() throws Exception {
+        Assumptions.assumeTrue(CpuAffinity.isSupported(), "sched_setaffinity unavailable");
+        List<Integer> allowed = CpuAffinity.allowedCores();
+        int core = allowed.get(allowed.size() - 1);
+        DirectProcessRunner runner = new DirectProcessRunner(new MemoryMonitorService(new MemoryConfiguration()));
+
+        ProcessResult result = runner.run(request("normal")
+                .command(List.of("sh", "-c", "grep Cpus_allowed_list /proc/self/status"))
+                .cpuCore(core)
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+        assertThat(result.output().trim()).endsWith("\t" + core);
+        assertThat(CpuAffinity.allowedCores()).isEqualTo(allowed);
+    }
+
+    @Test
+    void workOutsideACaseSpawnsOnTheCaseCoresNotTheReservedOnes() throws Exception {
+        Assumptions.assumeTrue(CpuAffinity.isSupported(), "sched_setaffinity unavailable");
+        List<Integer> allowed = CpuAffinity.allowedCores();
+        Assumptions.assumeTrue(allowed.size() >= 2, "needs a reserved core and a case core");
+        List<Integer> caseCores = allowed.subList(1, allowed.size());
+        new CpuSlotAllocator(caseCores.size(), 1, caseCores);
+        DirectProcessRunner runner = new DirectProcessRunner(new MemoryMonitorService(new MemoryConfiguration()));
+
+        ProcessResult result = CpuAffinity.onCaseCores(() -> runner.run(request("normal")
+                .command(List.of("sh", "-c", "grep Cpus_allowed_list /proc/self/status"))
+                .cpuCore(CpuAffinity.assignedCore())
+                .build()));
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+        assertThat(coreList(result.output().trim().split("\t")[1])).isEqualTo(caseCores);
+        assertThat(CpuAffinity.assignedCore()).isEqualTo(-1);
+        assertThat(CpuAffinity.allowedCores()).isEqualTo(allowed);
+    }
+
+    private static List<Integer> coreList(String ranges) {
+        List<Integer> cores = new ArrayList<>();
+        for (String range : ranges.split(",")) {
+            String[] bounds = range.split("-");
+            int first = Integer.parseInt(bounds[0]);
+            int last = Integer.parseInt(bounds[bounds.length - 1]);
+            for (int core = first; core <= last; core++) {
+                cores.add(core);
+            }
+        }
+        return cores;
+    }
+
+    @Test
+    void cpuTimeLimitIgnoresTimeSpentBlocked() throws Exception {
+        Assumptions.assumeTrue(NativeProcessLauncher.load() != null, "posix_spawn launcher unavailable");
+        DirectProcessRunner runner = directRunnerWithMemoryUsage(1024);
+
+        ProcessResult result = runner.run(request("spin")
+                .command(List.of("sleep", "0.5"))
+                .timeout(Duration.ofSeconds(5))
+                .cpuTimeLimit(Duration.ofMillis(200))
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+        assertThat(result.executionTime()).isGreaterThanOrEqualTo(500);
+        assertThat(result.cpuTime()).isLessThan(200);
+    }
+
+    @Test
+    void cpuTimeLimitTurnsComputationPastTheLimitIntoTimeLimitExceeded() throws Exception {
+        Assumptions.assumeTrue(NativeProcessLauncher.load() != null, "posix_spawn launcher unavailable");
+        DirectProcessRunner runner = directRunnerWithMemoryUsage(1024);
+
+        ProcessResult result = runner.run(request("spin")
+                .timeout(Duration.ofSeconds(10))
+                .cpuTimeLimit(Duration.ofMillis(300))
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.TIME_LIMIT_EXCEEDED);
+        assertThat(result.cpuTime()).isGreaterThan(300);
+    }
+
+    @Test
+    void kernelCpuLimitStopsABusyLoopWithSigxcpu() throws Exception {
+        Assumptions.assumeTrue(KernelLimits.isSupported(), "prlimit unavailable");
+        DirectProcessRunner runner = directRunnerWithMemoryUsage(1024);
+
+        ProcessResult result = runner.run(request("spin")
+                .command(List.of("sh", "-c", "while :; do :; done"))
+                .timeout(Duration.ofSeconds(10))
+                .kernelLimits(new KernelLimits(1, 0, 0, 0))
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.TIME_LIMIT_EXCEEDED);
+        assertThat(result.exitCode()).isEqualTo(128 + 24);
+        assertThat(result.executionTime()).isLessThan(5_000);
+    }
+
+    @Test
+    void kernelFileSizeLimitTurnsSigxfszIntoOutputLimitExceeded() throws Exception {
+        Assumptions.assumeTrue(KernelLimits.isSupported(), "prlimit unavailable");
+        DirectProcessRunner runner = directRunnerWithMemoryUsage(1024);
+
+        ProcessResult result = runner.run(request("normal")
+                .command(List.of("sh", "-c", "exec head -c 65536 /dev/zero > big.out"))
+                .kernelLimits(new KernelLimits(0, 0, 4096, 0))
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.OUTPUT_LIMIT_EXCEEDED);
+        assertThat(Files.size(tempDir.resolve("work").resolve("big.out"))).isEqualTo(4096);
+    }
+
+    @Test
+    void kernelLimitsMapFailedAllocationsToMemoryLimitExceeded() {
+        KernelLimits limits = KernelLimits.forCase(Duration.ofMillis(1500), 64L << 20, 1024, 0);
+
+        assertThat(limits.cpuSeconds()).isEqualTo(2);
+        assertThat(limits.addressSpaceBytes()).isEqualTo(128L << 20);
+        String badAlloc = "terminate called after throwing an instance of 'std::bad_alloc'\n  what():  std::bad_alloc";
+        assertThat(limits.classify(128 + 6, 10, 40L << 20, 64L << 20, badAlloc))
+                .isEqualTo(ProcessResult.Status.MEMORY_LIMIT_EXCEEDED);
+        assertThat(limits.classify(1, 10, 80L << 20, 64L << 20, "std::runtime_error"))
+                .isEqualTo(ProcessResult.Status.MEMORY_LIMIT_EXCEEDED);
+        assertThat(limits.classify(128 + 11, 10, 1L << 20, 64L << 20, "")).isNull();
+        assertThat(limits.classify(128 + 9, 3_000, 1L << 20, 64L << 20, "")).isEqualTo(ProcessResult.Status.TIME_LIMIT_EXCEEDED);
+    }
+
+    @Test
+    void badAllocMessageAloneIsNotMemoryLimitExceeded() {
+        KernelLimits limits = KernelLimits.forCase(Duration.ofMillis(1500), 64L << 20, 1024, 0);
+        String badAlloc = "terminate called after throwing an instance of 'std::bad_alloc'";
+
+        // Printed by the program itself and exited normally with an error status.
+        assertThat(limits.classify(1, 10, 40L << 20, 64L << 20, badAlloc)).isNull();
+        assertThat(limits.classify(128 + 6, 10, 40L << 20, 64L << 20, "std::bad_alloc")).isNull();
+    }
+
+    @Test
+    void allocationPastTheAddressSpaceCapIsMemoryLimitExceeded() throws Exception {
+        Assumptions.assumeTrue(KernelLimits.isSupported(), "prlimit unavailable");
+        Path work = tempDir.resolve("work");
+        Files.createDirectories(work);
+        Path source = Files.writeString(work.resolve("alloc.cpp"), """
+                #include <vector>
+                int main() { std::vector<char> v(256u << 20); return v[0]; }
+                """);
+        Process compiler = new ProcessBuilder("g++", "-O0", "-o", work.resolve("alloc").toString(), source.toString())
+                .redirectErrorStream(true)
+                .start();
+        compiler.getInputStream().readAllBytes();
+        Assumptions.assumeTrue(compiler.waitFor(60, TimeUnit.SECONDS) && compiler.exitValue() == 0, "g++ unavailable");
+        DirectProcessRunner runner = directRunnerWithMemoryUsage(1024);
+
+        ProcessResult result = runner.run(request("normal")
+                .command(List.of(work.resolve("alloc").toString()))
+                .kernelLimits(KernelLimits.forCase(Duration.ofSeconds(1), 64L << 20, 1024, 0))
+                .build());
+
+        // The 256MB allocation is refused by the 128MB cap before any of it is resident.
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.MEMORY_LIMIT_EXCEEDED);
+        assertThat(result.exitCode()).isEqualTo(128 + 6);
+    }
+
     @Test
     void directRunnerStopsInfiniteStdoutAtConfiguredByteLimit() throws Exception {
         DirectProcessRunner runner = directRunnerWithMemoryUsage(1024);
@@ -86,6 +416,22 @@ class ProcessRunnerTest {
         assertThat(result.output().getBytes()).hasSizeLessThanOrEqualTo(4096);
     }
 
+    @Test
+    void stdoutRedirectedToFileIsStoppedAndTruncatedAtTheByteLimit() throws Exception {
+        DirectProcessRunner runner = directRunnerWithMemoryUsage(1024);
+        Path outputFile = tempDir.resolve("infinite.out");
+
+        ProcessResult result = runner.run(request("infiniteOut")
+                .outputFile(outputFile)
+                .maxOutputBytes(4096)
+                .timeout(Duration.ofSeconds(10))
+                .build());
+
+        assertThat(result.status()).isEqualTo(ProcessResult.Status.OUTPUT_LIMIT_EXCEEDED);
+        assertThat(result.executionTime()).isLessThan(5_000);
+        assertThat(Files.size(outputFile)).isEqualTo(4096);
+    }
+
     @Test
     void directRunnerStopsHugeStderrAtConfiguredByteLimit() throws Exception {
         DirectProcessRunner runner = directRunnerWithMemoryUsage(1024);
@@ -104,7 +450,7 @@ class ProcessRunnerTest {
         MemoryMonitorService monitor = mock(MemoryMonitorService.class);
         CompletableFuture<MemoryMonitorService.MemoryUsage> failed = new CompletableFuture<>();
         failed.completeExceptionally(new MemoryLimitExceededException(2048, 1024));
-        when(monitor.monitorProcess(any(Process.class), anyLong())).thenReturn(failed);
+        when(monitor.monitorProcess(any(Process.class), anyLong(), anyInt())).thenReturn(failed);
         DirectProcessRunner runner = new DirectProcessRunner(monitor);
 
         ProcessResult result = runner.run(request("sleep")
@@ -116,6 +462,35 @@ class ProcessRunnerTest {
         assertThat(result.error()).contains("Memory limit exceeded");
     }
 
+    @Test
+    void directRunnerPipesBuffersWithoutCaseFiles() throws Exception {
+        DirectProcessRunner runner = directRunnerWithMemoryUsage(1024);
+        byte[] payload = "1 2 3\n".repeat(4096).getBytes(StandardCharsets.UTF_8);
+
+        try (CaseDataBuffer input = new CaseDataBuffer(1024, tempDir);
+             CaseDataBuffer output = new CaseDataBuffer(1024, tempDir)) {
+            try (OutputStream out = input.openOutputStream()) {
+                out.write(payload);
+            }
+
+            ProcessResult result = runner.run(request("echo")
+                    .inputBuffer(input)
+                    .outputBuffer(output)
+                    .maxOutputBytes(payload.length * 2L)
+                    .build());
+
+            assertThat(result.status()).isEqualTo(ProcessResult.Status.SUCCESS);
+            assertThat(output.size()).isEqualTo(payload.length);
+            assertThat(output.spilled()).isTrue();
+            try (InputStream in = output.openInputStream()) {
+                assertThat(in.readAllBytes()).isEqualTo(payload);
+            }
+        }
+        try (var files = Files.list(tempDir)) {
+            assertThat(files.filter(file -> file.getFileName().toString().endsWith(".spill")).toList()).isEmpty();
+        }
+    }
+
     @Test
     void directRunnerRejectsIllegalWorkingDirectory() throws Exception {
         DirectProcessRunner runner = directRunnerWithMemoryUsage(1024);
@@ -160,7 +535,7 @@ class ProcessRunnerTest {
 
     private DirectProcessRunner directRunnerWithMemoryUsage(long peakMemory) {
         MemoryMonitorService monitor = mock(MemoryMonitorService.class);
-        when(monitor.monitorProcess(any(Process.class), anyLong()))
+        when(monitor.monitorProcess(any(Process.class), anyLong(), anyInt()))
                 .thenReturn(CompletableFuture.completedFuture(
                         new MemoryMonitorService.MemoryUsage(peakMemory, peakMemory, peakMemory)));
         return new DirectProcessRunner(monitor);
@@ -181,7 +556,16 @@ class ProcessRunnerTest {
                 .requireSandbox(false);
     }
 
-    private List<String> javaCommand(String mode) {
+    private static long ownPeakRss() throws Exception {
+        for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+            if (line.startsWith("VmHWM:")) {
+                return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+            }
+        }
+        throw new IllegalStateException("VmHWM missing");
+    }
+
+    private List<String> javaCommand(String mode, String... args) {
         Path java = Path.of(System.getProperty("java.home"), "bin", isWindows() ? "java.exe" : "java");
         List<String> command = new ArrayList<>();
         command.add(java.toString());
@@ -189,6 +573,7 @@ class ProcessRunnerTest {
         command.add(System.getProperty("java.class.path"));
         command.add(ToolProcess.class.getName());
         command.add(mode);
+        command.addAll(List.of(args));
         return command;
     }
 
@@ -200,11 +585,38 @@ class ProcessRunnerTest {
         public static void main(String[] args) throws Exception {
             switch (args[0]) {
                 case "normal" -> System.out.print("ok\n");
+                case "echo" -> {
+                    System.in.transferTo(System.out);
+                    System.out.flush();
+                }
                 case "nonzero" -> {
                     System.err.println("bad exit");
                     System.exit(7);
                 }
                 case "sleep" -> Thread.sleep(30_000);
+                case "touch" -> {
+                    long remaining = Long.parseLong(args[1]);
+                    List<byte[]> chunks = new ArrayList<>();
+                    while (remaining > 0) {
+                        byte[] chunk = new byte[1 << 20];
+                        for (int i = 0; i < chunk.length; i += 4096) {
+                            chunk[i] = 1;
+                        }
+                        chunks.add(chunk);
+                        remaining -= chunk.length;
+                    }
+                    System.out.print(chunks.size() > 0 ? "" : "never");
+                }
+                case "spin" -> {
+                    // Bounded by CPU time so a loaded host cannot starve the loop below the tests' thresholds.
+                    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                    long until = threads.getCurrentThreadCpuTime() + 1_000_000_000L;
+                    long counter = 0;
+                    while (threads.getCurrentThreadCpuTime() < until) {
+                        counter++;
+                    }
+                    System.out.print(counter > 0 ? "" : "never");
+                }
                 case "infiniteOut" -> {
                     while (true) {
                         System.out.print("0123456789abcdef");
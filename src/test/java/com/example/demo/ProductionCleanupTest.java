@@ -201,19 +201,19 @@ class ProductionCleanupTest {
     }
 
     private ResolvedTaskPolicy policy() {
-        return new ResolvedTaskPolicy(
-                "linux-prod",
-                true,
-                10_000,
-                12,
-                100,
-                4,
-                Duration.ofSeconds(2),
-                Duration.ofMinutes(30),
-                268_435_456L,
-                1_048_576L,
-                false
-        );
+        return ResolvedTaskPolicy.builder()
+                .profile("linux-prod")
+                .highVolume(true)
+                .maxCasesPerTask(10_000)
+                .requestedCases(12)
+                .batchSize(100)
+                .maxConcurrentCasesPerTask(4)
+                .caseTimeLimit(Duration.ofSeconds(2))
+                .maxTaskRuntime(Duration.ofMinutes(30))
+                .memoryLimitBytes(268_435_456L)
+                .maxOutputBytesPerCase(1_048_576L)
+                .sandboxRequired(false)
+                .build();
     }
 
     private boolean createDirectoryLink(Path link, Path target) {
@@ -194,7 +194,10 @@ class ProductionHighVolumeIntegrationTest {
                 scheduler,
                 securityValidator(execution, sandbox),
                 caseExecutor,
-                Optional.of(runner)
+                Optional.of(runner),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty()
         );
         String judgeId = "prod-high-" + totalCases + "-" + UUID.randomUUID();
         Instant started = Instant.now();
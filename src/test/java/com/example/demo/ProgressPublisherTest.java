@@ -179,19 +179,19 @@ class ProgressPublisherTest {
                 .status(JudgeStatus.CREATED)
                 .requestedCases(requestedCases)
                 .mode("trusted-local")
-                .policy(new ResolvedTaskPolicy(
-                        "trusted-local",
-                        highVolume,
-                        requestedCases,
-                        requestedCases,
-                        100,
-                        4,
-                        Duration.ofSeconds(1),
-                        Duration.ofMinutes(1),
-                        64L * 1024 * 1024,
-                        1024L * 1024,
-                        false
-                ))
+                .policy(ResolvedTaskPolicy.builder()
+                        .profile("trusted-local")
+                        .highVolume(highVolume)
+                        .maxCasesPerTask(requestedCases)
+                        .requestedCases(requestedCases)
+                        .batchSize(100)
+                        .maxConcurrentCasesPerTask(4)
+                        .caseTimeLimit(Duration.ofSeconds(1))
+                        .maxTaskRuntime(Duration.ofMinutes(1))
+                        .memoryLimitBytes(64L * 1024 * 1024)
+                        .maxOutputBytesPerCase(1024L * 1024)
+                        .sandboxRequired(false)
+                        .build())
                 .workDir(workDir.toString())
                 .createdAt(Instant.now(clock))
                 .build());
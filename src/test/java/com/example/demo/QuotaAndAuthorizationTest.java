@@ -247,18 +247,18 @@ class QuotaAndAuthorizationTest {
     }
 
     private ResolvedTaskPolicy policy(int cases) {
-        return new ResolvedTaskPolicy(
-                executionProperties.getProfile(),
-                false,
-                executionProperties.getMaxCasesPerTask(),
-                cases,
-                executionProperties.getBatchSize(),
-                executionProperties.getMaxConcurrentCasesPerTask(),
-                Duration.ofMillis(2_000),
-                executionProperties.getMaxTaskRuntime(),
-                268_435_456L,
-                executionProperties.getMaxOutputBytesPerCase(),
-                executionProperties.isRequireSandbox()
-        );
+        return ResolvedTaskPolicy.builder()
+                .profile(executionProperties.getProfile())
+                .highVolume(false)
+                .maxCasesPerTask(executionProperties.getMaxCasesPerTask())
+                .requestedCases(cases)
+                .batchSize(executionProperties.getBatchSize())
+                .maxConcurrentCasesPerTask(executionProperties.getMaxConcurrentCasesPerTask())
+                .caseTimeLimit(Duration.ofMillis(2_000))
+                .maxTaskRuntime(executionProperties.getMaxTaskRuntime())
+                .memoryLimitBytes(268_435_456L)
+                .maxOutputBytesPerCase(executionProperties.getMaxOutputBytesPerCase())
+                .sandboxRequired(executionProperties.isRequireSandbox())
+                .build();
     }
 }
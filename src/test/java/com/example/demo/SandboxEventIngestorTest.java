@@ -182,19 +182,19 @@ class SandboxEventIngestorTest {
     }
 
     private ResolvedTaskPolicy policy(int totalCases, boolean highVolume) {
-        return new ResolvedTaskPolicy(
-                "linux-prod",
-                highVolume,
-                totalCases,
-                totalCases,
-                100,
-                4,
-                Duration.ofSeconds(2),
-                Duration.ofMinutes(30),
-                268_435_456L,
-                1_048_576L,
-                true
-        );
+        return ResolvedTaskPolicy.builder()
+                .profile("linux-prod")
+                .highVolume(highVolume)
+                .maxCasesPerTask(totalCases)
+                .requestedCases(totalCases)
+                .batchSize(100)
+                .maxConcurrentCasesPerTask(4)
+                .caseTimeLimit(Duration.ofSeconds(2))
+                .maxTaskRuntime(Duration.ofMinutes(30))
+                .memoryLimitBytes(268_435_456L)
+                .maxOutputBytesPerCase(1_048_576L)
+                .sandboxRequired(true)
+                .build();
     }
 
     private static final class FixedClock extends Clock {
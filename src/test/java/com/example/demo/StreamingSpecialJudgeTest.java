@@ -0,0 +1,128 @@
+package com.example.demo;
+
+import com.example.demo.service.StreamingSpecialJudge;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingSpecialJudgeTest {
+
+    private static final String COMPARING_CHECKER = """
+            echo 'SPJ-STREAM 1'
+            while read c i o a; do
+              dd bs=1 count=$i 2>/dev/null >/dev/null
+              out=$(dd bs=1 count=$o 2>/dev/null)
+              ans=$(dd bs=1 count=$a 2>/dev/null)
+              if [ "$out" = "$ans" ]; then echo "$c AC"; else echo "$c WA differs"; fi
+            done
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void oneCheckerProcessJudgesEveryCaseWithTheOracleAnswer() throws Exception {
+        AtomicInteger launches = new AtomicInteger();
+        try (StreamingSpecialJudge judge = StreamingSpecialJudge.start(checker(COMPARING_CHECKER, launches), Duration.ofSeconds(5))) {
+            assertThat(judge).isNotNull();
+            for (int caseNumber = 1; caseNumber <= 5; caseNumber++) {
+                String answer = caseNumber + "\n";
+                String output = caseNumber == 3 ? "wrong\n" : answer;
+                StreamingSpecialJudge.Verdict verdict = judge.check(caseNumber, payload("1 2\n"), payload(output), payload(answer),
+                        Duration.ofSeconds(5));
+
+                assertThat(verdict).isEqualTo(caseNumber == 3
+                        ? StreamingSpecialJudge.Verdict.WRONG_ANSWER
+                        : StreamingSpecialJudge.Verdict.ACCEPTED);
+            }
+        }
+        assertThat(launches.get()).isEqualTo(1);
+    }
+
+    @Test
+    void legacyCheckerWithoutHandshakeIsNotStreamed() throws Exception {
+        StreamingSpecialJudge judge = StreamingSpecialJudge.start(checker("exit 0", new AtomicInteger()), Duration.ofSeconds(5));
+
+        assertThat(judge).isNull();
+    }
+
+    @Test
+    void slowCheckerIsKilledAndReplacedForTheNextCase() throws Exception {
+        String script = """
+                echo 'SPJ-STREAM 1'
+                while read c i o a; do
+                  dd bs=1 count=$((i + o)) 2>/dev/null >/dev/null
+                  if [ "$c" = 1 ]; then sleep 30; fi
+                  echo "$c PE"
+                done
+                """;
+        AtomicInteger launches = new AtomicInteger();
+        try (StreamingSpecialJudge judge = StreamingSpecialJudge.start(checker(script, launches), Duration.ofSeconds(5))) {
+            assertThat(judge.check(1, payload("x\n"), payload("y\n"), null, Duration.ofMillis(300)))
+                    .isEqualTo(StreamingSpecialJudge.Verdict.TIME_LIMIT_EXCEEDED);
+            assertThat(judge.check(2, payload("x\n"), payload("y\n"), null, Duration.ofSeconds(5)))
+                    .isEqualTo(StreamingSpecialJudge.Verdict.PRESENTATION_ERROR);
+        }
+        assertThat(launches.get()).isEqualTo(2);
+    }
+
+    @Test
+    void checkerThatExitsLeavesTheCaseWithoutVerdict() throws Exception {
+        String script = """
+                echo 'SPJ-STREAM 1'
+                read c i o a
+                exit 3
+                """;
+        try (StreamingSpecialJudge judge = StreamingSpecialJudge.start(checker(script, new AtomicInteger()), Duration.ofSeconds(5))) {
+            assertThat(judge.check(1, payload("x\n"), payload("y\n"), null, Duration.ofSeconds(5))).isNull();
+        }
+    }
+
+    @Test
+    void unknownVerdictLeavesTheCaseWithoutVerdict() throws Exception {
+        String script = """
+                echo 'SPJ-STREAM 1'
+                while read c i o a; do
+                  dd bs=1 count=$((i + o)) 2>/dev/null >/dev/null
+                  echo "$c OK"
+                done
+                """;
+        try (StreamingSpecialJudge judge = StreamingSpecialJudge.start(checker(script, new AtomicInteger()), Duration.ofSeconds(5))) {
+            assertThat(judge.check(1, payload("x\n"), payload("y\n"), null, Duration.ofSeconds(5))).isNull();
+        }
+    }
+
+    @Test
+    void checkerWritingMuchToStderrIsNotBlocked() throws Exception {
+        String script = """
+                echo 'SPJ-STREAM 1'
+                while read c i o a; do
+                  dd bs=1 count=$((i + o)) 2>/dev/null >/dev/null
+                  head -c 1048576 /dev/zero >&2
+                  echo "$c AC"
+                done
+                """;
+        try (StreamingSpecialJudge judge = StreamingSpecialJudge.start(checker(script, new AtomicInteger()), Duration.ofSeconds(5))) {
+            assertThat(judge.check(1, payload("x\n"), payload("y\n"), null, Duration.ofSeconds(5)))
+                    .isEqualTo(StreamingSpecialJudge.Verdict.ACCEPTED);
+        }
+    }
+
+    private static StreamingSpecialJudge.Launcher checker(String script, AtomicInteger launches) {
+        return () -> {
+            launches.incrementAndGet();
+            return new ProcessBuilder(List.of("sh", "-c", script)).start();
+        };
+    }
+
+    private StreamingSpecialJudge.Payload payload(String text) throws Exception {
+        return StreamingSpecialJudge.Payload.of(Files.writeString(Files.createTempFile(tempDir, "case", ".txt"), text));
+    }
+}
@@ -3,11 +3,13 @@ package com.example.demo;
 import com.example.demo.config.ExecutionProperties;
 import com.example.demo.config.MemoryConfiguration;
 import com.example.demo.dto.JudgeRequest;
+import com.example.demo.service.ArtifactRetention;
 import com.example.demo.service.ResolvedTaskPolicy;
 import com.example.demo.service.TaskPolicyResolver;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -112,6 +114,55 @@ class TaskPolicyResolverTest {
         assertRejectedWithPolicyContext(resolver, request(1), "maxOutputBytesPerCase");
     }
 
+    @Test
+    void artifactRetentionIsResolvedFromProfileAndLimitsAcceptedSamples() {
+        ExecutionProperties properties = ordinaryProperties(12);
+        TaskPolicyResolver resolver = resolver(properties, memoryConfiguration());
+        assertThat(resolver.resolve(request(1)).artifactRetention()).isEqualTo(ArtifactRetention.ALL);
+
+        properties.setArtifactRetention("failures-only");
+        assertThat(resolver.resolve(request(1)).artifactRetention()).isEqualTo(ArtifactRetention.FAILURES_ONLY);
+
+        properties.setArtifactRetention("failures-plus-sample-2");
+        ArtifactRetention sampled = resolver.resolve(request(1)).artifactRetention();
+        assertThat(sampled.mode()).isEqualTo(ArtifactRetention.Mode.FAILURES_PLUS_SAMPLE);
+        assertThat(sampled.sampleSize()).isEqualTo(2);
+        AtomicInteger retained = new AtomicInteger();
+        assertThat(sampled.retainAccepted(retained)).isTrue();
+        assertThat(sampled.retainAccepted(retained)).isTrue();
+        assertThat(sampled.retainAccepted(retained)).isFalse();
+        assertThat(retained.get()).isEqualTo(2);
+
+        properties.setArtifactRetention("failures-plus-sample-x");
+        assertRejectedWithPolicyContext(resolver, request(1), "failures-plus-sample-x");
+
+        properties.setArtifactRetention("none");
+        assertRejectedWithPolicyContext(resolver, request(1), "seededGeneration");
+        properties.setSeededGeneration(true);
+        ResolvedTaskPolicy seeded = resolver.resolve(request(1));
+        assertThat(seeded.artifactRetention()).isEqualTo(ArtifactRetention.NONE);
+        assertThat(seeded.seededGeneration()).isTrue();
+    }
+
+    @Test
+    void generatorAndPackKnobsAreResolvedIntoThePolicy() {
+        ExecutionProperties properties = ordinaryProperties(12);
+        properties.setBulkGeneratorChunk(16);
+        properties.setMultiTestPackMaxSize(32);
+        TaskPolicyResolver resolver = resolver(properties, memoryConfiguration());
+
+        JudgeRequest unpacked = request(1);
+        ResolvedTaskPolicy policy = resolver.resolve(unpacked);
+        assertThat(policy.bulkGeneratorChunk()).isEqualTo(16);
+        assertThat(policy.multiTestPackSize()).isEqualTo(1);
+
+        JudgeRequest packed = request(1);
+        packed.setMultiTestPackSize(100);
+        assertThat(resolver.resolve(packed).multiTestPackSize()).isEqualTo(32);
+        packed.setMultiTestPackSize(8);
+        assertThat(resolver.resolve(packed).multiTestPackSize()).isEqualTo(8);
+    }
+
     private TaskPolicyResolver resolver(ExecutionProperties properties, MemoryConfiguration memoryConfiguration) {
         return new TaskPolicyResolver(properties, memoryConfiguration);
     }